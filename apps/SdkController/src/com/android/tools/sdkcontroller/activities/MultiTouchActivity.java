@@ -16,11 +16,10 @@
 
 package com.android.tools.sdkcontroller.activities;
 
-import java.io.ByteArrayInputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
 
-import android.graphics.Color;
 import android.os.Bundle;
 import android.os.Message;
 import android.util.Log;
@@ -59,6 +58,10 @@ public class MultiTouchActivity extends BaseBindingActivity
     private int mEmulatorHeight = 0;
     /** Bitmap storage. */
     private int[] mColors;
+    /** Scratch storage for one row of an RGB565 framebuffer update. */
+    private short[] mRow565;
+    /** Scratch storage for one row of an RGB888 framebuffer update. */
+    private byte[] mRow888;
 
     private final TouchListener mTouchListener = new TouchListener();
     private final android.os.Handler mUiHandler = new android.os.Handler(this);
@@ -289,21 +292,33 @@ public class MultiTouchActivity extends BaseBindingActivity
 
         if (format == ProtocolConstants.MT_FRAME_JPEG) {
             /*
-             * Framebuffer is in JPEG format.
+             * Framebuffer is in JPEG format. Decode it directly from the
+             * received array, past the header.
              */
 
-            final ByteArrayInputStream jpg = new ByteArrayInputStream(bb.array());
-            // Advance input stream to JPEG image.
-            jpg.skip(header_size);
-            // Draw the image.
-            mImageView.drawJpeg(x, y, w, h, jpg);
+            mImageView.drawJpeg(x, y, w, h, array, header_size, array.length - header_size);
         } else {
             /*
              * Framebuffer is in a raw RGB format.
              */
 
             final int pixel_num = h * w;
-            // Advance stream to the beginning of framebuffer data.
+            final int pixel_bytes;
+            if (format == ProtocolConstants.MT_FRAME_RGB565) {
+                pixel_bytes = 2;
+            } else if (format == ProtocolConstants.MT_FRAME_RGB888) {
+                pixel_bytes = bpp > 0 ? bpp : 3;
+            } else {
+                Log.w(TAG, "Invalid framebuffer format: " + format);
+                return;
+            }
+            // Pixels of the updated rectangle are tightly packed after the header.
+            if (w <= 0 || h <= 0 || header_size < 0
+                    || (long) pixel_num * pixel_bytes > array.length - header_size) {
+                Log.w(TAG, "Invalid framebuffer update " + w + "x" + h + " in "
+                        + array.length + " bytes");
+                return;
+            }
             bb.position(header_size);
 
             // Make sure that mColors is large enough to contain the
@@ -312,27 +327,39 @@ public class MultiTouchActivity extends BaseBindingActivity
                 mColors = new int[pixel_num];
             }
 
-            // Convert the blob bitmap into bitmap that we will display.
+            // Convert the blob bitmap into bitmap that we will display. Rows are
+            // pulled out of the blob in bulk, and then converted in place.
             if (format == ProtocolConstants.MT_FRAME_RGB565) {
-                for (int n = 0; n < pixel_num; n++) {
-                    // Blob bitmap is in RGB565 format.
-                    final int color = bb.getShort();
-                    final int r = ((color & 0xf800) >> 8) | ((color & 0xf800) >> 14);
-                    final int g = ((color & 0x7e0) >> 3) | ((color & 0x7e0) >> 9);
-                    final int b = ((color & 0x1f) << 3) | ((color & 0x1f) >> 2);
-                    mColors[n] = Color.rgb(r, g, b);
+                if (mRow565 == null || mRow565.length < w) {
+                    mRow565 = new short[w];
                 }
-            } else if (format == ProtocolConstants.MT_FRAME_RGB888) {
-                for (int n = 0; n < pixel_num; n++) {
-                    // Blob bitmap is in RGB565 format.
-                    final int r = bb.getChar();
-                    final int g = bb.getChar();
-                    final int b = bb.getChar();
-                    mColors[n] = Color.rgb(r, g, b);
+                final short[] row = mRow565;
+                final ShortBuffer sb = bb.asShortBuffer();
+                for (int r = 0, n = 0; r < h; r++) {
+                    sb.get(row, 0, w);
+                    for (int c = 0; c < w; c++, n++) {
+                        // Blob bitmap is in RGB565 format.
+                        final int color = row[c];
+                        final int red = ((color & 0xf800) >> 8) | ((color & 0xf800) >> 13);
+                        final int green = ((color & 0x7e0) >> 3) | ((color & 0x7e0) >> 9);
+                        final int blue = ((color & 0x1f) << 3) | ((color & 0x1f) >> 2);
+                        mColors[n] = 0xff000000 | (red << 16) | (green << 8) | blue;
+                    }
                 }
             } else {
-                Log.w(TAG, "Invalid framebuffer format: " + format);
-                return;
+                final int row_bytes = w * pixel_bytes;
+                if (mRow888 == null || mRow888.length < row_bytes) {
+                    mRow888 = new byte[row_bytes];
+                }
+                final byte[] row = mRow888;
+                for (int r = 0, n = 0; r < h; r++) {
+                    bb.get(row, 0, row_bytes);
+                    for (int c = 0, i = 0; c < w; c++, n++, i += pixel_bytes) {
+                        // Blob bitmap is in RGB888 format.
+                        mColors[n] = 0xff000000 | ((row[i] & 0xff) << 16)
+                                | ((row[i + 1] & 0xff) << 8) | (row[i + 2] & 0xff);
+                    }
+                }
             }
             mImageView.drawBitmap(x, y, w, h, mColors);
         }
@@ -348,6 +375,7 @@ public class MultiTouchActivity extends BaseBindingActivity
         if (e_width != mEmulatorWidth || e_height != mEmulatorHeight) {
             mEmulatorWidth = e_width;
             mEmulatorHeight = e_height;
+            mImageView.setFrameSize(e_width, e_height);
 
             boolean rotateDisplay = false;
             int w = mImageView.getWidth();
@@ -49,8 +49,36 @@ public class MultiTouchChannel extends Channel {
      */
     public static final int EVENT_MT_STOP = 3;
 
+    /**
+     * Link throughput (in bytes per second) below which the emulator is asked
+     * to switch to JPEG framebuffer updates.
+     */
+    private static final long JPEG_THROUGHPUT_LOW = 8 * 1024 * 1024;
+    /**
+     * Link throughput (in bytes per second) above which the emulator is asked
+     * to switch back to raw RGB565 framebuffer updates.
+     */
+    private static final long RAW_THROUGHPUT_HIGH = 32 * 1024 * 1024;
+    /** Minimum number of bytes received before the throughput is evaluated. */
+    private static final long THROUGHPUT_WINDOW_BYTES = 4 * 1024 * 1024;
+
     private static final Point mViewSize = new Point(0, 0);
 
+    /**
+     * Whether the emulator accepts framebuffer format hints. Set when the
+     * emulator sends {@link ProtocolConstants#MT_FB_ENABLE_FORMAT_HINTS}, and
+     * reset on connection.
+     */
+    private volatile boolean mFormatHintsEnabled = false;
+    /** Framebuffer format last requested from the emulator, or 0 if none. */
+    private int mRequestedFormat = 0;
+    /** Received bytes counter at the start of the current measurement window. */
+    private long mWindowBytes = 0;
+    /** Receive time counter at the start of the current measurement window. */
+    private long mWindowNanos = 0;
+    /** Preallocated buffer for the format hint message. */
+    private final ByteBuffer mFormatMsg = ByteBuffer.allocate(4);
+
     /**
      * Constructs MultiTouchChannel instance.
      */
@@ -78,6 +106,11 @@ public class MultiTouchChannel extends Channel {
      */
     @Override
     public void onEmulatorConnected() {
+        // Older emulators don't understand format hints.
+        mFormatHintsEnabled = false;
+        mRequestedFormat = 0;
+        mWindowBytes = getReceivedBytes();
+        mWindowNanos = getReceiveNanos();
         if (hasUiHandler()) {
             enable();
             notifyUiHandlers(EVENT_MT_START);
@@ -111,6 +144,12 @@ public class MultiTouchChannel extends Channel {
                 msg.obj = msg_data;
                 postMessage(ProtocolConstants.MT_FB_ACK, (byte[]) null);
                 notifyUiHandlers(msg);
+                updateFrameFormat();
+                break;
+
+            case ProtocolConstants.MT_FB_ENABLE_FORMAT_HINTS:
+                Log.v(TAG, "Enabling framebuffer format hints.");
+                mFormatHintsEnabled = true;
                 break;
 
             default:
@@ -132,6 +171,44 @@ public class MultiTouchChannel extends Channel {
         sendQueryResponse(query_id, (byte[]) null);
     }
 
+    /**
+     * Measures link throughput over a window of received framebuffer data, and
+     * hints the emulator to use JPEG updates when the link is slow, or raw
+     * updates (which are cheaper to produce and to display) when it is fast.
+     * Nothing is sent unless the emulator has advertised that it accepts hints.
+     * <p/>
+     * NOTE: This method is called from the I/O loop.
+     */
+    private void updateFrameFormat() {
+        if (!mFormatHintsEnabled) {
+            return;
+        }
+        final long bytes = getReceivedBytes() - mWindowBytes;
+        final long nanos = getReceiveNanos() - mWindowNanos;
+        if (bytes < THROUGHPUT_WINDOW_BYTES || nanos <= 0) {
+            return;
+        }
+        mWindowBytes += bytes;
+        mWindowNanos += nanos;
+
+        final long throughput = bytes * 1000000000L / nanos;
+        int format = mRequestedFormat;
+        if (throughput < JPEG_THROUGHPUT_LOW) {
+            format = ProtocolConstants.MT_FRAME_JPEG;
+        } else if (throughput > RAW_THROUGHPUT_HIGH) {
+            format = ProtocolConstants.MT_FRAME_RGB565;
+        }
+        if (format != mRequestedFormat) {
+            Log.v(TAG, "Link throughput " + throughput + " B/s, requesting framebuffer format "
+                    + format);
+            mRequestedFormat = format;
+            mFormatMsg.order(getEndian());
+            mFormatMsg.position(0);
+            mFormatMsg.putInt(format);
+            postMessage(ProtocolConstants.MT_FB_SET_FORMAT, mFormatMsg);
+        }
+    }
+
     /**
      * Registers a new UI handler.
      *
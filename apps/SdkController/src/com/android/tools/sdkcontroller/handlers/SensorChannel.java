@@ -58,6 +58,17 @@ public class SensorChannel extends Channel {
     private final List<MonitoredSensor> mSensors = new ArrayList<MonitoredSensor>();
     /** Sensor manager. */
     private SensorManager mSenMan;
+    /**
+     * Whether the emulator accepts batched sensor events. Set when the emulator
+     * sends {@link ProtocolConstants#SENSORS_ENABLE_BATCH}, and reset on
+     * disconnection.
+     */
+    private volatile boolean mBatchEnabled = false;
+    /**
+     * Preallocated buffer for sensor event messages. Only used from the channel's
+     * message thread, in {@link #onFlushMessages()}.
+     */
+    private final ByteBuffer mEventMsg;
 
     /*
      * Messages exchanged with the UI.
@@ -103,6 +114,10 @@ public class SensorChannel extends Channel {
                             cur_index, def_sens.getName(), def_sens.getType()));
             }
         }
+        // Large enough for a batch containing every monitored sensor, which is
+        // also enough for a single sensor event.
+        mEventMsg = ByteBuffer.allocate(
+                4 + mSensors.size() * ProtocolConstants.SENSORS_BATCH_ENTRY_SIZE);
     }
 
     /**
@@ -160,6 +175,42 @@ public class SensorChannel extends Channel {
     public void onEmulatorDisconnected() {
         // Stop sensor event callbacks.
         stopSensors();
+        // Next emulator may not understand batches.
+        mBatchEnabled = false;
+    }
+
+    /**
+     * Sends the latest pending sample of each sensor to the emulator. Samples
+     * that arrived since the previous flush are coalesced, so only the most
+     * recent value of each sensor goes out. When the emulator accepts batches,
+     * all pending samples are packed into a single message.
+     * <p/>
+     * NOTE: This method is called from the channel's message thread.
+     */
+    @Override
+    protected void onFlushMessages() {
+        final ByteBuffer msg = mEventMsg;
+        msg.order(getEndian());
+        if (mBatchEnabled) {
+            msg.position(4);
+            int count = 0;
+            for (MonitoredSensor sensor : mSensors) {
+                if (sensor.writePendingValues(msg, true)) {
+                    count++;
+                }
+            }
+            if (count != 0) {
+                msg.putInt(0, count);
+                sendMessage(ProtocolConstants.SENSORS_SENSOR_EVENT_BATCH, msg);
+            }
+        } else {
+            for (MonitoredSensor sensor : mSensors) {
+                msg.position(0);
+                if (sensor.writePendingValues(msg, false)) {
+                    sendMessage(ProtocolConstants.SENSORS_SENSOR_EVENT, msg);
+                }
+            }
+        }
     }
 
     /**
@@ -229,6 +280,10 @@ public class SensorChannel extends Channel {
                 Log.v(TAG, "Disabling sensor: " + disable_name);
                 onDisableSensor(disable_name);
                 break;
+            case ProtocolConstants.SENSORS_ENABLE_BATCH:
+                Log.v(TAG, "Enabling batched sensor events.");
+                mBatchEnabled = true;
+                break;
             default:
                 Loge("Unknown message type " + msg_type);
                 break;
@@ -352,6 +407,15 @@ public class SensorChannel extends Channel {
         private String mTextFmt;
         /** Sensor values. */
         private float[] mValues = new float[3];
+        /**
+         * Latest sensor values that are not yet sent to the emulator. Guarded by
+         * this MonitoredSensor instance.
+         */
+        private final float[] mPendingValues = new float[3];
+        /** Number of meaningful values in mPendingValues. */
+        private int mPendingCount = 0;
+        /** Whether mPendingValues holds a sample that is not yet sent. */
+        private boolean mHasPending = false;
         /**
          * Enabled state. This state is controlled by the emulator, that
          * maintains its own list of sensors. So, if a sensor is missing, or is
@@ -568,13 +632,50 @@ public class SensorChannel extends Channel {
             notifyUiHandlers(msg);
         }
 
+        /**
+         * Records the latest sample for this sensor, replacing a pending sample
+         * that has not been sent yet.
+         * NOTE: This method is called from the sensor event thread.
+         *
+         * @param values Sensor values from the sensor event.
+         */
+        private synchronized void setPendingValues(float[] values) {
+            final int len = Math.min(values.length, mPendingValues.length);
+            System.arraycopy(values, 0, mPendingValues, 0, len);
+            mPendingCount = len;
+            mHasPending = true;
+        }
+
+        /**
+         * Writes pending sample of this sensor (if there is any) into a message
+         * buffer, and clears the pending state.
+         * NOTE: This method is called from the channel's message thread.
+         *
+         * @param msg Message buffer to write the sample into.
+         * @param batched If true, the entry is written in batch format, where all
+         *            three values are always present. Otherwise only values
+         *            provided by the sensor are written.
+         * @return true if a sample has been written, or false if there was no
+         *         pending sample for this sensor.
+         */
+        private synchronized boolean writePendingValues(ByteBuffer msg, boolean batched) {
+            if (!mHasPending) {
+                return false;
+            }
+            mHasPending = false;
+            msg.putInt(getType());
+            final int len = batched ? mPendingValues.length : mPendingCount;
+            for (int i = 0; i < len; i++) {
+                msg.putFloat(i < mPendingCount ? mPendingValues[i] : 0f);
+            }
+            return true;
+        }
+
         private class OurSensorEventListener implements SensorEventListener {
             /** Last update's time-stamp in local thread millisecond time. */
             private long mLastUpdateTS = 0;
             /** Last display update time-stamp. */
             private long mLastDisplayTS = 0;
-            /** Preallocated buffer for change notification message. */
-            private final ByteBuffer mChangeMsg = ByteBuffer.allocate(64);
 
             /**
              * Handles "sensor changed" event.
@@ -593,21 +694,14 @@ public class SensorChannel extends Channel {
                     }
                 }
 
-                // Format and post message for the emulator.
+                // Save the sample, and let the message thread send it. If the
+                // message thread falls behind, newer samples simply replace the
+                // pending one instead of piling up in the queue.
                 float[] values = event.values;
                 final int len = values.length;
 
-                mChangeMsg.order(getEndian());
-                mChangeMsg.position(0);
-                mChangeMsg.putInt(getType());
-                mChangeMsg.putFloat(values[0]);
-                if (len > 1) {
-                    mChangeMsg.putFloat(values[1]);
-                    if (len > 2) {
-                        mChangeMsg.putFloat(values[2]);
-                    }
-                }
-                postMessage(ProtocolConstants.SENSORS_SENSOR_EVENT, mChangeMsg);
+                setPendingValues(values);
+                requestFlush();
 
                 // Computes average update time for this sensor and average globally.
                 if (mLastUpdateTS != 0) {
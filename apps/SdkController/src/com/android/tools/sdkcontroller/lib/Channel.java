@@ -26,8 +26,10 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -58,8 +60,13 @@ public abstract class Channel {
      * Encapsulates a message posted to be sent to the emulator from a worker
      * thread. This class is used to describe a message that is posted in UI
      * thread, and then picked up in the worker thread.
+     * <p/>
+     * Message instances are pooled by the channel (see {@link #obtainMessage}
+     * and {@link #recycleMessage}), and each of them owns a data buffer that
+     * is only reallocated when a larger message comes through. So, in the
+     * steady state posting a message doesn't allocate anything.
      */
-    private class SdkControllerMessage {
+    private static class SdkControllerMessage {
         /** Message type. */
         private int mMessageType;
         /** Message data (can be null). */
@@ -68,39 +75,26 @@ public abstract class Channel {
         private int mMessageSize;
 
         /**
-         * Construct message from an array.
+         * Initializes message from an array. Message data is copied into the
+         * message's own buffer, so the caller is free to reuse the array.
          *
          * @param type Message type.
-         * @param message Message data. Message data size is defined by size of
-         *            the array.
+         * @param message Message data (can be null).
+         * @param size Byte size of message data.
          */
-        public SdkControllerMessage(int type, byte[] message) {
+        public void set(int type, byte[] message, int size) {
             mMessageType = type;
-            mMessage = message;
-            mMessageSize = (message != null) ? message.length : 0;
-        }
-
-        /**
-         * Construct message from a ByteBuffer.
-         *
-         * @param type Message type.
-         * @param message Message data. Message data size is defined by
-         *            position() property of the ByteBuffer.
-         */
-        public SdkControllerMessage(int type, ByteBuffer message) {
-            mMessageType = type;
-            if (message != null) {
-                mMessage = message.array();
-                mMessageSize = message.position();
-            } else {
-                mMessage = null;
-                mMessageSize = 0;
+            mMessageSize = (message != null) ? size : 0;
+            if (mMessageSize != 0) {
+                if (mMessage == null || mMessage.length < mMessageSize) {
+                    mMessage = new byte[mMessageSize];
+                }
+                System.arraycopy(message, 0, mMessage, 0, mMessageSize);
             }
         }
 
         /**
          * Gets message type.
-
          *
          * @return Message type.
          */
@@ -111,7 +105,8 @@ public abstract class Channel {
         /**
          * Gets message buffer.
          *
-         * @return Message buffer.
+         * @return Message buffer. Note that the buffer can be larger than the
+         *         message, use {@link #getMessageSize()} for the actual size.
          */
         public byte[] getMessage() {
             return mMessage;
@@ -148,6 +143,14 @@ public abstract class Channel {
     private static final int MSG_ENABLED = -3;
     /** Service-side emulator is disabled. */
     private static final int MSG_DISABLED = -4;
+    /**
+     * Channel-local message that is never sent to the emulator. When picked up
+     * by the message thread it calls {@link #onFlushMessages()}.
+     */
+    private static final int MSG_FLUSH = Integer.MIN_VALUE;
+
+    /** Maximum number of idle message objects kept in the message pool. */
+    private static final int MSG_POOL_SIZE = 32;
 
     /** Tag for logging messages. */
     private static final String TAG = "SdkControllerChannel";
@@ -179,9 +182,36 @@ public abstract class Channel {
     /** Queue of messages pending transmission. */
     private final BlockingQueue<SdkControllerMessage>
             mMsgQueue = new LinkedBlockingQueue<SdkControllerMessage>();
+    /** Pool of idle message objects ready to be reused by postMessage. */
+    private final BlockingQueue<SdkControllerMessage>
+            mMsgPool = new ArrayBlockingQueue<SdkControllerMessage>(MSG_POOL_SIZE);
+    /** Flags whether or not a flush request is pending in the message queue. */
+    private final AtomicBoolean mFlushPending = new AtomicBoolean(false);
     /** Message thread */
     private final Thread mMsgThread;
 
+    /*
+     * Packet sending support.
+     */
+
+    /**
+     * Buffer used to assemble outgoing packets. Packets can be sent from
+     * different threads, so access to this buffer must be synchronized on
+     * mSendBufferLock.
+     */
+    private ByteBuffer mSendBuffer = ByteBuffer.allocate(256);
+    /** Lock that guards mSendBuffer. */
+    private final Object mSendBufferLock = new Object();
+
+    /*
+     * Link statistics.
+     */
+
+    /** Total number of message data bytes received from the emulator. */
+    private volatile long mRxBytes = 0;
+    /** Total time spent receiving message data from the emulator, in nanoseconds. */
+    private volatile long mRxNanos = 0;
+
     /*
      * UI support.
      */
@@ -246,9 +276,17 @@ public abstract class Channel {
                     try {
                         SdkControllerMessage msg = mMsgQueue.take();
                         if (msg != null) {
-                            sendMessage(
-                                    msg.getMessageType(), msg.getMessage(), msg.getMessageSize());
-                            mMsgCount.incrementAndGet();
+                            if (msg.getMessageType() == MSG_FLUSH) {
+                                // Clear the flag before flushing, so samples that
+                                // arrive while we flush schedule another flush.
+                                mFlushPending.set(false);
+                                onFlushMessages();
+                            } else {
+                                sendMessage(msg.getMessageType(), msg.getMessage(),
+                                        msg.getMessageSize());
+                                mMsgCount.incrementAndGet();
+                            }
+                            recycleMessage(msg);
                         }
                     } catch (InterruptedException e) {
                         Log.e(TAG, "MsgThread-" + mChannelName, e);
@@ -288,6 +326,26 @@ public abstract class Channel {
         return mMsgCount.get();
     }
 
+    /**
+     * Gets total number of message data bytes received from the emulator.
+     *
+     * @return Number of message data bytes received from the emulator.
+     */
+    public long getReceivedBytes() {
+        return mRxBytes;
+    }
+
+    /**
+     * Gets total time spent receiving message data from the emulator. Together
+     * with {@link #getReceivedBytes()} this gives a measure of the link
+     * throughput.
+     *
+     * @return Time spent receiving message data, in nanoseconds.
+     */
+    public long getReceiveNanos() {
+        return mRxNanos;
+    }
+
     /**
      * Checks if this channel is connected with the emulator.
      *
@@ -400,22 +458,42 @@ public abstract class Channel {
         // In async environment we must have message header and message data in
         // one block to prevent messages from other threads getting between the
         // header and the data. So, we can't sent header, and then the data. We
-        // must combine them in one data block instead.
-        ByteBuffer bb = ByteBuffer.allocate(ProtocolConstants.MESSAGE_HEADER_SIZE + len);
-        bb.order(mEndian);
-
-        // Initialize message header.
-        bb.putInt(ProtocolConstants.PACKET_SIGNATURE);
-        bb.putInt(ProtocolConstants.MESSAGE_HEADER_SIZE + len);
-        bb.putInt(ProtocolConstants.PACKET_TYPE_MESSAGE);
-        bb.putInt(msg_type);
-
-        // Save message data (if there is any).
-        if (len != 0) {
-            bb.put(msg, 0, len);
+        // must combine them in one data block instead. The block is assembled
+        // in the channel's send buffer, which is held locked until the block
+        // is written to the socket.
+        synchronized (mSendBufferLock) {
+            ByteBuffer bb = obtainSendBuffer(ProtocolConstants.MESSAGE_HEADER_SIZE + len);
+
+            // Initialize message header.
+            bb.putInt(ProtocolConstants.PACKET_SIGNATURE);
+            bb.putInt(ProtocolConstants.MESSAGE_HEADER_SIZE + len);
+            bb.putInt(ProtocolConstants.PACKET_TYPE_MESSAGE);
+            bb.putInt(msg_type);
+
+            // Save message data (if there is any).
+            if (len != 0) {
+                bb.put(msg, 0, len);
+            }
+
+            socket.send(bb.array(), 0, bb.position());
         }
+    }
 
-        socket.send(bb.array());
+    /**
+     * Prepares the send buffer for assembling a packet of the given size.
+     * Must be called while holding mSendBufferLock.
+     *
+     * @param size Total byte size of the packet that is about to be assembled.
+     * @return The send buffer, positioned at zero, in the channel's byte order
+     *         and large enough to contain the packet.
+     */
+    private ByteBuffer obtainSendBuffer(int size) {
+        if (mSendBuffer.capacity() < size) {
+            mSendBuffer = ByteBuffer.allocate(Math.max(size, mSendBuffer.capacity() * 2));
+        }
+        mSendBuffer.clear();
+        mSendBuffer.order(mEndian);
+        return mSendBuffer;
     }
 
     /**
@@ -506,11 +584,7 @@ public abstract class Channel {
      *            the array.
      */
     public void postMessage(int msg_type, byte[] msg) {
-        try {
-            mMsgQueue.put(new SdkControllerMessage(msg_type, msg));
-        } catch (InterruptedException e) {
-            Log.e(TAG, "mMessageQueue.put", e);
-        }
+        postMessage(msg_type, msg, (msg != null) ? msg.length : 0);
     }
 
     /**
@@ -521,13 +595,72 @@ public abstract class Channel {
      *            position() property of the ByteBuffer.
      */
     public void postMessage(int msg_type, ByteBuffer msg) {
+        if (msg != null) {
+            postMessage(msg_type, msg.array(), msg.position());
+        } else {
+            postMessage(msg_type, null, 0);
+        }
+    }
+
+    /**
+     * Posts message to the emulator. Message data is copied, so the caller may
+     * reuse the buffer as soon as this method returns.
+     *
+     * @param msg_type Message type.
+     * @param msg Message data to post.
+     * @param msg_len Byte size of message data.
+     */
+    public void postMessage(int msg_type, byte[] msg, int msg_len) {
+        SdkControllerMessage message = obtainMessage();
+        message.set(msg_type, msg, msg_len);
         try {
-            mMsgQueue.put(new SdkControllerMessage(msg_type, msg));
+            mMsgQueue.put(message);
         } catch (InterruptedException e) {
             Log.e(TAG, "mMessageQueue.put", e);
         }
     }
 
+    /**
+     * Requests the message thread to call {@link #onFlushMessages()}. Multiple
+     * requests made before the message thread gets to the flush are collapsed
+     * into a single call, which lets derived classes coalesce frequent updates
+     * (such as sensor samples) and send only the latest state.
+     */
+    protected void requestFlush() {
+        if (mFlushPending.compareAndSet(false, true)) {
+            postMessage(MSG_FLUSH, null, 0);
+        }
+    }
+
+    /**
+     * Called on the message thread in response to {@link #requestFlush()}.
+     * Derived classes that use flush requests should override this method, and
+     * send their pending data with one of the sendMessage methods.
+     */
+    protected void onFlushMessages() {
+    }
+
+    /**
+     * Gets a message object from the pool, or creates a new one if the pool is
+     * empty.
+     *
+     * @return Message object ready to be initialized.
+     */
+    private SdkControllerMessage obtainMessage() {
+        SdkControllerMessage msg = mMsgPool.poll();
+        return (msg != null) ? msg : new SdkControllerMessage();
+    }
+
+    /**
+     * Returns a message object to the pool. If the pool is full the message is
+     * dropped and left to the garbage collector.
+     *
+     * @param msg Message object that is no longer in use.
+     */
+    private void recycleMessage(SdkControllerMessage msg) {
+        mMsgPool.offer(msg);
+    }
+
     /**
      * Sends query response to the emulator.
      *
@@ -539,25 +672,26 @@ public abstract class Channel {
     public boolean sendQueryResponse(int query_id, byte[] qresp, int len) {
         // Just like with messages, we must combine header and data in a single
         // transmitting block.
-        ByteBuffer bb = ByteBuffer.allocate(ProtocolConstants.QUERY_RESP_HEADER_SIZE + len);
-        bb.order(mEndian);
-
-        // Initialize response header.
-        bb.putInt(ProtocolConstants.PACKET_SIGNATURE);
-        bb.putInt(ProtocolConstants.QUERY_RESP_HEADER_SIZE + len);
-        bb.putInt(ProtocolConstants.PACKET_TYPE_QUERY_RESPONSE);
-        bb.putInt(query_id);
-
-        // Save response data (if there is any).
-        if (qresp != null && len != 0) {
-            bb.put(qresp, 0, len);
-        }
-
-        // Send the response.
         try {
             Socket socket = mSocket;
             if (socket != null) {
-                socket.send(bb.array());
+                synchronized (mSendBufferLock) {
+                    ByteBuffer bb = obtainSendBuffer(ProtocolConstants.QUERY_RESP_HEADER_SIZE + len);
+
+                    // Initialize response header.
+                    bb.putInt(ProtocolConstants.PACKET_SIGNATURE);
+                    bb.putInt(ProtocolConstants.QUERY_RESP_HEADER_SIZE + len);
+                    bb.putInt(ProtocolConstants.PACKET_TYPE_QUERY_RESPONSE);
+                    bb.putInt(query_id);
+
+                    // Save response data (if there is any).
+                    if (qresp != null && len != 0) {
+                        bb.put(qresp, 0, len);
+                    }
+
+                    // Send the response.
+                    socket.send(bb.array(), 0, bb.position());
+                }
                 return true;
             } else {
                 Logw("sendQueryResponse is called on disconnected Channel "
@@ -654,7 +788,12 @@ public abstract class Channel {
                         remains -= ext;
                         final ByteBuffer msg_data = ByteBuffer.allocate(remains);
                         msg_data.order(mEndian);
+                        final long rx_start = System.nanoTime();
                         socket.receive(msg_data.array());
+                        // Once the header is in, the rest of the message is
+                        // already on its way, so this approximates link speed.
+                        mRxNanos += System.nanoTime() - rx_start;
+                        mRxBytes += remains;
 
                         // Dispatch message for handling.
                         onEmulatorMessage(msg_type, msg_data);
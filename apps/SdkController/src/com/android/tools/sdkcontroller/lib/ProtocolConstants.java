@@ -124,6 +124,18 @@ public final class ProtocolConstants {
     public static final int MT_FB_ACK = 7;
     /** Frame buffer update has been handled. */
     public static final int MT_FB_HANDLED = 8;
+    /**
+     * Hints the emulator which framebuffer format to use for subsequent
+     * updates. Message data is a single int: one of the MT_FRAME_XXX values.
+     * The emulator is free to ignore the hint. Only sent after the emulator
+     * sends {@link #MT_FB_ENABLE_FORMAT_HINTS}.
+     */
+    public static final int MT_FB_SET_FORMAT = 9;
+    /**
+     * Message sent by the emulator to indicate that it accepts framebuffer
+     * format hints (see {@link #MT_FB_SET_FORMAT}).
+     */
+    public static final int MT_FB_ENABLE_FORMAT_HINTS = 10;
     /** Size of an event entry in the touch event message to the emulator. */
     public static final int MT_EVENT_ENTRY_SIZE = 16;
 
@@ -143,4 +155,22 @@ public final class ProtocolConstants {
     public static final int SENSORS_DISABLE = 4;
     /** Message that delivers sensor events to emulator. */
     public static final int SENSORS_SENSOR_EVENT = 5;
+    /**
+     * Message sent by the emulator to indicate that it accepts batched sensor
+     * events (see {@link #SENSORS_SENSOR_EVENT_BATCH}). Until this message is
+     * received, each sensor event is sent as a separate
+     * {@link #SENSORS_SENSOR_EVENT} message.
+     */
+    public static final int SENSORS_ENABLE_BATCH = 6;
+    /**
+     * Message that delivers a batch of sensor events to emulator. The message
+     * data is an int count of events, followed by that many entries of
+     * {@link #SENSORS_BATCH_ENTRY_SIZE} bytes each.
+     */
+    public static final int SENSORS_SENSOR_EVENT_BATCH = 7;
+    /**
+     * Size of an entry in the batched sensor event message: sensor type (int),
+     * followed by three float sensor values.
+     */
+    public static final int SENSORS_BATCH_ENTRY_SIZE = 16;
 }
@@ -17,6 +17,8 @@
 package com.android.tools.sdkcontroller.utils;
 
 import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.os.Build;
 import android.view.View;
 
@@ -54,4 +56,16 @@ public class ApiHelper {
     public void View_setSystemUiVisibility(View view, int visibility) {
         // nop
     }
+
+    /**
+     * Applies {@link BitmapFactory.Options#inBitmap} (and the matching
+     * {@link BitmapFactory.Options#inMutable}), available only starting with API 11.
+     * Does nothing for API < 11.
+     *
+     * @return true if the bitmap will be reused by the decoder, false otherwise.
+     */
+    public boolean BitmapFactoryOptions_setInBitmap(BitmapFactory.Options opts, Bitmap bitmap) {
+        // nop
+        return false;
+    }
 }
@@ -17,10 +17,12 @@
 package com.android.tools.sdkcontroller.utils;
 
 import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.view.View;
 
 /**
- * API 11: support View_setSystemUiVisibility
+ * API 11: support View_setSystemUiVisibility and BitmapFactoryOptions_setInBitmap
  */
 @TargetApi(11)
 class ApiHelper_11 extends ApiHelper {
@@ -33,4 +35,16 @@ class ApiHelper_11 extends ApiHelper {
     public void View_setSystemUiVisibility(View view, int visibility) {
         view.setSystemUiVisibility(visibility);
     }
+
+    /**
+     * Applies {@link BitmapFactory.Options#inBitmap} (and the matching
+     * {@link BitmapFactory.Options#inMutable}), available only starting with API 11.
+     * Does nothing for API < 11.
+     */
+    @Override
+    public boolean BitmapFactoryOptions_setInBitmap(BitmapFactory.Options opts, Bitmap bitmap) {
+        opts.inMutable = true;
+        opts.inBitmap = bitmap;
+        return true;
+    }
 }
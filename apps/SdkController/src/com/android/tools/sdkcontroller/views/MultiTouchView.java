@@ -16,7 +16,6 @@
 
 package com.android.tools.sdkcontroller.views;
 
-import java.io.InputStream;
 import java.nio.ByteBuffer;
 
 import android.content.Context;
@@ -25,11 +24,15 @@ import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
 
+import com.android.tools.sdkcontroller.utils.ApiHelper;
+
 /**
  * Implements a main view for the application providing multi-touch emulation.
  */
@@ -37,14 +40,47 @@ public class MultiTouchView extends View {
     /** Tag for logging messages. */
     private static final String TAG = MultiTouchView.class.getSimpleName();
     /**
-     * Back-end bitmap. Initialized in onSizeChanged(), updated in
-     * onTouchEvent() and drawn in onDraw().
+     * Back-end bitmap holding the emulator screen at the emulator resolution.
+     * Initialized in setFrameSize(), updated by drawBitmap() / drawJpeg() and
+     * drawn (scaled) in onDraw(). The bitmap is reused for all updates.
      */
-    private Bitmap mBitmap;
+    private Bitmap mFrame;
+    /** Canvas drawing into mFrame. */
+    private Canvas mFrameCanvas;
     /** Default Paint instance for drawing the bitmap. */
     private final Paint mPaint = new Paint();
-    /** Canvas instance for this view. */
-    private Canvas mCanvas;
+    /**
+     * Union of the emulator screen regions updated since the view has been
+     * last invalidated. Guarded by the UI thread.
+     */
+    private final Rect mDirty = new Rect();
+    /** Scratch rectangle used to map dirty regions to view coordinates. */
+    private final RectF mDirtyF = new RectF();
+    /** Flags whether or not mInvalidateDirty is posted. */
+    private boolean mInvalidatePending;
+    /**
+     * Invalidates the view region covered by mDirty. This is posted rather
+     * than run directly so that all the updates handled in the same UI loop
+     * iteration are coalesced into a single invalidation.
+     */
+    private final Runnable mInvalidateDirty = new Runnable() {
+        @Override
+        public void run() {
+            mInvalidatePending = false;
+            if (!mDirty.isEmpty()) {
+                mDirtyF.set(mDirty);
+                mBaseMatrix.mapRect(mDirtyF);
+                mDirty.setEmpty();
+                // Round out and add a pixel for the bilinear filtering.
+                invalidate((int) mDirtyF.left - 1, (int) mDirtyF.top - 1,
+                        (int) Math.ceil(mDirtyF.right) + 1, (int) Math.ceil(mDirtyF.bottom) + 1);
+            }
+        }
+    };
+    /** Decoder options reused by all JPEG updates. */
+    private final BitmapFactory.Options mJpegOptions = new BitmapFactory.Options();
+    /** Last decoded JPEG update, reused by the decoder when possible. */
+    private Bitmap mJpegBitmap;
     /** Emulator screen width to this view width ratio. */
     private float mDx = 1;
     /** Emulator screen height to this view height ratio. */
@@ -57,8 +93,6 @@ public class MultiTouchView extends View {
     private boolean mRotateDisplay;
     /** Base matrix that keep emulator->device display scaling */
     private Matrix mBaseMatrix = new Matrix();
-    /** Matrix that is used to draw emulator's screen on the device. */
-    private Matrix mDrawMatrix = new Matrix();
 
     /**
      * Simple constructor to use when creating a view from code.
@@ -86,24 +120,41 @@ public class MultiTouchView extends View {
     public MultiTouchView(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
 
-        // TODO Add constructor-time code here.
-    }
-
-    @Override
-    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-        super.onSizeChanged(w, h, oldw, oldh);
-
-        mBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
-        mCanvas = new Canvas(mBitmap);
+        mPaint.setFilterBitmap(true);
+        // Scratch storage for the JPEG decoder, shared by all decodes.
+        mJpegOptions.inTempStorage = new byte[16 * 1024];
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        // Just draw the back-end bitmap without zooming or scaling.
-        if (mBitmap != null) {
-            canvas.drawBitmap(mBitmap, 0, 0, null);
+        // Draw the back-end bitmap scaled (and possibly rotated) to the view.
+        // The canvas is clipped to the invalidated region, so only the
+        // updated part of the screen is actually redrawn.
+        if (mFrame != null) {
+            canvas.drawBitmap(mFrame, mBaseMatrix, mPaint);
+        }
+    }
+
+    /**
+     * Sets the emulator screen size. The back-end bitmap is only reallocated
+     * when the size actually changes.
+     *
+     * @param width Width of the emulator screen.
+     * @param height Height of the emulator screen.
+     */
+    public void setFrameSize(int width, int height) {
+        if (mFrame != null && mFrame.getWidth() == width && mFrame.getHeight() == height) {
+            return;
+        }
+        if (width <= 0 || height <= 0) {
+            mFrame = null;
+            mFrameCanvas = null;
+            return;
         }
+        mFrame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        mFrameCanvas = new Canvas(mFrame);
+        invalidate();
     }
 
     /**
@@ -125,20 +176,23 @@ public class MultiTouchView extends View {
             mBaseMatrix.postRotate(90);
             mBaseMatrix.postTranslate(getWidth(), 0);
         }
+        invalidate();
     }
 
     /**
-     * Computes draw matrix for the emulator screen update.
+     * Adds an updated region of the emulator screen to the dirty region, and
+     * schedules invalidation of the view, unless it is already scheduled.
      *
-     * @param x Left screen coordinate of the bitmap on emulator screen.
-     * @param y Top screen coordinate of the bitmap on emulator screen.
+     * @param x Left screen coordinate of the update on emulator screen.
+     * @param y Top screen coordinate of the update on emulator screen.
+     * @param w Width of the update on the emulator screen.
+     * @param h Height of the update on the emulator screen.
      */
-    private void computeDrawMatrix(int x, int y) {
-        mDrawMatrix.set(mBaseMatrix);
-        if (mRotateDisplay) {
-            mDrawMatrix.postTranslate(-y * mDy, x * mDx);
-        } else {
-            mDrawMatrix.postTranslate(x * mDx, y * mDy);
+    private void addDirty(int x, int y, int w, int h) {
+        mDirty.union(x, y, x + w, y + h);
+        if (!mInvalidatePending) {
+            mInvalidatePending = true;
+            post(mInvalidateDirty);
         }
     }
 
@@ -149,17 +203,14 @@ public class MultiTouchView extends View {
      * @param y Top screen coordinate of the bitmap on emulator screen.
      * @param w Width of the bitmap on the emulator screen.
      * @param h Height of the bitmap on the emulator screen.
-     * @param colors Bitmap to draw.
+     * @param colors Bitmap to draw. The array is not retained, so the caller
+     *            may reuse it as soon as this method returns.
      */
     public void drawBitmap(int x, int y, int w, int h, int[] colors) {
-        if (mCanvas != null) {
-            final Bitmap bmp = Bitmap.createBitmap(colors, 0, w, w, h, Bitmap.Config.ARGB_8888);
-
-            computeDrawMatrix(x, y);
-
-            /* Draw the bitmap and invalidate the updated region. */
-            mCanvas.drawBitmap(bmp, mDrawMatrix, mPaint);
-            invalidate();
+        if (mFrame != null) {
+            // Copy the pixels straight into the back-end bitmap.
+            mFrame.setPixels(colors, 0, w, x, y, w, h);
+            addDirty(x, y, w, h);
         }
     }
 
@@ -170,17 +221,42 @@ public class MultiTouchView extends View {
      * @param y Top screen coordinate of the bitmap on emulator screen.
      * @param w Width of the bitmap on the emulator screen.
      * @param h Height of the bitmap on the emulator screen.
-     * @param jpeg JPEG bitmap to draw.
+     * @param jpeg Array containing JPEG bitmap to draw.
+     * @param offset Offset of the JPEG bitmap in the array.
+     * @param length Byte size of the JPEG bitmap.
      */
-    public void drawJpeg(int x, int y, int w, int h, InputStream jpeg) {
-        if (mCanvas != null) {
-            final Bitmap bmp = BitmapFactory.decodeStream(jpeg);
-
-            computeDrawMatrix(x, y);
+    public void drawJpeg(int x, int y, int w, int h, byte[] jpeg, int offset, int length) {
+        if (mFrameCanvas != null) {
+            // Let the decoder reuse the previous bitmap if it has the same
+            // dimensions, which is the common case for repeated updates of the
+            // same screen region.
+            final BitmapFactory.Options opts = mJpegOptions;
+            Bitmap reuse = mJpegBitmap;
+            if (reuse != null && (reuse.getWidth() != w || reuse.getHeight() != h)) {
+                reuse = null;
+            }
+            if (!ApiHelper.get().BitmapFactoryOptions_setInBitmap(opts, reuse)) {
+                reuse = null;
+            }
+            Bitmap bmp = null;
+            try {
+                bmp = BitmapFactory.decodeByteArray(jpeg, offset, length, opts);
+            } catch (IllegalArgumentException e) {
+                // The decoder could not reuse the bitmap. Try again without it.
+                if (reuse != null) {
+                    ApiHelper.get().BitmapFactoryOptions_setInBitmap(opts, null);
+                    bmp = BitmapFactory.decodeByteArray(jpeg, offset, length, opts);
+                }
+            }
+            if (bmp == null) {
+                Loge("Unable to decode JPEG framebuffer update");
+                return;
+            }
+            mJpegBitmap = bmp;
 
             /* Draw the bitmap and invalidate the updated region. */
-            mCanvas.drawBitmap(bmp, mDrawMatrix, mPaint);
-            invalidate();
+            mFrameCanvas.drawBitmap(bmp, x, y, null);
+            addDirty(x, y, w, h);
         }
     }
 
@@ -215,7 +291,6 @@ public class MultiTouchView extends View {
      * Logging wrappers
      **************************************************************************/
 
-    @SuppressWarnings("unused")
     private void Loge(String log) {
         Log.e(TAG, log);
     }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.common.layout.grid;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.ide.common.api.INode;
+import com.android.ide.common.api.Rect;
+import com.android.ide.common.layout.grid.GridModel.ViewData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the children of a {@link GridModel}, used to answer the queries made by
+ * the drop handler on each mouse move without visiting every child of the GridLayout.
+ * <p>
+ * The index holds:
+ * <ul>
+ * <li> a map from node to {@link ViewData}
+ * <li> the views starting in each row, in child order
+ * <li> the vertical extents of the non-spacer views, sorted by top edge along with
+ *      the running maximum of the bottom edges, such that the views intersecting a
+ *      given y range are found by a binary search followed by a walk back over the
+ *      views whose top edge is above the range
+ * </ul>
+ * The index is a snapshot of the row, column and span values of the views; the
+ * grid model discards it when it edits the grid and builds a new one on demand.
+ */
+class GridIndex {
+    private final Map<INode, ViewData> mViews;
+    private final List<List<ViewData>> mRowStarts;
+
+    /** The non-spacer views, sorted by the top edge of their bounds */
+    private final ViewData[] mSorted;
+
+    /** The top edge of each view in {@link #mSorted} */
+    private final int[] mTops;
+
+    /** The bottom edge of each view in {@link #mSorted} */
+    private final int[] mBottoms;
+
+    /** The largest bottom edge of the views in {@link #mSorted} up to each position */
+    private final int[] mMaxBottoms;
+
+    /** The position among the children of each view in {@link #mSorted} */
+    private final int[] mOrder;
+
+    /** Creates a new index for the given list of views */
+    GridIndex(@NonNull List<ViewData> views) {
+        mViews = new IdentityHashMap<INode, ViewData>(views.size());
+        mRowStarts = new ArrayList<List<ViewData>>();
+        List<ViewData> intervals = new ArrayList<ViewData>(views.size());
+        final Map<ViewData, Integer> order = new IdentityHashMap<ViewData, Integer>();
+        for (ViewData view : views) {
+            mViews.put(view.node, view);
+
+            int row = view.row;
+            if (row >= 0) {
+                while (mRowStarts.size() <= row) {
+                    mRowStarts.add(null);
+                }
+                List<ViewData> starts = mRowStarts.get(row);
+                if (starts == null) {
+                    starts = new ArrayList<ViewData>(4);
+                    mRowStarts.set(row, starts);
+                }
+                starts.add(view);
+            }
+
+            if (!view.isSpacer()) {
+                order.put(view, order.size());
+                intervals.add(view);
+            }
+        }
+
+        // Stable, so views at the same position remain in child order
+        mSorted = intervals.toArray(new ViewData[intervals.size()]);
+        Arrays.sort(mSorted, new Comparator<ViewData>() {
+            @Override
+            public int compare(ViewData view1, ViewData view2) {
+                int y1 = view1.node.getBounds().y;
+                int y2 = view2.node.getBounds().y;
+                return y1 < y2 ? -1 : (y1 == y2 ? 0 : 1);
+            }
+        });
+
+        int count = mSorted.length;
+        mTops = new int[count];
+        mBottoms = new int[count];
+        mMaxBottoms = new int[count];
+        mOrder = new int[count];
+        int maxBottom = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            Rect bounds = mSorted[i].node.getBounds();
+            mTops[i] = bounds.y;
+            mBottoms[i] = bounds.y2();
+            maxBottom = Math.max(maxBottom, mBottoms[i]);
+            mMaxBottoms[i] = maxBottom;
+            mOrder[i] = order.get(mSorted[i]);
+        }
+    }
+
+    /**
+     * Returns the {@link ViewData} for the given child node
+     *
+     * @param node the node to look up
+     * @return the corresponding view, or null if the node is not a child
+     */
+    @Nullable
+    ViewData getView(@NonNull INode node) {
+        return mViews.get(node);
+    }
+
+    /**
+     * Returns the views whose row is the given row, in child order
+     *
+     * @param row the row to look up
+     * @return the views starting in the row, never null
+     */
+    @NonNull
+    List<ViewData> getViewsStartingInRow(int row) {
+        if (row >= 0 && row < mRowStarts.size()) {
+            List<ViewData> views = mRowStarts.get(row);
+            if (views != null) {
+                return views;
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the non-spacer views whose bounds intersect the range
+     * {@code y1 <= y <= y2}, in child order
+     *
+     * @param y1 the starting y, inclusive
+     * @param y2 the ending y, inclusive
+     * @return the intersecting views, never null
+     */
+    @NonNull
+    List<ViewData> getIntersectsRow(int y1, int y2) {
+        // Only the views starting at or above y2 can intersect; of those, stop
+        // as soon as no earlier view reaches down to y1
+        int[] matches = null;
+        int count = 0;
+        for (int i = upperBound(mTops, y2) - 1; i >= 0 && mMaxBottoms[i] >= y1; i--) {
+            if (mBottoms[i] >= y1) {
+                if (matches == null) {
+                    matches = new int[i + 1];
+                }
+                matches[count++] = i;
+            }
+        }
+
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+
+        // Report the matches in child order, like a scan of the children would
+        long[] keys = new long[count];
+        for (int j = 0; j < count; j++) {
+            keys[j] = ((long) mOrder[matches[j]] << 32) | matches[j];
+        }
+        Arrays.sort(keys);
+        List<ViewData> views = new ArrayList<ViewData>(count);
+        for (long key : keys) {
+            views.add(mSorted[(int) key]);
+        }
+
+        return views;
+    }
+
+    /**
+     * Returns the index of the first position in the sorted array which is greater than
+     * the given value, or the array length if there is no such position
+     */
+    static int upperBound(@NonNull int[] positions, int value) {
+        int low = 0;
+        int high = positions.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (positions[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+}
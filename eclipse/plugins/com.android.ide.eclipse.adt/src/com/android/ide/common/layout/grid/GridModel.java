@@ -144,6 +144,12 @@ public class GridModel {
     /** List of all the view data for the children in this layout */
     private List<ViewData> mChildViews;
 
+    /**
+     * Index of the child views, built lazily by {@link #getIndex()} and discarded
+     * whenever the grid is edited
+     */
+    private GridIndex mIndex;
+
     /** The {@link IClientRulesEngine} */
     private final IClientRulesEngine mRulesEngine;
 
@@ -217,13 +223,29 @@ public class GridModel {
      * @return the view info for the node, or null if not found
      */
     public ViewData getView(INode node) {
-        for (ViewData view : mChildViews) {
-            if (view.node == node) {
-                return view;
-            }
+        return getIndex().getView(node);
+    }
+
+    /**
+     * Returns the index of the child views, creating it if necessary
+     *
+     * @return the index, never null
+     */
+    @NonNull
+    private GridIndex getIndex() {
+        if (mIndex == null) {
+            mIndex = new GridIndex(mChildViews);
         }
 
-        return null;
+        return mIndex;
+    }
+
+    /**
+     * Discards the index of the child views. This must be called by all operations
+     * which add or remove views, or change their rows, columns or spans.
+     */
+    private void invalidateIndex() {
+        mIndex = null;
     }
 
     /**
@@ -278,13 +300,10 @@ public class GridModel {
         if (baseline == UNDEFINED) {
             baseline = -1;
 
-            // TBD: Consider stringing together row information in the view data
-            // so I can quickly identify the views in a given row instead of searching
-            // among all?
-            for (ViewData view : mChildViews) {
+            for (ViewData view : getIndex().getViewsStartingInRow(row)) {
                 // We only count baselines for views with rowSpan=1 because
                 // baseline alignment doesn't work for cell spanning views
-                if (view.row == row && view.rowSpan == 1) {
+                if (view.rowSpan == 1) {
                     baseline = view.node.getBaseline();
                     if (baseline != -1) {
                         // Even views that do have baselines do not count towards a row
@@ -927,6 +946,8 @@ public class GridModel {
      */
     public INode addColumn(int newColumn, INode newView, int columnWidthDp,
             boolean split, int row, int x) {
+        invalidateIndex();
+
         // Insert a new column
         actualColumnCount++;
         if (declaredColumnCount != UNDEFINED) {
@@ -1031,6 +1052,7 @@ public class GridModel {
             removedViews.add(view);
             removeColumns.add(view.column);
         }
+        invalidateIndex();
         // Sort them in descending order such that we can process each
         // deletion independently
         List<Integer> removed = new ArrayList<Integer>(removeColumns);
@@ -1140,6 +1162,7 @@ public class GridModel {
      */
     public INode addRow(int newRow, INode newView, int rowHeightDp, boolean split,
             int column, int y) {
+        invalidateIndex();
         actualRowCount++;
         if (declaredRowCount != UNDEFINED) {
             declaredRowCount++;
@@ -1235,6 +1258,7 @@ public class GridModel {
             removedViews.add(view);
             removedRows.add(view.row);
         }
+        invalidateIndex();
         // Sort them in descending order such that we can process each
         // deletion independently
         List<Integer> removed = new ArrayList<Integer>(removedRows);
@@ -1449,15 +1473,10 @@ public class GridModel {
      * @return a list of nodes intersecting the given rows, never null but possibly empty
      */
     public Collection<INode> getIntersectsRow(int y1, int y2) {
-        List<INode> nodes = new ArrayList<INode>();
-
-        for (ViewData view : mChildViews) {
-            if (!view.isSpacer()) {
-                Rect bounds = view.node.getBounds();
-                if (bounds.y2() >= y1 && bounds.y <= y2) {
-                    nodes.add(view.node);
-                }
-            }
+        List<ViewData> views = getIndex().getIntersectsRow(y1, y2);
+        List<INode> nodes = new ArrayList<INode>(views.size());
+        for (ViewData view : views) {
+            nodes.add(view.node);
         }
 
         return nodes;
@@ -1623,6 +1642,7 @@ public class GridModel {
      * @param x the x coordinate of the new column
      */
     public void splitColumn(int newColumn, boolean insertMarginColumn, int columnWidthDp, int x) {
+        invalidateIndex();
         actualColumnCount++;
 
         // Insert a new column
@@ -1753,6 +1773,7 @@ public class GridModel {
      * @param y the y coordinate of the new row
      */
     public void splitRow(int newRow, boolean insertMarginRow, int rowHeightDp, int y) {
+        invalidateIndex();
         actualRowCount++;
 
         // Insert a new row
@@ -1945,6 +1966,7 @@ public class GridModel {
         if (nodes.size() == 0) {
             return;
         }
+        invalidateIndex();
 
         // Attempt to clean up spacer objects for any newly-empty rows or columns
         // as the result of this deletion
@@ -2276,6 +2298,7 @@ public class GridModel {
 
         ViewData view = new ViewData(spacer, index != -1 ? index : mChildViews.size());
         mChildViews.add(view);
+        invalidateIndex();
 
         if (row != UNDEFINED) {
             view.row = row;
@@ -32,6 +32,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -57,6 +58,7 @@ class DependencyGraph {
 
     private final Map<String, ViewData> mIdToView = new HashMap<String, ViewData>();
     private final Map<INode, ViewData> mNodeToView = new HashMap<INode, ViewData>();
+    private final ViewData mParentView;
 
     /** Constructs a new {@link DependencyGraph} for the given relative layout */
     DependencyGraph(INode layout) {
@@ -72,6 +74,7 @@ class DependencyGraph {
             // like centerInParent
         }
         ViewData parentView = new ViewData(layout, parentId);
+        mParentView = parentView;
         mNodeToView.put(layout, parentView);
         if (parentId != null) {
             mIdToView.put(parentId, parentView);
@@ -90,43 +93,125 @@ class DependencyGraph {
         }
 
         for (ViewData view : mNodeToView.values()) {
-            for (IAttribute attribute : view.node.getLiveAttributes()) {
-                String name = attribute.getName();
-                ConstraintType type = ConstraintType.fromAttribute(name);
-                if (type != null) {
-                    String value = attribute.getValue();
-
-                    if (type.targetParent) {
-                        if (value.equals(VALUE_TRUE)) {
-                            Constraint constraint = new Constraint(type, view, parentView);
-                            view.dependsOn.add(constraint);
-                            parentView.dependedOnBy.add(constraint);
-                        }
-                    } else {
-                        // id-based constraint.
-                        // NOTE: The id could refer to some widget that is NOT a sibling!
-                        String targetId = BaseLayoutRule.stripIdPrefix(value);
-                        ViewData target = mIdToView.get(targetId);
-                        if (target == view) {
-                            // Self-reference. RelativeLayout ignores these so it's
-                            // not an error like a deeper cycle (where RelativeLayout
-                            // will throw an exception), but we might as well warn
-                            // the user about it.
-                            // TODO: Where do we emit this error?
-                        } else if (target != null) {
-                            Constraint constraint = new Constraint(type, view, target);
-                            view.dependsOn.add(constraint);
-                            target.dependedOnBy.add(constraint);
-                        } else {
-                            // This is valid but we might want to warn...
-                            //System.out.println("Warning: no view data found for " + targetId);
-                        }
-                    }
+            addConstraints(view);
+        }
+    }
+
+    /** Adds the constraints recorded in the attributes of the given view */
+    private void addConstraints(ViewData view) {
+        for (IAttribute attribute : view.node.getLiveAttributes()) {
+            String name = attribute.getName();
+            ConstraintType type = ConstraintType.fromAttribute(name);
+            if (type != null) {
+                addConstraint(view, type, attribute.getValue());
+            }
+        }
+    }
+
+    private void addConstraint(ViewData view, ConstraintType type, String value) {
+        if (type.targetParent) {
+            if (value.equals(VALUE_TRUE)) {
+                Constraint constraint = new Constraint(type, view, mParentView);
+                view.dependsOn.add(constraint);
+                mParentView.dependedOnBy.add(constraint);
+            }
+        } else {
+            // id-based constraint.
+            // NOTE: The id could refer to some widget that is NOT a sibling!
+            String targetId = BaseLayoutRule.stripIdPrefix(value);
+            ViewData target = mIdToView.get(targetId);
+            if (target == view) {
+                // Self-reference. RelativeLayout ignores these so it's
+                // not an error like a deeper cycle (where RelativeLayout
+                // will throw an exception), but we might as well warn
+                // the user about it.
+                // TODO: Where do we emit this error?
+            } else if (target != null) {
+                Constraint constraint = new Constraint(type, view, target);
+                view.dependsOn.add(constraint);
+                target.dependedOnBy.add(constraint);
+            } else {
+                // This is valid but we might want to warn...
+                //System.out.println("Warning: no view data found for " + targetId);
+            }
+        }
+    }
+
+    /**
+     * Looks for a view without an id in the graph which has since been assigned the
+     * given id, such as a view whose id was generated when a constraint was applied
+     * to it, and records the id for it
+     */
+    private void findAssignedId(String id) {
+        for (ViewData view : mNodeToView.values()) {
+            if (view.id == null) {
+                String nodeId = view.node.getStringAttr(ANDROID_URI, ATTR_ID);
+                if (nodeId != null && id.equals(BaseLayoutRule.stripIdPrefix(nodeId))) {
+                    view.id = id;
+                    mIdToView.put(id, view);
+                    return;
                 }
             }
         }
     }
 
+    /**
+     * Updates the graph for a new value of the given layout attribute on the given
+     * node. This lets a graph be kept up to date while constraints are being applied,
+     * rather than recreating it from the attributes of all the children.
+     *
+     * @param node the node whose attribute was set; if it is not yet part of the graph
+     *            (such as a newly inserted child) it is added
+     * @param name the name of the layout attribute, in the Android namespace
+     * @param value the new value, or null if the attribute was removed
+     */
+    public void setAttribute(INode node, String name, String value) {
+        ConstraintType type = ConstraintType.fromAttribute(name);
+        if (type == null) {
+            return;
+        }
+
+        ViewData view = mNodeToView.get(node);
+        if (view == null) {
+            // Adding the view picks up all its constraints, including this one
+            addView(node);
+            return;
+        }
+
+        removeConstraints(view, type);
+        if (value != null) {
+            if (!type.targetParent
+                    && !mIdToView.containsKey(BaseLayoutRule.stripIdPrefix(value))) {
+                findAssignedId(BaseLayoutRule.stripIdPrefix(value));
+            }
+            addConstraint(view, type, value);
+        }
+    }
+
+    private void addView(INode node) {
+        String id = node.getStringAttr(ANDROID_URI, ATTR_ID);
+        if (id != null) {
+            id = BaseLayoutRule.stripIdPrefix(id);
+        }
+        ViewData view = new ViewData(node, id);
+        mNodeToView.put(node, view);
+        if (id != null) {
+            mIdToView.put(id, view);
+        }
+        addConstraints(view);
+    }
+
+    private void removeConstraints(ViewData view, ConstraintType type) {
+        Iterator<Constraint> iterator = view.dependsOn.iterator();
+        while (iterator.hasNext()) {
+            Constraint constraint = iterator.next();
+            if (constraint.type == type) {
+                iterator.remove();
+                constraint.to.dependedOnBy.remove(constraint);
+            }
+        }
+    }
+
     public ViewData getView(IDragElement element) {
         IDragAttribute attribute = element.getAttribute(ANDROID_URI, ATTR_ID);
         if (attribute != null) {
@@ -268,7 +353,7 @@ class DependencyGraph {
      */
     static class ViewData {
         public final INode node;
-        public final String id;
+        public String id;
         public final List<Constraint> dependsOn = new ArrayList<Constraint>(4);
         public final List<Constraint> dependedOnBy = new ArrayList<Constraint>(8);
 
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.common.layout.relative;
+
+import com.android.annotations.NonNull;
+import com.android.ide.common.api.Segment;
+import com.android.ide.common.api.SegmentType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of a list of {@link Segment} edges used by the {@link GuidelineHandler} to find
+ * the edges closest to a dragged edge without visiting every edge in the layout on each
+ * mouse move. The edges are grouped by {@link SegmentType}, and each group is sorted by
+ * position such that it can be walked outwards from the dragged edge position in order
+ * of increasing distance.
+ * <p>
+ * The index is a snapshot of the edge list; it records the position of each edge in the
+ * original list such that matches can be reported in the same order as a linear scan.
+ */
+class EdgeIndex {
+    private final int mSize;
+    private final List<Bucket> mBuckets;
+
+    /** Creates a new index for the given list of edges */
+    EdgeIndex(@NonNull List<Segment> edges) {
+        mSize = edges.size();
+
+        Map<SegmentType, List<Integer>> types =
+                new EnumMap<SegmentType, List<Integer>>(SegmentType.class);
+        for (int i = 0, n = edges.size(); i < n; i++) {
+            SegmentType type = edges.get(i).edgeType;
+            List<Integer> indices = types.get(type);
+            if (indices == null) {
+                indices = new ArrayList<Integer>();
+                types.put(type, indices);
+            }
+            indices.add(i);
+        }
+
+        mBuckets = new ArrayList<Bucket>(types.size());
+        for (Map.Entry<SegmentType, List<Integer>> entry : types.entrySet()) {
+            mBuckets.add(new Bucket(entry.getKey(), edges, entry.getValue()));
+        }
+    }
+
+    /**
+     * Returns the number of edges in the list this index was created from
+     *
+     * @return the number of indexed edges
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns the edge groups, one for each segment type present in the edge list
+     *
+     * @return the edge groups
+     */
+    @NonNull
+    List<Bucket> getBuckets() {
+        return mBuckets;
+    }
+
+    /**
+     * Returns the index of the first position in the sorted array which is greater than
+     * or equal to the given value, or the array length if there is no such position
+     */
+    static int lowerBound(@NonNull int[] positions, int value) {
+        int low = 0;
+        int high = positions.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (positions[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /** The edges of a single segment type, sorted by position */
+    static class Bucket {
+        /** The segment type of all the edges in this group */
+        public final SegmentType type;
+
+        /** The edges, sorted by position */
+        public final Segment[] edges;
+
+        /** The position of each edge */
+        public final int[] positions;
+
+        /** The index of each edge in the original edge list */
+        public final int[] order;
+
+        Bucket(SegmentType type, final List<Segment> all, List<Integer> indices) {
+            this.type = type;
+
+            Integer[] sorted = indices.toArray(new Integer[indices.size()]);
+            // Stable, so edges at the same position remain in list order
+            Arrays.sort(sorted, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer i1, Integer i2) {
+                    int at1 = all.get(i1).at;
+                    int at2 = all.get(i2).at;
+                    return at1 < at2 ? -1 : (at1 == at2 ? 0 : 1);
+                }
+            });
+
+            int count = sorted.length;
+            edges = new Segment[count];
+            positions = new int[count];
+            order = new int[count];
+            for (int i = 0; i < count; i++) {
+                int index = sorted[i];
+                Segment edge = all.get(index);
+                edges[i] = edge;
+                positions[i] = edge.at;
+                order[i] = index;
+            }
+        }
+    }
+}
@@ -67,10 +67,13 @@ import com.android.ide.common.layout.relative.DependencyGraph.Constraint;
 import com.android.ide.common.layout.relative.DependencyGraph.ViewData;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -223,6 +226,10 @@ public class GuidelineHandler {
      */
     protected IClientRulesEngine mRulesEngine;
 
+    /** Indices of the above edge lists, keyed by list identity */
+    private final Map<List<Segment>, EdgeIndex> mEdgeIndices =
+            new IdentityHashMap<List<Segment>, EdgeIndex>();
+
     /**
      * Construct a new {@link GuidelineHandler} for the given relative layout.
      *
@@ -444,47 +451,94 @@ public class GuidelineHandler {
         return closest;
     }
 
+    /**
+     * Adds the closest matching segments among the given list of edges for the given
+     * dragged edge to the given list of matches, unless they are further away than the
+     * matches already in the list (in which case the list is left alone), or closer (in
+     * which case the existing matches are replaced).
+     * <p>
+     * Rather than checking every edge, the edges of each compatible segment type are
+     * visited in order of increasing distance from the dragged edge (using an
+     * {@link EdgeIndex} created on first use), stopping as soon as they are further
+     * away than the closest match found so far. The result is the same as that of a
+     * linear scan through the edge list.
+     */
     protected void addClosest(Segment draggedEdge, List<Segment> edges,
             List<Match> closest) {
         int at = draggedEdge.at;
         int closestDelta = closest.size() > 0 ? closest.get(0).delta : Integer.MAX_VALUE;
         int closestDistance = abs(closestDelta);
-        for (Segment edge : edges) {
-            assert draggedEdge.edgeType.isHorizontal() == edge.edgeType.isHorizontal();
 
-            int delta = edge.at - at;
-            int distance = abs(delta);
-            if (distance > closestDistance) {
+        int bound = closestDistance;
+        Match[] candidates = null;
+        int[] candidateOrder = null;
+        int count = 0;
+        for (EdgeIndex.Bucket bucket : getEdgeIndex(edges).getBuckets()) {
+            assert draggedEdge.edgeType.isHorizontal() == bucket.type.isHorizontal();
+            if (!isEdgeTypeCompatible(bucket.type, draggedEdge.edgeType, 0)) {
                 continue;
             }
 
-            if (!isEdgeTypeCompatible(edge.edgeType, draggedEdge.edgeType, delta)) {
-                continue;
-            }
+            int[] positions = bucket.positions;
+            int right = EdgeIndex.lowerBound(positions, at);
+            int left = right - 1;
+            while (true) {
+                int index;
+                if (left >= 0 && (right == positions.length
+                        || at - positions[left] <= positions[right] - at)) {
+                    index = left--;
+                } else if (right < positions.length) {
+                    index = right++;
+                } else {
+                    break;
+                }
 
-            boolean withParent = edge.node == layout;
-            ConstraintType type = ConstraintType.forMatch(withParent,
-                    draggedEdge.edgeType, edge.edgeType);
-            if (type == null) {
-                continue;
-            }
+                Segment edge = bucket.edges[index];
+                int delta = edge.at - at;
+                int distance = abs(delta);
+                if (distance > bound) {
+                    // All remaining edges of this type are further away
+                    break;
+                }
 
-            // Ensure that the edge match is compatible; for example, a "below"
-            // constraint can only apply to the margin bounds and a "bottom"
-            // constraint can only apply to the non-margin bounds.
-            if (type.relativeToMargin && edge.marginType == WITHOUT_MARGIN) {
-                continue;
-            } else if (!type.relativeToMargin && edge.marginType == WITH_MARGIN) {
-                continue;
+                Match match = createMatch(draggedEdge, edge, delta);
+                if (match != null) {
+                    if (candidates == null) {
+                        candidates = new Match[8];
+                        candidateOrder = new int[8];
+                    } else if (count == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, 2 * count);
+                        candidateOrder = Arrays.copyOf(candidateOrder, 2 * count);
+                    }
+                    candidates[count] = match;
+                    candidateOrder[count] = bucket.order[index];
+                    count++;
+                    bound = distance;
+                }
             }
+        }
 
-            Match match = new Match(this, edge, draggedEdge, type, delta);
+        if (candidates == null) {
+            return;
+        }
 
-            if (distance < closestDistance) {
+        // Report the matches at the closest distance in edge list order, by sorting
+        // them on their list position (in the high bits) and candidate index
+        long[] best = new long[count];
+        int bestCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (abs(candidates[i].delta) == bound) {
+                best[bestCount++] = ((long) candidateOrder[i] << 32) | i;
+            }
+        }
+        Arrays.sort(best, 0, bestCount);
+        for (int i = 0; i < bestCount; i++) {
+            Match match = candidates[(int) best[i]];
+            if (bound < closestDistance) {
                 closest.clear();
-                closestDistance = distance;
-                closestDelta = delta;
-            } else if (delta * closestDelta < 0) {
+                closestDistance = bound;
+                closestDelta = match.delta;
+            } else if (match.delta * closestDelta < 0) {
                 // They have different signs, e.g. the matches are equal but
                 // on opposite sides; can't accept them both
                 continue;
@@ -493,6 +547,49 @@ public class GuidelineHandler {
         }
     }
 
+    /**
+     * Creates a match between the given edge and the given dragged edge, or returns null
+     * if the edges cannot be matched
+     */
+    private Match createMatch(Segment draggedEdge, Segment edge, int delta) {
+        if (!isEdgeTypeCompatible(edge.edgeType, draggedEdge.edgeType, delta)) {
+            return null;
+        }
+
+        boolean withParent = edge.node == layout;
+        ConstraintType type = ConstraintType.forMatch(withParent,
+                draggedEdge.edgeType, edge.edgeType);
+        if (type == null) {
+            return null;
+        }
+
+        // Ensure that the edge match is compatible; for example, a "below"
+        // constraint can only apply to the margin bounds and a "bottom"
+        // constraint can only apply to the non-margin bounds.
+        if (type.relativeToMargin && edge.marginType == WITHOUT_MARGIN) {
+            return null;
+        } else if (!type.relativeToMargin && edge.marginType == WITH_MARGIN) {
+            return null;
+        }
+
+        return new Match(this, edge, draggedEdge, type, delta);
+    }
+
+    /**
+     * Returns the {@link EdgeIndex} for the given list of edges. The edge lists are
+     * populated when the handler is created, and only queried after that, so the index
+     * is created once per list and drag operation.
+     */
+    private EdgeIndex getEdgeIndex(List<Segment> edges) {
+        EdgeIndex index = mEdgeIndices.get(edges);
+        if (index == null || index.size() != edges.size()) {
+            index = new EdgeIndex(edges);
+            mEdgeIndices.put(edges, index);
+        }
+
+        return index;
+    }
+
     protected void clearSuggestions() {
         mHorizontalSuggestions = mVerticalSuggestions = null;
         mCurrentLeftMatch = mCurrentRightMatch = null;
@@ -509,54 +606,54 @@ public class GuidelineHandler {
         // Process each edge separately
         String centerBoth = n.getStringAttr(ANDROID_URI, ATTR_LAYOUT_CENTER_IN_PARENT);
         if (centerBoth != null && centerBoth.equals(VALUE_TRUE)) {
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_CENTER_IN_PARENT, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_CENTER_IN_PARENT, null);
 
             // If you had a center-in-both-directions attribute, and you're
             // only resizing in one dimension, then leave the other dimension
             // centered, e.g. if you have centerInParent and apply alignLeft,
             // then you should end up with alignLeft and centerVertically
             if (mCurrentTopMatch == null && mCurrentBottomMatch == null) {
-                n.setAttribute(ANDROID_URI, ATTR_LAYOUT_CENTER_VERTICAL, VALUE_TRUE);
+                setLayoutAttribute(n, ATTR_LAYOUT_CENTER_VERTICAL, VALUE_TRUE);
             }
             if (mCurrentLeftMatch == null && mCurrentRightMatch == null) {
-                n.setAttribute(ANDROID_URI, ATTR_LAYOUT_CENTER_HORIZONTAL, VALUE_TRUE);
+                setLayoutAttribute(n, ATTR_LAYOUT_CENTER_HORIZONTAL, VALUE_TRUE);
             }
         }
 
         if (mMoveTop) {
             // Remove top attachments
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_ALIGN_PARENT_TOP, null);
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_ALIGN_TOP, null);
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_BELOW, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_ALIGN_PARENT_TOP, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_ALIGN_TOP, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_BELOW, null);
 
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_CENTER_VERTICAL, null);
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_ALIGN_BASELINE, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_CENTER_VERTICAL, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_ALIGN_BASELINE, null);
 
         }
 
         if (mMoveBottom) {
             // Remove bottom attachments
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_ALIGN_PARENT_BOTTOM, null);
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_ALIGN_BOTTOM, null);
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_ABOVE, null);
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_CENTER_VERTICAL, null);
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_ALIGN_BASELINE, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_ALIGN_PARENT_BOTTOM, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_ALIGN_BOTTOM, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_ABOVE, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_CENTER_VERTICAL, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_ALIGN_BASELINE, null);
         }
 
         if (mMoveLeft) {
             // Remove left attachments
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_ALIGN_PARENT_LEFT, null);
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_ALIGN_LEFT, null);
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_TO_RIGHT_OF, null);
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_CENTER_HORIZONTAL, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_ALIGN_PARENT_LEFT, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_ALIGN_LEFT, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_TO_RIGHT_OF, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_CENTER_HORIZONTAL, null);
         }
 
         if (mMoveRight) {
             // Remove right attachments
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_ALIGN_PARENT_RIGHT, null);
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_ALIGN_RIGHT, null);
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_TO_LEFT_OF, null);
-            n.setAttribute(ANDROID_URI, ATTR_LAYOUT_CENTER_HORIZONTAL, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_ALIGN_PARENT_RIGHT, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_ALIGN_RIGHT, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_TO_LEFT_OF, null);
+            setLayoutAttribute(n, ATTR_LAYOUT_CENTER_HORIZONTAL, null);
         }
 
         if (mMoveTop && mCurrentTopMatch != null) {
@@ -595,11 +692,17 @@ public class GuidelineHandler {
         }
     }
 
+    /** Sets the given layout attribute, and updates the dependency graph accordingly */
+    private void setLayoutAttribute(INode n, String name, String value) {
+        n.setAttribute(ANDROID_URI, name, value);
+        mDependencyGraph.setAttribute(n, name, value);
+    }
+
     private void applyConstraint(INode n, String constraint) {
         assert constraint.contains("=") : constraint;
         String name = constraint.substring(0, constraint.indexOf('='));
         String value = constraint.substring(constraint.indexOf('=') + 1);
-        n.setAttribute(ANDROID_URI, name, value);
+        setLayoutAttribute(n, name, value);
     }
 
     private void applyMargin(INode n, String marginAttribute, int margin) {
@@ -614,7 +717,7 @@ public class GuidelineHandler {
 
     private void removeRelativeParams(INode node) {
         for (ConstraintType type : ConstraintType.values()) {
-            node.setAttribute(ANDROID_URI, type.name, null);
+            setLayoutAttribute(node, type.name, null);
         }
         node.setAttribute(ANDROID_URI,ATTR_LAYOUT_MARGIN_LEFT, null);
         node.setAttribute(ANDROID_URI,ATTR_LAYOUT_MARGIN_RIGHT, null);
@@ -637,7 +740,7 @@ public class GuidelineHandler {
 
         if (mCurrentTopMatch != null || mCurrentBottomMatch != null) {
             // Attaching the top: arrange below, and for bottom arrange above
-            node.setAttribute(ANDROID_URI,
+            setLayoutAttribute(node,
                     mCurrentTopMatch != null ? ATTR_LAYOUT_BELOW : ATTR_LAYOUT_ABOVE, id);
             // Apply same left/right constraints as the parent
             if (mCurrentLeftMatch != null) {
@@ -648,7 +751,7 @@ public class GuidelineHandler {
                 applyMargin(node, ATTR_LAYOUT_MARGIN_RIGHT, mRightMargin);
             }
         } else if (mCurrentLeftMatch != null || mCurrentRightMatch != null) {
-            node.setAttribute(ANDROID_URI,
+            setLayoutAttribute(node,
                     mCurrentLeftMatch != null ? ATTR_LAYOUT_TO_RIGHT_OF : ATTR_LAYOUT_TO_LEFT_OF,
                             id);
             // Apply same top/bottom constraints as the parent
@@ -678,11 +781,13 @@ public class GuidelineHandler {
         for (INode node : mDraggedNodes) {
             ViewData view = mDependencyGraph.getView(node);
             if (view != null) {
-                for (Constraint constraint : view.dependedOnBy) {
+                // Copy the list since removing the constraints updates it
+                List<Constraint> constraints = new ArrayList<Constraint>(view.dependedOnBy);
+                for (Constraint constraint : constraints) {
                     // For now, remove ALL constraints pointing to this node in this orientation.
                     // Later refine this to be smarter. (We can't JUST remove the constraints
                     // identified in the cycle since there could be multiple.)
-                    constraint.from.node.setAttribute(ANDROID_URI, constraint.type.name, null);
+                    setLayoutAttribute(constraint.from.node, constraint.type.name, null);
                 }
             }
         }
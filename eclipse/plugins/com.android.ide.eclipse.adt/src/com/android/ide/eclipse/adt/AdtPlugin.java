@@ -42,7 +42,9 @@ import com.android.ide.eclipse.adt.internal.project.ProjectHelper;
 import com.android.ide.eclipse.adt.internal.resources.manager.GlobalProjectMonitor;
 import com.android.ide.eclipse.adt.internal.resources.manager.GlobalProjectMonitor.IFileListener;
 import com.android.ide.eclipse.adt.internal.resources.manager.GlobalProjectMonitor.IProjectListener;
+import com.android.ide.eclipse.adt.internal.resources.manager.ResourceDefinitionIndex;
 import com.android.ide.eclipse.adt.internal.resources.manager.ResourceManager;
+import com.android.ide.eclipse.adt.internal.resources.manager.ResourceNameIndex;
 import com.android.ide.eclipse.adt.internal.sdk.Sdk;
 import com.android.ide.eclipse.adt.internal.sdk.Sdk.ITargetChangeListener;
 import com.android.ide.eclipse.adt.internal.ui.EclipseUiHelper;
@@ -265,6 +267,12 @@ public class AdtPlugin extends AbstractUIPlugin implements ILogger {
 
         // Listen on resource file edits for updates to file inclusion
         IncludeFinder.start();
+
+        // Listen on resource file edits for updates to resource definition locations
+        ResourceDefinitionIndex.start();
+
+        // Listen on resource file edits to discard stale resource name completion indices
+        ResourceNameIndex.start();
     }
 
     /*
@@ -278,6 +286,8 @@ public class AdtPlugin extends AbstractUIPlugin implements ILogger {
 
         stopEditors();
         IncludeFinder.stop();
+        ResourceDefinitionIndex.stop();
+        ResourceNameIndex.stop();
 
         DesignerPlugin.dispose();
 
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.assetstudio;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.ide.eclipse.adt.AdtPlugin;
+import com.android.ide.eclipse.adt.internal.assetstudio.CreateAssetSetWizardState.SourceType;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Generates complete icon sets for a number of inputs without any UI, for example to
+ * create the launcher icons of many modules at once.
+ * <p/>
+ * Each input is a {@link CreateAssetSetWizardState} configured the way the Asset Studio
+ * wizard would, along with the root directory to write its icons into (the icon paths
+ * are relative to a project root, such as {@code res/drawable-hdpi/ic_launcher.png}).
+ * The inputs are generated in parallel. Inputs which use the same source image
+ * should be created with {@link CreateAssetSetWizardState#copy()} from a common state,
+ * since the copies share its image caches: the image is then only decoded and scaled
+ * down once.
+ * <p/>
+ * Note that this does not refresh the workspace; callers writing into workspace
+ * projects should refresh them afterwards.
+ */
+public class AssetSetBatchGenerator {
+    private final Map<CreateAssetSetWizardState, File> mInputs =
+            new LinkedHashMap<CreateAssetSetWizardState, File>();
+    private final List<String> mErrors = new ArrayList<String>();
+
+    /**
+     * Adds an icon set to be generated
+     *
+     * @param values the configuration of the icon set. If neither its minimum SDK nor its
+     *            project is set, the icons are generated for all API levels.
+     * @param outputDir the directory the icon paths are relative to
+     */
+    public void add(@NonNull CreateAssetSetWizardState values, @NonNull File outputDir) {
+        mInputs.put(values, outputDir);
+    }
+
+    /**
+     * Generates and writes all the icon sets. Inputs which cannot be generated (for
+     * example because their source image cannot be read) are skipped, and reported by
+     * {@link #getErrors()}.
+     *
+     * @param monitor a progress monitor, or null
+     * @return the files written
+     * @throws OperationCanceledException if the monitor was cancelled
+     */
+    @NonNull
+    public List<File> generate(@Nullable IProgressMonitor monitor) {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        monitor.beginTask("Generating icons", mInputs.size());
+
+        int threads = Math.max(1, Math.min(mInputs.size(),
+                Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<File> files = new ArrayList<File>();
+        mErrors.clear();
+        try {
+            List<Future<List<File>>> futures = new ArrayList<Future<List<File>>>();
+            List<File> outputDirs = new ArrayList<File>();
+            for (final Map.Entry<CreateAssetSetWizardState, File> entry : mInputs.entrySet()) {
+                futures.add(executor.submit(new Callable<List<File>>() {
+                    @Override
+                    public List<File> call() throws Exception {
+                        return generate(entry.getKey(), entry.getValue());
+                    }
+                }));
+                outputDirs.add(entry.getValue());
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                if (monitor.isCanceled()) {
+                    throw new OperationCanceledException();
+                }
+                try {
+                    files.addAll(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    mErrors.add(String.format("Unable to generate icons in %1$s: %2$s",
+                            outputDirs.get(i).getPath(), cause.getLocalizedMessage()));
+                    AdtPlugin.log(cause, null);
+                } catch (InterruptedException e) {
+                    throw new OperationCanceledException();
+                }
+                monitor.worked(1);
+            }
+        } finally {
+            // Stops the remaining inputs if cancelled
+            executor.shutdownNow();
+            monitor.done();
+        }
+
+        return files;
+    }
+
+    /**
+     * Returns the errors of the last {@link #generate(IProgressMonitor)} call, one per
+     * input which could not be generated
+     *
+     * @return the errors, possibly empty
+     */
+    @NonNull
+    public List<String> getErrors() {
+        return mErrors;
+    }
+
+    @NonNull
+    private static List<File> generate(CreateAssetSetWizardState values, File outputDir)
+            throws IOException {
+        List<File> files = new ArrayList<File>();
+        if (values.sourceType == SourceType.IMAGE) {
+            // generateImages() only reports unreadable images to the wizard page, so
+            // load the source (into the shared cache) here to fail the input instead
+            String path = values.imagePath != null ? values.imagePath.getPath() : null;
+            if (path == null) {
+                throw new IOException("No source image");
+            }
+            values.getCachedSourceImage(path, values.trim,
+                    ConfigureAssetSetPage.MAX_ICON_SIZE);
+        }
+        Map<String, Map<String, BufferedImage>> categories =
+                ConfigureAssetSetPage.generateImages(values, false /*previewOnly*/, null);
+        for (Map<String, BufferedImage> images : categories.values()) {
+            for (Map.Entry<String, BufferedImage> entry : images.entrySet()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return files;
+                }
+                File file = new File(outputDir, entry.getKey().replace('/', File.separatorChar));
+                file.getParentFile().mkdirs();
+                if (!ImageIO.write(entry.getValue(), "PNG", file)) { //$NON-NLS-1$
+                    throw new IOException("Unable to write " + file);
+                }
+                files.add(file);
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.assetstudio;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.ide.eclipse.adt.internal.assetstudio.CreateAssetSetWizardState.SourceType;
+
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Headless application which generates icon sets with the {@link AssetSetBatchGenerator}.
+ * Run it with for example
+ * <pre>
+ * eclipse -nosplash -application com.android.ide.eclipse.adt.assetstudio
+ *     -image logo.png -type launcher -type notification -name logo
+ *     -out /work/app1 -out /work/app2
+ * </pre>
+ * An icon set is generated for every combination of the given asset types and output
+ * folders (project root directories), from a single source: an image ({@code -image}),
+ * a clipart ({@code -clipart}) or some text ({@code -text}). The source image is only
+ * decoded and scaled down once for all of them.
+ */
+public class AssetStudioBatchApplication implements IApplication {
+    private final List<AssetType> mTypes = new ArrayList<AssetType>();
+    private final List<File> mOutputFolders = new ArrayList<File>();
+    private SourceType mSourceType;
+    private String mSource;
+    private String mName = "name"; //$NON-NLS-1$
+    private int mMinSdk = -1;
+    private int mPadding = -1;
+    private Boolean mTrim;
+
+    @Override
+    public Object start(IApplicationContext context) throws Exception {
+        PrintStream out = System.out;
+        String[] args = (String[]) context.getArguments().get(
+                IApplicationContext.APPLICATION_ARGS);
+        if (!parseArguments(args) || mSourceType == null || mOutputFolders.isEmpty()) {
+            printUsage(out);
+            return Integer.valueOf(1);
+        }
+        if (mTypes.isEmpty()) {
+            mTypes.add(AssetType.LAUNCHER);
+        }
+
+        // All the inputs are copies of one state, such that they share its image caches
+        CreateAssetSetWizardState values = new CreateAssetSetWizardState();
+        values.sourceType = mSourceType;
+        if (mSourceType == SourceType.IMAGE) {
+            values.imagePath = new File(mSource);
+        } else if (mSourceType == SourceType.CLIPART) {
+            values.clipartName = mSource;
+        } else {
+            values.text = mSource;
+        }
+        values.minSdk = mMinSdk;
+        if (mPadding != -1) {
+            values.padding = mPadding;
+        }
+        if (mTrim != null) {
+            values.trim = mTrim.booleanValue();
+        }
+
+        AssetSetBatchGenerator generator = new AssetSetBatchGenerator();
+        for (AssetType type : mTypes) {
+            CreateAssetSetWizardState state = values.copy();
+            state.type = type;
+            state.outputName = String.format(type.getDefaultNameFormat(), mName);
+            for (File folder : mOutputFolders) {
+                generator.add(state.copy(), folder);
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        List<File> files = generator.generate(null);
+        for (String error : generator.getErrors()) {
+            out.println(error);
+        }
+        out.println(String.format("Wrote %1$d icons in %2$d ms, %3$d errors",
+                files.size(), System.currentTimeMillis() - start,
+                generator.getErrors().size()));
+
+        return generator.getErrors().isEmpty() ? IApplication.EXIT_OK : Integer.valueOf(1);
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    private boolean parseArguments(@Nullable String[] args) {
+        if (args == null) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i == args.length - 1) {
+                return false;
+            }
+            if (!parseOption(arg, args[++i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean setSource(@NonNull SourceType type, @NonNull String value) {
+        if (mSourceType != null) {
+            // Only one source
+            return false;
+        }
+        mSourceType = type;
+        mSource = value;
+        return true;
+    }
+
+    private boolean parseOption(@NonNull String arg, @NonNull String value) {
+        if ("-image".equals(arg)) {                       //$NON-NLS-1$
+            return setSource(SourceType.IMAGE, value);
+        } else if ("-clipart".equals(arg)) {              //$NON-NLS-1$
+            return setSource(SourceType.CLIPART, value);
+        } else if ("-text".equals(arg)) {                 //$NON-NLS-1$
+            return setSource(SourceType.TEXT, value);
+        } else if ("-out".equals(arg)) {                  //$NON-NLS-1$
+            mOutputFolders.add(new File(value));
+        } else if ("-type".equals(arg)) {                 //$NON-NLS-1$
+            try {
+                mTypes.add(AssetType.valueOf(value.toUpperCase(Locale.US)));
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        } else if ("-name".equals(arg)) {                 //$NON-NLS-1$
+            mName = value;
+        } else if ("-trim".equals(arg)) {                 //$NON-NLS-1$
+            mTrim = Boolean.valueOf(value);
+        } else if ("-minsdk".equals(arg)) {               //$NON-NLS-1$
+            try {
+                mMinSdk = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        } else if ("-padding".equals(arg)) {              //$NON-NLS-1$
+            try {
+                mPadding = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    private static void printUsage(@NonNull PrintStream out) {
+        out.println("Usage: (-image <file> | -clipart <name> | -text <text>) -out <folder>...");
+        out.println("       [-type <launcher|actionbar|notification|tab|menu>...] [-name <name>]");
+        out.println("       [-minsdk <level>] [-padding <percent>] [-trim <true|false>]");
+    }
+}
@@ -46,9 +46,12 @@ import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.dialogs.IMessageProvider;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.wizard.WizardPage;
@@ -155,6 +158,17 @@ public class ConfigureAssetSetPage extends WizardPage implements SelectionListen
     private boolean mIgnore;
     private SourceType mShowingType;
 
+    /** The job generating the previews, if any */
+    private Job mPreviewJob;
+    /** Incremented for each preview request, such that stale previews are discarded */
+    private int mPreviewGeneration;
+
+    /**
+     * The size of the largest icon generated (the launcher icon web graphic). Source
+     * images are scaled down to no less than this before being handed to the generators.
+     */
+    static final int MAX_ICON_SIZE = 512;
+
     /**
      * Create the wizard.
      *
@@ -959,19 +973,64 @@ public class ConfigureAssetSetPage extends WizardPage implements SelectionListen
         mPreviewArea.getDisplay().timerExec(quickly ? 10 : 250, timer);
     }
 
+    /**
+     * Generates the previews in a background job, from a snapshot of the wizard state.
+     * Any previous preview job is cancelled, and the results of a job which finishes
+     * after a newer one has been started are discarded.
+     */
     private void updatePreview() {
+        if (!validatePage()) {
+            for (Control c : mPreviewArea.getChildren()) {
+                c.dispose();
+            }
+            return;
+        }
+
+        final CreateAssetSetWizardState values = mValues.copy();
+        final int generation = ++mPreviewGeneration;
+        final Display display = mPreviewArea.getDisplay();
+        if (mPreviewJob != null) {
+            mPreviewJob.cancel();
+        }
+        mPreviewJob = new Job("Generating icon previews") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                if (monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                final Map<String, Map<String, BufferedImage>> map = generateImages(values,
+                        true /*previewOnly*/, null);
+                if (monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                display.asyncExec(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!mPreviewArea.isDisposed() && generation == mPreviewGeneration) {
+                            showPreview(map, values);
+                        }
+                    }
+                });
+                return Status.OK_STATUS;
+            }
+        };
+        mPreviewJob.setSystem(true);
+        mPreviewJob.schedule();
+    }
+
+    private void showPreview(Map<String, Map<String, BufferedImage>> map,
+            CreateAssetSetWizardState values) {
         Display display = mPreviewArea.getDisplay();
 
         for (Control c : mPreviewArea.getChildren()) {
             c.dispose();
         }
 
-        if (!validatePage()) {
-            return;
+        if (map.isEmpty() && values.sourceType == SourceType.IMAGE
+                && values.imagePath != null) {
+            setErrorMessage(String.format("Unable to read %1$s", values.imagePath.getPath()));
         }
 
-        Map<String, Map<String, BufferedImage>> map = generateImages(mValues,
-                true /*previewOnly*/, this);
         for (Entry<String, Map<String, BufferedImage>> categoryEntry : map.entrySet()) {
             String category = categoryEntry.getKey();
             if (category.length() > 0) {
@@ -1042,14 +1101,12 @@ public class ConfigureAssetSetPage extends WizardPage implements SelectionListen
                     page.setErrorMessage(null);
                 }
                 try {
-                    sourceImage = mValues.getCachedImage(path, false);
-                    if (sourceImage != null) {
-                        if (trim) {
-                            sourceImage = ImageUtils.cropBlank(sourceImage, null, TYPE_INT_ARGB);
-                        }
-                        if (mValues.padding != 0) {
-                            sourceImage = Util.paddedImage(sourceImage, mValues.padding);
-                        }
+                    // The image is decoded and trimmed once, and the generators scale
+                    // from the smallest level of its pyramid which is large enough
+                    // for the largest icon, rather than from the full size image
+                    sourceImage = mValues.getCachedSourceImage(path, trim, MAX_ICON_SIZE);
+                    if (mValues.padding != 0) {
+                        sourceImage = Util.paddedImage(sourceImage, mValues.padding);
                     }
                 } catch (IOException ioe) {
                     if (page != null) {
@@ -1165,6 +1222,8 @@ public class ConfigureAssetSetPage extends WizardPage implements SelectionListen
         IProject project = mValues.project;
         if (mValues.minSdk != -1) {
             options.minSdk = mValues.minSdk;
+        } else if (project == null) {
+            options.minSdk = 1;
         } else {
             Pair<Integer, Integer> v = ManifestInfo.computeSdkVersions(project);
             options.minSdk = v.getFirst();
@@ -1233,6 +1292,15 @@ public class ConfigureAssetSetPage extends WizardPage implements SelectionListen
         }
     }
 
+    @Override
+    public void dispose() {
+        if (mPreviewJob != null) {
+            mPreviewJob.cancel();
+            mPreviewJob = null;
+        }
+        super.dispose();
+    }
+
     private void updateColor(Display display, RGB color, boolean isBackground) {
         // Button.setBackgroundColor does not work (at least not on OSX) so
         // we instead have to use Button.setImage with an image of the given
@@ -16,12 +16,14 @@
 package com.android.ide.eclipse.adt.internal.assetstudio;
 
 import static com.android.ide.eclipse.adt.internal.wizards.templates.NewProjectWizard.DEFAULT_LAUNCHER_ICON;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
 
 import com.android.annotations.NonNull;
 import com.android.assetstudiolib.GraphicGenerator;
 import com.android.assetstudiolib.GraphicGenerator.Shape;
 import com.android.assetstudiolib.GraphicGeneratorContext;
 import com.android.ide.eclipse.adt.AdtPlugin;
+import com.android.ide.eclipse.adt.internal.editors.layout.gle2.ImageUtils;
 import com.android.ide.eclipse.adt.internal.wizards.templates.TemplateManager;
 
 import org.eclipse.core.resources.IProject;
@@ -32,7 +34,9 @@ import java.awt.GraphicsEnvironment;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.imageio.ImageIO;
@@ -99,7 +103,20 @@ public class CreateAssetSetWizardState implements GraphicGeneratorContext {
     /** If {@link #sourceType} is a {@link SourceType#TEXT}, the font of the text to render */
     private Font mTextFont;
 
-    private Map<String, BufferedImage> mImageCache = null;
+    /**
+     * Decoded images, by path. This map (like {@link #mSourceCache}) is shared with the
+     * copies of this state, and is synchronized on since the previews are generated on
+     * a background thread.
+     */
+    private Map<String, BufferedImage> mImageCache = new HashMap<String, BufferedImage>();
+
+    /**
+     * Mipmap pyramids of the source images, by path (and whether they are trimmed):
+     * the image followed by successive halvings of it, down to the smallest size
+     * requested from {@link #getCachedSourceImage}
+     */
+    private Map<String, List<BufferedImage>> mSourceCache =
+            new HashMap<String, List<BufferedImage>>();
 
     /**
      * Gets the text font to be used for text rendering if the
@@ -171,16 +188,97 @@ public class CreateAssetSetWizardState implements GraphicGeneratorContext {
 
     BufferedImage getCachedImage(String path, boolean isPluginRelative)
             throws IOException {
-        BufferedImage image = mImageCache != null ? mImageCache.get(path) : null;
-        if (image == null) {
-            image = getImage(path, isPluginRelative);
-            if (mImageCache == null) {
-                mImageCache = new HashMap<String, BufferedImage>();
+        synchronized (mImageCache) {
+            BufferedImage image = mImageCache.get(path);
+            if (image == null) {
+                image = getImage(path, isPluginRelative);
+                mImageCache.put(path, image);
             }
-            mImageCache.put(path, image);
+
+            return image;
         }
+    }
 
-        return image;
+    /**
+     * Returns the source image at the given path, trimmed if requested, at the smallest
+     * resolution which is still at least the given size. The image is only decoded and
+     * trimmed once, and a mipmap pyramid is built from it, such that the generators
+     * scale each density from an image close to its size rather than from the full
+     * size source image.
+     *
+     * @param path the path to the image
+     * @param trim whether blank space around the image should be removed
+     * @param minSize the minimum size of the larger dimension of the returned image,
+     *            unless the source image itself is smaller
+     * @return the image
+     * @throws IOException if the image cannot be read
+     */
+    @NonNull
+    BufferedImage getCachedSourceImage(@NonNull String path, boolean trim, int minSize)
+            throws IOException {
+        String key = trim ? path + "#trim" : path; //$NON-NLS-1$
+        List<BufferedImage> pyramid;
+        synchronized (mSourceCache) {
+            pyramid = mSourceCache.get(key);
+        }
+        if (pyramid == null) {
+            BufferedImage image = getCachedImage(path, false);
+            if (trim) {
+                BufferedImage cropped = ImageUtils.cropBlank(image, null, TYPE_INT_ARGB);
+                if (cropped != null) {
+                    image = cropped;
+                }
+            }
+            pyramid = new ArrayList<BufferedImage>();
+            pyramid.add(image);
+            // Levels smaller than the requested size would never be used
+            while (Math.max(image.getWidth(), image.getHeight()) / 2 >= minSize) {
+                image = ImageUtils.scale(image, 0.5, 0.5);
+                pyramid.add(image);
+            }
+            synchronized (mSourceCache) {
+                mSourceCache.put(key, pyramid);
+            }
+        }
+
+        BufferedImage best = pyramid.get(0);
+        for (BufferedImage image : pyramid) {
+            if (Math.max(image.getWidth(), image.getHeight()) < minSize) {
+                break;
+            }
+            best = image;
+        }
+        return best;
+    }
+
+    /**
+     * Returns a copy of this state, sharing its image caches, such that images can be
+     * generated from a snapshot of the state while the wizard keeps editing it
+     *
+     * @return a copy of this state
+     */
+    @NonNull
+    public CreateAssetSetWizardState copy() {
+        CreateAssetSetWizardState copy = new CreateAssetSetWizardState();
+        copy.type = type;
+        copy.outputName = outputName;
+        copy.minSdk = minSdk;
+        copy.project = project;
+        copy.trim = trim;
+        copy.sourceType = sourceType;
+        copy.clipartName = clipartName;
+        copy.imagePath = imagePath;
+        copy.text = text;
+        copy.padding = padding;
+        copy.shape = shape;
+        copy.crop = crop;
+        copy.holoDark = holoDark;
+        copy.background = background;
+        copy.foreground = foreground;
+        copy.mTextFont = mTextFont;
+        copy.mImageCache = mImageCache;
+        copy.mSourceCache = mSourceCache;
+        return copy;
     }
 
     @NonNull
@@ -209,6 +307,9 @@ public class CreateAssetSetWizardState implements GraphicGeneratorContext {
 
             if (image == null) {
                 image = ImageIO.read(file);
+                if (image == null) {
+                    throw new IOException("Unable to read " + file.getPath());
+                }
             }
         }
 
@@ -18,13 +18,17 @@ package com.android.ide.eclipse.adt.internal.build;
 
 import com.android.ide.eclipse.adt.AdtConstants;
 import com.android.ide.eclipse.adt.AdtPlugin;
-import com.android.ide.eclipse.adt.internal.project.BaseProjectHelper;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.FindReplaceDocumentAdapter;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
@@ -33,7 +37,14 @@ import org.eclipse.ui.editors.text.TextFileDocumentProvider;
 import org.eclipse.ui.texteditor.IDocumentProvider;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -234,6 +245,30 @@ public final class AaptParser {
             return false;
         }
 
+        // aapt reports some problems more than once (and is launched twice), so the
+        // diagnostics are coalesced before marking the files
+        Set<Diagnostic> diagnostics = new LinkedHashSet<Diagnostic>();
+        boolean parsingError = parseOutput(results, project, diagnostics);
+
+        // mark the files with what was parsed, even if parsing failed on a later line
+        markResources(diagnostics);
+
+        return parsingError;
+    }
+
+    /**
+     * Parse the output of aapt into diagnostics.
+     * <p/>
+     * Each line is only matched against the patterns it can possibly match, based on
+     * its first characters, rather than against every pattern in turn.
+     *
+     * @param results the output of aapt
+     * @param project the project containing the files with errors
+     * @param diagnostics the collection to add the parsed diagnostics to
+     * @return true if the parsing failed, false if success.
+     */
+    private static boolean parseOutput(String[] results, IProject project,
+            Collection<Diagnostic> diagnostics) {
         // get the root of the project so that we can make IFile from full
         // file path
         String osRoot = project.getLocation().toOSString();
@@ -243,14 +278,20 @@ public final class AaptParser {
         for (int i = 0; i < results.length ; i++) {
             String p = results[i];
 
-            m = sPattern0Line1.matcher(p);
-            if (m.matches()) {
+            // the conditions under which each of the patterns below can match
+            boolean indented = p.length() > 0 && Character.isWhitespace(p.charAt(0));
+            boolean error = p.startsWith("ERROR");                    //$NON-NLS-1$
+            boolean errorColon = error && p.startsWith("ERROR:");     //$NON-NLS-1$
+            boolean colon = p.indexOf(':') != -1;
+            boolean hasLine = colon && p.indexOf("line") != -1;       //$NON-NLS-1$
+            boolean invalid = p.regionMatches(true, 0, "invalid", 0, 7); //$NON-NLS-1$
+
+            if (indented && (m = sPattern0Line1.matcher(p)).matches()) {
                 // we ignore those (as this is an ignore message from aapt)
                 continue;
             }
 
-            m = sPattern1Line1.matcher(p);
-            if (m.matches()) {
+            if (error && (m = sPattern1Line1.matcher(p)).matches()) {
                 String lineStr = m.group(1);
                 String msg = m.group(2);
 
@@ -263,16 +304,16 @@ public final class AaptParser {
                 String location = m.group(1);
 
                 // check the values and attempt to mark the file.
-                if (checkAndMark(location, lineStr, msg, osRoot, project,
-                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR) == false) {
+                if (addDiagnostic(location, lineStr, msg, osRoot, project,
+                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR,
+                        diagnostics) == false) {
                     return true;
                 }
                 continue;
             }
 
             // this needs to be tested before Pattern2 since they both start with 'ERROR:'
-            m = sPattern7Line1.matcher(p);
-            if (m.matches()) {
+            if (errorColon && (m = sPattern7Line1.matcher(p)).matches()) {
                 String location = m.group(1);
                 String msg = p; // default msg is the line in case we don't find anything else
 
@@ -287,8 +328,9 @@ public final class AaptParser {
                 }
 
                 // display the error
-                if (checkAndMark(location, null, msg, osRoot, project,
-                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR) == false) {
+                if (addDiagnostic(location, null, msg, osRoot, project,
+                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR,
+                        diagnostics) == false) {
                     return true;
                 }
 
@@ -296,8 +338,7 @@ public final class AaptParser {
                 continue;
             }
 
-            m =  sPattern2Line1.matcher(p);
-            if (m.matches()) {
+            if (errorColon && (m = sPattern2Line1.matcher(p)).matches()) {
                 // get the msg
                 String msg = m.group(1);
 
@@ -311,22 +352,23 @@ public final class AaptParser {
                 String lineStr = m.group(2);
 
                 // check the values and attempt to mark the file.
-                if (checkAndMark(location, lineStr, msg, osRoot, project,
-                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR) == false) {
+                if (addDiagnostic(location, lineStr, msg, osRoot, project,
+                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR,
+                        diagnostics) == false) {
                     return true;
                 }
                 continue;
             }
 
-            m = sPattern3Line1.matcher(p);
-            if (m.matches()) {
+            if (hasLine && (m = sPattern3Line1.matcher(p)).matches()) {
                 String location = m.group(1);
                 String lineStr = m.group(2);
                 String msg = m.group(3);
 
                 // check the values and attempt to mark the file.
-                if (checkAndMark(location, lineStr, msg, osRoot, project,
-                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR) == false) {
+                if (addDiagnostic(location, lineStr, msg, osRoot, project,
+                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR,
+                        diagnostics) == false) {
                     return true;
                 }
 
@@ -334,8 +376,7 @@ public final class AaptParser {
                 continue;
             }
 
-            m = sPattern4Line1.matcher(p);
-            if (m.matches()) {
+            if (p.startsWith("Error") && (m = sPattern4Line1.matcher(p)).matches()) { //$NON-NLS-1$
                 // get the filename.
                 String location = m.group(1);
 
@@ -349,8 +390,9 @@ public final class AaptParser {
                 String lineStr = m.group(2);
 
                 // check the values and attempt to mark the file.
-                if (checkAndMark(location, lineStr, msg, osRoot, project,
-                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR) == false) {
+                if (addDiagnostic(location, lineStr, msg, osRoot, project,
+                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR,
+                        diagnostics) == false) {
                     return true;
                 }
 
@@ -358,15 +400,15 @@ public final class AaptParser {
                 continue;
             }
 
-            m = sPattern5Line1.matcher(p);
-            if (m.matches()) {
+            if (colon && (m = sPattern5Line1.matcher(p)).matches()) {
                 String location = m.group(1);
                 String lineStr = m.group(2);
                 String msg = m.group(3);
 
                 // check the values and attempt to mark the file.
-                if (checkAndMark(location, lineStr, msg, osRoot, project,
-                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_WARNING) == false) {
+                if (addDiagnostic(location, lineStr, msg, osRoot, project,
+                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_WARNING,
+                        diagnostics) == false) {
                     return true;
                 }
 
@@ -374,15 +416,15 @@ public final class AaptParser {
                 continue;
             }
 
-            m = sPattern6Line1.matcher(p);
-            if (m.matches()) {
+            if (colon && (m = sPattern6Line1.matcher(p)).matches()) {
                 String location = m.group(1);
                 String lineStr = m.group(2);
                 String msg = m.group(3);
 
                 // check the values and attempt to mark the file.
-                if (checkAndMark(location, lineStr, msg, osRoot, project,
-                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR) == false) {
+                if (addDiagnostic(location, lineStr, msg, osRoot, project,
+                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR,
+                        diagnostics) == false) {
                     return true;
                 }
 
@@ -390,14 +432,14 @@ public final class AaptParser {
                 continue;
             }
 
-            m = sPattern8Line1.matcher(p);
-            if (m.matches()) {
+            if (invalid && (m = sPattern8Line1.matcher(p)).matches()) {
                 String location = m.group(2);
                 String msg = m.group(1);
 
                 // check the values and attempt to mark the file.
-                if (checkAndMark(location, null, msg, osRoot, project,
-                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR) == false) {
+                if (addDiagnostic(location, null, msg, osRoot, project,
+                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_ERROR,
+                        diagnostics) == false) {
                     return true;
                 }
 
@@ -405,8 +447,7 @@ public final class AaptParser {
                 continue;
             }
 
-            m = sPattern9Line1.matcher(p);
-            if (m.matches()) {
+            if (invalid && (m = sPattern9Line1.matcher(p)).matches()) {
                 String badConfig = m.group(1);
                 String msg = String.format("APK Configuration filter '%1$s' is invalid", badConfig);
 
@@ -414,8 +455,9 @@ public final class AaptParser {
                 i++;
 
                 // check the values and attempt to mark the file.
-                if (checkAndMark(null /*location*/, null, msg, osRoot, project,
-                        AdtConstants.MARKER_AAPT_PACKAGE, IMarker.SEVERITY_ERROR) == false) {
+                if (addDiagnostic(null /*location*/, null, msg, osRoot, project,
+                        AdtConstants.MARKER_AAPT_PACKAGE, IMarker.SEVERITY_ERROR,
+                        diagnostics) == false) {
                     return true;
                 }
 
@@ -423,8 +465,7 @@ public final class AaptParser {
                 continue;
             }
 
-            m = sNewSkippingPattern.matcher(p);
-            if (m.matches()) {
+            if (indented && (m = sNewSkippingPattern.matcher(p)).matches()) {
                 String location = m.group(1);
 
                 if (location.startsWith(".")         //$NON-NLS-1$
@@ -433,8 +474,9 @@ public final class AaptParser {
                 }
 
                 // check the values and attempt to mark the file.
-                if (checkAndMark(location, null, p.trim(), osRoot, project,
-                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_WARNING) == false) {
+                if (addDiagnostic(location, null, p.trim(), osRoot, project,
+                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_WARNING,
+                        diagnostics) == false) {
                     return true;
                 }
 
@@ -442,8 +484,7 @@ public final class AaptParser {
                 continue;
             }
 
-            m = sSkippingPattern.matcher(p);
-            if (m.matches()) {
+            if (indented && (m = sSkippingPattern.matcher(p)).matches()) {
                 String location = m.group(2);
 
                 // Certain files can safely be skipped without marking the project
@@ -456,8 +497,9 @@ public final class AaptParser {
                 }
 
                 // check the values and attempt to mark the file.
-                if (checkAndMark(location, null, p.trim(), osRoot, project,
-                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_WARNING) == false) {
+                if (addDiagnostic(location, null, p.trim(), osRoot, project,
+                        AdtConstants.MARKER_AAPT_COMPILE, IMarker.SEVERITY_WARNING,
+                        diagnostics) == false) {
                     return true;
                 }
 
@@ -465,8 +507,7 @@ public final class AaptParser {
                 continue;
             }
 
-            m = sXmlBlockPattern.matcher(p);
-            if (m.matches()) {
+            if (p.startsWith("W/") && (m = sXmlBlockPattern.matcher(p)).matches()) { //$NON-NLS-1$
                 // W/ResourceType(12345): Bad XML block: no root element node found
                 // Sadly there's NO filename reference; this error typically describes the
                 // error *after* this line.
@@ -485,8 +526,8 @@ public final class AaptParser {
     }
 
     /**
-     * Check if the parameters gotten from the error output are valid, and mark
-     * the file with an AAPT marker.
+     * Check if the parameters gotten from the error output are valid, and add a
+     * diagnostic for the file.
      * @param location the full OS path of the error file. If null, the project is marked
      * @param lineStr
      * @param message
@@ -494,12 +535,14 @@ public final class AaptParser {
      * @param project
      * @param markerId The marker id to put.
      * @param severity The severity of the marker to put (IMarker.SEVERITY_*)
-     * @return true if the parameters were valid and the file was marked successfully.
+     * @param diagnostics the collection to add the diagnostic to
+     * @return true if the parameters were valid and the diagnostic was added.
      *
      * @see IMarker
      */
-    private static final  boolean checkAndMark(String location, String lineStr,
-            String message, String root, IProject project, String markerId, int severity) {
+    private static final boolean addDiagnostic(String location, String lineStr,
+            String message, String root, IProject project, String markerId, int severity,
+            Collection<Diagnostic> diagnostics) {
         // check this is in fact a file
         if (location != null) {
             File f = new File(location);
@@ -521,84 +564,174 @@ public final class AaptParser {
             }
         }
 
-        // add the marker
-        IResource f2 = project;
+        IResource resource = project;
         if (location != null) {
-            f2 = getResourceFromFullPath(location, root, project);
-            if (f2 == null) {
+            resource = getResourceFromFullPath(location, root, project);
+            if (resource == null) {
                 return false;
             }
         }
 
-        // Attempt to determine the exact range of characters affected by this error.
+        diagnostics.add(new Diagnostic(resource, markerId, message, line, severity));
+        return true;
+    }
+
+    /**
+     * Marks the resources with the given diagnostics. The text ranges of all the
+     * diagnostics of a file are computed with a single load of its document, and the
+     * markers are all created in a single workspace operation.
+     */
+    private static void markResources(final Collection<Diagnostic> diagnostics) {
+        if (diagnostics.isEmpty()) {
+            return;
+        }
+
+        // Attempt to determine the exact range of characters affected by each error.
         // This will look up the actual text of the file, go to the particular error line
         // and scan for the specific string mentioned in the error.
-        int startOffset = -1;
-        int endOffset = -1;
-        if (f2 instanceof IFile) {
-            IRegion region = findRange((IFile) f2, line, message);
-            if (region != null) {
-                startOffset = region.getOffset();
-                endOffset = startOffset + region.getLength();
+        Map<IFile, List<Diagnostic>> files = new LinkedHashMap<IFile, List<Diagnostic>>();
+        for (Diagnostic diagnostic : diagnostics) {
+            if (diagnostic.resource instanceof IFile) {
+                IFile file = (IFile) diagnostic.resource;
+                List<Diagnostic> list = files.get(file);
+                if (list == null) {
+                    list = new ArrayList<Diagnostic>();
+                    files.put(file, list);
+                }
+                list.add(diagnostic);
             }
         }
+        for (Map.Entry<IFile, List<Diagnostic>> entry : files.entrySet()) {
+            findRanges(entry.getKey(), entry.getValue());
+        }
 
-        // check if there's a similar marker already, since aapt is launched twice
-        boolean markerAlreadyExists = false;
-        try {
-            IMarker[] markers = f2.findMarkers(markerId, true, IResource.DEPTH_ZERO);
-
-            for (IMarker marker : markers) {
-                if (startOffset != -1) {
-                    int tmpBegin = marker.getAttribute(IMarker.CHAR_START, -1);
-                    if (tmpBegin != startOffset) {
-                        break;
-                    }
-                    int tmpEnd = marker.getAttribute(IMarker.CHAR_END, -1);
-                    if (tmpEnd != startOffset) {
-                        break;
+        IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
+            @Override
+            public void run(IProgressMonitor monitor) throws CoreException {
+                Map<IResource, IMarker[]> existing = new HashMap<IResource, IMarker[]>();
+                Set<IResource> marked = new LinkedHashSet<IResource>();
+                for (Diagnostic diagnostic : diagnostics) {
+                    if (createMarker(diagnostic, existing)) {
+                        marked.add(diagnostic.resource);
                     }
                 }
 
-                int tmpLine = marker.getAttribute(IMarker.LINE_NUMBER, -1);
-                if (tmpLine != line) {
-                    break;
+                // on Windows, when adding a marker to a project, it takes a refresh for the
+                // marker to show (see BaseProjectHelper#markResource)
+                for (IResource resource : marked) {
+                    resource.refreshLocal(IResource.DEPTH_ZERO, monitor);
                 }
+            }
+        };
 
-                int tmpSeverity = marker.getAttribute(IMarker.SEVERITY, -1);
-                if (tmpSeverity != severity) {
-                    break;
-                }
+        try {
+            ResourcesPlugin.getWorkspace().run(runnable, null /*rule*/, 0 /*flags*/,
+                    new NullProgressMonitor());
+        } catch (CoreException e) {
+            AdtPlugin.log(e, "Failed to add aapt markers"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Adds a marker for the given diagnostic, unless the resource already has the same
+     * marker, since aapt is launched twice.
+     *
+     * @param diagnostic the diagnostic to add a marker for
+     * @param existing the markers of each resource, filled in as resources are visited
+     * @return true if a marker was added
+     */
+    private static boolean createMarker(Diagnostic diagnostic,
+            Map<IResource, IMarker[]> existing) {
+        IResource resource = diagnostic.resource;
+        if (!resource.isAccessible()) {
+            return false;
+        }
 
-                String tmpMsg = marker.getAttribute(IMarker.MESSAGE, null);
-                if (tmpMsg == null || tmpMsg.equals(message) == false) {
-                    break;
+        try {
+            // check if there's a similar marker already
+            IMarker[] markers = existing.get(resource);
+            if (markers == null) {
+                markers = resource.findMarkers(null /*type*/, true, IResource.DEPTH_ZERO);
+                existing.put(resource, markers);
+            }
+            for (IMarker marker : markers) {
+                if (diagnostic.matches(marker)) {
+                    return false;
                 }
+            }
 
-                // if we're here, all the marker attributes are equals, we found it
-                // and exit
-                markerAlreadyExists = true;
-                break;
+            IMarker marker = resource.createMarker(diagnostic.markerId);
+
+            // if marker is text type, enforce a line number so that it shows in the editor
+            // somewhere (line 1)
+            int line = diagnostic.line;
+            if (line < 1 && marker.isSubtypeOf(IMarker.TEXT)) {
+                line = 1;
+            }
+
+            List<String> names = new ArrayList<String>(5);
+            List<Object> values = new ArrayList<Object>(5);
+            names.add(IMarker.MESSAGE);
+            values.add(diagnostic.message);
+            names.add(IMarker.SEVERITY);
+            values.add(diagnostic.severity);
+            if (line >= 1) {
+                names.add(IMarker.LINE_NUMBER);
+                values.add(line);
             }
+            if (diagnostic.startOffset != -1) {
+                names.add(IMarker.CHAR_START);
+                values.add(diagnostic.startOffset);
+                names.add(IMarker.CHAR_END);
+                values.add(diagnostic.endOffset);
+            }
+            marker.setAttributes(names.toArray(new String[names.size()]), values.toArray());
 
+            return true;
         } catch (CoreException e) {
-            // if we couldn't get the markers, then we just mark the file again
-            // (since markerAlreadyExists is initialized to false, we do nothing)
+            AdtPlugin.log(e, "Failed to add marker '%1$s' to '%2$s'", //$NON-NLS-1$
+                    diagnostic.markerId, resource.getFullPath());
         }
 
-        if (markerAlreadyExists == false) {
-            BaseProjectHelper.markResource(f2, markerId, message, line,
-                    startOffset, endOffset, severity);
-        }
+        return false;
+    }
 
-        return true;
+    /**
+     * Computes the text range of each of the given diagnostics of a file
+     */
+    private static void findRanges(IFile file, List<Diagnostic> diagnostics) {
+        IDocumentProvider provider = new TextFileDocumentProvider();
+        try {
+            provider.connect(file);
+            IDocument document = provider.getDocument(file);
+            if (document != null) {
+                for (Diagnostic diagnostic : diagnostics) {
+                    try {
+                        IRegion region = findRange(document, diagnostic.line,
+                                diagnostic.message);
+                        if (region != null) {
+                            diagnostic.startOffset = region.getOffset();
+                            diagnostic.endOffset = region.getOffset() + region.getLength();
+                        }
+                    } catch (BadLocationException e) {
+                        AdtPlugin.log(e, "Can't find range information for %1$s",
+                                file.getName());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            AdtPlugin.log(e, "Can't find range information for %1$s", file.getName());
+        } finally {
+            provider.disconnect(file);
+        }
     }
 
     /**
      * Given an aapt error message in a given file and a given (initial) line number,
      * return the corresponding offset range for the error, or null.
      */
-    private static IRegion findRange(IFile file, int line, String message) {
+    private static IRegion findRange(IDocument document, int line, String message)
+            throws BadLocationException {
         Matcher matcher = sValueRangePattern.matcher(message);
         if (matcher.find()) {
             String property = matcher.group(1);
@@ -610,15 +743,15 @@ public final class AaptParser {
             // up on a different occurrence of the value in a context where
             // it is valid.
             if (value.length() > 0) {
-                return findRange(file, line, property, value);
+                return findRange(document, line, property, value);
             } else {
                 // Find first occurrence of property followed by '' or ""
-                IRegion region1 = findRange(file, line, property, "\"\""); //$NON-NLS-1$
-                IRegion region2 = findRange(file, line, property, "''");   //$NON-NLS-1$
+                IRegion region1 = findRange(document, line, property, "\"\""); //$NON-NLS-1$
+                IRegion region2 = findRange(document, line, property, "''");   //$NON-NLS-1$
                 if (region1 == null) {
                     if (region2 == null) {
                         // Highlight the property instead
-                        return findRange(file, line, property, null);
+                        return findRange(document, line, property, null);
                     }
                     return region2;
                 } else if (region2 == null) {
@@ -634,19 +767,19 @@ public final class AaptParser {
         matcher = sRepeatedRangePattern.matcher(message);
         if (matcher.find()) {
             String property = matcher.group(2);
-            return findRange(file, line, property, null);
+            return findRange(document, line, property, null);
         }
 
         matcher = sNoResourcePattern.matcher(message);
         if (matcher.find()) {
             String property = matcher.group(1);
-            return findRange(file, line, property, null);
+            return findRange(document, line, property, null);
         }
 
         matcher = sRequiredPattern.matcher(message);
         if (matcher.find()) {
             String elementName = matcher.group(2);
-            IRegion region = findRange(file, line, '<' + elementName, null);
+            IRegion region = findRange(document, line, '<' + elementName, null);
             if (region != null && region.getLength() > 1) {
                 // Skip the opening <
                 region = new Region(region.getOffset() + 1, region.getLength() - 1);
@@ -655,85 +788,64 @@ public final class AaptParser {
         }
 
         if (message.endsWith(ORIGINALLY_DEFINED_MSG)) {
-            return findLineTextRange(file, line);
+            return findLineTextRange(document, line);
         }
 
         return null;
     }
 
     /**
-     * Given a file and line number, return the range of the first match starting on the
-     * given line. If second is non null, also search for the second string starting at he
-     * location of the first string.
+     * Given a document and line number, return the range of the first match starting on
+     * the given line. If second is non null, also search for the second string starting
+     * at he location of the first string.
      */
-    private static IRegion findRange(IFile file, int line, String first,
-            String second) {
-        IRegion region = null;
-        IDocumentProvider provider = new TextFileDocumentProvider();
-        try {
-            provider.connect(file);
-            IDocument document = provider.getDocument(file);
-            if (document != null) {
-                IRegion lineInfo = document.getLineInformation(line - 1);
-                int lineStartOffset = lineInfo.getOffset();
-                // The aapt errors will be anchored on the line where the
-                // element starts - which means that with formatting where
-                // attributes end up on subsequent lines we don't find it on
-                // the error line indicated by aapt.
-                // Therefore, search forwards in the document.
-                FindReplaceDocumentAdapter adapter =
-                    new FindReplaceDocumentAdapter(document);
-
-                region = adapter.find(lineStartOffset, first,
-                        true /*forwardSearch*/, true /*caseSensitive*/,
-                        false /*wholeWord*/, false /*regExSearch*/);
-                if (region != null && second != null) {
-                    region = adapter.find(region.getOffset() + first.length(), second,
-                            true /*forwardSearch*/, true /*caseSensitive*/,
-                            false /*wholeWord*/, false /*regExSearch*/);
-                }
-            }
-        } catch (Exception e) {
-            AdtPlugin.log(e, "Can't find range information for %1$s", file.getName());
-        } finally {
-            provider.disconnect(file);
+    private static IRegion findRange(IDocument document, int line, String first,
+            String second) throws BadLocationException {
+        IRegion lineInfo = document.getLineInformation(line - 1);
+        int lineStartOffset = lineInfo.getOffset();
+        // The aapt errors will be anchored on the line where the
+        // element starts - which means that with formatting where
+        // attributes end up on subsequent lines we don't find it on
+        // the error line indicated by aapt.
+        // Therefore, search forwards in the document.
+        FindReplaceDocumentAdapter adapter =
+            new FindReplaceDocumentAdapter(document);
+
+        IRegion region = adapter.find(lineStartOffset, first,
+                true /*forwardSearch*/, true /*caseSensitive*/,
+                false /*wholeWord*/, false /*regExSearch*/);
+        if (region != null && second != null) {
+            region = adapter.find(region.getOffset() + first.length(), second,
+                    true /*forwardSearch*/, true /*caseSensitive*/,
+                    false /*wholeWord*/, false /*regExSearch*/);
         }
+
         return region;
     }
 
     /** Returns the non-whitespace line range at the given line number. */
-    private static IRegion findLineTextRange(IFile file, int line) {
-        IDocumentProvider provider = new TextFileDocumentProvider();
-        try {
-            provider.connect(file);
-            IDocument document = provider.getDocument(file);
-            if (document != null) {
-                IRegion lineInfo = document.getLineInformation(line - 1);
-                String lineContents = document.get(lineInfo.getOffset(), lineInfo.getLength());
-                int lineBegin = 0;
-                int lineEnd = lineContents.length()-1;
-
-                for (; lineEnd >= 0; lineEnd--) {
-                    char c = lineContents.charAt(lineEnd);
-                    if (!Character.isWhitespace(c)) {
-                        break;
-                    }
-                }
-                lineEnd++;
-                for (; lineBegin < lineEnd; lineBegin++) {
-                    char c = lineContents.charAt(lineBegin);
-                    if (!Character.isWhitespace(c)) {
-                        break;
-                    }
-                }
-                if (lineBegin < lineEnd) {
-                    return new Region(lineInfo.getOffset() + lineBegin, lineEnd - lineBegin);
-                }
+    private static IRegion findLineTextRange(IDocument document, int line)
+            throws BadLocationException {
+        IRegion lineInfo = document.getLineInformation(line - 1);
+        String lineContents = document.get(lineInfo.getOffset(), lineInfo.getLength());
+        int lineBegin = 0;
+        int lineEnd = lineContents.length()-1;
+
+        for (; lineEnd >= 0; lineEnd--) {
+            char c = lineContents.charAt(lineEnd);
+            if (!Character.isWhitespace(c)) {
+                break;
+            }
+        }
+        lineEnd++;
+        for (; lineBegin < lineEnd; lineBegin++) {
+            char c = lineContents.charAt(lineBegin);
+            if (!Character.isWhitespace(c)) {
+                break;
             }
-        } catch (Exception e) {
-            AdtPlugin.log(e, "Can't find range information for %1$s", file.getName());
-        } finally {
-            provider.disconnect(file);
+        }
+        if (lineBegin < lineEnd) {
+            return new Region(lineInfo.getOffset() + lineBegin, lineEnd - lineBegin);
         }
 
         return null;
@@ -780,4 +892,68 @@ public final class AaptParser {
         return null;
     }
 
+    /**
+     * A problem reported by aapt, to be shown as a marker on a resource. Two
+     * diagnostics are equal if they would create the same marker.
+     */
+    private static final class Diagnostic {
+        final IResource resource;
+        final String markerId;
+        final String message;
+        final int line;
+        final int severity;
+
+        /** The range of the problem in the file, computed before marking */
+        int startOffset = -1;
+        int endOffset = -1;
+
+        Diagnostic(IResource resource, String markerId, String message, int line,
+                int severity) {
+            this.resource = resource;
+            this.markerId = markerId;
+            this.message = message;
+            this.line = line;
+            this.severity = severity;
+        }
+
+        /** Returns true if the given existing marker is the marker for this diagnostic */
+        boolean matches(IMarker marker) throws CoreException {
+            if (!marker.getType().equals(markerId)) {
+                return false;
+            }
+
+            if (startOffset != -1) {
+                if (marker.getAttribute(IMarker.CHAR_START, -1) != startOffset
+                        || marker.getAttribute(IMarker.CHAR_END, -1) != endOffset) {
+                    return false;
+                }
+            }
+
+            return marker.getAttribute(IMarker.LINE_NUMBER, -1) == line
+                    && marker.getAttribute(IMarker.SEVERITY, -1) == severity
+                    && message.equals(marker.getAttribute(IMarker.MESSAGE, null));
+        }
+
+        @Override
+        public int hashCode() {
+            return ((resource.hashCode() * 31 + message.hashCode()) * 31 + line) * 31
+                    + severity;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Diagnostic)) {
+                return false;
+            }
+            Diagnostic other = (Diagnostic) obj;
+            return resource.equals(other.resource)
+                    && markerId.equals(other.markerId)
+                    && message.equals(other.message)
+                    && line == other.line
+                    && severity == other.severity;
+        }
+    }
 }
@@ -27,6 +27,8 @@ import com.android.ide.eclipse.adt.internal.project.BaseProjectHelper;
 import com.android.sdklib.BuildToolInfo;
 import com.android.sdklib.IAndroidTarget;
 import com.android.sdklib.io.FileOp;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
@@ -69,8 +71,20 @@ public class AidlProcessor extends SourceProcessor {
      */
     private static Pattern sAidlPattern1 = Pattern.compile("^(.+?):(\\d+):?\\s(.+)$"); //$NON-NLS-1$
 
+    /** An import statement in an aidl file */
+    private static Pattern sImportPattern = Pattern.compile(
+            "^\\s*import\\s+([\\w.]+)\\s*;", Pattern.MULTILINE); //$NON-NLS-1$
+
     private final static Set<String> EXTENSIONS = Collections.singleton(SdkConstants.EXT_AIDL);
 
+    /** Folder of the plugin state location holding the cached aidl outputs */
+    private static final String FD_OUTPUT_CACHE = "aidl-cache"; //$NON-NLS-1$
+
+    /** Maximum number of cached aidl outputs */
+    private static final int MAX_CACHED_OUTPUTS = 5000;
+
+    private static ToolOutputCache sOutputCache;
+
     private enum AidlType {
         UNKNOWN, INTERFACE, PARCELABLE;
     }
@@ -98,6 +112,11 @@ public class AidlProcessor extends SourceProcessor {
         return PROPERTY_COMPILE_AIDL;
     }
 
+    @Override
+    protected BuildTimings.Stage getTimingStage() {
+        return BuildTimings.Stage.AIDL;
+    }
+
     @Override
     protected void doCompileFiles(List<IFile> sources, BaseBuilder builder,
             IProject project, IAndroidTarget projectTarget,
@@ -106,8 +125,13 @@ public class AidlProcessor extends SourceProcessor {
         // create the command line
         List<String> commandList = new ArrayList<String>(
                 4 + sourceFolders.size() + libraryProjectsOut.size());
-        commandList.add(getBuildToolInfo().getPath(BuildToolInfo.PathId.AIDL));
-        commandList.add(quote("-p" + projectTarget.getPath(IAndroidTarget.ANDROID_AIDL))); //$NON-NLS-1$
+        String aidl = getBuildToolInfo().getPath(BuildToolInfo.PathId.AIDL);
+        String frameworkAidl = projectTarget.getPath(IAndroidTarget.ANDROID_AIDL);
+        commandList.add(aidl);
+        commandList.add(quote("-p" + frameworkAidl)); //$NON-NLS-1$
+
+        // the folders searched for the imported aidl files
+        List<File> importFolders = new ArrayList<File>();
 
         // since the path are relative to the workspace and not the project itself, we need
         // the workspace root.
@@ -116,6 +140,7 @@ public class AidlProcessor extends SourceProcessor {
             IFolder f = wsRoot.getFolder(p);
             if (f.exists()) { // if the resource doesn't exist, getLocation will return null.
                 commandList.add(quote("-I" + f.getLocation().toOSString())); //$NON-NLS-1$
+                importFolders.add(f.getLocation().toFile());
             }
         }
 
@@ -124,9 +149,17 @@ public class AidlProcessor extends SourceProcessor {
             File aidlFile = new File(libOut, SdkConstants.FD_AIDL);
             if (aidlFile.isDirectory()) {
                 commandList.add(quote("-I" + aidlFile.getAbsolutePath())); //$NON-NLS-1$
+                importFolders.add(aidlFile);
             }
         }
 
+        // the part of the cache key shared by all the files: the command line, and the
+        // version of the aidl tool
+        File aidlTool = new File(aidl);
+        List<String> keyStrings = new ArrayList<String>(commandList);
+        keyStrings.add(aidlTool.lastModified() + ":" + aidlTool.length()); //$NON-NLS-1$
+        ToolOutputCache cache = getOutputCache();
+
         // convert to array with 2 extra strings for the in/out file paths.
         int index = commandList.size();
         String[] commands = commandList.toArray(new String[index + 2]);
@@ -147,7 +180,11 @@ public class AidlProcessor extends SourceProcessor {
 
         boolean success = false;
 
-        // loop until we've compile them all
+        // the files which are not in the output cache, to be compiled by aidl
+        List<IFile> toRun = new ArrayList<IFile>(sources.size());
+        List<String[]> toRunCommands = new ArrayList<String[]>(sources.size());
+        List<String> toRunKeys = new ArrayList<String>(sources.size());
+
         for (IFile sourceFile : sources) {
             if (verbose) {
                 String name = sourceFile.getName();
@@ -181,12 +218,40 @@ public class AidlProcessor extends SourceProcessor {
                 data.setOutputFile(javaFile);
             }
 
+            File outputFile = data.getOutput().getLocation().toFile();
+            String key = getCacheKey(keyStrings, new File(frameworkAidl),
+                    sourcePath.toFile(), importFolders);
+            if (key != null && cache.restore(key, outputFile)) {
+                if (verbose) {
+                    AdtPlugin.printToConsole(project, "AIDL: restored " + outputFile.getName());
+                }
+                setCompilationStatus(COMPILE_STATUS_CODE);
+                success = true;
+                copyToOutput(sourceFile, aidlOutFolder, monitor);
+                continue;
+            }
+
             // finish to set the command line.
-            commands[index] = quote(osSourcePath);
-            commands[index + 1] = quote(data.getOutput().getLocation().toOSString());
+            String[] command = commands.clone();
+            command[index] = quote(osSourcePath);
+            command[index + 1] = quote(outputFile.getPath());
 
-            // launch the process
-            if (execAidl(builder, project, commands, sourceFile, verbose) == false) {
+            if (verbose) {
+                printCommand(project, command);
+            }
+
+            toRun.add(sourceFile);
+            toRunCommands.add(command);
+            toRunKeys.add(key);
+        }
+
+        // launch the processes. Each file is compiled by its own aidl process, and the
+        // processes are independent so they run concurrently.
+        List<ExecResult> results = execAll(project, toRunCommands);
+        for (int i = 0, n = toRun.size(); i < n; i++) {
+            IFile sourceFile = toRun.get(i);
+            if (handleAidlResult(project, toRunCommands.get(i), results.get(i), sourceFile,
+                    verbose) == false) {
                 // aidl failed. File should be marked. We add the file to the list
                 // of file that will need compilation again.
                 notCompiledOut.add(sourceFile);
@@ -195,16 +260,13 @@ public class AidlProcessor extends SourceProcessor {
                 setCompilationStatus(COMPILE_STATUS_CODE);
                 success = true;
 
-                // Also copy the file to the bin folder.
-                IFile aidlOutFile = getAidlOutputFile(sourceFile, aidlOutFolder,
-                        false /*replaceExt*/, true /*createFolders*/, monitor);
-
-                FileOp op = new FileOp();
-                try {
-                    op.copyFile(sourceFile.getLocation().toFile(),
-                            aidlOutFile.getLocation().toFile());
-                } catch (IOException e) {
+                String key = toRunKeys.get(i);
+                if (key != null) {
+                    cache.store(key, getFileData(sourceFile).getOutput().getLocation().toFile());
                 }
+
+                // Also copy the file to the bin folder.
+                copyToOutput(sourceFile, aidlOutFolder, monitor);
             }
         }
 
@@ -213,6 +275,82 @@ public class AidlProcessor extends SourceProcessor {
         }
     }
 
+    /**
+     * Copies the aidl file to the aidl output folder, from which the projects depending
+     * on a library project import it.
+     */
+    private void copyToOutput(IFile sourceFile, IFolder aidlOutFolder, IProgressMonitor monitor)
+            throws CoreException {
+        IFile aidlOutFile = getAidlOutputFile(sourceFile, aidlOutFolder,
+                false /*replaceExt*/, true /*createFolders*/, monitor);
+
+        FileOp op = new FileOp();
+        try {
+            op.copyFile(sourceFile.getLocation().toFile(),
+                    aidlOutFile.getLocation().toFile());
+        } catch (IOException e) {
+        }
+    }
+
+    private static ToolOutputCache getOutputCache() {
+        synchronized (AidlProcessor.class) {
+            if (sOutputCache == null) {
+                File dir = AdtPlugin.getDefault().getStateLocation().append(
+                        FD_OUTPUT_CACHE).toFile();
+                sOutputCache = new ToolOutputCache(dir, MAX_CACHED_OUTPUTS);
+            }
+
+            return sOutputCache;
+        }
+    }
+
+    /**
+     * Computes the key under which the output of aidl for the given file is cached: the
+     * output depends on the command line, on the content of the file and of the aidl
+     * files it imports, and, since the generated code names it, on the path of the file.
+     *
+     * @return the key, or null if a file can't be read and the output must not be cached
+     */
+    private static String getCacheKey(List<String> keyStrings, File frameworkAidl,
+            File sourceFile, List<File> importFolders) {
+        try {
+            List<String> strings = new ArrayList<String>(keyStrings);
+            strings.add(sourceFile.getPath());
+
+            List<File> files = new ArrayList<File>();
+            files.add(frameworkAidl);
+            files.add(sourceFile);
+            String source = Files.toString(sourceFile, Charsets.UTF_8);
+            for (String name : getImports(source)) {
+                String relative = name.replace('.', File.separatorChar) + SdkConstants.DOT_AIDL;
+                for (File folder : importFolders) {
+                    File imported = new File(folder, relative);
+                    if (imported.isFile()) {
+                        files.add(imported);
+                        break;
+                    }
+                }
+            }
+
+            return ToolOutputCache.computeKey(strings, files);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the fully qualified names of the types imported by the given aidl source
+     */
+    private static List<String> getImports(String source) {
+        List<String> imports = new ArrayList<String>();
+        Matcher m = sImportPattern.matcher(source);
+        while (m.find()) {
+            imports.add(m.group(1));
+        }
+
+        return imports;
+    }
+
     @Override
     protected void loadOutputAndDependencies() {
         IProgressMonitor monitor = new NullProgressMonitor();
@@ -231,79 +369,67 @@ public class AidlProcessor extends SourceProcessor {
         }
     }
 
+    private static void printCommand(IProject project, String[] command) {
+        StringBuilder sb = new StringBuilder();
+        for (String c : command) {
+            sb.append(c);
+            sb.append(' ');
+        }
+        String cmd_line = sb.toString();
+        AdtPlugin.printToConsole(project, cmd_line);
+    }
+
     /**
-     * Execute the aidl command line, parse the output, and mark the aidl file
+     * Parses the output of an aidl run, and marks the aidl file
      * with any reported errors.
-     * @param command the String array containing the command line to execute.
+     * @param command the String array containing the command line which was executed.
+     * @param result the result of the execution
      * @param file The IFile object representing the aidl file being
      *      compiled.
      * @param verbose the build verbosity
      * @return false if the exec failed, and build needs to be aborted.
      */
-    private boolean execAidl(BaseBuilder builder, IProject project, String[] command, IFile file,
-            boolean verbose) {
-        // do the exec
-        try {
-            if (verbose) {
-                StringBuilder sb = new StringBuilder();
-                for (String c : command) {
-                    sb.append(c);
-                    sb.append(' ');
-                }
-                String cmd_line = sb.toString();
-                AdtPlugin.printToConsole(project, cmd_line);
-            }
-
-            Process p = Runtime.getRuntime().exec(command);
-
-            // list to store each line of stderr
-            ArrayList<String> stdErr = new ArrayList<String>();
-
-            // get the output and return code from the process
-            int returnCode = BuildHelper.grabProcessOutput(project, p, stdErr);
-
-            if (stdErr.size() > 0) {
-                // attempt to parse the error output
-                boolean parsingError = parseAidlOutput(stdErr, file);
-
-                // If the process failed and we couldn't parse the output
-                // we print a message, mark the project and exit
-                if (returnCode != 0) {
-
-                    if (parsingError || verbose) {
-                        // display the message in the console.
-                        if (parsingError) {
-                            AdtPlugin.printErrorToConsole(project, stdErr.toArray());
-
-                            // mark the project
-                            BaseProjectHelper.markResource(project, AdtConstants.MARKER_AIDL,
-                                    Messages.Unparsed_AIDL_Errors, IMarker.SEVERITY_ERROR);
-                        } else {
-                            AdtPlugin.printToConsole(project, stdErr.toArray());
-                        }
-                    }
-                    return false;
-                }
-            } else if (returnCode != 0) {
-                // no stderr output but exec failed.
-                String msg = String.format(Messages.AIDL_Exec_Error_d, returnCode);
-
-                BaseProjectHelper.markResource(project, AdtConstants.MARKER_AIDL,
-                       msg, IMarker.SEVERITY_ERROR);
-
-                return false;
-            }
-        } catch (IOException e) {
+    private boolean handleAidlResult(IProject project, String[] command, ExecResult result,
+            IFile file, boolean verbose) {
+        if (result.exception != null) {
             // mark the project and exit
             String msg = String.format(Messages.AIDL_Exec_Error_s, command[0]);
             BaseProjectHelper.markResource(project, AdtConstants.MARKER_AIDL, msg,
                     IMarker.SEVERITY_ERROR);
             return false;
-        } catch (InterruptedException e) {
-            // mark the project and exit
-            String msg = String.format(Messages.AIDL_Exec_Error_s, command[0]);
-            BaseProjectHelper.markResource(project, AdtConstants.MARKER_AIDL, msg,
-                    IMarker.SEVERITY_ERROR);
+        }
+
+        ArrayList<String> stdErr = result.stdErr;
+        int returnCode = result.returnCode;
+        if (stdErr.size() > 0) {
+            // attempt to parse the error output
+            boolean parsingError = parseAidlOutput(stdErr, file);
+
+            // If the process failed and we couldn't parse the output
+            // we print a message, mark the project and exit
+            if (returnCode != 0) {
+
+                if (parsingError || verbose) {
+                    // display the message in the console.
+                    if (parsingError) {
+                        AdtPlugin.printErrorToConsole(project, stdErr.toArray());
+
+                        // mark the project
+                        BaseProjectHelper.markResource(project, AdtConstants.MARKER_AIDL,
+                                Messages.Unparsed_AIDL_Errors, IMarker.SEVERITY_ERROR);
+                    } else {
+                        AdtPlugin.printToConsole(project, stdErr.toArray());
+                    }
+                }
+                return false;
+            }
+        } else if (returnCode != 0) {
+            // no stderr output but exec failed.
+            String msg = String.format(Messages.AIDL_Exec_Error_d, returnCode);
+
+            BaseProjectHelper.markResource(project, AdtConstants.MARKER_AIDL,
+                   msg, IMarker.SEVERITY_ERROR);
+
             return false;
         }
 
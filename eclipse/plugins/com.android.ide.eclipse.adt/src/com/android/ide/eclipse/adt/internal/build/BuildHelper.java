@@ -19,6 +19,7 @@ package com.android.ide.eclipse.adt.internal.build;
 import com.android.SdkConstants;
 import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
+import com.android.annotations.VisibleForTesting;
 import com.android.ide.eclipse.adt.AdtConstants;
 import com.android.ide.eclipse.adt.AdtPlugin;
 import com.android.ide.eclipse.adt.AndroidPrintStream;
@@ -71,11 +72,15 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * Helper with methods for the last 3 steps of the generation of an APK.
@@ -128,6 +133,11 @@ public class BuildHelper {
     private final static int MILLION = 1000000;
     private String mProguardFile;
 
+    private final static String FD_META_INF = "META-INF/"; //$NON-NLS-1$
+
+    /** The jars scanned by {@link #isClassOnlyJar(File)}, by path */
+    private final static Map<String, JarScan> sJarScans = new HashMap<String, JarScan>();
+
     /**
      * An object able to put a marker on a resource.
      */
@@ -371,6 +381,7 @@ public class BuildHelper {
             throws NativeLibInJarException, ApkCreationException, DuplicateFileException,
             CoreException {
 
+        long startTime = BuildTimings.start();
         try {
             ApkBuilder apkBuilder = new ApkBuilder(output, intermediateApk, dex,
                     key, certificate,
@@ -389,6 +400,11 @@ public class BuildHelper {
             for (String path : pathsCollection) {
                 File file = new File(path);
                 if (file.isFile()) {
+                    if (isClassOnlyJar(file)) {
+                        // ApkBuilder would inflate the whole jar without adding anything
+                        continue;
+                    }
+
                     JarStatus jarStatus = apkBuilder.addResourcesFromJar(file);
 
                     // check if we found native libraries in the external library. This
@@ -467,6 +483,81 @@ public class BuildHelper {
             apkBuilder.sealApk();
         } catch (SealedApkException e) {
             // this won't happen as we control when the apk is sealed.
+        } finally {
+            BuildTimings.record(mProject, BuildTimings.Stage.APKBUILDER, startTime);
+        }
+    }
+
+    /**
+     * Returns whether the given jar only contains class files, and files under META-INF,
+     * none of which are packaged by {@link ApkBuilder#addResourcesFromJar(File)}. Such a
+     * jar has no Java resources and no native libraries, and can be left out of the
+     * final package.
+     * <p/>
+     * This only reads the central directory of the jar, unlike ApkBuilder which reads
+     * (and inflates) every entry. The result is kept for as long as the size and the
+     * timestamp of the jar are unchanged.
+     *
+     * @param jar the jar file
+     * @return true if the jar contributes nothing to the final package
+     */
+    @VisibleForTesting
+    static boolean isClassOnlyJar(@NonNull File jar) {
+        String path = jar.getPath();
+        long length = jar.length();
+        long modified = jar.lastModified();
+        synchronized (sJarScans) {
+            JarScan scan = sJarScans.get(path);
+            if (scan != null && scan.length == length && scan.modified == modified) {
+                return scan.classOnly;
+            }
+        }
+
+        boolean classOnly = false;
+        ZipFile zip = null;
+        try {
+            zip = new ZipFile(jar);
+            classOnly = true;
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (!entry.isDirectory() && !name.endsWith(SdkConstants.DOT_CLASS)
+                        && !name.startsWith(FD_META_INF)) {
+                    classOnly = false;
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // Let ApkBuilder read the jar and report the error
+            return false;
+        } finally {
+            if (zip != null) {
+                try {
+                    zip.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+        synchronized (sJarScans) {
+            sJarScans.put(path, new JarScan(length, modified, classOnly));
+        }
+
+        return classOnly;
+    }
+
+    /** The result of scanning a jar with {@link #isClassOnlyJar(File)} */
+    private static final class JarScan {
+        final long length;
+        final long modified;
+        final boolean classOnly;
+
+        JarScan(long length, long modified, boolean classOnly) {
+            this.length = length;
+            this.modified = modified;
+            this.classOnly = classOnly;
         }
     }
 
@@ -698,6 +789,17 @@ public class BuildHelper {
     public void executeDx(IJavaProject javaProject, Collection<String> inputPaths,
             String osOutFilePath)
             throws CoreException, DexException {
+        long startTime = BuildTimings.start();
+        try {
+            doExecuteDx(javaProject, inputPaths, osOutFilePath);
+        } finally {
+            BuildTimings.record(mProject, BuildTimings.Stage.DEX, startTime);
+        }
+    }
+
+    private void doExecuteDx(IJavaProject javaProject, Collection<String> inputPaths,
+            String osOutFilePath)
+            throws CoreException, DexException {
 
         // get the dex wrapper
         Sdk sdk = Sdk.getCurrent();
@@ -921,6 +1023,7 @@ public class BuildHelper {
         }
 
         // launch
+        long startTime = BuildTimings.start();
         try {
             // launch the command line process
             Process process = Runtime.getRuntime().exec(command);
@@ -946,6 +1049,9 @@ public class BuildHelper {
         } catch (InterruptedException e) {
             String msg = String.format(Messages.AAPT_Exec_Error_s, command[0]);
             throw new AaptExecException(msg, e);
+        } finally {
+            BuildTimings.record(mProject, aaptCommand.equals(COMMAND_CRUNCH)
+                    ? BuildTimings.Stage.AAPT_CRUNCH : BuildTimings.Stage.AAPT_PACKAGE, startTime);
         }
 
         // Benchmarking end
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.build;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.annotations.VisibleForTesting;
+import com.android.ide.eclipse.adt.AdtPlugin;
+import com.android.ide.eclipse.adt.internal.preferences.AdtPrefs.BuildVerbosity;
+
+import org.eclipse.core.resources.IProject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the time spent in each stage of the build of a project, such that the
+ * builders can print a breakdown at the end of a build.
+ * <p/>
+ * Unlike {@link BuildHelper#BENCHMARK_FLAG}, the timings are always collected and are
+ * printed to the console when the build output is set to verbose.
+ */
+public final class BuildTimings {
+
+    /** The stages of a build which are timed */
+    public enum Stage {
+        AIDL("aidl"),                 //$NON-NLS-1$
+        RENDERSCRIPT("renderscript"), //$NON-NLS-1$
+        AAPT_R("aapt (R)"),           //$NON-NLS-1$
+        AAPT_CRUNCH("aapt (crunch)"), //$NON-NLS-1$
+        AAPT_PACKAGE("aapt (package)"), //$NON-NLS-1$
+        DEX("dx"),                    //$NON-NLS-1$
+        APKBUILDER("apkbuilder");     //$NON-NLS-1$
+
+        private final String mDisplayName;
+
+        Stage(String displayName) {
+            mDisplayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return mDisplayName;
+        }
+    }
+
+    private final static int MILLION = 1000000;
+
+    /** The time spent in each stage, in nanoseconds, indexed by stage ordinal */
+    private final static Map<IProject, long[]> sTimings = new HashMap<IProject, long[]>();
+
+    private BuildTimings() {
+    }
+
+    /**
+     * Returns the start time to pass to {@link #record(IProject, Stage, long)} once the
+     * stage is done.
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Adds the time elapsed since the given start time to the time spent in the given
+     * stage of the build of the project.
+     *
+     * @param project the project being built
+     * @param stage the stage which ran
+     * @param startTime the value returned by {@link #start()} when the stage started
+     */
+    public static void record(@NonNull IProject project, @NonNull Stage stage, long startTime) {
+        long elapsed = System.nanoTime() - startTime;
+        synchronized (sTimings) {
+            long[] timings = sTimings.get(project);
+            if (timings == null) {
+                timings = new long[Stage.values().length];
+                sTimings.put(project, timings);
+            }
+            timings[stage.ordinal()] += elapsed;
+        }
+    }
+
+    /**
+     * Prints the time spent in each stage of the build of the project since the last
+     * report, if any stage ran, and resets the timings of the project.
+     *
+     * @param project the project being built
+     */
+    public static void report(@NonNull IProject project) {
+        long[] timings;
+        synchronized (sTimings) {
+            timings = sTimings.remove(project);
+        }
+
+        String message = getReport(timings);
+        if (message != null) {
+            AdtPlugin.printBuildToConsole(BuildVerbosity.VERBOSE, project, message);
+        }
+    }
+
+    /**
+     * Returns the report for the given stage timings, or null if no stage ran
+     */
+    @VisibleForTesting
+    @Nullable
+    static String getReport(@Nullable long[] timings) {
+        if (timings == null) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        long total = 0;
+        for (Stage stage : Stage.values()) {
+            long time = timings[stage.ordinal()];
+            if (time > 0) {
+                sb.append(sb.length() == 0 ? "Build times: " : ", "); //$NON-NLS-1$ //$NON-NLS-2$
+                sb.append(stage.getDisplayName());
+                sb.append(' ');
+                sb.append(time / MILLION);
+                sb.append("ms"); //$NON-NLS-1$
+                total += time;
+            }
+        }
+
+        if (sb.length() == 0) {
+            return null;
+        }
+
+        sb.append(" (total ").append(total / MILLION).append("ms)"); //$NON-NLS-1$ //$NON-NLS-2$
+        return sb.toString();
+    }
+}
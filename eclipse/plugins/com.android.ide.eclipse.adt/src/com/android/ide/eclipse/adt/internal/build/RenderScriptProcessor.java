@@ -46,10 +46,11 @@ import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.IJavaProject;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -167,6 +168,11 @@ public class RenderScriptProcessor extends SourceProcessor {
         return PROPERTY_COMPILE_RS;
     }
 
+    @Override
+    protected BuildTimings.Stage getTimingStage() {
+        return BuildTimings.Stage.RENDERSCRIPT;
+    }
+
     @Override
     protected void doCompileFiles(List<IFile> sources, BaseBuilder builder,
             IProject project, IAndroidTarget projectTarget,
@@ -180,28 +186,21 @@ public class RenderScriptProcessor extends SourceProcessor {
         IFolder rawFolder = project.getFolder(
                 new Path(SdkConstants.FD_RES).append(SdkConstants.FD_RES_RAW));
 
-        int depIndex;
-
         // create the command line
-        String[] command = new String[15];
-        int index = 0;
-        command[index++] = quote(sdkOsPath + SdkConstants.OS_SDK_PLATFORM_TOOLS_FOLDER
-                + SdkConstants.FN_RENDERSCRIPT);
-        command[index++] = "-I";   //$NON-NLS-1$
-        command[index++] = quote(getBuildToolInfo().getPath(BuildToolInfo.PathId.ANDROID_RS_CLANG));
-        command[index++] = "-I";   //$NON-NLS-1$
-        command[index++] = quote(getBuildToolInfo().getPath(BuildToolInfo.PathId.ANDROID_RS));
-        command[index++] = "-p";   //$NON-NLS-1$
-        command[index++] = quote(genFolder.getLocation().toOSString());
-        command[index++] = "-o";   //$NON-NLS-1$
-        command[index++] = quote(rawFolder.getLocation().toOSString());
-
-        command[index++] = "-target-api";   //$NON-NLS-1$
-        command[index++] = Integer.toString(mTargetApi);
-
-        command[index++] = "-d";   //$NON-NLS-1$
-        command[depIndex = index++] = null;
-        command[index++] = "-MD";  //$NON-NLS-1$
+        List<String> commandList = new ArrayList<String>();
+        commandList.add(quote(sdkOsPath + SdkConstants.OS_SDK_PLATFORM_TOOLS_FOLDER
+                + SdkConstants.FN_RENDERSCRIPT));
+        commandList.add("-I");   //$NON-NLS-1$
+        commandList.add(quote(getBuildToolInfo().getPath(BuildToolInfo.PathId.ANDROID_RS_CLANG)));
+        commandList.add("-I");   //$NON-NLS-1$
+        commandList.add(quote(getBuildToolInfo().getPath(BuildToolInfo.PathId.ANDROID_RS)));
+        commandList.add("-p");   //$NON-NLS-1$
+        commandList.add(quote(genFolder.getLocation().toOSString()));
+        commandList.add("-o");   //$NON-NLS-1$
+        commandList.add(quote(rawFolder.getLocation().toOSString()));
+
+        commandList.add("-target-api");   //$NON-NLS-1$
+        commandList.add(Integer.toString(mTargetApi));
 
         boolean verbose = AdtPrefs.getPrefs().getBuildVerbosity() == BuildVerbosity.VERBOSE;
         boolean someSuccess = false;
@@ -209,7 +208,10 @@ public class RenderScriptProcessor extends SourceProcessor {
         // remove the generic marker from the project
         builder.removeMarkersFromResource(project, AdtConstants.MARKER_RENDERSCRIPT);
 
-        // loop until we've compile them all
+        // llvm-rs-cc compiles any number of files in one run, but writes all the
+        // dependency files of a run to a single folder. The files are therefore grouped
+        // by dependency folder (ie. by package), with one run for each group.
+        Map<IFolder, List<IFile>> groups = new LinkedHashMap<IFolder, List<IFile>>();
         for (IFile sourceFile : sources) {
             if (verbose) {
                 String name = sourceFile.getName();
@@ -231,25 +233,57 @@ public class RenderScriptProcessor extends SourceProcessor {
                 }
             }
 
-            // get the path of the source file.
-            IPath sourcePath = sourceFile.getLocation();
-            String osSourcePath = sourcePath.toOSString();
+            IFolder depFolder = getDependencyFolder(sourceFile);
+            List<IFile> group = groups.get(depFolder);
+            if (group == null) {
+                group = new ArrayList<IFile>();
+                groups.put(depFolder, group);
+            }
+            group.add(sourceFile);
+        }
 
-            // finish to set the command line.
-            command[depIndex] = quote(getDependencyFolder(sourceFile).getLocation().toOSString());
-            command[index] = quote(osSourcePath);
+        // finish to set the command lines.
+        List<String[]> commands = new ArrayList<String[]>(groups.size());
+        for (Map.Entry<IFolder, List<IFile>> entry : groups.entrySet()) {
+            List<String> command = new ArrayList<String>(commandList);
+            command.add("-d");   //$NON-NLS-1$
+            command.add(quote(entry.getKey().getLocation().toOSString()));
+            command.add("-MD");  //$NON-NLS-1$
+            for (IFile sourceFile : entry.getValue()) {
+                command.add(quote(sourceFile.getLocation().toOSString()));
+            }
+            String[] commandArray = command.toArray(new String[command.size()]);
+            if (verbose) {
+                StringBuilder sb = new StringBuilder();
+                for (String c : commandArray) {
+                    sb.append(c);
+                    sb.append(' ');
+                }
+                AdtPlugin.printToConsole(project, sb.toString());
+            }
+            commands.add(commandArray);
+        }
 
-            // launch the process
-            if (execLlvmRsCc(builder, project, command, sourceFile, verbose) == false) {
-                // llvm-rs-cc failed. File should be marked. We add the file to the list
-                // of file that will need compilation again.
-                notCompiledOut.add(sourceFile);
+        // launch the processes. The groups are independent so they run concurrently.
+        List<ExecResult> results = execAll(project, commands);
+        int i = 0;
+        for (List<IFile> group : groups.values()) {
+            String[] command = commands.get(i);
+            ExecResult result = results.get(i++);
+            if (handleLlvmRsCcResult(project, command, result, verbose) == false) {
+                // llvm-rs-cc failed. Files should be marked. We add the files to the list
+                // of file that will need compilation again. The run fails as a whole, so
+                // this includes the files of the group which have no errors.
+                notCompiledOut.addAll(group);
             } else {
                 // Success. we'll return that we generated code and resources.
                 setCompilationStatus(COMPILE_STATUS_CODE | COMPILE_STATUS_RES);
 
-                // need to parse the .d file to figure out the dependencies and the generated file
-                parseDependencyFileFor(sourceFile);
+                // need to parse the .d files to figure out the dependencies and the
+                // generated files
+                for (IFile sourceFile : group) {
+                    parseDependencyFileFor(sourceFile);
+                }
                 someSuccess = true;
             }
         }
@@ -259,63 +293,9 @@ public class RenderScriptProcessor extends SourceProcessor {
         }
     }
 
-    private boolean execLlvmRsCc(BaseBuilder builder, IProject project, String[] command,
-            IFile sourceFile, boolean verbose) {
-        // do the exec
-        try {
-            if (verbose) {
-                StringBuilder sb = new StringBuilder();
-                for (String c : command) {
-                    sb.append(c);
-                    sb.append(' ');
-                }
-                String cmd_line = sb.toString();
-                AdtPlugin.printToConsole(project, cmd_line);
-            }
-
-            Process p = Runtime.getRuntime().exec(command);
-
-            // list to store each line of stderr
-            ArrayList<String> stdErr = new ArrayList<String>();
-
-            // get the output and return code from the process
-            int returnCode = BuildHelper.grabProcessOutput(project, p, stdErr);
-
-            if (stdErr.size() > 0) {
-                // attempt to parse the error output
-                boolean parsingError = parseLlvmOutput(stdErr);
-
-                // If the process failed and we couldn't parse the output
-                // we print a message, mark the project and exit
-                if (returnCode != 0) {
-
-                    if (parsingError || verbose) {
-                        // display the message in the console.
-                        if (parsingError) {
-                            AdtPlugin.printErrorToConsole(project, stdErr.toArray());
-
-                            // mark the project
-                            BaseProjectHelper.markResource(project,
-                                    AdtConstants.MARKER_RENDERSCRIPT,
-                                    "Unparsed Renderscript error! Check the console for output.",
-                                    IMarker.SEVERITY_ERROR);
-                        } else {
-                            AdtPlugin.printToConsole(project, stdErr.toArray());
-                        }
-                    }
-                    return false;
-                }
-            } else if (returnCode != 0) {
-                // no stderr output but exec failed.
-                String msg = String.format("Error executing Renderscript: Return code %1$d",
-                        returnCode);
-
-                BaseProjectHelper.markResource(project, AdtConstants.MARKER_AIDL,
-                       msg, IMarker.SEVERITY_ERROR);
-
-                return false;
-            }
-        } catch (IOException e) {
+    private boolean handleLlvmRsCcResult(IProject project, String[] command, ExecResult result,
+            boolean verbose) {
+        if (result.exception != null) {
             // mark the project and exit
             String msg = String.format(
                     "Error executing Renderscript. Please check llvm-rs-cc is present at %1$s",
@@ -323,13 +303,42 @@ public class RenderScriptProcessor extends SourceProcessor {
             BaseProjectHelper.markResource(project, AdtConstants.MARKER_RENDERSCRIPT, msg,
                     IMarker.SEVERITY_ERROR);
             return false;
-        } catch (InterruptedException e) {
-            // mark the project and exit
-            String msg = String.format(
-                    "Error executing Renderscript. Please check llvm-rs-cc is present at %1$s",
-                    command[0]);
-            BaseProjectHelper.markResource(project, AdtConstants.MARKER_RENDERSCRIPT, msg,
-                    IMarker.SEVERITY_ERROR);
+        }
+
+        ArrayList<String> stdErr = result.stdErr;
+        int returnCode = result.returnCode;
+        if (stdErr.size() > 0) {
+            // attempt to parse the error output
+            boolean parsingError = parseLlvmOutput(stdErr);
+
+            // If the process failed and we couldn't parse the output
+            // we print a message, mark the project and exit
+            if (returnCode != 0) {
+
+                if (parsingError || verbose) {
+                    // display the message in the console.
+                    if (parsingError) {
+                        AdtPlugin.printErrorToConsole(project, stdErr.toArray());
+
+                        // mark the project
+                        BaseProjectHelper.markResource(project,
+                                AdtConstants.MARKER_RENDERSCRIPT,
+                                "Unparsed Renderscript error! Check the console for output.",
+                                IMarker.SEVERITY_ERROR);
+                    } else {
+                        AdtPlugin.printToConsole(project, stdErr.toArray());
+                    }
+                }
+                return false;
+            }
+        } else if (returnCode != 0) {
+            // no stderr output but exec failed.
+            String msg = String.format("Error executing Renderscript: Return code %1$d",
+                    returnCode);
+
+            BaseProjectHelper.markResource(project, AdtConstants.MARKER_AIDL,
+                   msg, IMarker.SEVERITY_ERROR);
+
             return false;
         }
 
@@ -36,6 +36,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.core.IJavaProject;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -43,6 +44,12 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Base class to handle generated java code.
@@ -73,6 +80,9 @@ public abstract class SourceProcessor {
 
     private int mLastCompilationStatus = COMPILE_STATUS_NONE;
 
+    /** Executor running the tool processes of all the source processors */
+    private static ExecutorService sExecutor;
+
     /**
      * Quotes a path inside "". If the platform is not windows, the path is returned as is.
      * @param path the path to quote
@@ -86,6 +96,107 @@ public abstract class SourceProcessor {
         return path;
     }
 
+    /**
+     * The result of running an external tool through {@link #execAll(IProject, List)}.
+     */
+    protected static final class ExecResult {
+        /** The return code of the process, only valid if {@link #exception} is null */
+        public final int returnCode;
+        /** The lines written by the process to stderr */
+        public final ArrayList<String> stdErr;
+        /** The exception thrown while launching or waiting for the process, if any */
+        public final Exception exception;
+
+        ExecResult(int returnCode, ArrayList<String> stdErr, Exception exception) {
+            this.returnCode = returnCode;
+            this.stdErr = stdErr;
+            this.exception = exception;
+        }
+    }
+
+    /**
+     * Runs the given command lines and returns their results, in the same order as the
+     * commands. The processes are independent of each other, so several of them are run
+     * at the same time, bounded by the number of available processors.
+     * <p/>
+     * This only launches the processes and collects their output; the results are
+     * processed (and the resources marked) by the caller, on the build thread.
+     *
+     * @param project the project being built, used to print the process output
+     * @param commands the command lines to run
+     * @return the results of the commands
+     */
+    @NonNull
+    protected static List<ExecResult> execAll(@NonNull final IProject project,
+            @NonNull List<String[]> commands) {
+        List<ExecResult> results = new ArrayList<ExecResult>(commands.size());
+        if (commands.size() < 2 || Runtime.getRuntime().availableProcessors() < 2) {
+            for (String[] command : commands) {
+                results.add(exec(project, command));
+            }
+            return results;
+        }
+
+        ExecutorService executor = getExecutor();
+        List<Future<ExecResult>> futures = new ArrayList<Future<ExecResult>>(commands.size());
+        for (final String[] command : commands) {
+            futures.add(executor.submit(new Callable<ExecResult>() {
+                @Override
+                public ExecResult call() throws Exception {
+                    return exec(project, command);
+                }
+            }));
+        }
+
+        for (Future<ExecResult> future : futures) {
+            ExecResult result;
+            try {
+                result = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result = new ExecResult(-1, new ArrayList<String>(), e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                result = new ExecResult(-1, new ArrayList<String>(),
+                        cause instanceof Exception ? (Exception) cause : e);
+            }
+            results.add(result);
+        }
+
+        return results;
+    }
+
+    private static ExecResult exec(IProject project, String[] command) {
+        ArrayList<String> stdErr = new ArrayList<String>();
+        try {
+            Process p = Runtime.getRuntime().exec(command);
+
+            // get the output and return code from the process
+            int returnCode = BuildHelper.grabProcessOutput(project, p, stdErr);
+            return new ExecResult(returnCode, stdErr, null);
+        } catch (IOException e) {
+            return new ExecResult(-1, stdErr, e);
+        } catch (InterruptedException e) {
+            return new ExecResult(-1, stdErr, e);
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Source Processor"); //$NON-NLS-1$
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return sExecutor;
+    }
+
     protected SourceProcessor(@NonNull IJavaProject javaProject,
             @NonNull BuildToolInfo buildToolInfo, @NonNull IFolder genFolder,
             @NonNull SourceChangeHandler deltaVisitor) {
@@ -229,6 +340,9 @@ public abstract class SourceProcessor {
 
     protected abstract String getSavePropertyName();
 
+    /** Returns the build stage under which the compilation time is recorded. */
+    protected abstract BuildTimings.Stage getTimingStage();
+
     /**
      * Compiles the source files and return a status bitmask of the type of file that was generated.
      *
@@ -256,8 +370,13 @@ public abstract class SourceProcessor {
         // list of files that have failed compilation.
         List<IFile> stillNeedCompilation = new ArrayList<IFile>();
 
-        doCompileFiles(mToCompile, builder, project, projectTarget, sourceFolders,
-                stillNeedCompilation, libraryProjectsOut, monitor);
+        long startTime = BuildTimings.start();
+        try {
+            doCompileFiles(mToCompile, builder, project, projectTarget, sourceFolders,
+                    stillNeedCompilation, libraryProjectsOut, monitor);
+        } finally {
+            BuildTimings.record(project, getTimingStage(), startTime);
+        }
 
         mToCompile.clear();
         mToCompile.addAll(stillNeedCompilation);
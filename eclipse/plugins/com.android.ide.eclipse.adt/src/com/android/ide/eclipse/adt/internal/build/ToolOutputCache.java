@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.build;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.VisibleForTesting;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A cache of the files generated by an external tool, keyed by a hash of everything
+ * the output depends on: the command line, and the content of the input files.
+ * <p/>
+ * The cache lives outside of the project output folders, so a source file which is
+ * compiled again after a clean, or after an unrelated source file changed, is restored
+ * from the cache instead of launching the tool again.
+ * <p/>
+ * The cache is not thread safe; it is only used from the build thread.
+ */
+final class ToolOutputCache {
+    /** Extension of a cached output file */
+    private static final String EXT_OUTPUT = ".out"; //$NON-NLS-1$
+
+    /** Extension of the marker recording that the tool generated no output */
+    private static final String EXT_NONE = ".none"; //$NON-NLS-1$
+
+    /** Number of stores between two checks of the cache size */
+    private static final int TRIM_INTERVAL = 100;
+
+    private final File mDir;
+    private final int mMaxEntries;
+    private int mStores;
+
+    /**
+     * Creates a new cache
+     *
+     * @param dir the folder holding the cache entries, created on demand
+     * @param maxEntries the number of entries above which the least recently used
+     *            entries are deleted
+     */
+    ToolOutputCache(@NonNull File dir, int maxEntries) {
+        mDir = dir;
+        mMaxEntries = maxEntries;
+    }
+
+    /**
+     * Computes the key of a tool run.
+     *
+     * @param strings the strings the output depends on, such as the command line
+     * @param files the files whose content the output depends on. Files which do not
+     *            exist are part of the key as well.
+     * @return the key
+     * @throws IOException if a file can't be read
+     */
+    @NonNull
+    static String computeKey(@NonNull List<String> strings, @NonNull List<File> files)
+            throws IOException {
+        Hasher hasher = Hashing.md5().newHasher();
+        for (String s : strings) {
+            hasher.putInt(s.length());
+            hasher.putString(s);
+        }
+        for (File file : files) {
+            hasher.putString(file.getPath());
+            if (file.isFile()) {
+                byte[] content = Files.toByteArray(file);
+                hasher.putInt(content.length);
+                hasher.putBytes(content);
+            } else {
+                hasher.putInt(-1);
+            }
+        }
+
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Restores the output of a tool run from the cache.
+     *
+     * @param key the key of the run
+     * @param output the file the tool writes its output to
+     * @return true if the run was found in the cache and the output was restored,
+     *         false if the tool must be run
+     */
+    boolean restore(@NonNull String key, @NonNull File output) {
+        try {
+            File cached = new File(mDir, key + EXT_OUTPUT);
+            if (cached.isFile()) {
+                File parent = output.getParentFile();
+                if (parent != null && !parent.isDirectory()) {
+                    parent.mkdirs();
+                }
+                Files.copy(cached, output);
+                cached.setLastModified(System.currentTimeMillis());
+                return true;
+            }
+
+            File none = new File(mDir, key + EXT_NONE);
+            if (none.isFile()) {
+                output.delete();
+                none.setLastModified(System.currentTimeMillis());
+                return true;
+            }
+        } catch (IOException e) {
+            // Treat as a cache miss; the tool will generate the file again
+        }
+
+        return false;
+    }
+
+    /**
+     * Stores the output of a successful tool run.
+     *
+     * @param key the key of the run
+     * @param output the file the tool wrote its output to. If it does not exist, the
+     *            cache records that the tool generated no output.
+     */
+    void store(@NonNull String key, @NonNull File output) {
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            return;
+        }
+
+        try {
+            if (output.isFile()) {
+                // Write to a temporary file first such that a partially written entry
+                // is never picked up
+                File temp = File.createTempFile(key, null, mDir);
+                Files.copy(output, temp);
+                File cached = new File(mDir, key + EXT_OUTPUT);
+                cached.delete();
+                if (!temp.renameTo(cached)) {
+                    temp.delete();
+                }
+            } else {
+                Files.touch(new File(mDir, key + EXT_NONE));
+            }
+        } catch (IOException e) {
+            // Not caching the output only costs a tool run the next time
+        }
+
+        if (++mStores % TRIM_INTERVAL == 0) {
+            trim();
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries if the cache holds more than the maximum
+     * number of entries, such that it is back to three quarters of the maximum
+     */
+    @VisibleForTesting
+    void trim() {
+        File[] entries = mDir.listFiles();
+        if (entries == null || entries.length <= mMaxEntries) {
+            return;
+        }
+
+        Arrays.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                long modified1 = file1.lastModified();
+                long modified2 = file2.lastModified();
+                return modified1 < modified2 ? -1 : (modified1 == modified2 ? 0 : 1);
+            }
+        });
+
+        int delete = entries.length - mMaxEntries * 3 / 4;
+        for (int i = 0; i < delete; i++) {
+            entries[i].delete();
+        }
+    }
+}
@@ -27,6 +27,7 @@ import com.android.ide.eclipse.adt.internal.build.AaptParser;
 import com.android.ide.eclipse.adt.internal.build.AaptResultException;
 import com.android.ide.eclipse.adt.internal.build.BuildHelper;
 import com.android.ide.eclipse.adt.internal.build.BuildHelper.ResourceMarker;
+import com.android.ide.eclipse.adt.internal.build.BuildTimings;
 import com.android.ide.eclipse.adt.internal.build.DexException;
 import com.android.ide.eclipse.adt.internal.build.Messages;
 import com.android.ide.eclipse.adt.internal.build.NativeLibInJarException;
@@ -727,6 +728,8 @@ public class PostCompilerBuilder extends BaseBuilder {
             msg = String.format("Unknown error: %1$s", msg);
             AdtPlugin.logAndPrintError(exception, project.getName(), msg);
             markProject(AdtConstants.MARKER_PACKAGING, msg, IMarker.SEVERITY_ERROR);
+        } finally {
+            BuildTimings.report(project);
         }
 
         // Benchmarking end
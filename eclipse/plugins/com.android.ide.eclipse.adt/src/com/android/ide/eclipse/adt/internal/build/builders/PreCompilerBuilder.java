@@ -24,6 +24,7 @@ import com.android.ide.eclipse.adt.AdtConstants;
 import com.android.ide.eclipse.adt.AdtPlugin;
 import com.android.ide.eclipse.adt.internal.build.AaptParser;
 import com.android.ide.eclipse.adt.internal.build.AidlProcessor;
+import com.android.ide.eclipse.adt.internal.build.BuildTimings;
 import com.android.ide.eclipse.adt.internal.build.Messages;
 import com.android.ide.eclipse.adt.internal.build.RenderScriptProcessor;
 import com.android.ide.eclipse.adt.internal.build.SourceProcessor;
@@ -710,8 +711,13 @@ public class PreCompilerBuilder extends BaseBuilder {
                     proguardFile = androidOutputFolder.getFile(AdtConstants.FN_AAPT_PROGUARD);
                 }
 
-                handleResources(project, javaPackage, projectTarget, manifestFile,
-                        libProjects, isLibrary, proguardFile);
+                long startTime = BuildTimings.start();
+                try {
+                    handleResources(project, javaPackage, projectTarget, manifestFile,
+                            libProjects, isLibrary, proguardFile);
+                } finally {
+                    BuildTimings.record(project, BuildTimings.Stage.AAPT_R, startTime);
+                }
             }
 
             if (processorStatus == SourceProcessor.COMPILE_STATUS_NONE &&
@@ -725,6 +731,8 @@ public class PreCompilerBuilder extends BaseBuilder {
             // refresh the 'gen' source folder. Once this is done with the custom progress
             // monitor to mark all new files as derived
             mGenFolder.refreshLocal(IResource.DEPTH_INFINITE, mDerivedProgressMonitor);
+
+            BuildTimings.report(project);
         }
 
         return result;
@@ -22,6 +22,8 @@ import com.android.annotations.Nullable;
 import com.android.ide.eclipse.adt.AdtConstants;
 import com.android.ide.eclipse.adt.AdtPlugin;
 import com.android.ide.eclipse.adt.AdtUtils;
+import com.android.ide.eclipse.adt.internal.editors.formatting.AndroidXmlFormattingStrategy;
+import com.android.ide.eclipse.adt.internal.editors.formatting.EditedRegionTracker;
 import com.android.ide.eclipse.adt.internal.editors.uimodel.UiElementNode;
 import com.android.ide.eclipse.adt.internal.lint.EclipseLintRunner;
 import com.android.ide.eclipse.adt.internal.preferences.AdtPrefs;
@@ -95,6 +97,7 @@ import org.w3c.dom.Node;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * Multi-page form editor for Android XML files.
@@ -128,6 +131,8 @@ public abstract class AndroidXmlEditor extends FormEditor {
     private StructuredTextEditor mTextEditor;
     /** Listener for the XML model from the StructuredEditor */
     private XmlModelStateListener mXmlModelStateListener;
+    /** The regions edited since the last save, or null if format-on-save is off */
+    private EditedRegionTracker mEditedRegions;
     /** Listener to update the root node if the target of the file is changed because of a
      * SDK location change or a project target change */
     private TargetChangeListener mTargetListener = null;
@@ -150,6 +155,13 @@ public abstract class AndroidXmlEditor extends FormEditor {
      */
     private int mIsEditXmlModelPending;
 
+    /**
+     * Flag indicating the listeners are being notified of the changes made by
+     * {@link #wrapEditXmlModel(Runnable)}, as opposed to changes made by typing in
+     * the XML text editor.
+     */
+    private boolean mIsNotifyingEditXmlModel;
+
     /**
      * Usually null, but during an editing operation, represents the highest
      * node which should be formatted when the editing operation is complete.
@@ -595,6 +607,17 @@ public abstract class AndroidXmlEditor extends FormEditor {
             mTargetListener = null;
         }
 
+        if (mEditedRegions != null) {
+            mEditedRegions.dispose();
+            mEditedRegions = null;
+        }
+
+        // The XML model may outlive this editor
+        UiElementNode uiRootNode = getUiRootNode();
+        if (uiRootNode != null) {
+            uiRootNode.stopTrackingXmlChanges();
+        }
+
         super.dispose();
     }
 
@@ -611,16 +634,19 @@ public abstract class AndroidXmlEditor extends FormEditor {
         commitPages(true /* onSave */);
 
         if (AdtPrefs.getPrefs().isFormatOnSave()) {
-            IAction action = mTextEditor.getAction(ACTION_NAME_FORMAT_DOCUMENT);
-            if (action != null) {
-                try {
-                    mIgnoreXmlUpdate = true;
-                    action.run();
-                } finally {
-                    mIgnoreXmlUpdate = false;
+            try {
+                mIgnoreXmlUpdate = true;
+                if (!formatEditedRegions()) {
+                    IAction action = mTextEditor.getAction(ACTION_NAME_FORMAT_DOCUMENT);
+                    if (action != null) {
+                        action.run();
+                    }
                 }
+            } finally {
+                mIgnoreXmlUpdate = false;
             }
         }
+        updateEditedRegions();
 
         // The actual "save" operation is done by the Structured XML Editor
         getEditor(mTextPageIndex).doSave(monitor);
@@ -631,6 +657,59 @@ public abstract class AndroidXmlEditor extends FormEditor {
         }
     }
 
+    /**
+     * Starts tracking the edited regions of the document from now on if format-on-save
+     * is enabled, or stops tracking them otherwise. Called when the editor is created
+     * and after each save, since the preference may change in between.
+     */
+    private void updateEditedRegions() {
+        IStructuredDocument document = getStructuredDocument();
+        if (AdtPrefs.getPrefs().isFormatOnSave() && document != null) {
+            if (mEditedRegions != null && mEditedRegions.getDocument() == document) {
+                mEditedRegions.reset();
+                return;
+            }
+            if (mEditedRegions != null) {
+                mEditedRegions.dispose();
+            }
+            mEditedRegions = new EditedRegionTracker(document);
+        } else if (mEditedRegions != null) {
+            mEditedRegions.dispose();
+            mEditedRegions = null;
+        }
+    }
+
+    /**
+     * Formats only the parts of the document edited since it was last formatted on
+     * save, which is much faster than formatting a large document and keeps the undo
+     * record small.
+     *
+     * @return true if the edited regions were formatted, or false if the whole
+     *         document should be formatted instead
+     */
+    private boolean formatEditedRegions() {
+        IStructuredDocument document = getStructuredDocument();
+        if (mEditedRegions == null || mEditedRegions.getDocument() != document
+                || !AdtPrefs.getPrefs().getUseCustomXmlFormatter()) {
+            return false;
+        }
+        List<IRegion> regions = mEditedRegions.getRegions();
+        if (regions == null) {
+            return false;
+        }
+
+        IStructuredModel model = getModelForEdit();
+        if (model == null) {
+            return false;
+        }
+        try {
+            AndroidXmlFormattingStrategy.formatRegions(model, regions);
+        } finally {
+            model.releaseFromEdit();
+        }
+        return true;
+    }
+
     /**
      * Tells the editor to start a Lint check.
      * It's up to the caller to check whether this should be done depending on preferences.
@@ -827,6 +906,8 @@ public abstract class AndroidXmlEditor extends FormEditor {
                 throw new RuntimeException("Android XML Editor Error", new CoreException(status));
             }
 
+            updateEditedRegions();
+
             IStructuredModel xml_model = getModelForRead();
             if (xml_model != null) {
                 try {
@@ -1111,10 +1192,12 @@ public abstract class AndroidXmlEditor extends FormEditor {
                 IStructuredModel readModel = getModelForRead();
                 if (readModel != null) {
                     try {
+                        mIsNotifyingEditXmlModel = true;
                         mXmlModelStateListener.modelChanged(readModel);
                     } catch (Exception e) {
                         AdtPlugin.log(e, "Error while notifying changes"); //$NON-NLS-1$
                     } finally {
+                        mIsNotifyingEditXmlModel = false;
                         readModel.releaseFromRead();
                     }
                 }
@@ -1200,6 +1283,19 @@ public abstract class AndroidXmlEditor extends FormEditor {
         return mIsEditXmlModelPending > 0;
     }
 
+    /**
+     * Returns true when the XML model listeners are being notified of the changes made
+     * by {@link #wrapEditXmlModel(Runnable)}. Such changes come from the editor itself
+     * (for example from the layout canvas or the property sheet) rather than from the
+     * user typing in the XML text editor, and the caller usually relies on the views
+     * being updated by the time the edit returns.
+     *
+     * @return true if the current XML model change was made by an edit operation
+     */
+    public boolean isNotifyingEditXmlModel() {
+        return mIsNotifyingEditXmlModel;
+    }
+
     /**
      * Returns the XML {@link Document} or null if we can't get it
      */
@@ -64,6 +64,7 @@ import com.android.ide.eclipse.adt.internal.editors.manifest.ManifestInfo;
 import com.android.ide.eclipse.adt.internal.project.BaseProjectHelper;
 import com.android.ide.eclipse.adt.internal.resources.ResourceHelper;
 import com.android.ide.eclipse.adt.internal.resources.manager.ProjectResources;
+import com.android.ide.eclipse.adt.internal.resources.manager.ResourceDefinitionIndex;
 import com.android.ide.eclipse.adt.internal.resources.manager.ResourceManager;
 import com.android.ide.eclipse.adt.internal.sdk.AndroidTargetData;
 import com.android.ide.eclipse.adt.internal.sdk.ProjectState;
@@ -78,13 +79,6 @@ import com.android.resources.ResourceType;
 import com.android.sdklib.IAndroidTarget;
 import com.android.utils.Pair;
 
-import org.apache.xerces.parsers.DOMParser;
-import org.apache.xerces.xni.Augmentations;
-import org.apache.xerces.xni.NamespaceContext;
-import org.apache.xerces.xni.QName;
-import org.apache.xerces.xni.XMLAttributes;
-import org.apache.xerces.xni.XMLLocator;
-import org.apache.xerces.xni.XNIException;
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.resources.IContainer;
@@ -149,11 +143,8 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -812,58 +803,74 @@ public class Hyperlinks {
             }
         }
 
+        // Look up the layouts defining the id in the definition index. The index only
+        // reflects saved files, so an id added in an unsaved editor is looked up in the
+        // open models below. If the index is still being built, don't wait for it:
+        // search the layout folders directly instead.
+        ResourceDefinitionIndex index = ResourceDefinitionIndex.get(project);
+        boolean scanned = index.isScanned();
+        List<Pair<IFile, IRegion>> definitions = scanned
+                ? index.findIdDefinitions(id) : Collections.<Pair<IFile, IRegion>>emptyList();
+
         // Look in the configuration folder: Search compatible configurations
         ResourceRepository resources = getResources(project, false /* isFramework */);
+        List<ResourceFolder> folders = resources.getFolders(ResourceFolderType.LAYOUT);
+        if (folders == null) {
+            return null;
+        }
         FolderConfiguration configuration = getConfiguration();
-        if (configuration != null) { // Not the case when searching from Java files for example
-            List<ResourceFolder> folders = resources.getFolders(ResourceFolderType.LAYOUT);
-            if (folders != null) {
-                for (ResourceFolder folder : folders) {
-                    if (folder.getConfiguration().isMatchFor(configuration)) {
-                        IAbstractFolder wrapper = folder.getFolder();
-                        if (wrapper instanceof IFolderWrapper) {
-                            IFolder iFolder = ((IFolderWrapper) wrapper).getIFolder();
-                            Pair<IFile, IRegion> target = findIdInFolder(iFolder, id);
-                            if (target != null) {
-                                return target;
-                            }
-                        }
-                    }
+        List<IFolder> searchFolders = new ArrayList<IFolder>();
+        for (ResourceFolder folder : folders) {
+            // No configuration when searching from Java files for example: search all
+            if (configuration == null || folder.getConfiguration().isMatchFor(configuration)) {
+                IAbstractFolder wrapper = folder.getFolder();
+                if (wrapper instanceof IFolderWrapper) {
+                    searchFolders.add(((IFolderWrapper) wrapper).getIFolder());
                 }
-                return null;
             }
         }
 
-        // Ugh. Search ALL layout files in the project!
-        List<ResourceFolder> folders = resources.getFolders(ResourceFolderType.LAYOUT);
-        if (folders != null) {
-            for (ResourceFolder folder : folders) {
-                IAbstractFolder wrapper = folder.getFolder();
-                if (wrapper instanceof IFolderWrapper) {
-                    IFolder iFolder = ((IFolderWrapper) wrapper).getIFolder();
-                    Pair<IFile, IRegion> target = findIdInFolder(iFolder, id);
-                    if (target != null) {
-                        return target;
-                    }
+        for (Pair<IFile, IRegion> definition : definitions) {
+            IFile file = definition.getFirst();
+            if (searchFolders.contains(file.getParent())) {
+                // Use the open model, if any, in case the file has been edited
+                Pair<IFile, IRegion> target = findIdInXml(id, file);
+                if (target != null) {
+                    return target;
                 }
             }
         }
 
+        for (IFolder folder : searchFolders) {
+            Pair<IFile, IRegion> target = findIdInFolder(folder, id,
+                    scanned /*openModelsOnly*/);
+            if (target != null) {
+                return target;
+            }
+        }
+
         return null;
     }
 
     /**
      * Finds a definition of an id attribute in a particular layout folder.
+     *
+     * @param f the folder to search
+     * @param id the id name
+     * @param openModelsOnly if true, only look at the files which have an open model,
+     *            since the index already covers the saved contents of the others
+     * @return the file and region of the definition, or null
      */
-    private static Pair<IFile, IRegion> findIdInFolder(IContainer f, String id) {
+    private static Pair<IFile, IRegion> findIdInFolder(IContainer f, String id,
+            boolean openModelsOnly) {
         try {
-            // Check XML files in values/
             for (IResource resource : f.members()) {
                 if (resource.exists() && !resource.isDerived() && resource instanceof IFile) {
                     IFile file = (IFile) resource;
                     // Must have an XML extension
                     if (EXT_XML.equals(file.getFileExtension())) {
-                        Pair<IFile, IRegion> target = findIdInXml(id, file);
+                        Pair<IFile, IRegion> target = openModelsOnly
+                                ? findIdInOpenModel(id, file) : findIdInXml(id, file);
                         if (target != null) {
                             return target;
                         }
@@ -884,8 +891,20 @@ public class Hyperlinks {
         try {
             model = StructuredModelManager.getModelManager().getExistingModelForRead(file);
             if (model == null) {
-                // There is no open or cached model for the file; see if the file looks
-                // like it's interesting (content contains the String name we are looking for)
+                // There is no open or cached model for the file; look up the declaration
+                // in the definition index if the file is covered by it. Until the index
+                // has been built, files are parsed on demand, so skip the ones which
+                // cannot contain the name
+                ResourceDefinitionIndex index = ResourceDefinitionIndex.get(file.getProject());
+                if (index.isIndexed(file)) {
+                    if (!index.isScanned() && !AdtPlugin.fileContains(file, name)) {
+                        return null;
+                    }
+                    return index.findValueDefinition(type, name, file);
+                }
+
+                // Otherwise see if the file looks like it's interesting (content
+                // contains the String name we are looking for)
                 if (AdtPlugin.fileContains(file, name)) {
                     // Yes, so parse content
                     model = StructuredModelManager.getModelManager().getModelForRead(file);
@@ -973,8 +992,20 @@ public class Hyperlinks {
         try {
             model = StructuredModelManager.getModelManager().getExistingModelForRead(file);
             if (model == null) {
-                // There is no open or cached model for the file; see if the file looks
-                // like it's interesting (content contains the String name we are looking for)
+                // There is no open or cached model for the file; look up the definition
+                // in the definition index if the file is covered by it. Until the index
+                // has been built, files are parsed on demand, so skip the ones which
+                // cannot contain the name
+                ResourceDefinitionIndex index = ResourceDefinitionIndex.get(file.getProject());
+                if (index.isIndexed(file)) {
+                    if (!index.isScanned() && !AdtPlugin.fileContains(file, id)) {
+                        return null;
+                    }
+                    return index.findIdDefinition(id, file);
+                }
+
+                // Otherwise see if the file looks like it's interesting (content
+                // contains the String name we are looking for)
                 if (AdtPlugin.fileContains(file, id)) {
                     // Yes, so parse content
                     model = StructuredModelManager.getModelManager().getModelForRead(file);
@@ -998,6 +1029,25 @@ public class Hyperlinks {
         return null;
     }
 
+    /** Locates a definition of the given id in the open model of the file, if any */
+    private static Pair<IFile, IRegion> findIdInOpenModel(String id, IFile file) {
+        IStructuredModel model =
+                StructuredModelManager.getModelManager().getExistingModelForRead(file);
+        if (model == null) {
+            return null;
+        }
+        try {
+            if (model instanceof IDOMModel) {
+                Document document = ((IDOMModel) model).getDocument();
+                return findIdInDocument(id, file, document);
+            }
+        } finally {
+            model.releaseFromRead();
+        }
+
+        return null;
+    }
+
     /** Looks within an XML DOM document for the given resource name and returns it */
     private static Pair<IFile, IRegion> findIdInDocument(String id, IFile file,
             Document document) {
@@ -1054,64 +1104,11 @@ public class Hyperlinks {
         return null;
     }
 
-    /** Parses the given file and locates a definition of the given resource */
+    /** Locates a definition of the given resource in the given framework file */
     private static Pair<File, Integer> findValueInXml(ResourceType type, String name, File file) {
-        // We can't use the StructureModelManager on files outside projects
-        // There is no open or cached model for the file; see if the file looks
-        // like it's interesting (content contains the String name we are looking for)
-        if (AdtPlugin.fileContains(file, name)) {
-            try {
-                InputSource is = new InputSource(new FileInputStream(file));
-                OffsetTrackingParser parser = new OffsetTrackingParser();
-                parser.parse(is);
-                Document document = parser.getDocument();
-
-                return findValueInDocument(type, name, file, parser, document);
-            } catch (SAXException e) {
-                // pass -- ignore files we can't parse
-            } catch (IOException e) {
-                // pass -- ignore files we can't parse
-            }
-        }
-
-        return null;
-    }
-
-    /** Looks within an XML DOM document for the given resource name and returns it */
-    private static Pair<File, Integer> findValueInDocument(ResourceType type, String name,
-            File file, OffsetTrackingParser parser, Document document) {
-        String targetTag = type.getName();
-        if (type == ResourceType.ID) {
-            // Ids are recorded in <item> tags instead of <id> tags
-            targetTag = "item"; //$NON-NLS-1$
-        }
-
-        Pair<File, Integer> result = findTag(name, file, parser, document, targetTag);
-        if (result == null && type == ResourceType.ATTR) {
-            // Attributes seem to be defined in <public> tags
-            targetTag = "public"; //$NON-NLS-1$
-            result = findTag(name, file, parser, document, targetTag);
-        }
-        return result;
-    }
-
-    private static Pair<File, Integer> findTag(String name, File file, OffsetTrackingParser parser,
-            Document document, String targetTag) {
-        NodeList children = document.getElementsByTagName(targetTag);
-        for (int i = 0, n = children.getLength(); i < n; i++) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.ELEMENT_NODE) {
-                Element element = (Element) child;
-                if (element.getTagName().equals(targetTag)) {
-                    String elementName = element.getAttribute(ATTR_NAME);
-                    if (elementName.equals(name)) {
-                        return Pair.of(file, parser.getOffset(element));
-                    }
-                }
-            }
-        }
-
-        return null;
+        // We can't use the StructureModelManager on files outside projects; the
+        // framework files are parsed once and their definitions cached instead
+        return ResourceDefinitionIndex.findFrameworkValueDefinition(type, name, file);
     }
 
     private static IHyperlink[] getStyleLinks(XmlContext context, IRegion range, String url) {
@@ -1818,55 +1815,4 @@ public class Hyperlinks {
             return null;
         }
     }
-
-    /**
-     * DOM parser which records offsets in the element nodes such that it can return
-     * offsets for elements later
-     */
-    private static final class OffsetTrackingParser extends DOMParser {
-
-        private static final String KEY_OFFSET = "offset"; //$NON-NLS-1$
-
-        private static final String KEY_NODE =
-            "http://apache.org/xml/properties/dom/current-element-node"; //$NON-NLS-1$
-
-        private XMLLocator mLocator;
-
-        public OffsetTrackingParser() throws SAXException {
-            this.setFeature("http://apache.org/xml/features/dom/defer-node-expansion",//$NON-NLS-1$
-                    false);
-        }
-
-        public int getOffset(Node node) {
-            Integer offset = (Integer) node.getUserData(KEY_OFFSET);
-            if (offset != null) {
-                return offset;
-            }
-
-            return -1;
-        }
-
-        @Override
-        public void startElement(QName elementQName, XMLAttributes attrList, Augmentations augs)
-                throws XNIException {
-            int offset = mLocator.getCharacterOffset();
-            super.startElement(elementQName, attrList, augs);
-
-            try {
-                Node node = (Node) this.getProperty(KEY_NODE);
-                if (node != null) {
-                    node.setUserData(KEY_OFFSET, offset, null);
-                }
-            } catch (org.xml.sax.SAXException ex) {
-                AdtPlugin.log(ex, ""); //$NON-NLS-1$
-            }
-        }
-
-        @Override
-        public void startDocument(XMLLocator locator, String encoding,
-                NamespaceContext namespaceContext, Augmentations augs) throws XNIException {
-            super.startDocument(locator, encoding, namespaceContext, augs);
-            mLocator = locator;
-        }
-    }
 }
@@ -119,9 +119,9 @@ public class AnimationEditorDelegate extends CommonXmlDelegate {
         }
 
         if (getUiRootNode().getDescriptor() instanceof DocumentDescriptor) {
-            getUiRootNode().loadFromXmlNode(xmlDoc);
+            getUiRootNode().updateFromXmlNode(xmlDoc);
         } else {
-            getUiRootNode().loadFromXmlNode(rootElement);
+            getUiRootNode().updateFromXmlNode(rootElement);
         }
     }
 
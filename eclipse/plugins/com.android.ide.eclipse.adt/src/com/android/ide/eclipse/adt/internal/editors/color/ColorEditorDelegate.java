@@ -82,7 +82,7 @@ public class ColorEditorDelegate extends CommonXmlDelegate {
         delegateInitUiRootNode(false /*force*/);
 
         Element rootElement = xmlDoc.getDocumentElement();
-        getUiRootNode().loadFromXmlNode(rootElement);
+        getUiRootNode().updateFromXmlNode(rootElement);
     }
 
     @Override
@@ -104,6 +104,9 @@ public abstract class CommonXmlDelegate {
     }
 
     protected void setUiRootNode(UiElementNode uiRootNode) {
+        if (mUiRootNode != null && mUiRootNode != uiRootNode) {
+            mUiRootNode.stopTrackingXmlChanges();
+        }
         mUiRootNode = uiRootNode;
     }
 
@@ -111,9 +111,9 @@ public class DrawableEditorDelegate extends CommonXmlDelegate {
         }
 
         if (getUiRootNode().getDescriptor() instanceof DocumentDescriptor) {
-            getUiRootNode().loadFromXmlNode(xmlDoc);
+            getUiRootNode().updateFromXmlNode(xmlDoc);
         } else {
-            getUiRootNode().loadFromXmlNode(rootElement);
+            getUiRootNode().updateFromXmlNode(rootElement);
         }
     }
 
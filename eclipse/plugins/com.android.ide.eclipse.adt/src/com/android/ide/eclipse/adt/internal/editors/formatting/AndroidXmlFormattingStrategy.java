@@ -28,6 +28,7 @@ import static org.eclipse.wst.xml.core.internal.regions.DOMRegionContext.XML_TAG
 import static org.eclipse.wst.xml.core.internal.regions.DOMRegionContext.XML_TAG_OPEN;
 
 import com.android.SdkConstants;
+import com.android.annotations.NonNull;
 import com.android.annotations.VisibleForTesting;
 import com.android.ide.common.xml.XmlFormatPreferences;
 import com.android.ide.common.xml.XmlFormatStyle;
@@ -72,8 +73,12 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 
@@ -139,7 +144,7 @@ public class AndroidXmlFormattingStrategy extends ContextBasedFormattingStrategy
                     if (model != null) {
                         try {
                             TextEdit edit = format(model, mRegion.getOffset(),
-                                    mRegion.getLength());
+                                    mRegion.getLength(), true /*updateHighlight*/);
                             if (edit != null) {
                                 try {
                                     model.aboutToChangeModel();
@@ -170,9 +175,13 @@ public class AndroidXmlFormattingStrategy extends ContextBasedFormattingStrategy
      * @param model the model to be formatted
      * @param start the starting offset
      * @param length the length of the text range to be formatted
+     * @param updateHighlight whether the highlight range of the active editor should be
+     *            moved to the formatted text
      * @return a {@link TextEdit} which edits the model into a formatted document
      */
-    private static TextEdit format(IStructuredModel model, int start, int length) {
+    @VisibleForTesting
+    static TextEdit format(IStructuredModel model, int start, int length,
+            boolean updateHighlight) {
         int end = start + length;
 
         TextEdit edit = new MultiTextEdit();
@@ -363,7 +372,8 @@ public class AndroidXmlFormattingStrategy extends ContextBasedFormattingStrategy
         // Attempt to fix the selection range since otherwise, with the document shifting
         // under it, you end up selecting a "random" portion of text now shifted into the
         // old positions of the formatted text:
-        if (replaceEdit != null && replaceStart != 0 && replaceEnd != document.getLength()) {
+        if (updateHighlight && replaceEdit != null && replaceStart != 0
+                && replaceEnd != document.getLength()) {
             ITextEditor editor = AdtUtils.getActiveTextEditor();
             if (editor != null) {
                 editor.setHighlightRange(replaceEdit.getOffset(), replaceEdit.getText().length(),
@@ -374,6 +384,147 @@ public class AndroidXmlFormattingStrategy extends ContextBasedFormattingStrategy
         return edit;
     }
 
+    /**
+     * Formats the given regions of the document, such as the regions edited since the
+     * document was last formatted (see {@link EditedRegionTracker}). Rather than
+     * formatting the whole document, this formats only the elements enclosing each
+     * region, indented to match their ancestors, so the resulting edits (and the undo
+     * record) stay proportional to the size of the edits rather than to the size of
+     * the document.
+     *
+     * @param model the model to format
+     * @param regions the regions to format
+     */
+    public static void formatRegions(@NonNull IStructuredModel model,
+            @NonNull List<IRegion> regions) {
+        if (regions.isEmpty()) {
+            return;
+        }
+
+        IStructuredDocument document = model.getStructuredDocument();
+        try {
+            List<int[]> ranges = new ArrayList<int[]>(regions.size());
+            for (IRegion region : regions) {
+                int[] range = getFormatRange(model, region.getOffset(),
+                        region.getOffset() + region.getLength());
+                if (range == null) {
+                    // The edits touch the root element or the document prolog
+                    ranges.clear();
+                    ranges.add(new int[] { 0, document.getLength() });
+                    break;
+                }
+                ranges.add(range);
+            }
+
+            // Merge overlapping ranges (the ranges either nest, or are overlapping
+            // runs of siblings)
+            Collections.sort(ranges, new Comparator<int[]>() {
+                @Override
+                public int compare(int[] range1, int[] range2) {
+                    return range1[0] - range2[0];
+                }
+            });
+            List<int[]> merged = new ArrayList<int[]>(ranges.size());
+            for (int[] range : ranges) {
+                int[] previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (previous != null && range[0] <= previous[1]) {
+                    previous[1] = Math.max(previous[1], range[1]);
+                } else {
+                    merged.add(range);
+                }
+            }
+
+            // Format the ranges from the end of the document, such that the edits never
+            // shift the offsets of the ranges which remain to be formatted
+            model.beginRecording(document, "Format");
+            try {
+                model.aboutToChangeModel();
+                try {
+                    for (int i = merged.size() - 1; i >= 0; i--) {
+                        int[] range = merged.get(i);
+                        TextEdit edit = format(model, range[0], range[1] - range[0],
+                                false /*updateHighlight*/);
+                        edit.apply(document);
+                    }
+                } finally {
+                    model.changedModel();
+                }
+            } finally {
+                model.endRecording(document);
+            }
+        } catch (BadLocationException e) {
+            AdtPlugin.log(e, "Formatting error");
+        }
+    }
+
+    /**
+     * Computes the range to format for an edit between the given offsets: the
+     * innermost element containing the edit if the edit touches its tags, or otherwise
+     * the run of its children which the edit overlaps or lies between.
+     *
+     * @return the offsets of the first and the last character of the range to format
+     *         (pointing at the last character ensures that the range ends in the last
+     *         formatted node rather than in whatever follows it), or null if the whole
+     *         document should be formatted
+     */
+    private static int[] getFormatRange(IStructuredModel model, int start, int end) {
+        IndexedRegion indexedRegion = model.getIndexedRegion(start);
+        Node node = indexedRegion instanceof Node ? (Node) indexedRegion : null;
+        while (node != null && !(node instanceof IDOMNode
+                && node.getNodeType() == Node.ELEMENT_NODE
+                && ((IDOMNode) node).getStartOffset() <= start
+                && ((IDOMNode) node).getEndOffset() >= end)) {
+            node = node.getParentNode();
+        }
+        if (node == null) {
+            return null;
+        }
+        IDOMNode element = (IDOMNode) node;
+
+        IStructuredDocumentRegion startTag = element.getStartStructuredDocumentRegion();
+        IStructuredDocumentRegion endTag = element.getEndStructuredDocumentRegion();
+        boolean inTags = startTag == null || endTag == null
+                || start < startTag.getEndOffset() || end > endTag.getStartOffset();
+        if (!inTags) {
+            List<IDOMNode> children = new ArrayList<IDOMNode>();
+            for (Node child = element.getFirstChild(); child != null;
+                    child = child.getNextSibling()) {
+                short type = child.getNodeType();
+                if ((type == Node.ELEMENT_NODE || type == Node.COMMENT_NODE)
+                        && child instanceof IDOMNode) {
+                    children.add((IDOMNode) child);
+                }
+            }
+            if (!children.isEmpty()) {
+                // The last child starting before the edit, through the first child
+                // ending after it
+                int from = 0;
+                int to = children.size() - 1;
+                for (int i = 0; i < children.size(); i++) {
+                    if (children.get(i).getStartOffset() <= start) {
+                        from = i;
+                    }
+                }
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    if (children.get(i).getEndOffset() >= end) {
+                        to = i;
+                    }
+                }
+                if (from <= to) {
+                    return new int[] {
+                            children.get(from).getStartOffset(),
+                            children.get(to).getEndOffset() - 1
+                    };
+                }
+            }
+        }
+
+        if (element == element.getOwnerDocument().getDocumentElement()) {
+            return null;
+        }
+        return new int[] { element.getStartOffset(), element.getEndOffset() - 1 };
+    }
+
     /**
      * Create a {@link ReplaceEdit} which replaces the text in the given document with the
      * given new formatted content. The replaceStart and replaceEnd parameters point to
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.formatting;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.ide.eclipse.adt.AdtPlugin;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.DefaultPositionUpdater;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IPositionUpdater;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.Region;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of the regions of a document which have been edited since it was last
+ * formatted, such that format-on-save only needs to reformat the elements enclosing
+ * those regions (see {@link AndroidXmlFormattingStrategy#formatRegions}).
+ * <p/>
+ * The regions are stored as document positions, so the document keeps them up to date
+ * as later edits shift the text around them.
+ */
+public class EditedRegionTracker implements IDocumentListener {
+    private static final String CATEGORY_PREFIX =
+            "com.android.ide.eclipse.adt.editedRegions."; //$NON-NLS-1$
+
+    /** Used to give each tracker its own position category */
+    private static final AtomicInteger sNextId = new AtomicInteger();
+
+    /**
+     * Maximum number of separate edited regions tracked. Beyond this, so much of the
+     * document has changed that it is simpler to format all of it.
+     */
+    private static final int MAX_REGIONS = 200;
+
+    private final IDocument mDocument;
+    /**
+     * The position category of this tracker. Several editors may share a document, so
+     * each tracker needs its own category to not remove or reset the positions of the
+     * others.
+     */
+    private final String mCategory = CATEGORY_PREFIX + sNextId.incrementAndGet();
+    private final IPositionUpdater mUpdater = new DefaultPositionUpdater(mCategory);
+    private int mCount;
+    private boolean mOverflow;
+
+    /**
+     * Creates a new tracker and starts tracking the edits of the given document
+     *
+     * @param document the document to track
+     */
+    public EditedRegionTracker(@NonNull IDocument document) {
+        mDocument = document;
+        mDocument.addPositionCategory(mCategory);
+        mDocument.addPositionUpdater(mUpdater);
+        mDocument.addDocumentListener(this);
+    }
+
+    /** Stops tracking the edits of the document */
+    public void dispose() {
+        mDocument.removeDocumentListener(this);
+        mDocument.removePositionUpdater(mUpdater);
+        try {
+            mDocument.removePositionCategory(mCategory);
+        } catch (BadPositionCategoryException e) {
+            AdtPlugin.log(e, null);
+        }
+    }
+
+    /**
+     * Returns the tracked document
+     *
+     * @return the document
+     */
+    @NonNull
+    public IDocument getDocument() {
+        return mDocument;
+    }
+
+    /** Forgets about the edits made so far, typically after the document is formatted */
+    public void reset() {
+        try {
+            for (Position position : mDocument.getPositions(mCategory)) {
+                mDocument.removePosition(mCategory, position);
+            }
+        } catch (BadPositionCategoryException e) {
+            AdtPlugin.log(e, null);
+        }
+        mCount = 0;
+        mOverflow = false;
+    }
+
+    /**
+     * Returns the regions edited since the last {@link #reset}, sorted by offset and
+     * with overlapping or adjacent regions merged.
+     *
+     * @return the edited regions, or null if too much of the document was edited to
+     *         keep track of the individual regions
+     */
+    @Nullable
+    public List<IRegion> getRegions() {
+        if (mOverflow) {
+            return null;
+        }
+
+        Position[] positions;
+        try {
+            positions = mDocument.getPositions(mCategory);
+        } catch (BadPositionCategoryException e) {
+            AdtPlugin.log(e, null);
+            return null;
+        }
+        Arrays.sort(positions, new Comparator<Position>() {
+            @Override
+            public int compare(Position position1, Position position2) {
+                return position1.getOffset() - position2.getOffset();
+            }
+        });
+
+        List<IRegion> regions = new ArrayList<IRegion>(positions.length);
+        int start = -1;
+        int end = -1;
+        for (Position position : positions) {
+            if (position.isDeleted()) {
+                continue;
+            }
+            if (start != -1 && position.getOffset() <= end) {
+                end = Math.max(end, position.getOffset() + position.getLength());
+            } else {
+                if (start != -1) {
+                    regions.add(new Region(start, end - start));
+                }
+                start = position.getOffset();
+                end = start + position.getLength();
+            }
+        }
+        if (start != -1) {
+            regions.add(new Region(start, end - start));
+        }
+
+        return Collections.unmodifiableList(regions);
+    }
+
+    // ---- Implements IDocumentListener ----
+
+    @Override
+    public void documentAboutToBeChanged(DocumentEvent event) {
+    }
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        if (mOverflow) {
+            return;
+        }
+
+        if (mCount >= MAX_REGIONS) {
+            // Merge the positions before giving up, since a lot of typing in the same
+            // place produces many overlapping positions
+            List<IRegion> regions = getRegions();
+            reset();
+            if (regions == null || regions.size() > MAX_REGIONS / 2) {
+                mOverflow = true;
+                return;
+            }
+            for (IRegion region : regions) {
+                addPosition(region.getOffset(), region.getLength());
+            }
+        }
+
+        // The document has already updated the existing positions for this edit
+        String text = event.getText();
+        addPosition(event.getOffset(), text != null ? text.length() : 0);
+    }
+
+    private void addPosition(int offset, int length) {
+        try {
+            mDocument.addPosition(mCategory, new Position(offset, length));
+            mCount++;
+        } catch (BadLocationException e) {
+            AdtPlugin.log(e, null);
+        } catch (BadPositionCategoryException e) {
+            AdtPlugin.log(e, null);
+        }
+    }
+}
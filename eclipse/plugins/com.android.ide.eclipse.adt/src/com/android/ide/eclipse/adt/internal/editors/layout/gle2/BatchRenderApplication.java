@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.annotations.VisibleForTesting;
+import com.android.ide.common.resources.configuration.LanguageQualifier;
+import com.android.ide.common.resources.configuration.RegionQualifier;
+import com.android.ide.common.sdk.LoadStatus;
+import com.android.ide.eclipse.adt.internal.editors.layout.configuration.Locale;
+import com.android.ide.eclipse.adt.internal.sdk.Sdk;
+import com.android.sdklib.IAndroidTarget;
+import com.android.sdklib.devices.Device;
+import com.android.sdklib.devices.DeviceManager;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Headless application which renders the layouts of a workspace project with the
+ * {@link BatchRenderService}. Run it with for example
+ * <pre>
+ * eclipse -nosplash -data &lt;workspace&gt; -application com.android.ide.eclipse.adt.batchrender
+ *     -project MyApp -out /tmp/shots -device "Nexus 7" -device "Nexus 4"
+ *     -locale en -locale fr-rCA -theme @style/AppTheme -threads 4
+ * </pre>
+ * Every combination of the given devices, locales and themes is rendered. The
+ * {@code -state} flag selects a device state (such as {@code landscape}) other than
+ * the default one, and {@code -layout} restricts rendering to the given layouts.
+ */
+public class BatchRenderApplication implements IApplication {
+    /** How long to wait for the SDK and the target data to load, in milliseconds */
+    private static final long LOAD_TIMEOUT_MS = 5 * 60 * 1000;
+
+    // The options, package private for tests
+    String mProjectName;
+    File mOutputFolder;
+    final List<String> mDevices = new ArrayList<String>();
+    final List<String> mLocales = new ArrayList<String>();
+    final List<String> mThemes = new ArrayList<String>();
+    final List<String> mLayouts = new ArrayList<String>();
+    String mState;
+    int mThreads = Runtime.getRuntime().availableProcessors();
+
+    @Override
+    public Object start(IApplicationContext context) throws Exception {
+        PrintStream out = System.out;
+        String[] args = (String[]) context.getArguments().get(
+                IApplicationContext.APPLICATION_ARGS);
+        if (!parseArguments(args)) {
+            printUsage(out);
+            return Integer.valueOf(1);
+        }
+
+        IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(mProjectName);
+        if (!project.isOpen()) {
+            out.println("Project not found or not open: " + mProjectName);
+            return Integer.valueOf(1);
+        }
+
+        IAndroidTarget target = waitForTarget(project);
+        if (target == null) {
+            out.println("Could not load the SDK target for " + mProjectName);
+            return Integer.valueOf(1);
+        }
+
+        BatchRenderService service = BatchRenderService.create(project, target);
+        service.setOutputFolder(mOutputFolder);
+        service.setThreadCount(mThreads);
+        if (!mLayouts.isEmpty()) {
+            service.setLayouts(mLayouts);
+        }
+        if (mLocales.isEmpty()) {
+            mLocales.add(null);
+        }
+        if (mThemes.isEmpty()) {
+            mThemes.add("@android:style/Theme.Holo"); //$NON-NLS-1$
+        }
+
+        List<Device> devices = Sdk.getCurrent().getDeviceManager().getDevices(
+                DeviceManager.ALL_DEVICES);
+        for (String deviceName : mDevices) {
+            Device device = findDevice(devices, deviceName);
+            if (device == null) {
+                out.println("Unknown device: " + deviceName);
+                return Integer.valueOf(1);
+            }
+            for (String locale : mLocales) {
+                for (String theme : mThemes) {
+                    service.addConfiguration(device, mState, parseLocale(locale), theme);
+                }
+            }
+        }
+
+        BatchRenderService.BatchResult result = service.render(null);
+        for (String error : result.getErrors()) {
+            out.println(error);
+        }
+        out.println(String.format("Rendered %1$d images in %2$d ms, %3$d errors",
+                result.getRenderedCount(), result.getElapsedMs(), result.getErrors().size()));
+
+        return result.getErrors().isEmpty() ? IApplication.EXIT_OK : Integer.valueOf(1);
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    /**
+     * Parses the command line arguments into the options
+     *
+     * @param args the arguments
+     * @return true if the arguments are valid and include all the required options
+     */
+    @VisibleForTesting
+    boolean parseArguments(@Nullable String[] args) {
+        if (args == null) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i == args.length - 1) {
+                return false;
+            }
+            String value = args[++i];
+            if ("-project".equals(arg)) {                 //$NON-NLS-1$
+                mProjectName = value;
+            } else if ("-out".equals(arg)) {              //$NON-NLS-1$
+                mOutputFolder = new File(value);
+            } else if ("-device".equals(arg)) {           //$NON-NLS-1$
+                mDevices.add(value);
+            } else if ("-state".equals(arg)) {            //$NON-NLS-1$
+                mState = value;
+            } else if ("-locale".equals(arg)) {           //$NON-NLS-1$
+                mLocales.add(value);
+            } else if ("-theme".equals(arg)) {            //$NON-NLS-1$
+                mThemes.add(value);
+            } else if ("-layout".equals(arg)) {           //$NON-NLS-1$
+                mLayouts.addAll(Arrays.asList(value.split(","))); //$NON-NLS-1$
+            } else if ("-threads".equals(arg)) {          //$NON-NLS-1$
+                try {
+                    mThreads = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+
+        return mProjectName != null && mOutputFolder != null && !mDevices.isEmpty()
+                && mThreads > 0;
+    }
+
+    private static void printUsage(@NonNull PrintStream out) {
+        out.println("Usage: -project <name> -out <folder> -device <name> [-device <name>...]");
+        out.println("       [-state <name>] [-locale <lang[-rREGION]>...] [-theme <style>...]");
+        out.println("       [-layout <name,name,...>] [-threads <count>]");
+    }
+
+    /** Waits for the SDK and the project's target data to be loaded */
+    @Nullable
+    private static IAndroidTarget waitForTarget(@NonNull IProject project)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + LOAD_TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            Sdk sdk = Sdk.getCurrent();
+            if (sdk != null) {
+                IAndroidTarget target = sdk.getTarget(project);
+                if (target != null) {
+                    LoadStatus status = sdk.checkAndLoadTargetData(target, null);
+                    if (status == LoadStatus.LOADED) {
+                        return target;
+                    } else if (status == LoadStatus.FAILED) {
+                        return null;
+                    }
+                }
+            }
+            Thread.sleep(250);
+        }
+
+        return null;
+    }
+
+    @Nullable
+    private static Device findDevice(@NonNull List<Device> devices, @NonNull String name) {
+        for (Device device : devices) {
+            if (device.getName().equals(name)) {
+                return device;
+            }
+        }
+
+        return null;
+    }
+
+    /** Parses a locale given as a folder segment, such as "fr" or "fr-rCA" */
+    @VisibleForTesting
+    @Nullable
+    static Locale parseLocale(@Nullable String locale) {
+        if (locale == null) {
+            return null;
+        }
+        int index = locale.indexOf("-r"); //$NON-NLS-1$
+        if (index == -1) {
+            return Locale.create(new LanguageQualifier(locale));
+        }
+
+        return Locale.create(new LanguageQualifier(locale.substring(0, index)),
+                new RegionQualifier(locale.substring(index + 2)));
+    }
+}
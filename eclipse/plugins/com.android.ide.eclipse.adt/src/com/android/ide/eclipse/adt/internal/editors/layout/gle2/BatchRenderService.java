@@ -0,0 +1,596 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
+
+import static com.android.SdkConstants.DOT_PNG;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.ide.common.rendering.LayoutLibrary;
+import com.android.ide.common.rendering.api.LayoutLog;
+import com.android.ide.common.rendering.api.RenderSession;
+import com.android.ide.common.rendering.api.ResourceValue;
+import com.android.ide.common.rendering.api.Result;
+import com.android.ide.common.resources.ResourceItem;
+import com.android.ide.common.resources.ResourceRepository;
+import com.android.ide.common.resources.ResourceResolver;
+import com.android.ide.common.resources.configuration.DeviceConfigHelper;
+import com.android.ide.common.resources.configuration.FolderConfiguration;
+import com.android.ide.common.resources.configuration.VersionQualifier;
+import com.android.ide.common.sdk.LoadStatus;
+import com.android.ide.eclipse.adt.AdtPlugin;
+import com.android.ide.eclipse.adt.internal.editors.layout.ProjectCallback;
+import com.android.ide.eclipse.adt.internal.editors.layout.configuration.Locale;
+import com.android.ide.eclipse.adt.internal.editors.manifest.ManifestInfo;
+import com.android.ide.eclipse.adt.internal.resources.ResourceHelper;
+import com.android.ide.eclipse.adt.internal.resources.manager.ProjectResources;
+import com.android.ide.eclipse.adt.internal.resources.manager.ResourceManager;
+import com.android.ide.eclipse.adt.internal.sdk.AndroidTargetData;
+import com.android.ide.eclipse.adt.internal.sdk.Sdk;
+import com.android.resources.ResourceType;
+import com.android.sdklib.IAndroidTarget;
+import com.android.sdklib.devices.Device;
+import com.android.sdklib.devices.State;
+import com.android.utils.Pair;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+/**
+ * The {@link BatchRenderService} renders all the layouts of a project across a set
+ * of configurations (device, locale and theme combinations) without an editor, and
+ * writes each rendering as a PNG file. This is intended for screenshot regression
+ * testing; see {@link BatchRenderApplication} for a command line front end.
+ * <p>
+ * Rendering is spread across a pool of worker threads. Each worker loads its own
+ * instance of the layout library (and has its own {@link ProjectCallback}), since
+ * layoutlib keeps static state and can't render more than one layout at a time.
+ * Workers pick up render tasks grouped by configuration, so the configured resources
+ * are computed once per configuration, and the {@link ResourceResolver} is reused for
+ * consecutive renders sharing a configuration and theme.
+ */
+public class BatchRenderService {
+    /** How often the progress monitor is updated while rendering, in milliseconds */
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    private final IProject mProject;
+    private final IAndroidTarget mTarget;
+    private final List<RenderConfiguration> mConfigurations =
+            new ArrayList<RenderConfiguration>();
+    private List<String> mLayouts;
+    private File mOutputFolder;
+    private int mThreadCount = Runtime.getRuntime().availableProcessors();
+    private LayoutLog mLogger;
+    /** Set when the rendering is canceled, such that the workers stop */
+    private volatile boolean mCanceled;
+
+    /**
+     * Configured project and framework resources, keyed by the folder configuration
+     * string. The maps are read only once computed, and shared by all workers.
+     */
+    private final Map<String, Pair<Map<ResourceType, Map<String, ResourceValue>>,
+            Map<ResourceType, Map<String, ResourceValue>>>> mConfiguredResources =
+            new ConcurrentHashMap<String, Pair<Map<ResourceType, Map<String, ResourceValue>>,
+                    Map<ResourceType, Map<String, ResourceValue>>>>();
+
+    /** Use the {@link #create} factory instead */
+    private BatchRenderService(@NonNull IProject project, @NonNull IAndroidTarget target) {
+        mProject = project;
+        mTarget = target;
+    }
+
+    /**
+     * Creates a new {@link BatchRenderService} for the given project
+     *
+     * @param project the project whose layouts should be rendered
+     * @param target the rendering target
+     * @return a new {@link BatchRenderService}
+     */
+    @NonNull
+    public static BatchRenderService create(
+            @NonNull IProject project,
+            @NonNull IAndroidTarget target) {
+        return new BatchRenderService(project, target);
+    }
+
+    /**
+     * Adds a configuration to render each layout in
+     *
+     * @param device the device to render for
+     * @param stateName the name of the device state (such as the orientation) to
+     *            render for, or null for the default state
+     * @param locale the locale to render for, or null for the default locale
+     * @param theme the theme to render with, such as {@code @style/AppTheme} or
+     *            {@code @android:style/Theme.Holo}
+     * @return this (such that chains of setters can be stringed together)
+     */
+    public BatchRenderService addConfiguration(
+            @NonNull Device device,
+            @Nullable String stateName,
+            @Nullable Locale locale,
+            @NonNull String theme) {
+        State state = null;
+        if (stateName != null) {
+            state = device.getState(stateName);
+        }
+        if (state == null) {
+            state = device.getDefaultState();
+        }
+        mConfigurations.add(new RenderConfiguration(device, state,
+                locale != null ? locale : Locale.ANY, theme));
+        return this;
+    }
+
+    /**
+     * Sets the names of the layouts to render (without the {@code @layout/} prefix). The
+     * default is to render all the layouts of the project.
+     *
+     * @param layouts the layout names
+     * @return this (such that chains of setters can be stringed together)
+     */
+    public BatchRenderService setLayouts(@Nullable List<String> layouts) {
+        mLayouts = layouts;
+        return this;
+    }
+
+    /**
+     * Sets the folder to write images into. Each configuration gets a sub folder of its
+     * own, named by {@link RenderConfiguration#getName()}.
+     *
+     * @param outputFolder the output folder
+     * @return this (such that chains of setters can be stringed together)
+     */
+    public BatchRenderService setOutputFolder(@NonNull File outputFolder) {
+        mOutputFolder = outputFolder;
+        return this;
+    }
+
+    /**
+     * Sets the number of layouts to render concurrently. Each of these loads its own
+     * copy of the layout library. The default is the number of available processors.
+     *
+     * @param threadCount the number of render threads
+     * @return this (such that chains of setters can be stringed together)
+     */
+    public BatchRenderService setThreadCount(int threadCount) {
+        mThreadCount = Math.max(1, threadCount);
+        return this;
+    }
+
+    /**
+     * Sets the {@link LayoutLog} to report rendering errors to. If none is specified,
+     * a silent logger will be used. The log is shared by all render threads, so it
+     * must be thread safe.
+     *
+     * @param logger the log to be used
+     * @return this (such that chains of setters can be stringed together)
+     */
+    public BatchRenderService setLog(@Nullable LayoutLog logger) {
+        mLogger = logger;
+        return this;
+    }
+
+    /**
+     * Renders all the layouts in all the configurations, and writes the images to the
+     * output folder. Blocks until done.
+     *
+     * @param monitor a progress monitor, or null
+     * @return a summary of the rendering
+     */
+    @NonNull
+    public BatchResult render(@Nullable IProgressMonitor monitor) {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        if (mLogger == null) {
+            // Silent logging
+            mLogger = new LayoutLog();
+        }
+
+        BatchResult result = new BatchResult();
+        if (mOutputFolder == null) {
+            result.mErrors.add("No output folder");
+            return result;
+        }
+        if (!mOutputFolder.isDirectory() && !mOutputFolder.mkdirs()) {
+            result.mErrors.add("Can't create output folder " + mOutputFolder.getPath());
+            return result;
+        }
+
+        Sdk sdk = Sdk.getCurrent();
+        AndroidTargetData data = sdk != null ? sdk.getTargetData(mTarget) : null;
+        ProjectResources projectResources =
+                ResourceManager.getInstance().getProjectResources(mProject);
+        if (data == null || projectResources == null) {
+            result.mErrors.add("SDK, target data or project resources not loaded");
+            return result;
+        }
+
+        List<String> layouts = mLayouts;
+        if (layouts == null) {
+            layouts = new ArrayList<String>(
+                    projectResources.getResourceItemsOfType(ResourceType.LAYOUT).size());
+            for (ResourceItem item :
+                    projectResources.getResourceItemsOfType(ResourceType.LAYOUT)) {
+                layouts.add(item.getName());
+            }
+            Collections.sort(layouts);
+        }
+
+        // Queue the tasks configuration by configuration, such that workers tend to
+        // render consecutive layouts in the same configuration and can reuse their
+        // resource resolvers
+        BlockingQueue<RenderTask> queue = new LinkedBlockingQueue<RenderTask>();
+        for (RenderConfiguration configuration : mConfigurations) {
+            for (String layout : layouts) {
+                queue.add(new RenderTask(configuration, layout));
+            }
+        }
+        int taskCount = queue.size();
+        int threadCount = Math.min(mThreadCount, Math.max(1, taskCount));
+        monitor.beginTask("Rendering layouts", taskCount);
+
+        long start = System.currentTimeMillis();
+        mCanceled = false;
+        AtomicInteger completed = new AtomicInteger();
+        Worker[] workers = new Worker[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new Worker(i, queue, data, projectResources, result, completed);
+            workers[i].start();
+        }
+
+        // Progress monitors are not thread safe, so the workers only count the completed
+        // renders and this thread reports them (and checks for cancellation)
+        int reported = 0;
+        boolean interrupted = false;
+        for (Worker worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join(PROGRESS_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    monitor.setCanceled(true);
+                }
+                if (monitor.isCanceled()) {
+                    mCanceled = true;
+                }
+                int count = completed.get();
+                monitor.worked(count - reported);
+                reported = count;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        result.mElapsedMs = System.currentTimeMillis() - start;
+        monitor.done();
+
+        return result;
+    }
+
+    /**
+     * Returns the configured project and framework resources for the given folder
+     * configuration, computing them if necessary
+     */
+    @NonNull
+    private Pair<Map<ResourceType, Map<String, ResourceValue>>,
+            Map<ResourceType, Map<String, ResourceValue>>> getConfiguredResources(
+            @NonNull FolderConfiguration config,
+            @NonNull ProjectResources projectResources,
+            @NonNull ResourceRepository frameworkResources) {
+        String key = config.toString();
+        Pair<Map<ResourceType, Map<String, ResourceValue>>,
+                Map<ResourceType, Map<String, ResourceValue>>> resources =
+                mConfiguredResources.get(key);
+        if (resources == null) {
+            // Two workers may race to compute the same configuration; that's harmless
+            // (and rare since tasks are grouped by configuration)
+            synchronized (projectResources) {
+                resources = Pair.of(projectResources.getConfiguredResources(config),
+                        frameworkResources.getConfiguredResources(config));
+            }
+            mConfiguredResources.put(key, resources);
+        }
+
+        return resources;
+    }
+
+    /** A render thread, with its own layout library instance */
+    private class Worker extends Thread {
+        private final BlockingQueue<RenderTask> mQueue;
+        private final AndroidTargetData mTargetData;
+        private final ProjectResources mProjectResources;
+        private final BatchResult mResult;
+        private final AtomicInteger mCompleted;
+
+        /** The configuration of {@link #mResolver} */
+        private RenderConfiguration mResolverConfiguration;
+        private ResourceResolver mResolver;
+
+        Worker(int index,
+                @NonNull BlockingQueue<RenderTask> queue,
+                @NonNull AndroidTargetData targetData,
+                @NonNull ProjectResources projectResources,
+                @NonNull BatchResult result,
+                @NonNull AtomicInteger completed) {
+            super("Batch Render " + index); //$NON-NLS-1$
+            setDaemon(true);
+            mQueue = queue;
+            mTargetData = targetData;
+            mProjectResources = projectResources;
+            mResult = result;
+            mCompleted = completed;
+        }
+
+        @Override
+        public void run() {
+            LayoutLibrary layoutLib = loadLayoutLibrary();
+            if (layoutLib == null) {
+                mResult.addError("Could not load the layout library");
+                return;
+            }
+
+            try {
+                ProjectCallback callback = new ProjectCallback(layoutLib, mProjectResources,
+                        mProject);
+                Pair<Integer, Integer> sdkVersions = ManifestInfo.computeSdkVersions(mProject);
+                RenderTask task;
+                while (!mCanceled && (task = mQueue.poll()) != null) {
+                    render(task, layoutLib, callback, sdkVersions);
+                    mCompleted.incrementAndGet();
+                }
+            } finally {
+                layoutLib.dispose();
+            }
+        }
+
+        /** Loads and initializes a private copy of the layout library */
+        @Nullable
+        private LayoutLibrary loadLayoutLibrary() {
+            LayoutLibrary layoutLib = LayoutLibrary.load(
+                    mTarget.getPath(IAndroidTarget.LAYOUT_LIB),
+                    AdtPlugin.getDefault(),
+                    "ADT batch renderer"); //$NON-NLS-1$
+            if (layoutLib.getStatus() != LoadStatus.LOADED) {
+                return null;
+            }
+            boolean ok = layoutLib.init(
+                    mTarget.getProperties(),
+                    new File(mTarget.getPath(IAndroidTarget.FONTS)),
+                    mTargetData.getEnumValueMap(),
+                    mLogger);
+            if (!ok) {
+                layoutLib.dispose();
+                return null;
+            }
+
+            return layoutLib;
+        }
+
+        private void render(
+                @NonNull RenderTask task,
+                @NonNull LayoutLibrary layoutLib,
+                @NonNull ProjectCallback callback,
+                @NonNull Pair<Integer, Integer> sdkVersions) {
+            RenderConfiguration configuration = task.mConfiguration;
+            FolderConfiguration folderConfig = configuration.getFolderConfiguration(mTarget);
+            Pair<Map<ResourceType, Map<String, ResourceValue>>,
+                    Map<ResourceType, Map<String, ResourceValue>>> resources =
+                    getConfiguredResources(folderConfig, mProjectResources,
+                            mTargetData.getFrameworkResources());
+
+            if (mResolver == null || !configuration.equals(mResolverConfiguration)) {
+                mResolver = ResourceResolver.create(resources.getFirst(),
+                        resources.getSecond(), configuration.getThemeName(),
+                        configuration.isProjectTheme());
+                mResolverConfiguration = configuration;
+            }
+
+            // Pick the best matching layout file for this configuration
+            Map<String, ResourceValue> layouts = resources.getFirst().get(ResourceType.LAYOUT);
+            ResourceValue layout = layouts != null ? layouts.get(task.mLayout) : null;
+            if (layout == null || layout.getValue() == null) {
+                mResult.addError(String.format("%1$s: no layout %2$s",
+                        configuration.getName(), task.mLayout));
+                return;
+            }
+
+            RenderService service = RenderService.create(mProject, layoutLib, callback,
+                    mResolver, configuration.mDevice, folderConfig,
+                    sdkVersions.getFirst(), sdkVersions.getSecond());
+            service.setLog(mLogger);
+            service.setLayoutFile(new File(layout.getValue()));
+
+            RenderSession session = null;
+            try {
+                session = service.createRenderSession();
+                Result result = session != null ? session.getResult() : null;
+                if (result == null || !result.isSuccess()) {
+                    mResult.addError(String.format("%1$s: %2$s failed to render: %3$s",
+                            configuration.getName(), task.mLayout,
+                            result != null ? result.getErrorMessage() : null));
+                    return;
+                }
+
+                BufferedImage image = session.getImage();
+                File folder = new File(mOutputFolder, configuration.getName());
+                if (!folder.isDirectory() && !folder.mkdirs()) {
+                    mResult.addError("Can't create " + folder.getPath());
+                    return;
+                }
+                ImageIO.write(image, "PNG", new File(folder, task.mLayout + DOT_PNG)); //$NON-NLS-1$
+                mResult.mRendered.incrementAndGet();
+            } catch (IOException e) {
+                mResult.addError(e.toString());
+            } catch (RuntimeException e) {
+                // Exceptions from the bridge
+                AdtPlugin.log(e, "Can't render %1$s", task.mLayout);
+                mResult.addError(String.format("%1$s: %2$s failed to render: %3$s",
+                        configuration.getName(), task.mLayout, e.toString()));
+            } finally {
+                if (session != null) {
+                    session.dispose();
+                }
+            }
+        }
+    }
+
+    /** A single layout to be rendered in a single configuration */
+    private static class RenderTask {
+        private final RenderConfiguration mConfiguration;
+        private final String mLayout;
+
+        RenderTask(@NonNull RenderConfiguration configuration, @NonNull String layout) {
+            mConfiguration = configuration;
+            mLayout = layout;
+        }
+    }
+
+    /** A combination of a device (and state), a locale and a theme to render in */
+    public static class RenderConfiguration {
+        private final Device mDevice;
+        private final State mState;
+        private final Locale mLocale;
+        private final String mTheme;
+
+        RenderConfiguration(
+                @NonNull Device device,
+                @NonNull State state,
+                @NonNull Locale locale,
+                @NonNull String theme) {
+            mDevice = device;
+            mState = state;
+            mLocale = locale;
+            mTheme = theme;
+        }
+
+        /**
+         * Returns a name for this configuration which is suitable as a file name, such
+         * as {@code Nexus_7-portrait-fr-rCA-Theme.Holo}
+         *
+         * @return the name of this configuration
+         */
+        @NonNull
+        public String getName() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(mDevice.getName()).append('-').append(mState.getName());
+            if (mLocale.hasLanguage()) {
+                sb.append('-').append(mLocale.language.getValue());
+                if (mLocale.hasRegion()) {
+                    sb.append('-').append(mLocale.region.getFolderSegment());
+                }
+            }
+            sb.append('-').append(getThemeName());
+            return sb.toString().replaceAll("[^A-Za-z0-9._-]", "_"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+
+        @NonNull
+        FolderConfiguration getFolderConfiguration(@NonNull IAndroidTarget target) {
+            FolderConfiguration config = DeviceConfigHelper.getFolderConfig(mState);
+            config.setLanguageQualifier(mLocale.language);
+            config.setRegionQualifier(mLocale.region);
+            config.setVersionQualifier(new VersionQualifier(target.getVersion().getApiLevel()));
+            return config;
+        }
+
+        /** Returns the theme name without its resource prefix, as used by the resolver */
+        @NonNull
+        String getThemeName() {
+            return ResourceHelper.styleToTheme(mTheme);
+        }
+
+        /** Returns true if the theme is a project theme (rather than a framework one) */
+        boolean isProjectTheme() {
+            return ResourceHelper.isProjectStyle(mTheme);
+        }
+
+        @Override
+        public int hashCode() {
+            return getName().hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof RenderConfiguration)) {
+                return false;
+            }
+            RenderConfiguration other = (RenderConfiguration) obj;
+            return mDevice == other.mDevice && mState == other.mState
+                    && mLocale.equals(other.mLocale) && mTheme.equals(other.mTheme);
+        }
+    }
+
+    /** Summary of a batch rendering */
+    public static class BatchResult {
+        private final AtomicInteger mRendered = new AtomicInteger();
+        private final List<String> mErrors = Collections.synchronizedList(
+                new ArrayList<String>());
+        private long mElapsedMs;
+
+        private void addError(@NonNull String error) {
+            mErrors.add(error);
+            AdtPlugin.log(IStatus.WARNING, error);
+        }
+
+        /**
+         * Returns the number of images successfully rendered and written
+         *
+         * @return the number of images
+         */
+        public int getRenderedCount() {
+            return mRendered.get();
+        }
+
+        /**
+         * Returns the errors encountered while rendering
+         *
+         * @return a list of error messages, never null
+         */
+        @NonNull
+        public List<String> getErrors() {
+            return mErrors;
+        }
+
+        /**
+         * Returns the wall clock time spent rendering
+         *
+         * @return the elapsed time in milliseconds
+         */
+        public long getElapsedMs() {
+            return mElapsedMs;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+
+import org.eclipse.swt.graphics.Rectangle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A spatial index of the selection bounds of a {@link CanvasViewInfo} hierarchy, used
+ * to look up the views under the mouse without visiting every view of the layout.
+ * <p/>
+ * The bounds are stored in an R-tree which is bulk loaded once per render, using the
+ * Sort-Tile-Recursive packing. The queries return the same views as a recursive
+ * traversal of the hierarchy which only descends into views whose bounds match: a
+ * view whose bounds match is only considered if the bounds of all its parents match
+ * as well.
+ */
+class CanvasViewInfoIndex {
+    /** Maximum number of entries in a node of the tree */
+    private static final int NODE_CAPACITY = 8;
+
+    /** The views, in pre-order (so a parent always precedes its children) */
+    private final CanvasViewInfo[] mInfos;
+
+    /** The pre-order index of the parent of each view, or -1 for the root */
+    private final int[] mParents;
+
+    /** The post-order index of each view */
+    private final int[] mPostOrder;
+
+    /** The root of the tree */
+    private final Node mRoot;
+
+    /**
+     * Creates an index of the given view hierarchy. The hierarchy must not be modified
+     * while the index is in use.
+     *
+     * @param root the root of the view hierarchy
+     */
+    CanvasViewInfoIndex(@NonNull CanvasViewInfo root) {
+        List<CanvasViewInfo> infos = new ArrayList<CanvasViewInfo>();
+        List<Integer> parents = new ArrayList<Integer>();
+        List<Integer> postOrder = new ArrayList<Integer>();
+        add(root, -1, infos, parents, postOrder, new int[1]);
+
+        int count = infos.size();
+        mInfos = infos.toArray(new CanvasViewInfo[count]);
+        mParents = new int[count];
+        mPostOrder = new int[count];
+        List<Node> leaves = new ArrayList<Node>(count);
+        for (int i = 0; i < count; i++) {
+            mParents[i] = parents.get(i);
+            mPostOrder[i] = postOrder.get(i);
+            leaves.add(new Node(i, mInfos[i].getSelectionRect()));
+        }
+        mRoot = pack(leaves);
+    }
+
+    private static void add(CanvasViewInfo info, int parent, List<CanvasViewInfo> infos,
+            List<Integer> parents, List<Integer> postOrder, int[] nextPostOrder) {
+        int index = infos.size();
+        infos.add(info);
+        parents.add(parent);
+        postOrder.add(null);
+        for (CanvasViewInfo child : info.getChildren()) {
+            add(child, index, infos, parents, postOrder, nextPostOrder);
+        }
+        postOrder.set(index, nextPostOrder[0]++);
+    }
+
+    /**
+     * Returns the inner most view whose selection bounds contain the given point. When
+     * sibling views overlap, the view drawn on top (the last one) is chosen.
+     *
+     * @param x the x coordinate, in layout coordinates
+     * @param y the y coordinate, in layout coordinates
+     * @return the inner most view at the given point, or null if the point is outside
+     *         the root view
+     */
+    @Nullable
+    CanvasViewInfo findAt(int x, int y) {
+        List<Integer> matches = new ArrayList<Integer>();
+        mRoot.findAt(x, y, mInfos, matches);
+        int[] reachable = getReachable(matches);
+        if (reachable.length == 0) {
+            return null;
+        }
+
+        // The recursive search descends into the last matching child of each view,
+        // which is the reachable view which comes last in pre-order
+        return mInfos[reachable[reachable.length - 1]];
+    }
+
+    /**
+     * Returns the views whose selection bounds intersect the given rectangle, with
+     * children before their parents
+     *
+     * @param rectangle the rectangle, in layout coordinates
+     * @return the views intersecting the rectangle, which may include the root view
+     */
+    @NonNull
+    List<CanvasViewInfo> findWithin(@NonNull Rectangle rectangle) {
+        List<Integer> matches = new ArrayList<Integer>();
+        mRoot.findWithin(rectangle, mInfos, matches);
+        int[] reachable = getReachable(matches);
+        Integer[] order = new Integer[reachable.length];
+        for (int i = 0; i < reachable.length; i++) {
+            order[i] = reachable[i];
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer index1, Integer index2) {
+                return mPostOrder[index1] - mPostOrder[index2];
+            }
+        });
+
+        List<CanvasViewInfo> result = new ArrayList<CanvasViewInfo>(order.length);
+        for (Integer index : order) {
+            result.add(mInfos[index]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the matching views whose parents all match as well, as sorted pre-order
+     * indices
+     */
+    private int[] getReachable(List<Integer> matches) {
+        Collections.sort(matches);
+        int[] reachable = new int[matches.size()];
+        int count = 0;
+        for (Integer index : matches) {
+            int parent = mParents[index];
+            // Parents precede their children, so the parent has already been checked
+            if (parent == -1 || Arrays.binarySearch(reachable, 0, count, parent) >= 0) {
+                reachable[count++] = index;
+            }
+        }
+        return Arrays.copyOf(reachable, count);
+    }
+
+    /**
+     * Packs the given nodes into a tree with the Sort-Tile-Recursive algorithm, and
+     * returns its root
+     */
+    private static Node pack(List<Node> nodes) {
+        while (nodes.size() > NODE_CAPACITY) {
+            int parentCount = (nodes.size() + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            int sliceCount = (int) Math.ceil(Math.sqrt(parentCount));
+            int sliceSize = sliceCount * NODE_CAPACITY;
+
+            Collections.sort(nodes, Node.BY_CENTER_X);
+            List<Node> parents = new ArrayList<Node>(parentCount);
+            for (int slice = 0; slice < nodes.size(); slice += sliceSize) {
+                List<Node> tiles = nodes.subList(slice,
+                        Math.min(slice + sliceSize, nodes.size()));
+                Collections.sort(tiles, Node.BY_CENTER_Y);
+                for (int tile = 0; tile < tiles.size(); tile += NODE_CAPACITY) {
+                    parents.add(new Node(tiles.subList(tile,
+                            Math.min(tile + NODE_CAPACITY, tiles.size()))));
+                }
+            }
+            nodes = parents;
+        }
+
+        return new Node(nodes);
+    }
+
+    /**
+     * A node of the tree: either a leaf holding a single view, or an inner node
+     * holding up to {@link #NODE_CAPACITY} nodes
+     */
+    private static class Node {
+        static final Comparator<Node> BY_CENTER_X = new Comparator<Node>() {
+            @Override
+            public int compare(Node node1, Node node2) {
+                return (node1.mMinX + node1.mMaxX) - (node2.mMinX + node2.mMaxX);
+            }
+        };
+
+        static final Comparator<Node> BY_CENTER_Y = new Comparator<Node>() {
+            @Override
+            public int compare(Node node1, Node node2) {
+                return (node1.mMinY + node1.mMaxY) - (node2.mMinY + node2.mMaxY);
+            }
+        };
+
+        /** The bounds of the node; they also cover rectangles of negative size */
+        private int mMinX;
+        private int mMinY;
+        private int mMaxX;
+        private int mMaxY;
+
+        /** The pre-order index of the view of a leaf, or -1 for an inner node */
+        private final int mIndex;
+        private final Node[] mChildren;
+
+        Node(int index, Rectangle r) {
+            mIndex = index;
+            mChildren = null;
+            mMinX = Math.min(r.x, r.x + r.width);
+            mMinY = Math.min(r.y, r.y + r.height);
+            mMaxX = Math.max(r.x, r.x + r.width);
+            mMaxY = Math.max(r.y, r.y + r.height);
+        }
+
+        Node(List<Node> children) {
+            mIndex = -1;
+            mChildren = children.toArray(new Node[children.size()]);
+            mMinX = mMinY = Integer.MAX_VALUE;
+            mMaxX = mMaxY = Integer.MIN_VALUE;
+            for (Node child : mChildren) {
+                mMinX = Math.min(mMinX, child.mMinX);
+                mMinY = Math.min(mMinY, child.mMinY);
+                mMaxX = Math.max(mMaxX, child.mMaxX);
+                mMaxY = Math.max(mMaxY, child.mMaxY);
+            }
+        }
+
+        void findAt(int x, int y, CanvasViewInfo[] infos, List<Integer> matches) {
+            if (x < mMinX || x > mMaxX || y < mMinY || y > mMaxY) {
+                return;
+            }
+            if (mChildren == null) {
+                if (infos[mIndex].getSelectionRect().contains(x, y)) {
+                    matches.add(mIndex);
+                }
+            } else {
+                for (Node child : mChildren) {
+                    child.findAt(x, y, infos, matches);
+                }
+            }
+        }
+
+        void findWithin(Rectangle r, CanvasViewInfo[] infos, List<Integer> matches) {
+            if (r.x >= mMaxX || r.y >= mMaxY || r.x + r.width <= mMinX
+                    || r.y + r.height <= mMinY) {
+                return;
+            }
+            if (mChildren == null) {
+                if (r.intersects(infos[mIndex].getSelectionRect())) {
+                    matches.add(mIndex);
+                }
+            } else {
+                for (Node child : mChildren) {
+                    child.findWithin(r, infos, matches);
+                }
+            }
+        }
+    }
+}
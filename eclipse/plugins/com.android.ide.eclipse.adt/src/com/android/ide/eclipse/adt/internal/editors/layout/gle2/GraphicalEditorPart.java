@@ -167,6 +167,7 @@ import org.eclipse.ui.part.EditorPart;
 import org.eclipse.ui.part.FileEditorInput;
 import org.eclipse.ui.part.IPageSite;
 import org.eclipse.ui.part.PageBookView;
+import org.eclipse.ui.progress.UIJob;
 import org.eclipse.wb.core.controls.flyout.FlyoutControlComposite;
 import org.eclipse.wb.core.controls.flyout.IFlyoutListener;
 import org.eclipse.wb.core.controls.flyout.PluginFlyoutPreferences;
@@ -224,6 +225,12 @@ public class GraphicalEditorPart extends EditorPart
     /** Property key for the window preferences for the palette flyout */
     private static final String PREF_PALETTE = "design.palette";         //$NON-NLS-1$
 
+    /**
+     * Delay in milliseconds between a change typed in the XML and the render, such
+     * that a burst of keystrokes results in a single render
+     */
+    private static final int RENDER_DELAY_MS = 150;
+
     /**
      * Session-property on files which specifies the initial config state to be used on
      * this file
@@ -285,6 +292,24 @@ public class GraphicalEditorPart extends EditorPart
     private PropertyFactory mPropertyFactory;
     private boolean mRenderedOnce;
 
+    /** The pending delayed render, if any */
+    private Job mRenderJob;
+
+    /**
+     * The time of the oldest model change which has not been rendered yet, or 0 if
+     * the rendering is up to date
+     */
+    private long mRenderRequestTime;
+
+    /** The latency of the recent renders of this editor */
+    private final RenderStatistics mRenderStatistics = new RenderStatistics();
+
+    /** Applies model edits to the render session of the canvas */
+    private final RenderSessionUpdater mSessionUpdater = new RenderSessionUpdater();
+
+    /** The logger of the render session of the canvas */
+    private RenderLogger mSessionLogger;
+
     /**
      * Flags which tracks whether this editor is currently active which is set whenever
      * {@link #activated()} is called and clear whenever {@link #deactivated()} is called.
@@ -627,6 +652,11 @@ public class GraphicalEditorPart extends EditorPart
             mReloadListener = null;
         }
 
+        if (mRenderJob != null) {
+            mRenderJob.cancel();
+            mRenderJob = null;
+        }
+
         if (mCanvasViewer != null) {
             mCanvasViewer.dispose();
             mCanvasViewer = null;
@@ -1257,17 +1287,70 @@ public class GraphicalEditorPart extends EditorPart
         // TODO find a way to really query whether the pane is visible, not just active.
 
         if (mEditorDelegate.isGraphicalEditorActive()) {
-            recomputeLayout();
+            if (mEditorDelegate.getEditor().isNotifyingEditXmlModel()) {
+                // Edits made from the canvas, the outline or the property sheet
+                // expect the view hierarchy to be updated when they return
+                recomputeLayout(true /*modelChanged*/);
+            } else {
+                // The user is typing in the XML: coalesce the changes into one render
+                scheduleRecomputeLayout();
+            }
         } else {
             // Remember we want to recompute as soon as the editor becomes active.
             mNeedsRecompute = true;
         }
     }
 
+    /**
+     * Recomputes the layout after a short delay, replacing any render which is already
+     * pending, such that a series of rapid changes results in a single render
+     */
+    private void scheduleRecomputeLayout() {
+        if (mRenderRequestTime == 0) {
+            mRenderRequestTime = System.currentTimeMillis();
+        }
+
+        if (mRenderJob != null) {
+            mRenderJob.cancel();
+        }
+        mRenderJob = new RenderJob();
+        mRenderJob.schedule(RENDER_DELAY_MS);
+    }
+
+    /**
+     * Returns the latency statistics of the recent renders of this editor
+     *
+     * @return the render statistics, never null
+     */
+    @NonNull
+    public RenderStatistics getRenderStatistics() {
+        return mRenderStatistics;
+    }
+
     /**
      * Recomputes the layout
      */
     public void recomputeLayout() {
+        recomputeLayout(false /*modelChanged*/);
+    }
+
+    /**
+     * Recomputes the layout
+     *
+     * @param modelChanged true if only the XML model changed since the last render, in
+     *            which case the edits may be applied to the previous render session
+     *            instead of inflating the layout again
+     */
+    private void recomputeLayout(boolean modelChanged) {
+        // Any pending delayed render is superseded by this one
+        if (mRenderJob != null) {
+            mRenderJob.cancel();
+            mRenderJob = null;
+        }
+        long requestTime = mRenderRequestTime != 0
+                ? mRenderRequestTime : System.currentTimeMillis();
+        mRenderRequestTime = 0;
+
         try {
             if (!ensureFileValid()) {
                 return;
@@ -1299,7 +1382,8 @@ public class GraphicalEditorPart extends EditorPart
                 }
 
                 IProject project = mEditedFile.getProject();
-                renderWithBridge(project, model, layoutLib);
+                renderWithBridge(project, model, layoutLib, modelChanged);
+                mRenderStatistics.record(System.currentTimeMillis() - requestTime);
 
                 canvas.getPreviewManager().renderPreviews();
             }
@@ -1310,6 +1394,35 @@ public class GraphicalEditorPart extends EditorPart
         }
     }
 
+    /** Delayed render, scheduled by {@link #scheduleRecomputeLayout()} */
+    private class RenderJob extends UIJob {
+        public RenderJob() {
+            super("Render Layout");
+            setSystem(true);
+            setUser(false);
+        }
+
+        @Override
+        public IStatus runInUIThread(IProgressMonitor monitor) {
+            if (mRenderJob != this || mCanvasViewer == null
+                    || mCanvasViewer.getCanvas().isDisposed()) {
+                // Superseded by a later request, or the editor was closed
+                return Status.CANCEL_STATUS;
+            }
+            mRenderJob = null;
+
+            if (mEditorDelegate.isGraphicalEditorActive()) {
+                recomputeLayout(true /*modelChanged*/);
+            } else {
+                // Render when the editor becomes active instead
+                mRenderRequestTime = 0;
+                mNeedsRecompute = true;
+            }
+
+            return Status.OK_STATUS;
+        }
+    }
+
     /**
      * Reloads the palette
      */
@@ -1524,7 +1637,7 @@ public class GraphicalEditorPart extends EditorPart
     }
 
     private void renderWithBridge(IProject iProject, UiDocumentNode model,
-            LayoutLibrary layoutLib) {
+            LayoutLibrary layoutLib, boolean modelChanged) {
         LayoutCanvas canvas = getCanvasControl();
         Set<UiElementNode> explodeNodes = canvas.getNodesToExplode();
         RenderLogger logger = new RenderLogger(mEditedFile.getName());
@@ -1536,13 +1649,29 @@ public class GraphicalEditorPart extends EditorPart
             renderingMode = RenderingMode.V_SCROLL;
         }
 
-        RenderSession session = RenderService.create(this)
-            .setModel(model)
-            .setLog(logger)
-            .setRenderingMode(renderingMode)
-            .setIncludedWithin(mIncludedWithin)
-            .setNodesToExpand(explodeNodes)
-            .createRenderSession();
+        // Edits of a few views are applied to the session of the previous render,
+        // rather than inflating and resolving the whole layout again
+        boolean reusable = (explodeNodes == null || explodeNodes.isEmpty())
+                && mIncludedWithin == null;
+        ViewHierarchy viewHierarchy = canvas.getViewHierarchy();
+        RenderSession session;
+        if (modelChanged && reusable && mSessionUpdater.update(model,
+                viewHierarchy.getSession(), viewHierarchy,
+                layoutLib.supports(Capability.VIEW_MANIPULATION))) {
+            // The session keeps logging to the logger it was created with
+            session = viewHierarchy.getSession();
+            logger = mSessionLogger;
+        } else {
+            mSessionUpdater.invalidate();
+            session = RenderService.create(this)
+                .setModel(model)
+                .setLog(logger)
+                .setRenderingMode(renderingMode)
+                .setIncludedWithin(mIncludedWithin)
+                .setNodesToExpand(explodeNodes)
+                .createRenderSession();
+            mSessionLogger = logger;
+        }
 
         boolean layoutlib5 = layoutLib.supports(Capability.EMBEDDED_LAYOUT);
         canvas.setSession(session, explodeNodes, layoutlib5);
@@ -1597,6 +1726,12 @@ public class GraphicalEditorPart extends EditorPart
             }
 
             mConfigChooser.ensureInitialized();
+
+            // Only sessions which rendered without problems are updated in place, such
+            // that problems are reported again by a full render once fixed
+            if (reusable) {
+                mSessionUpdater.snapshot(model, session);
+            }
         }
 
         model.refreshUi();
@@ -19,11 +19,16 @@ package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
 import static com.android.ide.eclipse.adt.internal.editors.layout.gle2.SwtDrawingStyle.HOVER;
 import static com.android.ide.eclipse.adt.internal.editors.layout.gle2.SwtDrawingStyle.HOVER_SELECTION;
 
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Device;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Rectangle;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -58,6 +63,12 @@ public class HoverOverlay extends Overlay {
      */
     private Rectangle mHoverRect;
 
+    /**
+     * The areas of the control, in control coordinates, which must be repainted to
+     * reflect the hover changes since the last call to {@link #takeDamage()}
+     */
+    private List<Rectangle> mDamage = new ArrayList<Rectangle>();
+
     /**
      * Constructs a new {@link HoverOverlay} linked to the given view hierarchy.
      *
@@ -130,16 +141,51 @@ public class HoverOverlay extends Overlay {
      * @param h The height of the hover (in layout coordinates).
      */
     public void setHover(int x, int y, int w, int h) {
-        mHoverRect = new Rectangle(x, y, w, h);
+        Rectangle hoverRect = new Rectangle(x, y, w, h);
+        if (!hoverRect.equals(mHoverRect)) {
+            addDamage(mHoverRect);
+            addDamage(hoverRect);
+        }
+        mHoverRect = hoverRect;
     }
 
     /**
      * Removes the hover for the next paint.
      */
     public void clearHover() {
+        addDamage(mHoverRect);
         mHoverRect = null;
     }
 
+    /**
+     * Returns the areas of the control which must be repainted to show the hover
+     * changes made since the last call, such that moving the hover does not require
+     * repainting the whole canvas.
+     *
+     * @return the areas to repaint, in control coordinates, possibly empty
+     */
+    @NonNull
+    public List<Rectangle> takeDamage() {
+        if (mDamage.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Rectangle> damage = mDamage;
+        mDamage = new ArrayList<Rectangle>();
+        return damage;
+    }
+
+    private void addDamage(@Nullable Rectangle hoverRect) {
+        if (hoverRect != null) {
+            // Include the stroke, which is drawn on the right and bottom edges
+            // of the rectangle, and a pixel of slack for antialiasing
+            mDamage.add(new Rectangle(
+                    mHScale.translate(hoverRect.x) - 1,
+                    mVScale.translate(hoverRect.y) - 1,
+                    mHScale.scale(hoverRect.width) + 3,
+                    mVScale.scale(hoverRect.height) + 3));
+        }
+    }
+
     @Override
     public void paint(GC gc) {
         if (mHoverRect != null) {
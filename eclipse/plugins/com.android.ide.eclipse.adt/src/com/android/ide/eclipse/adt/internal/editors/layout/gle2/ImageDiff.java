@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the regions of an image which changed since the previous frame, by comparing
+ * the image tile by tile with a copy of the previous frame.
+ * <p/>
+ * This is used when layoutlib renders into the same image again, such that only the
+ * parts of the image which changed need to be copied into the SWT image, and scaled.
+ */
+class ImageDiff {
+    /** Width and height of the tiles the image is compared in */
+    static final int TILE_SIZE = 64;
+
+    /** The pixels of the previous frame, or null */
+    private int[] mPrevious;
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * Compares the given frame with the previous frame, and records it as the new
+     * previous frame.
+     *
+     * @param pixels the pixels of the frame, one int per pixel, row by row
+     * @param width the width of the frame
+     * @param height the height of the frame
+     * @return the changed regions, where adjacent changed tiles of a row of tiles are
+     *         merged into a single region, or null if there is no previous frame of the
+     *         same size to compare with, in which case the whole frame has changed
+     */
+    @Nullable
+    List<Rectangle> update(@NonNull int[] pixels, int width, int height) {
+        assert pixels.length >= width * height;
+        if (mPrevious == null || mWidth != width || mHeight != height) {
+            mPrevious = new int[width * height];
+            System.arraycopy(pixels, 0, mPrevious, 0, width * height);
+            mWidth = width;
+            mHeight = height;
+            return null;
+        }
+
+        List<Rectangle> regions = new ArrayList<Rectangle>();
+        for (int y = 0; y < height; y += TILE_SIZE) {
+            int tileHeight = Math.min(TILE_SIZE, height - y);
+            Rectangle region = null;
+            for (int x = 0; x < width; x += TILE_SIZE) {
+                int tileWidth = Math.min(TILE_SIZE, width - x);
+                if (!copyTile(pixels, x, y, tileWidth, tileHeight)) {
+                    continue;
+                }
+                if (region != null && region.x + region.width == x) {
+                    region.width += tileWidth;
+                } else {
+                    region = new Rectangle(x, y, tileWidth, tileHeight);
+                    regions.add(region);
+                }
+            }
+        }
+
+        return regions;
+    }
+
+    /**
+     * Forgets the previous frame, such that the next frame is considered entirely
+     * changed
+     */
+    void reset() {
+        mPrevious = null;
+    }
+
+    /**
+     * Copies the given tile into the previous frame if it differs from it
+     *
+     * @return true if the tile changed
+     */
+    private boolean copyTile(int[] pixels, int x, int y, int width, int height) {
+        int[] previous = mPrevious;
+        int end = (y + height) * mWidth;
+        for (int row = y * mWidth + x; row < end; row += mWidth) {
+            for (int i = row, n = row + width; i < n; i++) {
+                if (pixels[i] != previous[i]) {
+                    // Changed: copy from this row on; the rows above are identical
+                    for (int copy = row; copy < end; copy += mWidth) {
+                        System.arraycopy(pixels, copy, previous, copy, width);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
@@ -31,10 +31,13 @@ import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.graphics.PaletteData;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.awt.image.WritableRaster;
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The {@link ImageOverlay} class renders an image as an overlay.
@@ -57,6 +60,28 @@ public class ImageOverlay extends Overlay implements IImageFactory {
     /** A pre-scaled version of the image */
     private Image mPreScaledImage;
 
+    /**
+     * The AWT image {@link #mPreScaledImage} was created from, kept such that changed
+     * regions can be scaled again, or null if the pre-scaled image can't be updated
+     */
+    private BufferedImage mPreScaledAwtImage;
+
+    /**
+     * The image data of {@link #mPreScaledImage}, which the changed regions are written
+     * into, or null if the pre-scaled image can't be updated
+     */
+    private ImageData mPreScaledImageData;
+
+    /** The scale factors the pre-scaled image was created with */
+    private double mPreScaledXScale;
+    private double mPreScaledYScale;
+
+    /** The regions of the image which changed since the pre-scaled image was updated */
+    private final List<Rectangle> mPreScaledDirtyRegions = new ArrayList<Rectangle>();
+
+    /** Finds the regions which changed between two renders into the same image */
+    private final ImageDiff mImageDiff = new ImageDiff();
+
     /** Whether the rendered image should have a drop shadow */
     private boolean mShowDropShadow;
 
@@ -107,10 +132,18 @@ public class ImageOverlay extends Overlay implements IImageFactory {
             mImage.dispose();
             mImage = null;
         }
+        disposePreScaledImage();
+        mImageDiff.reset();
+    }
+
+    private void disposePreScaledImage() {
         if (mPreScaledImage != null) {
             mPreScaledImage.dispose();
             mPreScaledImage = null;
         }
+        mPreScaledAwtImage = null;
+        mPreScaledImageData = null;
+        mPreScaledDirtyRegions.clear();
     }
 
     /**
@@ -131,6 +164,7 @@ public class ImageOverlay extends Overlay implements IImageFactory {
         if (awtImage != oldAwtImage || awtImage == null) {
             mAwtImage.clear();
             mAwtImageStrongRef = null;
+            mImageDiff.reset();
 
             if (mImage != null) {
                 mImage.dispose();
@@ -146,12 +180,28 @@ public class ImageOverlay extends Overlay implements IImageFactory {
             assert awtImage instanceof SwtReadyBufferedImage;
 
             if (isAlphaChannelImage) {
+                mImageDiff.reset();
                 if (mImage != null) {
                     mImage.dispose();
                 }
 
                 mImage = SwtUtils.convertToSwt(mCanvas.getDisplay(), awtImage, true, -1);
             } else {
+                // Layoutlib rendered into the same image again: only transfer the
+                // regions which changed since the previous render
+                List<Rectangle> regions = ((SwtReadyBufferedImage) awtImage).getChanges(
+                        mImageDiff);
+                if (regions != null && mImage != null && !mImage.isDisposed()
+                        && getArea(regions) < awtImage.getWidth() * awtImage.getHeight() / 2) {
+                    for (Rectangle r : regions) {
+                        SwtUtils.copyRegion(mImage, awtImage, r.x, r.y, r.width, r.height);
+                    }
+                    if (mPreScaledImage != null) {
+                        mPreScaledDirtyRegions.addAll(regions);
+                    }
+                    return mImage;
+                }
+
                 Image prev = mImage;
                 mImage = ((SwtReadyBufferedImage)awtImage).getSwtImage();
                 if (prev != mImage && prev != null) {
@@ -160,15 +210,20 @@ public class ImageOverlay extends Overlay implements IImageFactory {
             }
         }
 
-        if (mPreScaledImage != null) {
-            // Force refresh on next paint
-            mPreScaledImage.dispose();
-            mPreScaledImage = null;
-        }
+        // Force refresh on next paint
+        disposePreScaledImage();
 
         return mImage;
     }
 
+    private static int getArea(List<Rectangle> regions) {
+        int area = 0;
+        for (Rectangle r : regions) {
+            area += r.width * r.height;
+        }
+        return area;
+    }
+
     /**
      * Returns the currently painted image, or null if none has been set
      *
@@ -224,8 +279,15 @@ public class ImageOverlay extends Overlay implements IImageFactory {
             BufferedImage awtImage = mAwtImage.get();
             if (PRESCALE && awtImage != null) {
                 int imageWidth = (mPreScaledImage == null) ? 0
-                        : mPreScaledImage.getImageData().width
+                        : mPreScaledImage.getBounds().width
                             - (mShowDropShadow ? SHADOW_SIZE : 0);
+                if (mPreScaledImage != null && imageWidth == hi.getScaledImgSize()
+                        && !mPreScaledDirtyRegions.isEmpty()
+                        && !updatePreScaledImage(awtImage)) {
+                    disposePreScaledImage();
+                }
+                mPreScaledDirtyRegions.clear();
+
                 if (mPreScaledImage == null || imageWidth != hi.getScaledImgSize()) {
                     double xScale = hi.getScaledImgSize() / (double) awtImage.getWidth();
                     double yScale = vi.getScaledImgSize() / (double) awtImage.getHeight();
@@ -259,8 +321,17 @@ public class ImageOverlay extends Overlay implements IImageFactory {
                     if (mPreScaledImage != null && !mPreScaledImage.isDisposed()) {
                         mPreScaledImage.dispose();
                     }
-                    mPreScaledImage = SwtUtils.convertToSwt(mCanvas.getDisplay(), scaledAwtImage,
+                    ImageData imageData = SwtUtils.convertToSwtData(scaledAwtImage,
                             true /*transferAlpha*/, -1);
+                    mPreScaledImage = new Image(mCanvas.getDisplay(), imageData);
+
+                    // Keep the scaled image such that the regions which change in the next
+                    // renders can be scaled on their own
+                    mPreScaledXScale = xScale;
+                    mPreScaledYScale = yScale;
+                    mPreScaledAwtImage = (xScale == 1.0 && yScale == 1.0)
+                            || (xScale > 0.5 && yScale > 0.5) ? scaledAwtImage : null;
+                    mPreScaledImageData = mPreScaledAwtImage != null ? imageData : null;
                     // We can't just clear the mAwtImageStrongRef here, because if the
                     // zooming factor changes, we may need to use it again
                 }
@@ -304,6 +375,51 @@ public class ImageOverlay extends Overlay implements IImageFactory {
         }
     }
 
+    /**
+     * Updates the regions of the pre-scaled image which correspond to the regions of the
+     * image which changed since it was created
+     *
+     * @param awtImage the current image
+     * @return true if the pre-scaled image was updated, false if it must be created again
+     */
+    private boolean updatePreScaledImage(BufferedImage awtImage) {
+        BufferedImage scaledAwtImage = mPreScaledAwtImage;
+        ImageData imageData = mPreScaledImageData;
+        if (scaledAwtImage == null || imageData == null) {
+            return false;
+        }
+
+        double xScale = mPreScaledXScale;
+        double yScale = mPreScaledYScale;
+        int scaledWidth = Math.max(1, (int) (xScale * awtImage.getWidth()));
+        int scaledHeight = Math.max(1, (int) (yScale * awtImage.getHeight()));
+        for (Rectangle r : mPreScaledDirtyRegions) {
+            if (xScale == 1.0 && yScale == 1.0) {
+                SwtUtils.copyRegion(imageData, awtImage, r.x, r.y, r.width, r.height);
+                continue;
+            }
+
+            // Bilinear scaling blends neighboring pixels, so the scaled region extends
+            // a little beyond the changed source pixels
+            int x1 = Math.max(0, (int) Math.floor(r.x * xScale) - 2);
+            int y1 = Math.max(0, (int) Math.floor(r.y * yScale) - 2);
+            int x2 = Math.min(scaledWidth, (int) Math.ceil((r.x + r.width) * xScale) + 2);
+            int y2 = Math.min(scaledHeight, (int) Math.ceil((r.y + r.height) * yScale) + 2);
+            if (x2 > x1 && y2 > y1) {
+                ImageUtils.scaleRegion(awtImage, scaledAwtImage, xScale, yScale,
+                        x1, y1, x2 - x1, y2 - y1);
+                SwtUtils.copyRegion(imageData, scaledAwtImage, x1, y1, x2 - x1, y2 - y1);
+            }
+        }
+
+        // The pre-scaled image has per pixel alpha, which drawing into it with a GC
+        // doesn't preserve, so create it again from the updated image data instead
+        mPreScaledImage.dispose();
+        mPreScaledImage = new Image(mCanvas.getDisplay(), imageData);
+
+        return true;
+    }
+
     /**
      * Sets the alpha for the given GC.
      * <p/>
@@ -373,6 +489,18 @@ public class ImageOverlay extends Overlay implements IImageFactory {
             mDevice = device;
         }
 
+        /**
+         * Returns the regions of the image which changed since the previous call
+         *
+         * @param diff the diff holding the previous content of the image
+         * @return the changed regions, or null if the whole image must be considered
+         *         changed
+         */
+        private List<Rectangle> getChanges(ImageDiff diff) {
+            int[] pixels = ((DataBufferInt) getRaster().getDataBuffer()).getData();
+            return diff.update(pixels, getWidth(), getHeight());
+        }
+
         /**
          * Returns a new {@link Image} object initialized with the content of the BufferedImage.
          * @return the image object.
@@ -44,8 +44,17 @@ import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.imageio.ImageIO;
 
@@ -350,19 +359,84 @@ public class ImageUtils {
      */
     public static BufferedImage createDropShadow(BufferedImage source, int shadowSize,
             float shadowOpacity, int shadowRgb) {
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        int dstWidth = sourceWidth + shadowSize * 2;
+        int dstHeight = sourceHeight + shadowSize * 2;
+
+        // The shadow only depends on the alpha channel of the source, so palette and
+        // preview images whose pixels change but whose shape stays the same can reuse
+        // the blurred mask from an earlier call
+        ShadowKey key = new ShadowKey(getAlpha(source), sourceWidth, sourceHeight,
+                shadowSize, shadowOpacity, shadowRgb & 0x00FFFFFF);
+        int[] shadow;
+        synchronized (sShadowCache) {
+            shadow = sShadowCache.get(key);
+        }
+        if (shadow == null) {
+            shadow = computeDropShadow(key, dstWidth, dstHeight);
+            synchronized (sShadowCache) {
+                sShadowCache.put(key, shadow);
+            }
+        }
 
-        // This code is based on
-        //      http://www.jroller.com/gfx/entry/non_rectangular_shadow
-
-        BufferedImage image = new BufferedImage(source.getWidth() + shadowSize * 2,
-                source.getHeight() + shadowSize * 2,
+        BufferedImage image = new BufferedImage(dstWidth, dstHeight,
                 BufferedImage.TYPE_INT_ARGB);
+        int[] dataBuffer = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        System.arraycopy(shadow, 0, dataBuffer, 0, shadow.length);
 
         Graphics2D g2 = image.createGraphics();
-        g2.drawImage(source, null, shadowSize, shadowSize);
+        g2.drawImage(source, null, 0, 0);
+        g2.dispose();
+
+        return image;
+    }
+
+    /** Returns the alpha channel of the given image */
+    private static byte[] getAlpha(BufferedImage source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        byte[] alpha = new byte[width * height];
+        int type = source.getType();
+        if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE)
+                && source.getRaster().getDataBuffer() instanceof DataBufferInt
+                && source.getRaster().getParent() == null) {
+            int[] data = ((DataBufferInt) source.getRaster().getDataBuffer()).getData();
+            for (int i = 0, n = alpha.length; i < n; i++) {
+                alpha[i] = (byte) (data[i] >>> 24);
+            }
+        } else if (source.getColorModel().hasAlpha()) {
+            int[] row = new int[width];
+            for (int y = 0, offset = 0; y < height; y++, offset += width) {
+                source.getRGB(0, y, width, 1, row, 0, width);
+                for (int x = 0; x < width; x++) {
+                    alpha[offset + x] = (byte) (row[x] >>> 24);
+                }
+            }
+        } else {
+            Arrays.fill(alpha, (byte) 0xFF);
+        }
+
+        return alpha;
+    }
 
-        int dstWidth = image.getWidth();
-        int dstHeight = image.getHeight();
+    /**
+     * Blurs the alpha channel of a shadow source into a shadow image of the given size
+     * (colored with the shadow color) and returns its pixels
+     */
+    private static int[] computeDropShadow(ShadowKey key, int dstWidth, int dstHeight) {
+        // This code is based on
+        //      http://www.jroller.com/gfx/entry/non_rectangular_shadow
+        int shadowSize = key.mShadowSize;
+        int[] dataBuffer = new int[dstWidth * dstHeight];
+        byte[] sourceAlpha = key.mAlpha;
+        for (int y = 0; y < key.mHeight; y++) {
+            int sourceOffset = y * key.mWidth;
+            int bufferOffset = (y + shadowSize) * dstWidth + shadowSize;
+            for (int x = 0; x < key.mWidth; x++) {
+                dataBuffer[bufferOffset + x] = sourceAlpha[sourceOffset + x] & 0xFF;
+            }
+        }
 
         int left = (shadowSize - 1) >> 1;
         int right = shadowSize - left;
@@ -371,23 +445,23 @@ public class ImageUtils {
         int yStart = left;
         int yStop = dstHeight - right;
 
-        shadowRgb = shadowRgb & 0x00FFFFFF;
-
         int[] aHistory = new int[shadowSize];
         int historyIdx = 0;
 
         int aSum;
 
-        int[] dataBuffer = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
         int lastPixelOffset = right * dstWidth;
-        float sumDivider = shadowOpacity / shadowSize;
+        float sumDivider = key.mShadowOpacity / shadowSize;
+
+        // The passes below operate on plain alpha values rather than ARGB pixels;
+        // the shadow color is applied once at the end
 
         // horizontal pass
         for (int y = 0, bufferOffset = 0; y < dstHeight; y++, bufferOffset = y * dstWidth) {
             aSum = 0;
             historyIdx = 0;
             for (int x = 0; x < shadowSize; x++, bufferOffset++) {
-                int a = dataBuffer[bufferOffset] >>> 24;
+                int a = dataBuffer[bufferOffset];
                 aHistory[x] = a;
                 aSum += a;
             }
@@ -395,14 +469,13 @@ public class ImageUtils {
             bufferOffset -= right;
 
             for (int x = xStart; x < xStop; x++, bufferOffset++) {
-                int a = (int) (aSum * sumDivider);
-                dataBuffer[bufferOffset] = a << 24 | shadowRgb;
+                dataBuffer[bufferOffset] = (int) (aSum * sumDivider);
 
                 // subtract the oldest pixel from the sum
                 aSum -= aHistory[historyIdx];
 
                 // get the latest pixel
-                a = dataBuffer[bufferOffset + right] >>> 24;
+                int a = dataBuffer[bufferOffset + right];
                 aHistory[historyIdx] = a;
                 aSum += a;
 
@@ -416,7 +489,7 @@ public class ImageUtils {
             aSum = 0;
             historyIdx = 0;
             for (int y = 0; y < shadowSize; y++, bufferOffset += dstWidth) {
-                int a = dataBuffer[bufferOffset] >>> 24;
+                int a = dataBuffer[bufferOffset];
                 aHistory[y] = a;
                 aSum += a;
             }
@@ -424,14 +497,13 @@ public class ImageUtils {
             bufferOffset -= lastPixelOffset;
 
             for (int y = yStart; y < yStop; y++, bufferOffset += dstWidth) {
-                int a = (int) (aSum * sumDivider);
-                dataBuffer[bufferOffset] = a << 24 | shadowRgb;
+                dataBuffer[bufferOffset] = (int) (aSum * sumDivider);
 
                 // subtract the oldest pixel from the sum
                 aSum -= aHistory[historyIdx];
 
                 // get the latest pixel
-                a = dataBuffer[bufferOffset + lastPixelOffset] >>> 24;
+                int a = dataBuffer[bufferOffset + lastPixelOffset];
                 aHistory[historyIdx] = a;
                 aSum += a;
 
@@ -441,10 +513,79 @@ public class ImageUtils {
             }
         }
 
-        g2.drawImage(source, null, 0, 0);
-        g2.dispose();
+        int shadowRgb = key.mShadowRgb;
+        for (int i = 0, n = dataBuffer.length; i < n; i++) {
+            dataBuffer[i] = dataBuffer[i] << 24 | shadowRgb;
+        }
 
-        return image;
+        return dataBuffer;
+    }
+
+    /** Maximum number of blurred shadow masks kept by {@link #createDropShadow} */
+    private static final int SHADOW_CACHE_SIZE = 16;
+
+    /** Recently computed shadow masks, in access order */
+    private static final Map<ShadowKey, int[]> sShadowCache =
+            new LinkedHashMap<ShadowKey, int[]>(SHADOW_CACHE_SIZE, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ShadowKey, int[]> eldest) {
+            return size() > SHADOW_CACHE_SIZE;
+        }
+    };
+
+    /** Identifies a shadow mask: the source alpha channel and the shadow parameters */
+    private static final class ShadowKey {
+        private final byte[] mAlpha;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mShadowSize;
+        private final float mShadowOpacity;
+        private final int mShadowRgb;
+        private final int mHashCode;
+
+        private ShadowKey(byte[] alpha, int width, int height, int shadowSize,
+                float shadowOpacity, int shadowRgb) {
+            mAlpha = alpha;
+            mWidth = width;
+            mHeight = height;
+            mShadowSize = shadowSize;
+            mShadowOpacity = shadowOpacity;
+            mShadowRgb = shadowRgb;
+
+            int hashCode = Arrays.hashCode(alpha);
+            hashCode = 31 * hashCode + width;
+            hashCode = 31 * hashCode + height;
+            hashCode = 31 * hashCode + shadowSize;
+            hashCode = 31 * hashCode + Float.floatToIntBits(shadowOpacity);
+            hashCode = 31 * hashCode + shadowRgb;
+            mHashCode = hashCode;
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ShadowKey)) {
+                return false;
+            }
+            ShadowKey other = (ShadowKey) obj;
+            return mHashCode == other.mHashCode
+                    && mWidth == other.mWidth
+                    && mHeight == other.mHeight
+                    && mShadowSize == other.mShadowSize
+                    && mShadowRgb == other.mShadowRgb
+                    && Float.floatToIntBits(mShadowOpacity)
+                            == Float.floatToIntBits(other.mShadowOpacity)
+                    && Arrays.equals(mAlpha, other.mAlpha);
+        }
     }
 
     /**
@@ -826,6 +967,41 @@ public class ImageUtils {
        return scale(source, xScale, yScale, 0, 0);
     }
 
+    /**
+     * Scales a region of the given image into an image previously scaled from it by
+     * {@link #scale(BufferedImage, double, double, int, int)}, such that only the part
+     * of the scaled image which corresponds to a changed part of the source image needs
+     * to be computed again. Only scale factors larger than 0.5 are supported, and the
+     * pixels in the region are identical to those computed when scaling the whole image.
+     *
+     * @param source the image to be scaled
+     * @param dest the scaled image to update
+     * @param xScale x scale, larger than 0.5
+     * @param yScale y scale, larger than 0.5
+     * @param x the left edge of the region to update, in the scaled image
+     * @param y the top edge of the region to update, in the scaled image
+     * @param width the width of the region to update
+     * @param height the height of the region to update
+     */
+    public static void scaleRegion(@NonNull BufferedImage source, @NonNull BufferedImage dest,
+            double xScale, double yScale, int x, int y, int width, int height) {
+        assert xScale > 0.5 && yScale > 0.5;
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        int destWidth = Math.max(1, (int) (xScale * sourceWidth));
+        int destHeight = Math.max(1, (int) (yScale * sourceHeight));
+
+        Graphics2D g2 = dest.createGraphics();
+        g2.clipRect(x, y, width, height);
+        g2.setComposite(AlphaComposite.Src);
+        g2.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR);
+        g2.setRenderingHint(KEY_RENDERING, VALUE_RENDER_QUALITY);
+        g2.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
+        g2.drawImage(source, 0, 0, destWidth, destHeight, 0, 0, sourceWidth, sourceHeight,
+                null);
+        g2.dispose();
+    }
+
     /**
      * Resize the given image
      *
@@ -853,12 +1029,8 @@ public class ImageUtils {
             g2.setComposite(AlphaComposite.Src);
             g2.setColor(new Color(0, true));
             g2.fillRect(0, 0, destWidth + rightMargin, destHeight + bottomMargin);
-            g2.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR);
-            g2.setRenderingHint(KEY_RENDERING, VALUE_RENDER_QUALITY);
-            g2.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
-            g2.drawImage(source, 0, 0, destWidth, destHeight, 0, 0, sourceWidth, sourceHeight,
-                    null);
             g2.dispose();
+            scaleRegion(source, scaled, xScale, yScale, 0, 0, destWidth, destHeight);
             return scaled;
         } else {
             // When creating a thumbnail, using the above code doesn't work very well;
@@ -901,6 +1073,9 @@ public class ImageUtils {
             if (iterations == 0) {
                 nearestWidth += rightMargin;
                 nearestHeight += bottomMargin;
+            } else if (isPackedIntType(imageType)) {
+                return scaleByHalving(source, imageType, nearestWidth, nearestHeight,
+                        iterations, rightMargin, bottomMargin);
             }
 
             BufferedImage scaled = new BufferedImage(nearestWidth, nearestHeight, imageType);
@@ -944,6 +1119,252 @@ public class ImageUtils {
         }
     }
 
+    /** Returns true if images of the given type store each pixel in a single int */
+    private static boolean isPackedIntType(int imageType) {
+        return imageType == BufferedImage.TYPE_INT_ARGB
+                || imageType == BufferedImage.TYPE_INT_ARGB_PRE
+                || imageType == BufferedImage.TYPE_INT_RGB;
+    }
+
+    /**
+     * Minimum number of destination pixels in a halving pass before the pass is split
+     * into row bands which are processed in parallel
+     */
+    private static final int PARALLEL_PIXEL_THRESHOLD = 256 * 1024;
+
+    /** Per-thread scratch image which the initial resize of a thumbnail is drawn into */
+    private static final ThreadLocal<SoftReference<BufferedImage>> sScratchImage =
+            new ThreadLocal<SoftReference<BufferedImage>>();
+
+    /** Per-thread scratch buffer which the intermediate halving passes operate on */
+    private static final ThreadLocal<SoftReference<int[]>> sScratchPixels =
+            new ThreadLocal<SoftReference<int[]>>();
+
+    /** Executor used to process row bands of large images in parallel */
+    private static ExecutorService sBandExecutor;
+
+    /**
+     * Creates a thumbnail by first resizing the image to the given nearest size, and then
+     * repeatedly halving it with a 2x2 box filter. This is the same approach as the
+     * {@link Graphics2D} based thumbnail code in {@link #scale}, but works directly on
+     * the pixel arrays: the initial resize goes into a reused scratch image, all but the
+     * last halving pass run in place in a reused scratch buffer, and only the final
+     * image is allocated.
+     */
+    private static BufferedImage scaleByHalving(BufferedImage source, int imageType,
+            int nearestWidth, int nearestHeight, int iterations,
+            int rightMargin, int bottomMargin) {
+        BufferedImage scratch = getScratchImage(imageType, nearestWidth, nearestHeight);
+        Graphics2D g2 = scratch.createGraphics();
+        g2.setComposite(AlphaComposite.Src);
+        g2.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR);
+        g2.setRenderingHint(KEY_RENDERING, VALUE_RENDER_QUALITY);
+        g2.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
+        g2.drawImage(source, 0, 0, nearestWidth, nearestHeight,
+                0, 0, source.getWidth(), source.getHeight(), null);
+        g2.dispose();
+
+        // Non-premultiplied alpha has to be weighted into the color average, otherwise
+        // the color of transparent pixels bleeds into their neighbors
+        boolean weighted = imageType == BufferedImage.TYPE_INT_ARGB;
+        boolean opaque = imageType == BufferedImage.TYPE_INT_RGB;
+
+        int[] src = ((DataBufferInt) scratch.getRaster().getDataBuffer()).getData();
+        int srcStride = scratch.getWidth();
+        int width = nearestWidth;
+        int height = nearestHeight;
+        int[] pixels = null;
+        if (iterations > 1) {
+            pixels = getScratchPixels((width / 2) * (height / 2));
+        }
+
+        BufferedImage scaled = null;
+        for (int iteration = iterations - 1; iteration >= 0; iteration--) {
+            int halfWidth = width / 2;
+            int halfHeight = height / 2;
+            int[] dst;
+            int dstStride;
+            if (iteration == 0) { // Last iteration: Add margins in final image
+                scaled = new BufferedImage(halfWidth + rightMargin, halfHeight + bottomMargin,
+                        imageType);
+                dst = ((DataBufferInt) scaled.getRaster().getDataBuffer()).getData();
+                dstStride = halfWidth + rightMargin;
+            } else {
+                dst = pixels;
+                dstStride = halfWidth;
+            }
+
+            if (dst != src && halfWidth * halfHeight >= PARALLEL_PIXEL_THRESHOLD) {
+                halveParallel(src, srcStride, dst, dstStride, halfWidth, halfHeight,
+                        weighted, opaque);
+            } else {
+                // Also safe in place: each destination pixel is written at or before
+                // the offset of the first source pixel it is computed from
+                halve(src, srcStride, dst, dstStride, halfWidth, 0, halfHeight,
+                        weighted, opaque);
+            }
+
+            src = dst;
+            srcStride = dstStride;
+            width = halfWidth;
+            height = halfHeight;
+        }
+
+        return scaled;
+    }
+
+    /**
+     * Computes the given rows of an image of half the size of the source, each destination
+     * pixel being the average of the corresponding 2x2 block of source pixels
+     */
+    private static void halve(int[] src, int srcStride, int[] dst, int dstStride,
+            int dstWidth, int dstRowStart, int dstRowEnd, boolean weighted, boolean opaque) {
+        for (int y = dstRowStart; y < dstRowEnd; y++) {
+            int s0 = 2 * y * srcStride;
+            int s1 = s0 + srcStride;
+            int d = y * dstStride;
+            for (int x = 0; x < dstWidth; x++, s0 += 2, s1 += 2, d++) {
+                int p0 = src[s0];
+                int p1 = src[s0 + 1];
+                int p2 = src[s1];
+                int p3 = src[s1 + 1];
+                if (opaque) {
+                    dst[d] = 0xFF000000
+                            | (((p0 >> 16 & 0xFF) + (p1 >> 16 & 0xFF) + (p2 >> 16 & 0xFF)
+                                    + (p3 >> 16 & 0xFF) + 2) >> 2) << 16
+                            | (((p0 >> 8 & 0xFF) + (p1 >> 8 & 0xFF) + (p2 >> 8 & 0xFF)
+                                    + (p3 >> 8 & 0xFF) + 2) >> 2) << 8
+                            | (((p0 & 0xFF) + (p1 & 0xFF) + (p2 & 0xFF) + (p3 & 0xFF) + 2) >> 2);
+                } else if (!weighted) {
+                    dst[d] = (((p0 >>> 24) + (p1 >>> 24) + (p2 >>> 24) + (p3 >>> 24) + 2) >> 2)
+                                    << 24
+                            | (((p0 >> 16 & 0xFF) + (p1 >> 16 & 0xFF) + (p2 >> 16 & 0xFF)
+                                    + (p3 >> 16 & 0xFF) + 2) >> 2) << 16
+                            | (((p0 >> 8 & 0xFF) + (p1 >> 8 & 0xFF) + (p2 >> 8 & 0xFF)
+                                    + (p3 >> 8 & 0xFF) + 2) >> 2) << 8
+                            | (((p0 & 0xFF) + (p1 & 0xFF) + (p2 & 0xFF) + (p3 & 0xFF) + 2) >> 2);
+                } else {
+                    int a0 = p0 >>> 24;
+                    int a1 = p1 >>> 24;
+                    int a2 = p2 >>> 24;
+                    int a3 = p3 >>> 24;
+                    int alphaSum = a0 + a1 + a2 + a3;
+                    if (alphaSum == 0) {
+                        dst[d] = 0;
+                    } else if (alphaSum == 4 * 0xFF) {
+                        dst[d] = 0xFF000000
+                                | (((p0 >> 16 & 0xFF) + (p1 >> 16 & 0xFF) + (p2 >> 16 & 0xFF)
+                                        + (p3 >> 16 & 0xFF) + 2) >> 2) << 16
+                                | (((p0 >> 8 & 0xFF) + (p1 >> 8 & 0xFF) + (p2 >> 8 & 0xFF)
+                                        + (p3 >> 8 & 0xFF) + 2) >> 2) << 8
+                                | (((p0 & 0xFF) + (p1 & 0xFF) + (p2 & 0xFF) + (p3 & 0xFF)
+                                        + 2) >> 2);
+                    } else {
+                        int half = alphaSum >> 1;
+                        int r = ((p0 >> 16 & 0xFF) * a0 + (p1 >> 16 & 0xFF) * a1
+                                + (p2 >> 16 & 0xFF) * a2 + (p3 >> 16 & 0xFF) * a3 + half)
+                                / alphaSum;
+                        int g = ((p0 >> 8 & 0xFF) * a0 + (p1 >> 8 & 0xFF) * a1
+                                + (p2 >> 8 & 0xFF) * a2 + (p3 >> 8 & 0xFF) * a3 + half)
+                                / alphaSum;
+                        int b = ((p0 & 0xFF) * a0 + (p1 & 0xFF) * a1
+                                + (p2 & 0xFF) * a2 + (p3 & 0xFF) * a3 + half) / alphaSum;
+                        dst[d] = ((alphaSum + 2) >> 2) << 24 | r << 16 | g << 8 | b;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Like {@link #halve}, but splits the destination rows into bands computed in parallel */
+    private static void halveParallel(final int[] src, final int srcStride,
+            final int[] dst, final int dstStride, final int dstWidth, int dstHeight,
+            final boolean weighted, final boolean opaque) {
+        int bands = Math.min(Runtime.getRuntime().availableProcessors(), dstHeight);
+        if (bands < 2) {
+            halve(src, srcStride, dst, dstStride, dstWidth, 0, dstHeight, weighted, opaque);
+            return;
+        }
+
+        ExecutorService executor = getBandExecutor();
+        Future<?>[] futures = new Future<?>[bands - 1];
+        int rowsPerBand = (dstHeight + bands - 1) / bands;
+        for (int band = 1; band < bands; band++) {
+            final int rowStart = band * rowsPerBand;
+            final int rowEnd = Math.min(dstHeight, rowStart + rowsPerBand);
+            futures[band - 1] = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    halve(src, srcStride, dst, dstStride, dstWidth, rowStart, rowEnd,
+                            weighted, opaque);
+                }
+            });
+        }
+
+        // Compute the first band on the calling thread
+        halve(src, srcStride, dst, dstStride, dstWidth, 0, Math.min(dstHeight, rowsPerBand),
+                weighted, opaque);
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static synchronized ExecutorService getBandExecutor() {
+        if (sBandExecutor == null) {
+            sBandExecutor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Image Scaling"); //$NON-NLS-1$
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return sBandExecutor;
+    }
+
+    /**
+     * Returns a scratch image of the given type which is at least as large as the given
+     * size. The image is private to the calling thread, and is only reused until the next
+     * call on the same thread.
+     */
+    private static BufferedImage getScratchImage(int imageType, int width, int height) {
+        SoftReference<BufferedImage> reference = sScratchImage.get();
+        BufferedImage image = reference != null ? reference.get() : null;
+        if (image == null || image.getType() != imageType
+                || image.getWidth() < width || image.getHeight() < height) {
+            if (image != null && image.getType() == imageType) {
+                width = Math.max(width, image.getWidth());
+                height = Math.max(height, image.getHeight());
+            }
+            image = new BufferedImage(width, height, imageType);
+            sScratchImage.set(new SoftReference<BufferedImage>(image));
+        }
+
+        return image;
+    }
+
+    /** Returns a per-thread scratch pixel buffer of at least the given size */
+    private static int[] getScratchPixels(int size) {
+        SoftReference<int[]> reference = sScratchPixels.get();
+        int[] pixels = reference != null ? reference.get() : null;
+        if (pixels == null || pixels.length < size) {
+            pixels = new int[size];
+            sScratchPixels.set(new SoftReference<int[]>(pixels));
+        }
+
+        return pixels;
+    }
+
     /**
      * Returns true if the given file path points to an image file recognized by
      * Android. See http://developer.android.com/guide/appendix/media-formats.html
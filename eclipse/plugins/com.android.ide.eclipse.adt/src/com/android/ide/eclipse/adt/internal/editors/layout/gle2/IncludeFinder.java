@@ -42,6 +42,7 @@ import com.android.ide.eclipse.adt.internal.project.BaseProjectHelper;
 import com.android.ide.eclipse.adt.internal.resources.manager.ProjectResources;
 import com.android.ide.eclipse.adt.internal.resources.manager.ResourceManager;
 import com.android.ide.eclipse.adt.internal.resources.manager.ResourceManager.IResourceListener;
+import com.android.ide.eclipse.adt.internal.utils.ParallelScan;
 import com.android.ide.eclipse.adt.io.IFileWrapper;
 import com.android.io.IAbstractFile;
 import com.android.resources.ResourceType;
@@ -51,6 +52,7 @@ import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.QualifiedName;
 import org.eclipse.swt.widgets.Display;
@@ -58,11 +60,23 @@ import org.eclipse.wst.sse.core.StructuredModelManager;
 import org.eclipse.wst.sse.core.internal.provisional.IModelManager;
 import org.eclipse.wst.sse.core.internal.provisional.IStructuredModel;
 import org.eclipse.wst.xml.core.internal.provisional.document.IDOMModel;
+import org.kxml2.io.KXmlParser;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -76,13 +90,34 @@ import java.util.Set;
 /**
  * The include finder finds other XML files that are including a given XML file, and does
  * so efficiently (caching results across IDE sessions etc).
+ * <p>
+ * The include graph is persisted in a small binary index file in the project's working
+ * location, along with the modification stamp of each layout file. When the index is
+ * loaded, only the layouts whose stamps changed are rescanned, and after that the index
+ * is kept up to date incrementally from {@link ResourceManager} file notifications.
  */
 @SuppressWarnings("restriction") // XML model
 public class IncludeFinder {
-    /** Qualified name for the per-project persistent property include-map */
+    /**
+     * Qualified name for the per-project persistent property include-map. This is
+     * the legacy storage of the include map, superseded by {@link #INDEX_FILE}; it is
+     * only cleared when the index is written.
+     */
     private final static QualifiedName CONFIG_INCLUDES = new QualifiedName(AdtPlugin.PLUGIN_ID,
             "includes");//$NON-NLS-1$
 
+    /** Name of the include index file in the project's working location */
+    private static final String INDEX_FILE = "includes.bin"; //$NON-NLS-1$
+
+    /** Magic number at the beginning of the include index file */
+    private static final int INDEX_MAGIC = 0x494E4344; // "INCD"
+
+    /** Version of the include index file format */
+    private static final int INDEX_VERSION = 1;
+
+    /** Stamp recorded for files whose modification stamp cannot be determined */
+    private static final long NO_STAMP = IResource.NULL_STAMP;
+
     /**
      * Qualified name for the per-project non-persistent property storing the
      * {@link IncludeFinder} for this project
@@ -102,6 +137,15 @@ public class IncludeFinder {
      */
     private Map<String, List<String>> mIncludedBy = null;
 
+    /**
+     * Map from a layout map key to the modification stamp of the layout file at the
+     * time its includes were recorded
+     */
+    private Map<String, Long> mStamps = null;
+
+    /** Whether the includes or stamps have changed since they were last saved */
+    private boolean mDirty;
+
     /** Flag set during a refresh; ignore updates when this is true */
     private static boolean sRefreshing;
 
@@ -216,19 +260,18 @@ public class IncludeFinder {
     /** Initialize the inclusion data structures, if not already done */
     private void ensureInitialized() {
         if (mIncludes == null) {
-            // Initialize
-            if (!readSettings()) {
-                // Couldn't read settings: probably the first time this code is running
-                // so there is no known data about includes.
-
-                // Yes, these should be multimaps! If we start using Guava replace
-                // these with multimaps.
-                mIncludes = new HashMap<String, List<String>>();
-                mIncludedBy = new HashMap<String, List<String>>();
-
-                scanProject();
-                saveSettings();
-            }
+            // Yes, these should be multimaps! If we start using Guava replace
+            // these with multimaps.
+            mIncludes = new HashMap<String, List<String>>();
+            mIncludedBy = new HashMap<String, List<String>>();
+            mStamps = new HashMap<String, Long>();
+
+            // Start from the index saved in a previous session, if any, and only
+            // rescan the files which changed since. When there is no index this
+            // scans every layout in the project.
+            readSettings();
+            scanProject();
+            saveSettingsIfDirty();
         }
     }
 
@@ -351,31 +394,65 @@ public class IncludeFinder {
         return map;
     }
 
+    /**
+     * Returns the include index file for this project
+     *
+     * @return the index file, or null if the project has no working location
+     */
+    @Nullable
+    private File getIndexFile() {
+        if (mProject == null) {
+            return null;
+        }
+        IPath location = mProject.getWorkingLocation(AdtPlugin.PLUGIN_ID);
+        if (location == null) {
+            return null;
+        }
+        return location.append(INDEX_FILE).toFile();
+    }
+
+    /** Stores the settings if they have changed since they were last stored */
+    private void saveSettingsIfDirty() {
+        if (mDirty) {
+            saveSettings();
+        }
+    }
+
     /**
      * Stores the settings in the persistent project storage.
      */
     private void saveSettings() {
-        // Serialize the mIncludes map into a compact String. The mIncludedBy map can be
-        // inferred from it.
-        String encoded = encodeMap(mIncludes);
+        File file = getIndexFile();
+        if (file == null) {
+            return;
+        }
+        mDirty = false;
 
+        // Only the mIncludes map (and the file stamps) are stored. The mIncludedBy map
+        // can be inferred from it.
+        DataOutputStream out = null;
         try {
-            if (encoded.length() >= 2048) {
-                // The maximum length of a setting key is 2KB, according to the javadoc
-                // for the project class. It's unlikely that we'll
-                // hit this -- even with an average layout root name of 20 characters
-                // we can still store over a hundred names. But JUST IN CASE we run
-                // into this, we'll clear out the key in this name which means that the
-                // information will need to be recomputed in the next IDE session.
-                mProject.setPersistentProperty(CONFIG_INCLUDES, null);
-            } else {
-                String existing = mProject.getPersistentProperty(CONFIG_INCLUDES);
-                if (!encoded.equals(existing)) {
-                    mProject.setPersistentProperty(CONFIG_INCLUDES, encoded);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            writeIndex(out, mIncludes, mStamps);
+        } catch (IOException e) {
+            AdtPlugin.log(e, "Can't store include settings");
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // pass
                 }
             }
+        }
+
+        try {
+            // Clear out the settings stored by earlier versions
+            if (mProject.getPersistentProperty(CONFIG_INCLUDES) != null) {
+                mProject.setPersistentProperty(CONFIG_INCLUDES, null);
+            }
         } catch (CoreException e) {
-            AdtPlugin.log(e, "Can't store include settings");
+            // Not a problem; the property is simply no longer used
         }
     }
 
@@ -385,49 +462,198 @@ public class IncludeFinder {
      * @return true iff settings were restored from the project
      */
     private boolean readSettings() {
+        File file = getIndexFile();
+        if (file == null || !file.exists()) {
+            return false;
+        }
+
+        DataInputStream in = null;
         try {
-            String encoded = mProject.getPersistentProperty(CONFIG_INCLUDES);
-            if (encoded != null) {
-                mIncludes = decodeMap(encoded);
-
-                // Set up a reverse map, pointing from included files to the files that
-                // included them
-                mIncludedBy = new HashMap<String, List<String>>(2 * mIncludes.size());
-                for (Map.Entry<String, List<String>> entry : mIncludes.entrySet()) {
-                    // File containing the <include>
-                    String includer = entry.getKey();
-                    // Files being <include>'ed by the above file
-                    List<String> included = entry.getValue();
-                    setIncludedBy(includer, included);
-                }
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            Map<String, List<String>> includes = new HashMap<String, List<String>>();
+            Map<String, Long> stamps = new HashMap<String, Long>();
+            if (!readIndex(in, includes, stamps)) {
+                return false;
+            }
 
-                return true;
+            mIncludes = includes;
+            mStamps = stamps;
+
+            // Set up a reverse map, pointing from included files to the files that
+            // included them
+            mIncludedBy = new HashMap<String, List<String>>(2 * mIncludes.size());
+            for (Map.Entry<String, List<String>> entry : mIncludes.entrySet()) {
+                // File containing the <include>
+                String includer = entry.getKey();
+                // Files being <include>'ed by the above file
+                List<String> included = entry.getValue();
+                setIncludedBy(includer, included);
             }
-        } catch (CoreException e) {
+
+            return true;
+        } catch (IOException e) {
             AdtPlugin.log(e, "Can't read include settings");
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // pass
+                }
+            }
         }
 
         return false;
     }
 
+    /**
+     * Writes the given include map and file stamps in the binary index format read by
+     * {@link #readIndex}
+     *
+     * @param out the stream to write to
+     * @param includes map from layout keys to the layouts included by each
+     * @param stamps map from layout keys to file modification stamps
+     * @throws IOException if the index can't be written
+     */
+    @VisibleForTesting
+    static void writeIndex(
+            @NonNull DataOutputStream out,
+            @NonNull Map<String, List<String>> includes,
+            @NonNull Map<String, Long> stamps) throws IOException {
+        out.writeInt(INDEX_MAGIC);
+        out.writeInt(INDEX_VERSION);
+        out.writeInt(includes.size());
+        for (Map.Entry<String, List<String>> entry : includes.entrySet()) {
+            String key = entry.getKey();
+            List<String> values = entry.getValue();
+            Long stamp = stamps.get(key);
+            out.writeUTF(key);
+            out.writeLong(stamp != null ? stamp.longValue() : NO_STAMP);
+            out.writeShort(values.size());
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+        }
+    }
+
+    /**
+     * Reads a binary index written by {@link #writeIndex} into the given maps
+     *
+     * @param in the stream to read from
+     * @param includes map to store the layouts included by each layout key into
+     * @param stamps map to store the file modification stamps into
+     * @return true if the index was read, false if it has an unknown format
+     * @throws IOException if the index can't be read
+     */
+    @VisibleForTesting
+    static boolean readIndex(
+            @NonNull DataInputStream in,
+            @NonNull Map<String, List<String>> includes,
+            @NonNull Map<String, Long> stamps) throws IOException {
+        if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+            return false;
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            long stamp = in.readLong();
+            int valueCount = in.readShort();
+            List<String> values;
+            if (valueCount == 0) {
+                values = Collections.emptyList();
+            } else {
+                values = new ArrayList<String>(valueCount);
+                for (int j = 0; j < valueCount; j++) {
+                    values.add(in.readUTF());
+                }
+            }
+            includes.put(key, values);
+            stamps.put(key, stamp);
+        }
+
+        return true;
+    }
+
     // ----- File scanning -----
 
     /**
-     * Scan the whole project for XML layout resources that are performing includes.
+     * Scan the project for XML layout resources that are performing includes. Only
+     * layouts that are not in the index, or whose modification stamp differs from the
+     * one recorded in the index, are actually read; entries for layouts that no longer
+     * exist are dropped.
      */
     private void scanProject() {
         ProjectResources resources = ResourceManager.getInstance().getProjectResources(mProject);
-        if (resources != null) {
-            Collection<ResourceItem> layouts = resources.getResourceItemsOfType(LAYOUT);
-            for (ResourceItem layout : layouts) {
-                List<ResourceFile> sources = layout.getSourceFileList();
-                for (ResourceFile source : sources) {
-                    updateFileIncludes(source, false);
+        if (resources == null) {
+            return;
+        }
+
+        List<ResourceFile> stale = new ArrayList<ResourceFile>();
+        Set<String> present = new HashSet<String>();
+        Collection<ResourceItem> layouts = resources.getResourceItemsOfType(LAYOUT);
+        for (ResourceItem layout : layouts) {
+            List<ResourceFile> sources = layout.getSourceFileList();
+            for (ResourceFile source : sources) {
+                String key = getMapKey(source);
+                present.add(key);
+                Long stamp = mStamps.get(key);
+                if (stamp == null || stamp.longValue() == NO_STAMP
+                        || stamp.longValue() != getStamp(source)) {
+                    stale.add(source);
                 }
             }
+        }
 
+        for (String key : new ArrayList<String>(mIncludes.keySet())) {
+            if (!present.contains(key)) {
+                removeIncluder(key);
+                mDirty = true;
+            }
+        }
+
+        if (stale.isEmpty()) {
             return;
         }
+
+        mDirty = true;
+        List<List<String>> includes = ParallelScan.scan(stale,
+                new ParallelScan.Scanner<ResourceFile, List<String>>() {
+            @Override
+            public List<String> scan(@NonNull ResourceFile file) {
+                return computeIncludes(file);
+            }
+
+            @Override
+            public List<String> getFallback(@NonNull ResourceFile file) {
+                // The stamp is recorded anyway, so the file is only rescanned after
+                // its next change
+                return Collections.emptyList();
+            }
+        });
+        for (int i = 0, n = stale.size(); i < n; i++) {
+            ResourceFile source = stale.get(i);
+            String key = getMapKey(source);
+            mStamps.put(key, getStamp(source));
+            List<String> list = includes.get(i);
+            if (!list.equals(getIncludesFrom(key))) {
+                setIncluded(key, list, false);
+            }
+        }
+    }
+
+    /**
+     * Returns the modification stamp of the given resource file
+     *
+     * @param resourceFile the resource file
+     * @return the modification stamp, or {@link #NO_STAMP} if not known
+     */
+    private static long getStamp(@NonNull ResourceFile resourceFile) {
+        if (resourceFile.getFile() instanceof IFileWrapper) {
+            IFile file = ((IFileWrapper) resourceFile.getFile()).getIFile();
+            return file.getModificationStamp();
+        }
+
+        return NO_STAMP;
     }
 
     /**
@@ -446,58 +672,45 @@ public class IncludeFinder {
             if (type == ResourceType.LAYOUT) {
                 ensureInitialized();
 
-                List<String> includes = Collections.emptyList();
-                if (resourceFile.getFile() instanceof IFileWrapper) {
-                    IFile file = ((IFileWrapper) resourceFile.getFile()).getIFile();
-
-                    // See if we have an existing XML model for this file; if so, we can
-                    // just look directly at the parse tree
-                    boolean hadXmlModel = false;
-                    IStructuredModel model = null;
-                    try {
-                        IModelManager modelManager = StructuredModelManager.getModelManager();
-                        model = modelManager.getExistingModelForRead(file);
-                        if (model instanceof IDOMModel) {
-                            IDOMModel domModel = (IDOMModel) model;
-                            Document document = domModel.getDocument();
-                            includes = findIncludesInDocument(document);
-                            hadXmlModel = true;
-                        }
-                    } finally {
-                        if (model != null) {
-                            model.releaseFromRead();
-                        }
-                    }
-
-                    // If no XML model we have to read the XML contents and (possibly) parse it.
-                    // The actual file may not exist anymore (e.g. when deleting a layout file
-                    // or when the workspace is out of sync.)
-                    if (!hadXmlModel) {
-                        String xml = AdtPlugin.readFile(file);
-                        if (xml != null) {
-                            includes = findIncludes(xml);
-                        }
-                    }
-                } else {
-                    String xml = AdtPlugin.readFile(resourceFile);
-                    if (xml != null) {
-                        includes = findIncludes(xml);
-                    }
-                }
+                List<String> includes = computeIncludes(resourceFile);
 
                 String key = getMapKey(resourceFile);
+                Long stamp = Long.valueOf(getStamp(resourceFile));
+                if (!stamp.equals(mStamps.put(key, stamp))) {
+                    // Even if the includes are unchanged, the new stamp must be saved
+                    // such that the file isn't rescanned in the next session
+                    mDirty = true;
+                }
                 if (includes.equals(getIncludesFrom(key))) {
-                    // Common case -- so avoid doing settings flush etc
+                    // Common case -- the include graph is unchanged
                     return false;
                 }
 
                 boolean detectCycles = singleUpdate;
                 setIncluded(key, includes, detectCycles);
+                mDirty = true;
 
-                if (singleUpdate) {
-                    saveSettings();
-                }
+                return true;
+            }
+        }
+
+        return false;
+    }
 
+    /**
+     * Removes the given {@link ResourceFile} from the include data, if it is a layout
+     * resource
+     *
+     * @param resourceFile the {@link ResourceFile} which was removed
+     * @return true if we updated the includes for the resource file
+     */
+    private boolean removeFileIncludes(ResourceFile resourceFile) {
+        if (resourceFile.getResourceTypes().contains(ResourceType.LAYOUT)) {
+            ensureInitialized();
+            String key = getMapKey(resourceFile);
+            if (mIncludes.containsKey(key)) {
+                removeIncluder(key);
+                mDirty = true;
                 return true;
             }
         }
@@ -505,6 +718,56 @@ public class IncludeFinder {
         return false;
     }
 
+    /**
+     * Returns the includes in the given layout file
+     *
+     * @param resourceFile the layout file
+     * @return the layouts included by the file, never null
+     */
+    @NonNull
+    private static List<String> computeIncludes(@NonNull ResourceFile resourceFile) {
+        List<String> includes = Collections.emptyList();
+        if (resourceFile.getFile() instanceof IFileWrapper) {
+            IFile file = ((IFileWrapper) resourceFile.getFile()).getIFile();
+
+            // See if we have an existing XML model for this file; if so, we can
+            // just look directly at the parse tree
+            boolean hadXmlModel = false;
+            IStructuredModel model = null;
+            try {
+                IModelManager modelManager = StructuredModelManager.getModelManager();
+                model = modelManager.getExistingModelForRead(file);
+                if (model instanceof IDOMModel) {
+                    IDOMModel domModel = (IDOMModel) model;
+                    Document document = domModel.getDocument();
+                    includes = findIncludesInDocument(document);
+                    hadXmlModel = true;
+                }
+            } finally {
+                if (model != null) {
+                    model.releaseFromRead();
+                }
+            }
+
+            // If no XML model we have to read the XML contents and (possibly) parse it.
+            // The actual file may not exist anymore (e.g. when deleting a layout file
+            // or when the workspace is out of sync.)
+            if (!hadXmlModel) {
+                String xml = AdtPlugin.readFile(file);
+                if (xml != null) {
+                    includes = findIncludes(xml);
+                }
+            }
+        } else {
+            String xml = AdtPlugin.readFile(resourceFile);
+            if (xml != null) {
+                includes = findIncludes(xml);
+            }
+        }
+
+        return includes;
+    }
+
     /**
      * Finds the list of includes in the given XML content. It attempts quickly return
      * empty if the file does not include any include tags; it does this by only parsing
@@ -522,20 +785,54 @@ public class IncludeFinder {
     }
 
     /**
-     * Parses the given XML content and extracts all the included URLs and returns them
+     * Parses the given XML content and extracts all the included URLs and returns them.
+     * This uses a streaming parser rather than building a DOM; if the document is not
+     * well formed, the includes found before the error are returned.
      *
      * @param xml layout XML content to be parsed for includes
-     * @return a list of included urls, or null
+     * @return a list of included urls, never null
      */
     @VisibleForTesting
     @NonNull
     static List<String> findIncludesInXml(@NonNull String xml) {
-        Document document = DomUtilities.parseDocument(xml, false /*logParserErrors*/);
-        if (document != null) {
-            return findIncludesInDocument(document);
+        List<String> urls = null;
+        KXmlParser parser = new KXmlParser();
+        try {
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+            parser.setInput(new StringReader(xml));
+            int event = parser.getEventType();
+            while (event != XmlPullParser.END_DOCUMENT) {
+                if (event == XmlPullParser.START_TAG) {
+                    String tag = parser.getName();
+                    String url = null;
+                    if (tag.equals(VIEW_INCLUDE)) {
+                        url = parser.getAttributeValue(null, ATTR_LAYOUT);
+                    } else if (tag.equals(VIEW_FRAGMENT)) {
+                        url = parser.getAttributeValue(TOOLS_URI, ATTR_LAYOUT);
+                    }
+                    if (url != null && url.length() > 0) {
+                        String resourceName = urlToLocalResource(url);
+                        if (resourceName != null) {
+                            if (urls == null) {
+                                urls = new ArrayList<String>();
+                            }
+                            urls.add(resourceName);
+                        }
+                    }
+                }
+                event = parser.next();
+            }
+        } catch (XmlPullParserException e) {
+            // Not well formed: keep whatever we found so far
+        } catch (IOException e) {
+            // Can't happen when reading from a String
         }
 
-        return Collections.emptyList();
+        if (urls == null) {
+            return Collections.emptyList();
+        }
+
+        return urls;
     }
 
     /** Searches the given DOM document and returns the list of includes, if any */
@@ -643,6 +940,24 @@ public class IncludeFinder {
         }
     }
 
+    /**
+     * Removes the given layout, and the layouts it includes, from the include data
+     *
+     * @param includer the layout to be removed
+     */
+    private void removeIncluder(String includer) {
+        List<String> oldIncludes = mIncludes.remove(includer);
+        if (oldIncludes != null) {
+            for (String includee : oldIncludes) {
+                List<String> includers = mIncludedBy.get(includee);
+                if (includers != null) {
+                    includers.remove(includer);
+                }
+            }
+        }
+        mStamps.remove(includer);
+    }
+
     /** Record the list of included layouts from the given layout */
     private void setIncludedBy(String includer, List<String> included) {
         for (String target : included) {
@@ -732,9 +1047,12 @@ public class IncludeFinder {
 
             IncludeFinder finder = get(project);
             if (finder != null) {
-                if (finder.updateFileIncludes(file, true)) {
-                    finder.saveSettings();
+                if ((eventType & REMOVED) != 0) {
+                    finder.removeFileIncludes(file);
+                } else {
+                    finder.updateFileIncludes(file, true);
                 }
+                finder.saveSettingsIfDirty();
             }
         }
 
@@ -915,6 +1233,7 @@ public class IncludeFinder {
         IncludeFinder finder = new IncludeFinder(null);
         finder.mIncludes = new HashMap<String, List<String>>();
         finder.mIncludedBy = new HashMap<String, List<String>>();
+        finder.mStamps = new HashMap<String, Long>();
         return finder;
     }
 
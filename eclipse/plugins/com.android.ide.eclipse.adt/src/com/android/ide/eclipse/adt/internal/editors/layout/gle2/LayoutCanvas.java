@@ -138,9 +138,6 @@ public class LayoutCanvas extends Canvas {
     /** Default font used on the canvas. Do not dispose, it's a system font. */
     private Font mFont;
 
-    /** Current hover view info. Null when no mouse hover. */
-    private CanvasViewInfo mHoverViewInfo;
-
     /** When true, always display the outline of all views. */
     private boolean mShowOutline;
 
@@ -1105,9 +1102,6 @@ public class LayoutCanvas extends Canvas {
             vi = null;
         }
 
-        boolean needsUpdate = vi != mHoverViewInfo;
-        mHoverViewInfo = vi;
-
         if (vi == null) {
             clearHover();
         } else {
@@ -1115,8 +1109,9 @@ public class LayoutCanvas extends Canvas {
             mHoverOverlay.setHover(r.x, r.y, r.width, r.height);
         }
 
-        if (needsUpdate) {
-            redraw();
+        // Only repaint the areas of the previous and the new hover
+        for (Rectangle damage : mHoverOverlay.takeDamage()) {
+            redraw(damage.x, damage.y, damage.width, damage.height, false);
         }
     }
 
@@ -79,12 +79,12 @@ public class OutlineOverlay extends Overlay {
             gc.setLineStyle(SwtDrawingStyle.OUTLINE.getLineStyle());
             int oldAlpha = gc.getAlpha();
             gc.setAlpha(SwtDrawingStyle.OUTLINE.getStrokeAlpha());
-            drawOutline(gc, lastRoot);
+            drawOutline(gc, lastRoot, gc.getClipping());
             gc.setAlpha(oldAlpha);
         }
     }
 
-    private void drawOutline(GC gc, CanvasViewInfo info) {
+    private void drawOutline(GC gc, CanvasViewInfo info, Rectangle clip) {
         Rectangle r = info.getAbsRect();
 
         int x = mHScale.translate(r.x);
@@ -97,10 +97,17 @@ public class OutlineOverlay extends Overlay {
         // box and the top of the next box being -adjacent-, they -overlap-.
         // This makes the outline nicer visually since you don't get
         // "double thickness" lines for all adjacent boxes.
-        gc.drawRectangle(x, y, w + 1, h + 1);
+        // Skip the outlines outside of the area being repainted, such as when only
+        // the hover moved
+        if (Math.min(x, x + w + 1) <= clip.x + clip.width
+                && Math.min(y, y + h + 1) <= clip.y + clip.height
+                && Math.max(x, x + w + 1) >= clip.x
+                && Math.max(y, y + h + 1) >= clip.y) {
+            gc.drawRectangle(x, y, w + 1, h + 1);
+        }
 
         for (CanvasViewInfo vi : info.getChildren()) {
-            drawOutline(gc, vi);
+            drawOutline(gc, vi, clip);
         }
     }
 
@@ -18,6 +18,7 @@ package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
 import static com.android.SdkConstants.LAYOUT_RESOURCE_PREFIX;
 
 import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
 import com.android.ide.common.api.IClientRulesEngine;
 import com.android.ide.common.api.INode;
 import com.android.ide.common.api.Rect;
@@ -76,7 +77,13 @@ import java.util.Set;
  * Android layouts. This is a wrapper around the layout library.
  */
 public class RenderService {
-    /** Reference to the file being edited. Can also be used to access the {@link IProject}. */
+    /**
+     * Reference to the file being edited. Can also be used to access the {@link IProject}.
+     * This is null for services created for headless rendering, see
+     * {@link #create(IProject, LayoutLibrary, ProjectCallback, ResourceResolver, Device,
+     * FolderConfiguration, int, int)}.
+     */
+    @Nullable
     private final GraphicalEditorPart mEditor;
 
     // The following fields are inferred from the editor and not customizable by the
@@ -95,6 +102,7 @@ public class RenderService {
     // setters:
 
     private UiDocumentNode mModel;
+    private File mLayoutFile;
     private Reference mIncludedWithin;
     private RenderingMode mRenderingMode = RenderingMode.NORMAL;
     private LayoutLog mLogger;
@@ -148,6 +156,32 @@ public class RenderService {
         mTargetSdkVersion = editor.getTargetSdkVersion();
     }
 
+    private RenderService(
+            @NonNull IProject project,
+            @NonNull LayoutLibrary layoutLib,
+            @NonNull ProjectCallback projectCallback,
+            @NonNull ResourceResolver resourceResolver,
+            @NonNull Device device,
+            @NonNull FolderConfiguration folderConfig,
+            int minSdkVersion,
+            int targetSdkVersion) {
+        mEditor = null;
+
+        mProject = project;
+        // Let layoutlib allocate the images; there is no canvas to render into
+        mImageFactory = null;
+
+        mHardwareConfigHelper = new HardwareConfigHelper(device);
+        mHardwareConfigHelper.setOrientation(
+                folderConfig.getScreenOrientationQualifier().getValue());
+
+        mLayoutLib = layoutLib;
+        mResourceResolver = resourceResolver;
+        mProjectCallback = projectCallback;
+        mMinSdkVersion = minSdkVersion;
+        mTargetSdkVersion = targetSdkVersion;
+    }
+
     /**
      * Returns true if this configuration supports the given rendering
      * capability
@@ -200,6 +234,38 @@ public class RenderService {
         return renderService;
     }
 
+    /**
+     * Creates a new {@link RenderService} which is not associated with any editor, for
+     * example for rendering layouts in batch (see {@link BatchRenderService}). Such a
+     * service must be given a layout file to render with {@link #setLayoutFile(File)}
+     * (or a model with {@link #setModel(UiDocumentNode)}), and does not support
+     * {@link #measureChildren}.
+     *
+     * @param project the project containing the layouts to be rendered
+     * @param layoutLib the layout library to render with
+     * @param projectCallback the project callback; it must have been created for the
+     *            given layout library
+     * @param resolver the resource resolver for the configuration and theme
+     * @param device the device to render for
+     * @param folderConfig the full configuration to render for
+     * @param minSdkVersion the minimum SDK version of the project
+     * @param targetSdkVersion the target SDK version of the project
+     * @return a {@link RenderService} which can perform rendering services
+     */
+    @NonNull
+    public static RenderService create(
+            @NonNull IProject project,
+            @NonNull LayoutLibrary layoutLib,
+            @NonNull ProjectCallback projectCallback,
+            @NonNull ResourceResolver resolver,
+            @NonNull Device device,
+            @NonNull FolderConfiguration folderConfig,
+            int minSdkVersion,
+            int targetSdkVersion) {
+        return new RenderService(project, layoutLib, projectCallback, resolver, device,
+                folderConfig, minSdkVersion, targetSdkVersion);
+    }
+
     /**
      * Renders the given model, using this editor's theme and screen settings, and returns
      * the result as a {@link RenderSession}.
@@ -243,6 +309,19 @@ public class RenderService {
         return this;
     }
 
+    /**
+     * Sets the layout file to be rendered. This is only used if no model has been set
+     * with {@link #setModel(UiDocumentNode)}; the file is parsed directly rather than
+     * through an editor model.
+     *
+     * @param layoutFile the layout file to be rendered
+     * @return this (such that chains of setters can be stringed together)
+     */
+    public RenderService setLayoutFile(File layoutFile) {
+        mLayoutFile = layoutFile;
+        return this;
+    }
+
     /**
      * Overrides the width and height to be used during rendering (which might be adjusted if
      * the {@link #setRenderingMode(RenderingMode)} is {@link RenderingMode#FULL_EXPAND}.
@@ -351,7 +430,7 @@ public class RenderService {
      * @return the {@link RenderSession} resulting from rendering the current model
      */
     public RenderSession createRenderSession() {
-        assert mModel != null : "Incomplete service config";
+        assert mModel != null || mLayoutFile != null : "Incomplete service config";
         finishConfiguration();
 
         if (mResourceResolver == null) {
@@ -361,15 +440,29 @@ public class RenderService {
 
         HardwareConfig hardwareConfig = mHardwareConfigHelper.getConfig();
 
-        UiElementPullParser modelParser = new UiElementPullParser(mModel,
-                false, mExpandNodes, hardwareConfig.getDensity(), mProject);
-        ILayoutPullParser topParser = modelParser;
+        ILayoutPullParser topParser;
+        UiElementPullParser modelParser = null;
+        if (mModel != null) {
+            modelParser = new UiElementPullParser(mModel,
+                    false, mExpandNodes, hardwareConfig.getDensity(), mProject);
+            topParser = modelParser;
+        } else {
+            try {
+                topParser = createFileParser(mLayoutFile);
+            } catch (IOException e) {
+                mLogger.error(null, e.getLocalizedMessage(), e, null);
+                return null;
+            } catch (XmlPullParserException e) {
+                mLogger.error(null, e.getLocalizedMessage(), e, null);
+                return null;
+            }
+        }
 
         // Code to support editing included layout
         // first reset the layout parser just in case.
         mProjectCallback.setLayoutParser(null, null);
 
-        if (mIncludedWithin != null) {
+        if (mIncludedWithin != null && mEditor != null && modelParser != null) {
             // Outer layout name:
             String contextLayoutName = mIncludedWithin.getName();
 
@@ -384,10 +477,7 @@ public class RenderService {
                         // as it's what IXmlPullParser.getParser(String) will receive.
                         String queryLayoutName = mEditor.getLayoutResourceName();
                         mProjectCallback.setLayoutParser(queryLayoutName, modelParser);
-                        topParser = new ContextPullParser(mProjectCallback, layoutFile);
-                        topParser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
-                        String xmlText = Files.toString(layoutFile, Charsets.UTF_8);
-                        topParser.setInput(new StringReader(xmlText));
+                        topParser = createFileParser(layoutFile);
                     } catch (IOException e) {
                         AdtPlugin.log(e, null);
                     } catch (XmlPullParserException e) {
@@ -432,7 +522,9 @@ public class RenderService {
         }
 
         // set the Image Overlay as the image factory.
-        params.setImageFactory(mImageFactory);
+        if (mImageFactory != null) {
+            params.setImageFactory(mImageFactory);
+        }
 
         try {
             mProjectCallback.setLogger(mLogger);
@@ -448,6 +540,24 @@ public class RenderService {
         }
     }
 
+    /**
+     * Creates a pull parser for the given layout file
+     *
+     * @param layoutFile the layout file to be parsed
+     * @return a parser for the file
+     * @throws IOException if the file can't be read
+     * @throws XmlPullParserException if the parser can't be configured
+     */
+    @NonNull
+    private ILayoutPullParser createFileParser(@NonNull File layoutFile)
+            throws IOException, XmlPullParserException {
+        ContextPullParser parser = new ContextPullParser(mProjectCallback, layoutFile);
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        String xmlText = Files.toString(layoutFile, Charsets.UTF_8);
+        parser.setInput(new StringReader(xmlText));
+        return parser;
+    }
+
     /**
      * Renders the given resource value (which should refer to a drawable) and returns it
      * as an image
@@ -489,6 +599,7 @@ public class RenderService {
      */
     public Map<INode, Rect> measureChildren(INode parent,
             final IClientRulesEngine.AttributeFilter filter) {
+        assert mEditor != null : "measureChildren requires an editor";
         finishConfiguration();
         HardwareConfig hardwareConfig = mHardwareConfigHelper.getConfig();
 
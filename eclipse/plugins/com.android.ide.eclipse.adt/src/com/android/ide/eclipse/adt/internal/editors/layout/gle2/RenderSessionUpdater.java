@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
+
+import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_ID;
+import static com.android.SdkConstants.ATTR_LAYOUT_RESOURCE_PREFIX;
+import static com.android.SdkConstants.REQUEST_FOCUS;
+import static com.android.SdkConstants.VIEW_FRAGMENT;
+import static com.android.SdkConstants.VIEW_INCLUDE;
+import static com.android.SdkConstants.VIEW_MERGE;
+import static com.android.SdkConstants.XMLNS_URI;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.annotations.VisibleForTesting;
+import com.android.ide.common.rendering.api.RenderSession;
+import com.android.ide.common.rendering.api.Result;
+import com.android.ide.common.rendering.api.Result.Status;
+import com.android.ide.eclipse.adt.internal.editors.uimodel.UiDocumentNode;
+import com.android.ide.eclipse.adt.internal.editors.uimodel.UiElementNode;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies edits of the layout model to the live {@link RenderSession} of the canvas,
+ * using the view manipulation operations of layoutlib, such that small edits do not
+ * require inflating and resolving the whole layout again.
+ * <p/>
+ * A snapshot of the attributes and children of every element is taken after each
+ * render. When the model changes, it is compared with the snapshot, and:
+ * <ul>
+ * <li>Removed views are removed from their parent
+ * <li>Views reordered within their parent are moved
+ * <li>Changed attributes (other than ids and layout parameters) are set on the views
+ * </ul>
+ * Any other change, such as an inserted element, an element moved to another parent,
+ * or a change to a layout parameter, can't be applied to the session, and the caller
+ * must then inflate the layout again with a new session. The same goes for removing or
+ * reordering children of an element unless each child was rendered as exactly one view,
+ * since the positions of the children are used as the positions of the views.
+ */
+class RenderSessionUpdater {
+    /** Timeout in milliseconds for the render following the updates */
+    private static final long RENDER_TIMEOUT_MS = 1000;
+
+    /** The state of each element at the last render, or null if unknown */
+    private Map<UiElementNode, ElementState> mSnapshot;
+
+    /** The session which rendered the snapshot */
+    private RenderSession mSession;
+
+    /** Whether layoutlib reported that it can't set properties on views */
+    private boolean mPropertiesUnsupported;
+
+    /**
+     * Records the state of the model which was just rendered
+     *
+     * @param model the rendered model
+     * @param session the session which rendered the model
+     */
+    void snapshot(@NonNull UiDocumentNode model, @NonNull RenderSession session) {
+        Map<UiElementNode, ElementState> snapshot = new HashMap<UiElementNode, ElementState>();
+        for (UiElementNode child : model.getUiChildren()) {
+            addState(child, snapshot);
+        }
+        mSnapshot = snapshot;
+        mSession = session;
+    }
+
+    /**
+     * Forgets the last snapshot, such that the next render must use a new session
+     */
+    void invalidate() {
+        mSnapshot = null;
+        mSession = null;
+    }
+
+    /**
+     * Attempts to apply the changes of the model since the last snapshot to the given
+     * session, and renders it.
+     *
+     * @param model the edited model
+     * @param session the session which rendered the model at the time of the snapshot
+     * @param viewHierarchy the view hierarchy of the session
+     * @param canManipulateViews whether layoutlib supports moving and removing views
+     * @return true if the changes were applied and the session was rendered, or false
+     *         if the model must be rendered with a new session. Note that the session
+     *         may have been partially modified in that case. Either way, the snapshot
+     *         must be taken again before the next update.
+     */
+    boolean update(@NonNull UiDocumentNode model, @Nullable RenderSession session,
+            @NonNull ViewHierarchy viewHierarchy, boolean canManipulateViews) {
+        Map<UiElementNode, ElementState> snapshot = mSnapshot;
+        RenderSession snapshotSession = mSession;
+        invalidate();
+        if (snapshot == null || session == null || session != snapshotSession
+                || !viewHierarchy.isValid() || viewHierarchy.getSession() != session) {
+            return false;
+        }
+
+        Map<UiElementNode, ElementState> current = new HashMap<UiElementNode, ElementState>();
+        for (UiElementNode child : model.getUiChildren()) {
+            addState(child, current);
+        }
+
+        List<UiElementNode> removed = new ArrayList<UiElementNode>();
+        List<UiElementNode> reordered = new ArrayList<UiElementNode>();
+        List<UiElementNode> changed = new ArrayList<UiElementNode>();
+        for (Map.Entry<UiElementNode, ElementState> entry : current.entrySet()) {
+            UiElementNode node = entry.getKey();
+            ElementState state = entry.getValue();
+            ElementState previous = snapshot.get(node);
+            if (previous == null || previous.parent != state.parent) {
+                // Inserted, or moved to another parent
+                return false;
+            }
+            if (!previous.otherAttributes.equals(state.otherAttributes)) {
+                // Attributes from other namespaces (such as tools) change how the
+                // layout is inflated
+                return false;
+            }
+            if (!previous.attributes.equals(state.attributes)) {
+                if (!isSingleView(node) || !canSetAttributes(previous, state)) {
+                    return false;
+                }
+                changed.add(node);
+            }
+        }
+        for (Map.Entry<UiElementNode, ElementState> entry : snapshot.entrySet()) {
+            UiElementNode node = entry.getKey();
+            if (!current.containsKey(node)) {
+                UiElementNode parent = entry.getValue().parent;
+                if (parent == null) {
+                    // The root element was removed
+                    return false;
+                }
+                // Only remove the top most view; its children go with it
+                if (current.containsKey(parent)) {
+                    removed.add(node);
+                }
+            }
+        }
+        for (Map.Entry<UiElementNode, ElementState> entry : current.entrySet()) {
+            List<UiElementNode> children = entry.getValue().children;
+            List<UiElementNode> previous =
+                    new ArrayList<UiElementNode>(snapshot.get(entry.getKey()).children);
+            previous.retainAll(children);
+            if (!previous.equals(children)) {
+                reordered.add(entry.getKey());
+            }
+        }
+
+        if ((!removed.isEmpty() || !reordered.isEmpty()) && !canManipulateViews) {
+            return false;
+        }
+        if (!changed.isEmpty() && mPropertiesUnsupported) {
+            return false;
+        }
+
+        Set<UiElementNode> parents = new HashSet<UiElementNode>(reordered);
+        for (UiElementNode node : removed) {
+            parents.add(snapshot.get(node).parent);
+        }
+        for (UiElementNode parent : parents) {
+            if (!hasOneViewPerChild(snapshot.get(parent).children,
+                    viewHierarchy.findViewInfoFor(parent))) {
+                return false;
+            }
+        }
+
+        for (UiElementNode node : removed) {
+            Object view = getViewObject(node, viewHierarchy);
+            if (view == null || !isSuccess(session.removeChild(view, null /*listener*/))) {
+                return false;
+            }
+        }
+
+        for (UiElementNode parent : reordered) {
+            Object parentView = getViewObject(parent, viewHierarchy);
+            if (parentView == null) {
+                return false;
+            }
+            List<UiElementNode> order =
+                    new ArrayList<UiElementNode>(snapshot.get(parent).children);
+            List<UiElementNode> children = current.get(parent).children;
+            order.retainAll(children);
+            for (int i = 0, n = children.size(); i < n; i++) {
+                UiElementNode child = children.get(i);
+                if (order.get(i) != child) {
+                    Object view = getViewObject(child, viewHierarchy);
+                    if (view == null || !isSuccess(session.moveChild(parentView, view, i,
+                            null /*layoutParams*/, null /*listener*/))) {
+                        return false;
+                    }
+                    order.remove(child);
+                    order.add(i, child);
+                }
+            }
+        }
+
+        for (UiElementNode node : changed) {
+            Map<String, String> previous = snapshot.get(node).attributes;
+            Object view = getViewObject(node, viewHierarchy);
+            if (view == null) {
+                return false;
+            }
+            for (Map.Entry<String, String> entry : current.get(node).attributes.entrySet()) {
+                String name = entry.getKey();
+                String value = entry.getValue();
+                if (value.equals(previous.get(name))) {
+                    continue;
+                }
+                Result result = session.setProperty(view, name, value);
+                if (!isSuccess(result)) {
+                    if (result != null && result.getStatus() == Status.NOT_IMPLEMENTED) {
+                        mPropertiesUnsupported = true;
+                    }
+                    return false;
+                }
+            }
+        }
+
+        return isSuccess(session.render(RENDER_TIMEOUT_MS));
+    }
+
+    /**
+     * Returns true if the attribute changes between the two states of an element can
+     * be applied by setting properties on its view
+     */
+    private static boolean canSetAttributes(@NonNull ElementState previous,
+            @NonNull ElementState current) {
+        if (!current.otherAttributes.isEmpty()
+                || !current.attributes.keySet().containsAll(previous.attributes.keySet())) {
+            // Attributes from other namespaces (such as tools) can override the
+            // android attributes, and attributes can't be unset on a view
+            return false;
+        }
+
+        for (Map.Entry<String, String> entry : current.attributes.entrySet()) {
+            String name = entry.getKey();
+            if (!entry.getValue().equals(previous.attributes.get(name))
+                    && (name.equals(ATTR_ID)
+                            || name.startsWith(ATTR_LAYOUT_RESOURCE_PREFIX))) {
+                // Changes the layout of the parent, or the references of siblings
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns true if each of the given children of an element was rendered as exactly
+     * one view of the given parent view, in the same order, such that the position of a
+     * child is also the position of its view
+     *
+     * @param children the children of the element at the time of the render
+     * @param parentInfo the view of the element, or null if it has none
+     * @return true if the views can be removed and moved by the child positions
+     */
+    @VisibleForTesting
+    static boolean hasOneViewPerChild(@NonNull List<UiElementNode> children,
+            @Nullable CanvasViewInfo parentInfo) {
+        if (parentInfo == null) {
+            return false;
+        }
+        List<CanvasViewInfo> views = parentInfo.getChildren();
+        if (views.size() != children.size()) {
+            // For example a <requestFocus/> child, or an include of a <merge> with
+            // several views
+            return false;
+        }
+        for (int i = 0, n = children.size(); i < n; i++) {
+            UiElementNode child = children.get(i);
+            if (!isSingleView(child) || views.get(i).getUiViewNode() != child) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns true if the element is rendered as a single view of its own: not an
+     * include, a merge or a fragment, nor a tag which doesn't create a view at all
+     */
+    private static boolean isSingleView(@NonNull UiElementNode node) {
+        String tag = node.getDescriptor().getXmlName();
+        return !VIEW_INCLUDE.equals(tag) && !VIEW_MERGE.equals(tag)
+                && !VIEW_FRAGMENT.equals(tag) && !REQUEST_FOCUS.equals(tag);
+    }
+
+    private static boolean isSuccess(@Nullable Result result) {
+        return result != null && result.isSuccess();
+    }
+
+    @Nullable
+    private static Object getViewObject(@NonNull UiElementNode node,
+            @NonNull ViewHierarchy viewHierarchy) {
+        CanvasViewInfo info = viewHierarchy.findViewInfoFor(node);
+        return info != null ? info.getViewObject() : null;
+    }
+
+    private static void addState(@NonNull UiElementNode node,
+            @NonNull Map<UiElementNode, ElementState> states) {
+        states.put(node, new ElementState(node));
+        for (UiElementNode child : node.getUiChildren()) {
+            addState(child, states);
+        }
+    }
+
+    /** The attributes and children of an element at the time of a render */
+    private static class ElementState {
+        /** The parent element, or null for the root element */
+        final UiElementNode parent;
+        final List<UiElementNode> children;
+        /** The values of the android attributes, by local name */
+        final Map<String, String> attributes = new HashMap<String, String>();
+        /** The values of the attributes in other namespaces, by qualified name */
+        final Map<String, String> otherAttributes = new HashMap<String, String>();
+
+        ElementState(@NonNull UiElementNode node) {
+            UiElementNode parent = node.getUiParent();
+            this.parent = parent instanceof UiDocumentNode ? null : parent;
+            children = new ArrayList<UiElementNode>(node.getUiChildren());
+
+            Node xmlNode = node.getXmlNode();
+            NamedNodeMap xmlAttributes = xmlNode != null ? xmlNode.getAttributes() : null;
+            if (xmlAttributes != null) {
+                for (int i = 0, n = xmlAttributes.getLength(); i < n; i++) {
+                    Attr attribute = (Attr) xmlAttributes.item(i);
+                    String uri = attribute.getNamespaceURI();
+                    if (ANDROID_URI.equals(uri)) {
+                        attributes.put(attribute.getLocalName(), attribute.getValue());
+                    } else if (!XMLNS_URI.equals(uri)) {
+                        otherAttributes.put(uri + ':' + attribute.getLocalName(),
+                                attribute.getValue());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
+
+import com.android.annotations.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the latency of the most recent renders of a layout editor, such
+ * that percentiles can be reported for diagnostics.
+ * <p/>
+ * The latency of a render is the time from the model change which requested it
+ * until the new image was handed to the canvas, so it includes the time a
+ * request spent waiting for further edits to be coalesced into it.
+ */
+public class RenderStatistics {
+    /** Number of renders the percentiles are computed from */
+    private static final int SAMPLE_COUNT = 100;
+
+    private final long[] mSamples = new long[SAMPLE_COUNT];
+    private int mCount;
+    private int mNext;
+
+    /**
+     * Records the latency of a render
+     *
+     * @param latencyMs the latency of the render, in milliseconds
+     */
+    public synchronized void record(long latencyMs) {
+        mSamples[mNext] = latencyMs;
+        mNext = (mNext + 1) % SAMPLE_COUNT;
+        if (mCount < SAMPLE_COUNT) {
+            mCount++;
+        }
+    }
+
+    /**
+     * Returns the number of renders the statistics are computed from
+     *
+     * @return the number of recorded renders, at most the number of renders kept
+     */
+    public synchronized int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the given percentile of the latency of the most recent renders
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in milliseconds below which the given percentage of
+     *         renders completed, or -1 if no render has been recorded
+     */
+    public synchronized long getPercentile(int percentile) {
+        assert percentile >= 0 && percentile <= 100 : percentile;
+        if (mCount == 0) {
+            return -1;
+        }
+
+        long[] sorted = Arrays.copyOf(mSamples, mCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * mCount) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        if (mCount == 0) {
+            return "No renders"; //$NON-NLS-1$
+        }
+
+        return String.format("Render latency over %1$d renders: " //$NON-NLS-1$
+                + "50%%: %2$dms, 90%%: %3$dms, 99%%: %4$dms, max: %5$dms", //$NON-NLS-1$
+                mCount, getPercentile(50), getPercentile(90), getPercentile(99),
+                getPercentile(100));
+    }
+}
@@ -129,6 +129,22 @@ public class SwtUtils {
      */
     public static Image convertToSwt(Device display, BufferedImage awtImage,
             boolean transferAlpha, int globalAlpha) {
+        return new Image(display, convertToSwtData(awtImage, transferAlpha, globalAlpha));
+    }
+
+    /**
+     * Converts an AWT {@link BufferedImage} into the {@link ImageData} of an equivalent
+     * SWT image, as done by {@link #convertToSwt}
+     *
+     * @param awtImage The AWT {@link BufferedImage}
+     * @param transferAlpha If true, copy alpha data out of the source image
+     * @param globalAlpha If -1, do nothing, otherwise adjust the alpha of the final image
+     *            by the given amount in the range [0,255]
+     * @return A new {@link ImageData} with the same contents as the source
+     *         {@link BufferedImage}
+     */
+    public static ImageData convertToSwtData(BufferedImage awtImage, boolean transferAlpha,
+            int globalAlpha) {
         if (!isSupportedPaletteType(awtImage.getType())) {
             awtImage = convertToCompatibleFormat(awtImage);
         }
@@ -150,7 +166,7 @@ public class SwtUtils {
                 imageData.setPixels(0, 0, imageDataBuffer.length, imageDataBuffer, 0);
             } catch (SWTException se) {
                 // Unsupported depth
-                return convertToSwt(display, convertToCompatibleFormat(awtImage),
+                return convertToSwtData(convertToCompatibleFormat(awtImage),
                         transferAlpha, globalAlpha);
             }
         }
@@ -178,7 +194,76 @@ public class SwtUtils {
             imageData.alpha = globalAlpha;
         }
 
-        return new Image(display, imageData);
+        return imageData;
+    }
+
+    /**
+     * Copies a region of an opaque AWT {@link BufferedImage} into an existing SWT
+     * {@link Image}, such that only the pixels of the region are transferred instead of
+     * converting the whole image with {@link #convertToSwt}.
+     *
+     * @param target the SWT image to update
+     * @param awtImage the AWT image to copy from
+     * @param x the left edge of the region, in both images
+     * @param y the top edge of the region, in both images
+     * @param width the width of the region
+     * @param height the height of the region
+     */
+    public static void copyRegion(Image target, BufferedImage awtImage, int x, int y,
+            int width, int height) {
+        int[] pixels = awtImage.getRGB(x, y, width, height, null, 0, width);
+        ImageData imageData = new ImageData(width, height, 32,
+                getAwtPaletteData(BufferedImage.TYPE_INT_ARGB));
+        for (int row = 0; row < height; row++) {
+            imageData.setPixels(0, row, width, pixels, row * width);
+        }
+
+        Image region = new Image(target.getDevice(), imageData);
+        GC gc = new GC(target);
+        try {
+            gc.drawImage(region, x, y);
+        } finally {
+            gc.dispose();
+            region.dispose();
+        }
+    }
+
+    /**
+     * Copies a region of an AWT {@link BufferedImage} into the {@link ImageData} of an
+     * SWT image created by {@link #convertToSwtData}, including the alpha of the pixels
+     * if the image data has per pixel alpha. Unlike drawing into an {@link Image} with a
+     * {@link GC}, this replaces the pixels and their alpha rather than blending over
+     * them; create a new {@link Image} from the data to see the changes.
+     *
+     * @param target the image data to update
+     * @param awtImage the AWT image to copy from
+     * @param x the left edge of the region, in both images
+     * @param y the top edge of the region, in both images
+     * @param width the width of the region
+     * @param height the height of the region
+     */
+    public static void copyRegion(ImageData target, BufferedImage awtImage, int x, int y,
+            int width, int height) {
+        int[] pixels = awtImage.getRGB(x, y, width, height, null, 0, width);
+        byte[] alphas = target.alphaData != null ? new byte[width] : null;
+        boolean bgr = target.palette.redMask == 0x000000FF;
+        for (int row = 0; row < height; row++) {
+            int offset = row * width;
+            if (alphas != null) {
+                for (int i = 0; i < width; i++) {
+                    alphas[i] = (byte) (pixels[offset + i] >>> 24);
+                }
+                target.setAlphas(x, y + row, width, alphas, 0);
+            }
+            if (bgr) {
+                for (int i = offset; i < offset + width; i++) {
+                    int pixel = pixels[i];
+                    pixels[i] = (pixel & 0x00FF00) | (pixel & 0xFF) << 16
+                            | (pixel >> 16) & 0xFF;
+                }
+            }
+            target.setPixels(x, y + row, width, pixels, offset);
+        }
     }
 
     /**
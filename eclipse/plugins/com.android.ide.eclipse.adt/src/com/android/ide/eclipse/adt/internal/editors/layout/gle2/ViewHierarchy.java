@@ -43,7 +43,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.RandomAccess;
 import java.util.Set;
 
 /**
@@ -77,6 +76,12 @@ public class ViewHierarchy {
      */
     private CanvasViewInfo mLastValidViewInfoRoot;
 
+    /**
+     * The spatial index of {@link #mLastValidViewInfoRoot}, used for hit testing, or
+     * null if there is no view info root
+     */
+    private CanvasViewInfoIndex mIndex;
+
     /**
      * True when the last {@link #setSession} provided a valid {@link LayoutScene}.
      * <p/>
@@ -151,8 +156,9 @@ public class ViewHierarchy {
      */
     /* package */ void setSession(RenderSession session, Set<UiElementNode> explodedNodes,
             boolean layoutlib5) {
-        // replace the previous scene, so the previous scene must be disposed.
-        if (mSession != null) {
+        // replace the previous scene, so the previous scene must be disposed, unless
+        // the previous scene was updated and rendered again
+        if (mSession != null && mSession != session) {
             mSession.dispose();
         }
 
@@ -196,6 +202,7 @@ public class ViewHierarchy {
             }
             if (infos != null) {
                 mLastValidViewInfoRoot = infos.getFirst();
+                mIndex = new CanvasViewInfoIndex(mLastValidViewInfoRoot);
                 mIncludedBounds = infos.getSecond();
 
                 if (mLastValidViewInfoRoot.getUiViewNode() == null &&
@@ -213,6 +220,7 @@ public class ViewHierarchy {
 
             } else {
                 mLastValidViewInfoRoot = null;
+                mIndex = null;
                 mIncludedBounds = null;
             }
 
@@ -393,38 +401,13 @@ public class ViewHierarchy {
             LayoutPoint bottomRight) {
         Rectangle selectionRectangle = new Rectangle(topLeft.x, topLeft.y, bottomRight.x
                 - topLeft.x, bottomRight.y - topLeft.y);
-        List<CanvasViewInfo> infos = new ArrayList<CanvasViewInfo>();
-        addWithin(mLastValidViewInfoRoot, selectionRectangle, infos);
-        return infos;
-    }
-
-    /**
-     * Recursive internal version of {@link #findViewInfoAt(int, int)}. Please don't use directly.
-     * <p/>
-     * Tries to find the inner most child matching the given x,y coordinates in the view
-     * info sub-tree. This uses the potentially-expanded selection bounds.
-     *
-     * Returns null if not found.
-     */
-    private void addWithin(
-            CanvasViewInfo canvasViewInfo,
-            Rectangle canvasRectangle,
-            List<CanvasViewInfo> infos) {
-        if (canvasViewInfo == null) {
-            return;
+        if (mIndex == null) {
+            return Collections.emptyList();
         }
-        Rectangle r = canvasViewInfo.getSelectionRect();
-        if (canvasRectangle.intersects(r)) {
 
-            // try to find a matching child first
-            for (CanvasViewInfo child : canvasViewInfo.getChildren()) {
-                addWithin(child, canvasRectangle, infos);
-            }
-
-            if (canvasViewInfo != mLastValidViewInfoRoot) {
-                infos.add(canvasViewInfo);
-            }
-        }
+        List<CanvasViewInfo> infos = mIndex.findWithin(selectionRectangle);
+        infos.remove(mLastValidViewInfoRoot);
+        return infos;
     }
 
     /**
@@ -468,49 +451,15 @@ public class ViewHierarchy {
      *         if nothing was found.
      */
     public CanvasViewInfo findViewInfoAt(LayoutPoint p) {
-        if (mLastValidViewInfoRoot == null) {
+        if (mIndex == null) {
             return null;
         }
 
-        return findViewInfoAt_Recursive(p, mLastValidViewInfoRoot);
-    }
-
-    /**
-     * Recursive internal version of {@link #findViewInfoAt(int, int)}. Please don't use directly.
-     * <p/>
-     * Tries to find the inner most child matching the given x,y coordinates in the view
-     * info sub-tree. This uses the potentially-expanded selection bounds.
-     *
-     * Returns null if not found.
-     */
-    private CanvasViewInfo findViewInfoAt_Recursive(LayoutPoint p, CanvasViewInfo canvasViewInfo) {
-        if (canvasViewInfo == null) {
-            return null;
-        }
-        Rectangle r = canvasViewInfo.getSelectionRect();
-        if (r.contains(p.x, p.y)) {
-
-            // try to find a matching child first
-            // Iterate in REVERSE z order such that siblings on top
-            // are checked before earlier siblings (this matters in layouts like
-            // FrameLayout and in <merge> contexts where the views are sitting on top
-            // of each other and we want to select the same view as the one drawn
-            // on top of the others
-            List<CanvasViewInfo> children = canvasViewInfo.getChildren();
-            assert children instanceof RandomAccess;
-            for (int i = children.size() - 1; i >= 0; i--) {
-                CanvasViewInfo child = children.get(i);
-                CanvasViewInfo v = findViewInfoAt_Recursive(p, child);
-                if (v != null) {
-                    return v;
-                }
-            }
-
-            // if no children matched, this is the view that we're looking for
-            return canvasViewInfo;
-        }
-
-        return null;
+        // Siblings on top are preferred over earlier siblings (this matters in layouts
+        // like FrameLayout and in <merge> contexts where the views are sitting on top
+        // of each other and we want to select the same view as the one drawn on top
+        // of the others)
+        return mIndex.findAt(p.x, p.y);
     }
 
     /**
@@ -22,16 +22,15 @@ import static com.android.SdkConstants.NEW_ID_PREFIX;
 import static com.android.SdkConstants.PREFIX_RESOURCE_REF;
 import static com.android.SdkConstants.PREFIX_THEME_REF;
 
-import com.android.ide.common.resources.ResourceItem;
 import com.android.ide.common.resources.ResourceRepository;
 import com.android.ide.eclipse.adt.internal.editors.AndroidXmlEditor;
 import com.android.ide.eclipse.adt.internal.editors.common.CommonXmlEditor;
 import com.android.ide.eclipse.adt.internal.editors.descriptors.AttributeDescriptor;
 import com.android.ide.eclipse.adt.internal.editors.uimodel.UiResourceAttributeNode;
 import com.android.ide.eclipse.adt.internal.resources.manager.ResourceManager;
+import com.android.ide.eclipse.adt.internal.resources.manager.ResourceNameIndex;
 import com.android.ide.eclipse.adt.internal.sdk.AndroidTargetData;
 import com.android.resources.ResourceType;
-import com.android.utils.SdkUtils;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.jface.fieldassist.ContentProposal;
@@ -53,6 +52,9 @@ import java.util.List;
  * </ul>
  */
 class ResourceValueCompleter implements IContentProposalProvider {
+    /** Maximum number of resource names offered for a single resource type */
+    private static final int MAX_NAME_MATCHES = 500;
+
     protected final XmlProperty xmlProperty;
 
     ResourceValueCompleter(XmlProperty xmlProperty) {
@@ -170,12 +172,11 @@ class ResourceValueCompleter implements IContentProposalProvider {
                 int nameStart = typeStart + type.getName().length() + 1; // +1: add "/" divider
                 String namePrefix =
                         prefix.length() <= nameStart ? "" : prefix.substring(nameStart);
-                for (ResourceItem item : repository.getResourceItemsOfType(type)) {
-                    String name = item.getName();
-                    if (SdkUtils.startsWithIgnoreCase(name, namePrefix)) {
-                        results.add(base + name);
-                    }
-                }
+                // The proposal popup does not filter the proposals itself, so names
+                // matching by camel humps (e.g. "abt" for "action_bar_title") can be
+                // offered here as well
+                ResourceNameIndex.addMatches(repository, type, namePrefix,
+                        true /*camelCase*/, base, results, MAX_NAME_MATCHES);
             }
         }
     }
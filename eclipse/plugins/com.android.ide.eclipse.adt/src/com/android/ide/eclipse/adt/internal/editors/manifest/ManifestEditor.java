@@ -251,8 +251,8 @@ public final class ManifestEditor extends AndroidXmlEditor {
         Node node = getManifestXmlNode(xmlDoc);
 
         if (node != null) {
-            // Refresh the manifest UI node and all its descendants
-            mUiManifestNode.loadFromXmlNode(node);
+            // Refresh the manifest UI nodes whose XML node changed
+            mUiManifestNode.updateFromXmlNode(node);
         }
     }
 
@@ -429,6 +429,9 @@ public final class ManifestEditor extends AndroidXmlEditor {
         if (mUiManifestNode != null && force == false) {
             return;
         }
+        if (mUiManifestNode != null) {
+            mUiManifestNode.stopTrackingXmlChanges();
+        }
 
         AndroidManifestDescriptors manifestDescriptor = getManifestDescriptors();
 
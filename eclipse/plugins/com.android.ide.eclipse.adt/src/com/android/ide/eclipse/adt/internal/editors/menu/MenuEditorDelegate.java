@@ -115,8 +115,8 @@ public class MenuEditorDelegate extends CommonXmlDelegate {
                         node = getUiRootNode().createXmlNode();
                     }
 
-                    // Refresh the manifest UI node and all its descendants
-                    getUiRootNode().loadFromXmlNode(node);
+                    // Refresh the UI nodes whose XML node changed
+                    getUiRootNode().updateFromXmlNode(node);
 
                     // TODO ? startMonitoringMarkers();
                 } catch (XPathExpressionException e) {
@@ -87,7 +87,7 @@ public class OtherXmlEditorDelegate extends CommonXmlDelegate {
         // init the ui root on demand
         delegateInitUiRootNode(false /*force*/);
 
-        getUiRootNode().loadFromXmlNode(xml_doc);
+        getUiRootNode().updateFromXmlNode(xml_doc);
     }
 
     /**
@@ -49,6 +49,8 @@ import org.eclipse.jface.text.TextUtilities;
 import org.eclipse.jface.viewers.StyledString;
 import org.eclipse.ui.views.properties.IPropertyDescriptor;
 import org.eclipse.ui.views.properties.IPropertySource;
+import org.eclipse.wst.sse.core.internal.provisional.INodeAdapter;
+import org.eclipse.wst.sse.core.internal.provisional.INodeNotifier;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
 import org.eclipse.wst.xml.core.internal.document.ElementImpl;
 import org.w3c.dom.Attr;
@@ -61,6 +63,7 @@ import org.w3c.dom.Text;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -134,6 +137,18 @@ public class UiElementNode implements IPropertySource {
     private IUnknownDescriptorProvider mUnknownDescProvider;
     /** Error Flag */
     private boolean mHasError;
+    /** Listens to the changes of {@link #mXmlNode} in the structured model. This is only
+     *  set when the root node tracks XML changes, see {@link #updateFromXmlNode(Node)}. */
+    private XmlNodeChangeAdapter mXmlNodeAdapter;
+    /** True if the attributes or the text of the XML node changed since they were loaded */
+    private boolean mXmlAttributesChanged;
+    /** True if the element children of the XML node changed since they were loaded */
+    private boolean mXmlChildrenChanged;
+    /** True if this root node tracks the changes of the XML nodes of its hierarchy. */
+    private boolean mTrackXmlChanges;
+    /** The nodes of the hierarchy whose XML node changed since the last update. This is
+     *  only defined for the root node, and is null when there are no changes. */
+    private Set<UiElementNode> mXmlChangedNodes;
 
     /**
      * Creates a new {@link UiElementNode} described by a given {@link ElementDescriptor}.
@@ -164,7 +179,7 @@ public class UiElementNode implements IPropertySource {
      * in the hierarchy be left intact, if any.
      */
     /* package */ void clearContent() {
-        mXmlNode = null;
+        setInternalXmlNode(null);
         mXmlDocument = null;
         mEditor = null;
         clearAttributes();
@@ -832,7 +847,13 @@ public class UiElementNode implements IPropertySource {
      */
     public boolean loadFromXmlNode(Node xmlNode) {
         boolean structureChanged = (mXmlNode != xmlNode);
-        mXmlNode = xmlNode;
+        setInternalXmlNode(xmlNode);
+        mXmlAttributesChanged = false;
+        mXmlChildrenChanged = false;
+        if (mUiParent == null) {
+            // The whole hierarchy is being loaded, so there's no change left to apply
+            mXmlChangedNodes = null;
+        }
         if (xmlNode != null) {
             updateAttributeList(xmlNode);
             structureChanged |= updateElementList(xmlNode);
@@ -842,6 +863,99 @@ public class UiElementNode implements IPropertySource {
         return structureChanged;
     }
 
+    /**
+     * Updates this root node and its descendants from the given XML node, like
+     * {@link #loadFromXmlNode(Node)} does, but only reloads the elements of the hierarchy
+     * whose XML node changed since the last update, as reported by the structured model.
+     * <p/>
+     * The first call loads the whole hierarchy and starts tracking the changes of the XML
+     * nodes. The whole hierarchy is also loaded again when the XML node is not the one of
+     * the last update, or when the XML nodes do not report their changes.
+     * <p/>
+     * The update listeners are only invoked for the nodes that changed, the parents of
+     * nodes whose children changed, and this root node.
+     *
+     * @param xmlNode The XML node to mirror
+     * @return Returns true if the XML structure has changed (nodes added, removed or replaced)
+     */
+    public boolean updateFromXmlNode(Node xmlNode) {
+        assert mUiParent == null : this;
+        if (!mTrackXmlChanges || mXmlNode != xmlNode || !(xmlNode instanceof INodeNotifier)) {
+            mTrackXmlChanges = true;
+            return loadFromXmlNode(xmlNode);
+        }
+
+        Set<UiElementNode> changedNodes = mXmlChangedNodes;
+        mXmlChangedNodes = null;
+        if (changedNodes == null) {
+            return false;
+        }
+
+        // Update parents before their children, such that the children removed from their
+        // parent are skipped
+        List<UiElementNode> nodes = new ArrayList<UiElementNode>(changedNodes);
+        final Map<UiElementNode, Integer> depths = new HashMap<UiElementNode, Integer>();
+        for (UiElementNode node : nodes) {
+            int depth = 0;
+            for (UiElementNode parent = node.mUiParent; parent != null;
+                    parent = parent.mUiParent) {
+                depth++;
+            }
+            depths.put(node, depth);
+        }
+        Collections.sort(nodes, new Comparator<UiElementNode>() {
+            @Override
+            public int compare(UiElementNode node1, UiElementNode node2) {
+                return depths.get(node1) - depths.get(node2);
+            }
+        });
+
+        boolean structureChanged = false;
+        Set<UiElementNode> notified = new HashSet<UiElementNode>();
+        for (UiElementNode node : nodes) {
+            boolean attributesChanged = node.mXmlAttributesChanged;
+            boolean childrenChanged = node.mXmlChildrenChanged;
+            node.mXmlAttributesChanged = false;
+            node.mXmlChildrenChanged = false;
+            if (node.mXmlNodeAdapter == null || node.mXmlNode == null) {
+                // Removed from the hierarchy, or reloaded since the change
+                continue;
+            }
+
+            if (attributesChanged) {
+                node.updateAttributeList(node.mXmlNode);
+            }
+            if (childrenChanged && node.updateElementList(node.mXmlNode, false /*reload*/)) {
+                structureChanged = true;
+                for (UiElementNode parent = node; parent != null; parent = parent.mUiParent) {
+                    if (notified.add(parent)) {
+                        parent.invokeUiUpdateListeners(UiUpdateState.CHILDREN_CHANGED);
+                    }
+                }
+            } else if (notified.add(node)) {
+                node.invokeUiUpdateListeners(UiUpdateState.ATTR_UPDATED);
+            }
+        }
+
+        // Listeners of the whole document (such as trees) only listen on the root
+        if (notified.add(this)) {
+            invokeUiUpdateListeners(UiUpdateState.ATTR_UPDATED);
+        }
+
+        return structureChanged;
+    }
+
+    /**
+     * Stops tracking the changes of the XML nodes of this root node and its descendants,
+     * which were tracked since the first call to {@link #updateFromXmlNode(Node)}. This
+     * must be called when the hierarchy is discarded while the XML model is still in use.
+     */
+    public void stopTrackingXmlChanges() {
+        mTrackXmlChanges = false;
+        mXmlChangedNodes = null;
+        removeXmlNodeAdapters();
+    }
+
     /**
      * Clears the UI node and reload it from the given XML node.
      * <p/>
@@ -951,7 +1065,7 @@ public class UiElementNode implements IPropertySource {
             parentXmlNode = doc;
         }
 
-        mXmlNode = doc.createElement(elementName);
+        setInternalXmlNode(doc.createElement(elementName));
 
         // If this element does not have children, mark it as an empty tag
         // such that the XML looks like <tag/> instead of <tag></tag>
@@ -1162,6 +1276,18 @@ public class UiElementNode implements IPropertySource {
      * @return True when the XML structure has changed.
      */
     protected boolean updateElementList(Node xmlNode) {
+        return updateElementList(xmlNode, true /*reload*/);
+    }
+
+    /**
+     * Updates the element list for this UiElementNode, see {@link #updateElementList(Node)}.
+     *
+     * @param xmlNode The XML node to mirror
+     * @param reload If true, the existing children are reloaded from their XML node as well.
+     *            If false, only the new children are loaded.
+     * @return True when the XML structure has changed.
+     */
+    private boolean updateElementList(Node xmlNode, boolean reload) {
         boolean structureChanged = false;
         boolean hasMandatoryLast = false;
         int uiIndex = 0;
@@ -1170,6 +1296,7 @@ public class UiElementNode implements IPropertySource {
             if (xmlChild.getNodeType() == Node.ELEMENT_NODE) {
                 String elementName = xmlChild.getNodeName();
                 UiElementNode uiNode = null;
+                boolean isNewNode = false;
                 CustomViewDescriptorService service = CustomViewDescriptorService.getInstance();
                 if (mUiChildren.size() <= uiIndex) {
                     // A new node is being added at the end of the list
@@ -1191,6 +1318,7 @@ public class UiElementNode implements IPropertySource {
                     }
                     structureChanged = true;
                     uiNode = appendNewUiChild(desc);
+                    isNewNode = true;
                     uiIndex++;
                 } else {
                     // A new node is being inserted or moved.
@@ -1229,9 +1357,10 @@ public class UiElementNode implements IPropertySource {
                                     mUiChildren.add(uiIndex, uiChild);
                                 }
                                 // Assign the XML node to this empty mandatory element.
-                                uiChild.mXmlNode = xmlChild;
+                                uiChild.setInternalXmlNode(xmlChild);
                                 structureChanged = true;
                                 uiNode = uiChild;
+                                isNewNode = true;
                                 uiIndex++;
                             }
                         }
@@ -1257,6 +1386,7 @@ public class UiElementNode implements IPropertySource {
                         } else {
                             structureChanged = true;
                             uiNode = insertNewUiChild(uiIndex, desc);
+                            isNewNode = true;
                             uiIndex++;
                         }
                     }
@@ -1264,7 +1394,9 @@ public class UiElementNode implements IPropertySource {
                 if (uiNode != null) {
                     // If we touched an UI Node, even an existing one, refresh its content.
                     // For new nodes, this will populate them recursively.
-                    structureChanged |= uiNode.loadFromXmlNode(xmlChild);
+                    if (reload || isNewNode) {
+                        structureChanged |= uiNode.loadFromXmlNode(xmlChild);
+                    }
 
                     // Remember if there are any mandatory-last nodes to reorder.
                     hasMandatoryLast |=
@@ -1353,6 +1485,7 @@ public class UiElementNode implements IPropertySource {
             }
 
             mUiChildren.remove(uiIndex);
+            uiNode.removeXmlNodeAdapters();
 
             return true;
         } finally {
@@ -1524,11 +1657,89 @@ public class UiElementNode implements IPropertySource {
         }
     }
 
+    /**
+     * Sets the XML node mirrored by this UI node, and listens to its changes if the root
+     * node tracks the changes of the XML nodes
+     */
+    private void setInternalXmlNode(Node xmlNode) {
+        boolean track = xmlNode instanceof INodeNotifier && getUiRoot().mTrackXmlChanges;
+        if (mXmlNode == xmlNode && (mXmlNodeAdapter != null) == track) {
+            return;
+        }
+        if (mXmlNodeAdapter != null) {
+            ((INodeNotifier) mXmlNode).removeAdapter(mXmlNodeAdapter);
+            mXmlNodeAdapter = null;
+        }
+        mXmlNode = xmlNode;
+        if (track) {
+            mXmlNodeAdapter = new XmlNodeChangeAdapter();
+            ((INodeNotifier) xmlNode).addAdapter(mXmlNodeAdapter);
+        }
+    }
+
+    /**
+     * Stops listening to the changes of the XML nodes of this node and its descendants
+     */
+    private void removeXmlNodeAdapters() {
+        if (mXmlNodeAdapter != null) {
+            ((INodeNotifier) mXmlNode).removeAdapter(mXmlNodeAdapter);
+            mXmlNodeAdapter = null;
+        }
+        for (UiElementNode child : mUiChildren) {
+            child.removeXmlNodeAdapters();
+        }
+    }
+
+    /**
+     * Records that the XML node of this UI node changed, such that the next call to
+     * {@link #updateFromXmlNode(Node)} on the root node reloads it
+     */
+    private void xmlNodeChanged(boolean attributes, boolean children) {
+        mXmlAttributesChanged |= attributes;
+        mXmlChildrenChanged |= children;
+        UiElementNode root = getUiRoot();
+        if (root.mXmlChangedNodes == null) {
+            root.mXmlChangedNodes = new HashSet<UiElementNode>();
+        }
+        root.mXmlChangedNodes.add(this);
+    }
+
+    /** Listens to the changes of the XML node of a UI node in the structured model */
+    private class XmlNodeChangeAdapter implements INodeAdapter {
+        @Override
+        public boolean isAdapterForType(Object type) {
+            return type == XmlNodeChangeAdapter.class;
+        }
+
+        @Override
+        public void notifyChanged(INodeNotifier notifier, int eventType,
+                Object changedFeature, Object oldValue, Object newValue, int pos) {
+            switch (eventType) {
+                case INodeNotifier.ADD:
+                case INodeNotifier.REMOVE:
+                    if (changedFeature instanceof Element) {
+                        xmlNodeChanged(false /*attributes*/, true /*children*/);
+                    } else {
+                        // An attribute, or a text node which may hold the text value
+                        xmlNodeChanged(true /*attributes*/, false /*children*/);
+                    }
+                    break;
+                case INodeNotifier.STRUCTURE_CHANGED:
+                    xmlNodeChanged(false /*attributes*/, true /*children*/);
+                    break;
+                default:
+                    // Attribute changes, and changes to the content of text children
+                    xmlNodeChanged(true /*attributes*/, false /*children*/);
+                    break;
+            }
+        }
+    }
+
     // --- for derived implementations only ---
 
     @VisibleForTesting
     public void setXmlNode(Node xmlNode) {
-        mXmlNode = xmlNode;
+        setInternalXmlNode(xmlNode);
     }
 
     public void refreshUi() {
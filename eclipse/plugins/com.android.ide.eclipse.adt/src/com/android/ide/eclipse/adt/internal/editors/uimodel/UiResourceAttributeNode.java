@@ -29,7 +29,6 @@ import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
 import com.android.ide.common.api.IAttributeInfo;
 import com.android.ide.common.api.IAttributeInfo.Format;
-import com.android.ide.common.resources.ResourceItem;
 import com.android.ide.common.resources.ResourceRepository;
 import com.android.ide.eclipse.adt.internal.editors.AndroidXmlEditor;
 import com.android.ide.eclipse.adt.internal.editors.descriptors.AttributeDescriptor;
@@ -37,6 +36,7 @@ import com.android.ide.eclipse.adt.internal.editors.descriptors.DescriptorsUtils
 import com.android.ide.eclipse.adt.internal.editors.descriptors.TextAttributeDescriptor;
 import com.android.ide.eclipse.adt.internal.editors.ui.SectionHelper;
 import com.android.ide.eclipse.adt.internal.resources.manager.ResourceManager;
+import com.android.ide.eclipse.adt.internal.resources.manager.ResourceNameIndex;
 import com.android.ide.eclipse.adt.internal.sdk.AndroidTargetData;
 import com.android.ide.eclipse.adt.internal.sdk.ProjectState;
 import com.android.ide.eclipse.adt.internal.sdk.Sdk;
@@ -82,6 +82,15 @@ import java.util.regex.Pattern;
  * See {@link UiTextAttributeNode} for more information.
  */
 public class UiResourceAttributeNode extends UiTextAttributeNode {
+    /** Matches the resource type name of a reference, such as "string" in "@string/foo" */
+    private static final Pattern TYPE_PATTERN = Pattern.compile(".*?([a-z]+)/.*"); //$NON-NLS-1$
+
+    /** The "android:" prefix of a name in the "@style/android:foo" convention */
+    private static final String ANDROID_NS_NAME_PREFIX = ANDROID_PKG + ':';
+
+    /** Maximum number of resource names offered for a single resource type */
+    private static final int MAX_NAME_MATCHES = 500;
+
     private ResourceType mType;
 
     /**
@@ -313,10 +322,16 @@ public class UiResourceAttributeNode extends UiTextAttributeNode {
 
         // Get the type name from the prefix, if any. It's any word before the / if there's one
         String typeName = null;
+        String namePrefix = ""; //$NON-NLS-1$
         if (prefix != null) {
-            Matcher m = Pattern.compile(".*?([a-z]+)/.*").matcher(prefix);      //$NON-NLS-1$
+            Matcher m = TYPE_PATTERN.matcher(prefix);
             if (m.matches()) {
                 typeName = m.group(1);
+                namePrefix = prefix.substring(m.end(1) + 1);
+                if (namePrefix.startsWith(ANDROID_NS_NAME_PREFIX)) {
+                    // The "@style/android:foo" convention
+                    namePrefix = namePrefix.substring(ANDROID_NS_NAME_PREFIX.length());
+                }
             }
         }
 
@@ -334,10 +349,10 @@ public class UiResourceAttributeNode extends UiTextAttributeNode {
                     results.add(PREFIX_THEME_REF + ResourceType.ATTR.getName() + '/');
                     if (prefix != null && prefix.startsWith(ANDROID_THEME_PREFIX)) {
                         // including attr isn't required
-                        for (ResourceItem item : repository.getResourceItemsOfType(
-                                ResourceType.ATTR)) {
-                            results.add(ANDROID_THEME_PREFIX + item.getName());
-                        }
+                        ResourceNameIndex.addMatches(repository, ResourceType.ATTR,
+                                prefix.substring(ANDROID_THEME_PREFIX.length()),
+                                false /*camelCase*/, ANDROID_THEME_PREFIX, results,
+                                MAX_NAME_MATCHES);
                     }
                 }
                 return results.toArray(new String[results.size()]);
@@ -382,15 +397,16 @@ public class UiResourceAttributeNode extends UiTextAttributeNode {
                 sb.append(typeName).append('/');
                 String base = sb.toString();
 
-                for (ResourceItem item : repository.getResourceItemsOfType(resType)) {
-                    results.add(base + item.getName());
-                }
+                // Only the names starting with the typed name prefix are offered (the
+                // content assist filters the choices by prefix anyway), and at most
+                // MAX_NAME_MATCHES of them, such that typing into a reference in a
+                // project with tens of thousands of strings stays responsive
+                int count = ResourceNameIndex.addMatches(repository, resType, namePrefix,
+                        false /*camelCase*/, base, results, MAX_NAME_MATCHES);
 
                 if (!isSystem && resType == ResourceType.ATTR) {
-                    for (ResourceItem item : repository.getResourceItemsOfType(
-                            ResourceType.STYLE)) {
-                        results.add(base + item.getName());
-                    }
+                    ResourceNameIndex.addMatches(repository, ResourceType.STYLE, namePrefix,
+                            false /*camelCase*/, base, results, MAX_NAME_MATCHES - count);
                 }
             }
         }
@@ -108,8 +108,8 @@ public class ValuesEditorDelegate extends CommonXmlDelegate {
                 // Node can be null _or_ it must be the element we searched for.
                 assert node == null || node.getNodeName().equals(resources_desc.getXmlName());
 
-                // Refresh the manifest UI node and all its descendants
-                getUiRootNode().loadFromXmlNode(node);
+                // Refresh the UI nodes whose XML node changed
+                getUiRootNode().updateFromXmlNode(node);
             } catch (XPathExpressionException e) {
                 AdtPlugin.log(e, "XPath error when trying to find '%s' element in XML.", //$NON-NLS-1$
                         resources_desc.getXmlName());
@@ -23,6 +23,7 @@ import com.android.ide.eclipse.adt.AdtConstants;
 import com.android.ide.eclipse.adt.AdtPlugin;
 import com.android.ide.eclipse.adt.AndroidPrintStream;
 import com.android.ide.eclipse.adt.internal.build.BuildHelper;
+import com.android.ide.eclipse.adt.internal.build.BuildTimings;
 import com.android.ide.eclipse.adt.internal.build.DexException;
 import com.android.ide.eclipse.adt.internal.build.NativeLibInJarException;
 import com.android.ide.eclipse.adt.internal.build.ProguardExecException;
@@ -329,6 +330,9 @@ public final class ExportHelper {
             throw new CoreException(new Status(IStatus.ERROR, AdtPlugin.PLUGIN_ID,
                     "Failed to export application", e));
         } finally {
+            // print the time spent in each step of the release build
+            BuildTimings.report(project);
+
             // move back to a debug build.
             // By using a normal build, we'll simply rebuild the debug version, and let the
             // builder decide whether to build the full package or not.
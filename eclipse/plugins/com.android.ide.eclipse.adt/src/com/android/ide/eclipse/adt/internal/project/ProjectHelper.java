@@ -59,8 +59,10 @@ import org.eclipse.jdt.launching.JavaRuntime;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 /**
@@ -1017,6 +1019,20 @@ public final class ProjectHelper {
      */
     public static void doFullIncrementalDebugBuild(IProject project, IProgressMonitor monitor)
             throws CoreException {
+        doFullIncrementalDebugBuild(project, new HashSet<IProject>(), monitor);
+    }
+
+    /**
+     * Builds the project after its dependencies, skipping the projects already built.
+     * A library shared by several dependencies (a diamond in the dependency graph) is
+     * therefore built only once, before the first project which depends on it.
+     */
+    private static void doFullIncrementalDebugBuild(IProject project, Set<IProject> built,
+            IProgressMonitor monitor) throws CoreException {
+        if (!built.add(project)) {
+            return;
+        }
+
         // Get list of projects that we depend on
         List<IJavaProject> androidProjectList = new ArrayList<IJavaProject>();
         try {
@@ -1027,7 +1043,7 @@ public final class ProjectHelper {
         }
         // Recursively build dependencies
         for (IJavaProject dependency : androidProjectList) {
-            doFullIncrementalDebugBuild(dependency.getProject(), monitor);
+            doFullIncrementalDebugBuild(dependency.getProject(), built, monitor);
         }
 
         // Do an incremental build to pick up all the deltas
@@ -35,6 +35,7 @@ import static com.android.SdkConstants.TOOLS_URI;
 import com.android.SdkConstants;
 import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
+import com.android.annotations.VisibleForTesting;
 import com.android.ide.eclipse.adt.AdtPlugin;
 import com.android.ide.eclipse.adt.AdtUtils;
 import com.android.ide.eclipse.adt.internal.editors.manifest.ManifestInfo;
@@ -42,9 +43,12 @@ import com.android.ide.eclipse.adt.internal.project.BaseProjectHelper;
 import com.android.ide.eclipse.adt.internal.resources.ResourceNameValidator;
 import com.android.ide.eclipse.adt.internal.sdk.ProjectState;
 import com.android.ide.eclipse.adt.internal.sdk.Sdk;
+import com.android.ide.eclipse.adt.internal.utils.ParallelScan;
 import com.android.resources.ResourceFolderType;
 import com.android.resources.ResourceType;
+import com.android.utils.Pair;
 import com.android.utils.SdkUtils;
+import com.google.common.base.Charsets;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -77,15 +81,22 @@ import org.eclipse.wst.sse.core.internal.provisional.IStructuredModel;
 import org.eclipse.wst.sse.core.internal.provisional.IndexedRegion;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
 import org.eclipse.wst.xml.core.internal.provisional.document.IDOMModel;
+import org.kxml2.io.KXmlParser;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A rename participant handling renames of resources (such as R.id.foo and R.layout.bar).
@@ -425,14 +436,22 @@ public class RenameResourceParticipant extends RenameParticipant {
         }
 
         try {
+            // Collect the XML files to check for references, in the order their changes
+            // are added: the manifest, followed by the resource files
+            List<IFile> xmlFiles = new ArrayList<IFile>();
+            List<ResourceFolderType> xmlFolderTypes = new ArrayList<ResourceFolderType>();
+
             // Update resource references in the manifest
             IFile manifest = project.getFile(SdkConstants.ANDROID_MANIFEST_XML);
-            if (manifest != null) {
-                addResourceXmlChanges(manifest, change, null);
+            if (manifest != null && manifest.exists()) {
+                xmlFiles.add(manifest);
+                xmlFolderTypes.add(null);
             }
 
             // Update references in XML resource files
             IFolder resFolder = project.getFolder(SdkConstants.FD_RESOURCES);
+            List<IFile> resourceFiles = new ArrayList<IFile>();
+            List<ResourceFolderType> resourceFolderTypes = new ArrayList<ResourceFolderType>();
 
             IResource[] folders = resFolder.members();
             for (IResource folder : folders) {
@@ -446,31 +465,296 @@ public class RenameResourceParticipant extends RenameParticipant {
                     IResource member = files[i];
                     if ((member instanceof IFile) && member.exists()) {
                         IFile file = (IFile) member;
-                        String fileName = member.getName();
-
-                        if (SdkUtils.endsWith(fileName, DOT_XML)) {
-                            addResourceXmlChanges(file, change, folderType);
-                        }
-
-                        if ((mRenamedFile == null || !mRenamedFile.equals(file))
-                                && fileName.startsWith(mOldName)
-                                && fileName.length() > mOldName.length()
-                                && fileName.charAt(mOldName.length()) == '.'
-                                && mFolderType != ResourceFolderType.VALUES
-                                && mFolderType == folderType) {
-                            // Rename this file
-                            String newFile = mNewName + fileName.substring(mOldName.length());
-                            IPath path = file.getFullPath();
-                            change.add(new RenameResourceChange(path, newFile));
+                        resourceFiles.add(file);
+                        resourceFolderTypes.add(folderType);
+                        if (SdkUtils.endsWith(file.getName(), DOT_XML)) {
+                            xmlFiles.add(file);
+                            xmlFolderTypes.add(folderType);
                         }
                     }
                 }
             }
+
+            // Only build models for the files which may actually reference the resource
+            Set<IFile> candidates = findCandidateFiles(xmlFiles, xmlFolderTypes, monitor);
+            if (monitor.isCanceled()) {
+                return;
+            }
+
+            if (candidates.contains(manifest)) {
+                addResourceXmlChanges(manifest, change, null);
+            }
+
+            for (int i = 0, n = resourceFiles.size(); i < n; i++) {
+                IFile file = resourceFiles.get(i);
+                ResourceFolderType folderType = resourceFolderTypes.get(i);
+                String fileName = file.getName();
+
+                if (candidates.contains(file)) {
+                    addResourceXmlChanges(file, change, folderType);
+                }
+
+                if ((mRenamedFile == null || !mRenamedFile.equals(file))
+                        && fileName.startsWith(mOldName)
+                        && fileName.length() > mOldName.length()
+                        && fileName.charAt(mOldName.length()) == '.'
+                        && mFolderType != ResourceFolderType.VALUES
+                        && mFolderType == folderType) {
+                    // Rename this file
+                    String newFile = mNewName + fileName.substring(mOldName.length());
+                    IPath path = file.getFullPath();
+                    change.add(new RenameResourceChange(path, newFile));
+                }
+            }
         } catch (CoreException e) {
             RefactoringUtil.log(e);
         }
     }
 
+    /**
+     * Returns the subset of the given XML files which may need edits. Building an SSE
+     * model for every resource file is expensive, so the files are filtered first:
+     * files not containing the old resource name at all are skipped by a plain byte
+     * search, and the remaining files are checked for actual matches with a streaming
+     * parser, in parallel for larger projects. Files with an open model are always
+     * included since the model may differ from the contents on disk.
+     *
+     * @param files the XML files
+     * @param folderTypes the folder type of each file, or null for the manifest
+     * @param monitor the progress monitor, checked for cancellation
+     * @return the files which should be checked with a full model
+     */
+    @NonNull
+    private Set<IFile> findCandidateFiles(
+            @NonNull List<IFile> files,
+            @NonNull List<ResourceFolderType> folderTypes,
+            @NonNull final IProgressMonitor monitor) {
+        Set<IFile> candidates = new HashSet<IFile>();
+        final ReferenceFilter filter = new ReferenceFilter(mType, mOldName, mUpdateReferences,
+                mXmlMatch1, mXmlMatch2, mXmlMatch3);
+
+        IModelManager modelManager = StructuredModelManager.getModelManager();
+        List<Pair<IFile, ResourceFolderType>> scanFiles =
+                new ArrayList<Pair<IFile, ResourceFolderType>>(files.size());
+        for (int i = 0, n = files.size(); i < n; i++) {
+            IFile file = files.get(i);
+            IStructuredModel model = modelManager.getExistingModelForRead(file);
+            if (model != null) {
+                model.releaseFromRead();
+                candidates.add(file);
+            } else {
+                scanFiles.add(Pair.of(file, folderTypes.get(i)));
+            }
+        }
+
+        List<Boolean> results = ParallelScan.scan(scanFiles,
+                new ParallelScan.Scanner<Pair<IFile, ResourceFolderType>, Boolean>() {
+            @Override
+            public Boolean scan(@NonNull Pair<IFile, ResourceFolderType> file) {
+                if (monitor.isCanceled()) {
+                    return Boolean.FALSE;
+                }
+                return Boolean.valueOf(filter.mayReference(file.getFirst(),
+                        file.getSecond()));
+            }
+
+            @Override
+            public Boolean getFallback(@NonNull Pair<IFile, ResourceFolderType> file) {
+                // Let the full model decide
+                return Boolean.TRUE;
+            }
+        });
+        for (int i = 0, n = scanFiles.size(); i < n; i++) {
+            if (results.get(i).booleanValue()) {
+                candidates.add(scanFiles.get(i).getFirst());
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Quickly determines whether an XML file may contain references which
+     * {@link RenameResourceParticipant#addReplacements} will edit. This applies the same
+     * matching rules to the output of a streaming parser; it can report false positives
+     * (which just cost a model load) but must never miss a file with a match.
+     */
+    @VisibleForTesting
+    static class ReferenceFilter {
+        private final ResourceType mType;
+        private final String mOldName;
+        private final boolean mUpdateReferences;
+        private final String mMatch1;
+        private final String mMatch2;
+        private final String mMatch3;
+        private final byte[] mOldNameBytes;
+
+        ReferenceFilter(
+                @NonNull ResourceType type,
+                @NonNull String oldName,
+                boolean updateReferences,
+                @Nullable String match1,
+                @Nullable String match2,
+                @Nullable String match3) {
+            mType = type;
+            mOldName = oldName;
+            mUpdateReferences = updateReferences;
+            mMatch1 = match1;
+            mMatch2 = match2;
+            mMatch3 = match3;
+            // Resource names are always ASCII, so this is also the encoding of the
+            // name in any ASCII compatible charset
+            mOldNameBytes = oldName.getBytes(Charsets.UTF_8);
+        }
+
+        /**
+         * Returns true if the given file may contain references to edit
+         *
+         * @param file the XML file
+         * @param folderType the folder type of the file, or null for the manifest
+         * @return false if the file certainly does not need any edits
+         */
+        boolean mayReference(@NonNull IFile file, @Nullable ResourceFolderType folderType) {
+            byte[] data = AdtUtils.readData(file);
+            if (data == null) {
+                // Let the full model report the problem
+                return true;
+            }
+
+            Charset charset = Charsets.UTF_8;
+            try {
+                charset = Charset.forName(file.getCharset());
+            } catch (CoreException e) {
+                // Assume UTF-8
+            } catch (IllegalArgumentException e) {
+                // Unsupported charset: Assume UTF-8
+            }
+
+            return mayReference(data, charset, folderType);
+        }
+
+        /**
+         * Returns true if the given XML content may contain references to edit
+         *
+         * @param data the XML content
+         * @param charset the encoding of the content
+         * @param folderType the folder type of the file, or null for the manifest
+         * @return false if the content certainly does not need any edits
+         */
+        boolean mayReference(@NonNull byte[] data, @NonNull Charset charset,
+                @Nullable ResourceFolderType folderType) {
+            boolean asciiCompatible = charset.equals(Charsets.UTF_8)
+                    || charset.equals(Charsets.US_ASCII)
+                    || charset.equals(Charsets.ISO_8859_1);
+            if (asciiCompatible && indexOf(data, mOldNameBytes) == -1) {
+                // Every match, as well as the name attribute of a declaration,
+                // contains the old name
+                return false;
+            }
+
+            String xml = new String(data, charset);
+            if (!asciiCompatible && xml.indexOf(mOldName) == -1) {
+                return false;
+            }
+
+            return containsMatch(xml, folderType);
+        }
+
+        /** Parses the given XML and looks for matches, mirroring addReplacements */
+        @VisibleForTesting
+        boolean containsMatch(@NonNull String xml, @Nullable ResourceFolderType folderType) {
+            KXmlParser parser = new KXmlParser();
+            try {
+                parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+                parser.setInput(new StringReader(xml));
+                int event = parser.getEventType();
+                while (event != XmlPullParser.END_DOCUMENT) {
+                    if (event == XmlPullParser.START_TAG) {
+                        if (folderType == ResourceFolderType.VALUES
+                                && isDeclaration(parser)) {
+                            return true;
+                        }
+                        for (int i = 0, n = parser.getAttributeCount(); i < n; i++) {
+                            if (isMatch(parser.getAttributeNamespace(i),
+                                    parser.getAttributeName(i),
+                                    parser.getAttributeValue(i))) {
+                                return true;
+                            }
+                        }
+                    } else if (mUpdateReferences && (event == XmlPullParser.TEXT
+                            || event == XmlPullParser.CDSECT
+                            || event == XmlPullParser.IGNORABLE_WHITESPACE)) {
+                        // Text tokens are reported separately on each side of comments
+                        // and other markup, just like the DOM text nodes
+                        String text = parser.getText();
+                        if (text != null) {
+                            text = text.trim();
+                            if (text.equals(mMatch1) || text.equals(mMatch2)
+                                    || text.equals(mMatch3)) {
+                                return true;
+                            }
+                        }
+                    }
+                    event = parser.nextToken();
+                }
+            } catch (XmlPullParserException e) {
+                // Not well formed; the model based code is more forgiving so let it decide
+                return true;
+            } catch (IOException e) {
+                // Can't happen when reading from a String
+                return true;
+            }
+
+            return false;
+        }
+
+        private boolean isDeclaration(KXmlParser parser) {
+            String tag = parser.getName();
+            if (tag.equals(mType.getName())
+                    || (tag.equals(TAG_ITEM)
+                            && (mType == ResourceType.ID
+                                || mType.getName().equals(
+                                        parser.getAttributeValue(null, ATTR_TYPE))))) {
+                return mOldName.equals(parser.getAttributeValue(null, ATTR_NAME));
+            }
+
+            return false;
+        }
+
+        private boolean isMatch(String namespace, String name, String value) {
+            if (!mUpdateReferences
+                    && (!ATTR_ID.equals(name) || !ANDROID_URI.equals(namespace))) {
+                return TOOLS_URI.equals(namespace) && value.equals(mMatch1);
+            }
+
+            return value.equals(mMatch1) || value.equals(mMatch2) || value.equals(mMatch3);
+        }
+    }
+
+    /** Returns the index of the given byte sequence in the given data, or -1 */
+    @VisibleForTesting
+    static int indexOf(@NonNull byte[] data, @NonNull byte[] target) {
+        if (target.length == 0) {
+            return 0;
+        }
+        byte first = target[0];
+        int max = data.length - target.length;
+        for (int i = 0; i <= max; i++) {
+            if (data[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < target.length && data[i + j] == target[j]) {
+                j++;
+            }
+            if (j == target.length) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
     private void addJavaChanges(CompositeChange result, IProgressMonitor monitor)
             throws CoreException, OperationCanceledException {
         if (monitor.isCanceled()) {
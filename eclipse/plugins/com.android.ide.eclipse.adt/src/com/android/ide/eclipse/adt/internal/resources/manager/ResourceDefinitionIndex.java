@@ -0,0 +1,982 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.resources.manager;
+
+import static com.android.SdkConstants.ATTR_ID;
+import static com.android.SdkConstants.ATTR_NAME;
+import static com.android.SdkConstants.EXT_XML;
+import static com.android.SdkConstants.FD_RESOURCES;
+import static com.android.SdkConstants.FD_RES_LAYOUT;
+import static com.android.SdkConstants.FD_RES_VALUES;
+import static com.android.SdkConstants.NEW_ID_PREFIX;
+import static com.android.SdkConstants.TAG_DECLARE_STYLEABLE;
+import static com.android.SdkConstants.TAG_ITEM;
+import static com.android.SdkConstants.TAG_RESOURCES;
+import static org.eclipse.core.resources.IResourceDelta.ADDED;
+import static org.eclipse.core.resources.IResourceDelta.CHANGED;
+import static org.eclipse.core.resources.IResourceDelta.CONTENT;
+import static org.eclipse.core.resources.IResourceDelta.REMOVED;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.annotations.VisibleForTesting;
+import com.android.ide.common.resources.ResourceFile;
+import com.android.ide.common.resources.ResourceFolder;
+import com.android.ide.eclipse.adt.AdtPlugin;
+import com.android.ide.eclipse.adt.internal.resources.manager.ResourceManager.IResourceListener;
+import com.android.ide.eclipse.adt.io.IFileWrapper;
+import com.android.io.IAbstractFile;
+import com.android.resources.ResourceType;
+import com.android.utils.Pair;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.QualifiedName;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the locations of resource definitions in the XML files of a project: the
+ * elements defining {@code @+id/} ids in layouts, and the value declarations in
+ * {@code values} folders. This lets hyperlinks and other resource navigation jump
+ * straight to a definition instead of parsing candidate files on every request.
+ * <p>
+ * The index is built in the background when it is first requested, stored in the
+ * project's working location along with the modification stamp of each file, and
+ * kept up to date from {@link ResourceManager} file notifications. When it is loaded
+ * again, only files whose stamps changed are reparsed. Lookups always check the stamp
+ * of the file involved, so a lookup never returns a location from an outdated parse.
+ * <p>
+ * Note that the index reflects the contents of the files on disk; callers which have
+ * an open (and possibly modified) editor model for a file should prefer that.
+ */
+public class ResourceDefinitionIndex {
+    /**
+     * Qualified name for the per-project non-persistent property storing the
+     * {@link ResourceDefinitionIndex} for this project
+     */
+    private final static QualifiedName DEFINITION_INDEX = new QualifiedName(
+            AdtPlugin.PLUGIN_ID, "definitionindex"); //$NON-NLS-1$
+
+    /** Name of the index file in the project's working location */
+    private static final String INDEX_FILE = "definitions.bin"; //$NON-NLS-1$
+
+    /** Magic number at the beginning of the index file */
+    private static final int INDEX_MAGIC = 0x44454649; // "DEFI"
+
+    /** Version of the index file format */
+    private static final int INDEX_VERSION = 1;
+
+    /** Delay before a modified index is written back to disk, in milliseconds */
+    private static final long SAVE_DELAY_MS = 5000;
+
+    /** Project that the index records definitions for */
+    private final IProject mProject;
+
+    /** Map from a project relative file path to the definitions in that file */
+    private final Map<String, FileDefinitions> mFiles = new HashMap<String, FileDefinitions>();
+
+    /** Map from an id name to the paths of the layout files defining it */
+    private final Map<String, Set<String>> mIdFiles = new HashMap<String, Set<String>>();
+
+    /** True once the project has been scanned */
+    private boolean mScanned;
+
+    /** Job scanning the project in the background, if any */
+    private Job mScanJob;
+
+    /** Job writing the index back to disk, if any */
+    private Job mSaveJob;
+
+    /** Definitions in framework files, keyed by absolute path */
+    private static final Map<String, FileDefinitions> sFrameworkFiles =
+            new HashMap<String, FileDefinitions>();
+
+    /** Global (cross-project) resource listener */
+    private static ResourceListener sListener;
+
+    /**
+     * Constructs a {@link ResourceDefinitionIndex} for the given project. Don't use this
+     * method; use the {@link #get} factory method instead.
+     *
+     * @param project project to create an index for
+     */
+    private ResourceDefinitionIndex(IProject project) {
+        mProject = project;
+    }
+
+    /**
+     * Returns the {@link ResourceDefinitionIndex} for the given project. If the project
+     * has not been indexed yet, a background scan is started.
+     *
+     * @param project the project the index is associated with
+     * @return an index for the given project, never null
+     */
+    @NonNull
+    public static ResourceDefinitionIndex get(@NonNull IProject project) {
+        ResourceDefinitionIndex index = null;
+        try {
+            index = (ResourceDefinitionIndex) project.getSessionProperty(DEFINITION_INDEX);
+        } catch (CoreException e) {
+            // Not a problem; we will just create a new one
+        }
+
+        if (index == null) {
+            index = new ResourceDefinitionIndex(project);
+            try {
+                project.setSessionProperty(DEFINITION_INDEX, index);
+            } catch (CoreException e) {
+                AdtPlugin.log(e, "Can't store ResourceDefinitionIndex");
+            }
+            index.scheduleScan();
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns true if the project has been scanned, such that {@link #findIdDefinitions}
+     * will not block
+     *
+     * @return true if the index has been built
+     */
+    public synchronized boolean isScanned() {
+        return mScanned;
+    }
+
+    /**
+     * Returns the definitions of the given id in the layout files of the project. Each
+     * file contributes at most one definition: the first element whose {@code id}
+     * attribute defines the id, or if there is none, the first element with any
+     * attribute defining it. If the index is still being built, this method blocks
+     * until it is complete; callers on the UI thread should check {@link #isScanned}
+     * first. Note that the index reflects the saved contents of the files, not any
+     * unsaved edits in open editors.
+     *
+     * @param id the id name, without the {@code @+id/} prefix
+     * @return a list of files and the regions of the defining elements, never null
+     */
+    @NonNull
+    public List<Pair<IFile, IRegion>> findIdDefinitions(@NonNull String id) {
+        ensureScanned();
+
+        List<String> paths;
+        synchronized (this) {
+            Set<String> files = mIdFiles.get(id);
+            if (files == null) {
+                return Collections.emptyList();
+            }
+            paths = new ArrayList<String>(files);
+        }
+        Collections.sort(paths);
+
+        List<Pair<IFile, IRegion>> result = new ArrayList<Pair<IFile, IRegion>>(paths.size());
+        for (String path : paths) {
+            IFile file = mProject.getFile(path);
+            Pair<IFile, IRegion> definition = findIdDefinition(id, file);
+            if (definition != null) {
+                result.add(definition);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the element defining the given id in the given layout file
+     *
+     * @param id the id name, without the {@code @+id/} prefix
+     * @param file the layout file to look in
+     * @return the file and the region of the defining element, or null
+     */
+    @Nullable
+    public Pair<IFile, IRegion> findIdDefinition(@NonNull String id, @NonNull IFile file) {
+        FileDefinitions definitions = getDefinitions(file);
+        if (definitions != null) {
+            int[] region = definitions.mIds.get(id);
+            if (region != null) {
+                return Pair.<IFile, IRegion>of(file, toRegion(region));
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the declaration of the given value resource in the given values file
+     *
+     * @param type the type of resource
+     * @param name the name of the resource
+     * @param file the values file to look in
+     * @return the file and the region of the declaring element, or null
+     */
+    @Nullable
+    public Pair<IFile, IRegion> findValueDefinition(@NonNull ResourceType type,
+            @NonNull String name, @NonNull IFile file) {
+        FileDefinitions definitions = getDefinitions(file);
+        if (definitions != null) {
+            int[] region = definitions.mValues.get(getValueKey(getTagName(type), name));
+            if (region != null) {
+                return Pair.<IFile, IRegion>of(file, toRegion(region));
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the offset of the declaration of the given value resource in the given
+     * framework file. Framework files do not change, so each file is only parsed once.
+     *
+     * @param type the type of resource
+     * @param name the name of the resource
+     * @param file the framework XML file to look in
+     * @return the file and the offset of the declaring element, or null
+     */
+    @Nullable
+    public static Pair<File, Integer> findFrameworkValueDefinition(@NonNull ResourceType type,
+            @NonNull String name, @NonNull File file) {
+        String path = file.getPath();
+        long stamp = file.lastModified();
+        FileDefinitions definitions;
+        synchronized (sFrameworkFiles) {
+            definitions = sFrameworkFiles.get(path);
+        }
+        if (definitions == null || definitions.mStamp != stamp) {
+            String xml = AdtPlugin.readFile(file);
+            if (xml == null) {
+                return null;
+            }
+            definitions = indexXml(xml, stamp, false /*ids*/, true /*values*/, true /*deep*/);
+            synchronized (sFrameworkFiles) {
+                sFrameworkFiles.put(path, definitions);
+            }
+        }
+
+        String tag = getTagName(type);
+        int[] region = definitions.mValues.get(getValueKey(tag, name));
+        if (region == null && type == ResourceType.ATTR) {
+            // Attributes seem to be defined in <public> tags
+            region = definitions.mValues.get(getValueKey("public", name)); //$NON-NLS-1$
+        }
+        if (region != null) {
+            return Pair.of(file, region[0]);
+        }
+
+        return null;
+    }
+
+    /** Start listening on project resources */
+    public static void start() {
+        assert sListener == null;
+        sListener = new ResourceListener();
+        ResourceManager.getInstance().addListener(sListener);
+    }
+
+    /** Stop listening on project resources */
+    public static void stop() {
+        assert sListener != null;
+        ResourceManager.getInstance().removeListener(sListener);
+        sListener = null;
+        synchronized (sFrameworkFiles) {
+            sFrameworkFiles.clear();
+        }
+    }
+
+    private static IRegion toRegion(int[] region) {
+        return new Region(region[0], region[1] - region[0]);
+    }
+
+    private static String getTagName(ResourceType type) {
+        if (type == ResourceType.ID) {
+            // Ids are recorded in <item> tags instead of <id> tags
+            return TAG_ITEM;
+        }
+
+        return type.getName();
+    }
+
+    private static String getValueKey(String tag, String name) {
+        return tag + ':' + name;
+    }
+
+    /**
+     * Returns true if the given file is covered by this index: a layout or values XML
+     * file in this project
+     *
+     * @param file the file to check
+     * @return true if definitions in the file can be looked up in this index
+     */
+    public boolean isIndexed(@NonNull IFile file) {
+        if (!EXT_XML.equals(file.getFileExtension()) || !mProject.equals(file.getProject())) {
+            return false;
+        }
+        IResource folder = file.getParent();
+        if (folder == null || folder.getParent() == null
+                || !FD_RESOURCES.equals(folder.getParent().getName())) {
+            return false;
+        }
+
+        return isLayoutFolder(folder.getName()) || isValuesFolder(folder.getName());
+    }
+
+    private static boolean isLayoutFolder(String folderName) {
+        return folderName.equals(FD_RES_LAYOUT) || folderName.startsWith(FD_RES_LAYOUT + '-');
+    }
+
+    private static boolean isLayoutPath(String path) {
+        int end = path.lastIndexOf('/');
+        int start = path.lastIndexOf('/', end - 1);
+        return end != -1 && isLayoutFolder(path.substring(start + 1, end));
+    }
+
+    private static boolean isValuesFolder(String folderName) {
+        return folderName.equals(FD_RES_VALUES) || folderName.startsWith(FD_RES_VALUES + '-');
+    }
+
+    /**
+     * Returns the up to date definitions of the given file, parsing it if it is not in
+     * the index or has changed since it was indexed
+     */
+    @Nullable
+    private FileDefinitions getDefinitions(@NonNull IFile file) {
+        if (!file.exists()) {
+            return null;
+        }
+        String path = file.getProjectRelativePath().toPortableString();
+        long stamp = file.getModificationStamp();
+        synchronized (this) {
+            FileDefinitions definitions = mFiles.get(path);
+            if (definitions != null && definitions.mStamp == stamp) {
+                return definitions;
+            }
+        }
+
+        return update(file);
+    }
+
+    /** Reparses the given file and records its definitions in the index */
+    @Nullable
+    private FileDefinitions update(@NonNull IFile file) {
+        if (!isIndexed(file)) {
+            return null;
+        }
+
+        String path = file.getProjectRelativePath().toPortableString();
+        long stamp = file.getModificationStamp();
+        String xml = AdtPlugin.readFile(file);
+        if (xml == null) {
+            remove(path);
+            return null;
+        }
+
+        boolean values = isValuesFolder(file.getParent().getName());
+        FileDefinitions definitions = indexXml(xml, stamp, true /*ids*/, values, false /*deep*/);
+        synchronized (this) {
+            put(path, definitions);
+        }
+        scheduleSave();
+
+        return definitions;
+    }
+
+    /** Records the definitions of a file. Must be called while synchronized on this. */
+    private void put(@NonNull String path, @NonNull FileDefinitions definitions) {
+        FileDefinitions old = mFiles.put(path, definitions);
+        if (old != null) {
+            removeIds(path, old);
+        }
+        if (!isLayoutPath(path)) {
+            // Ids referenced in values files can be looked up per file, but only
+            // layouts are searched when looking for the definition of an id
+            return;
+        }
+        for (String id : definitions.mIds.keySet()) {
+            Set<String> files = mIdFiles.get(id);
+            if (files == null) {
+                files = new HashSet<String>(2);
+                mIdFiles.put(id, files);
+            }
+            files.add(path);
+        }
+    }
+
+    /** Removes the definitions of the given file from the index */
+    private void remove(@NonNull String path) {
+        synchronized (this) {
+            FileDefinitions old = mFiles.remove(path);
+            if (old != null) {
+                removeIds(path, old);
+            }
+        }
+        scheduleSave();
+    }
+
+    private void removeIds(@NonNull String path, @NonNull FileDefinitions definitions) {
+        for (String id : definitions.mIds.keySet()) {
+            Set<String> files = mIdFiles.get(id);
+            if (files != null) {
+                files.remove(path);
+                if (files.isEmpty()) {
+                    mIdFiles.remove(id);
+                }
+            }
+        }
+    }
+
+    // ----- Scanning -----
+
+    private synchronized void scheduleScan() {
+        if (mScanned || mScanJob != null) {
+            return;
+        }
+        mScanJob = new Job("Indexing Android resource definitions") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                scanProject(monitor);
+                return Status.OK_STATUS;
+            }
+        };
+        mScanJob.setSystem(true);
+        mScanJob.setPriority(Job.DECORATE);
+        mScanJob.schedule();
+    }
+
+    /** Makes sure the project has been scanned, waiting for a pending scan if necessary */
+    private void ensureScanned() {
+        Job job;
+        synchronized (this) {
+            if (mScanned) {
+                return;
+            }
+            job = mScanJob;
+        }
+        if (job != null && job.getState() != Job.NONE) {
+            try {
+                job.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (mScanned) {
+                return;
+            }
+        }
+
+        // The job was canceled or never ran: scan on this thread
+        scanProject(null);
+    }
+
+    /**
+     * Scans the layout and values folders of the project, reading the stored index
+     * first such that only files whose modification stamps changed are parsed
+     */
+    private void scanProject(@Nullable IProgressMonitor monitor) {
+        synchronized (this) {
+            if (mFiles.isEmpty()) {
+                readSettings();
+            }
+        }
+
+        boolean changed = false;
+        Set<String> present = new HashSet<String>();
+        try {
+            IFolder res = mProject.getFolder(FD_RESOURCES);
+            if (res.exists()) {
+                for (IResource folder : res.members()) {
+                    if (monitor != null && monitor.isCanceled()) {
+                        return;
+                    }
+                    String folderName = folder.getName();
+                    if (!(folder instanceof IFolder)
+                            || !(isLayoutFolder(folderName) || isValuesFolder(folderName))) {
+                        continue;
+                    }
+                    for (IResource member : ((IFolder) folder).members()) {
+                        if (!(member instanceof IFile) || member.isDerived()
+                                || !EXT_XML.equals(member.getFileExtension())) {
+                            continue;
+                        }
+                        IFile file = (IFile) member;
+                        String path = file.getProjectRelativePath().toPortableString();
+                        present.add(path);
+                        FileDefinitions definitions;
+                        synchronized (this) {
+                            definitions = mFiles.get(path);
+                        }
+                        if (definitions == null
+                                || definitions.mStamp != file.getModificationStamp()) {
+                            update(file);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        } catch (CoreException e) {
+            AdtPlugin.log(e, "Can't index resource definitions in %1$s", mProject.getName());
+        }
+
+        synchronized (this) {
+            for (String path : new ArrayList<String>(mFiles.keySet())) {
+                if (!present.contains(path)) {
+                    FileDefinitions old = mFiles.remove(path);
+                    removeIds(path, old);
+                    changed = true;
+                }
+            }
+            mScanned = true;
+            mScanJob = null;
+        }
+
+        if (changed) {
+            scheduleSave();
+        }
+    }
+
+    /**
+     * Parses the given XML content and returns the definitions found in it. This uses a
+     * streaming parser rather than building a DOM. The parser does not report character
+     * offsets, so the offsets of the elements are found by scanning the markup in the
+     * source in step with the parser events; since a raw {@code <} can only appear at
+     * the beginning of markup, each tag starts at the next {@code <} that does not begin
+     * a comment, CDATA section, processing instruction or document type declaration.
+     * If the document is not well formed, the definitions found before the error are
+     * returned.
+     *
+     * @param xml the XML content
+     * @param stamp the modification stamp to record for the content
+     * @param ids whether to record elements defining {@code @+id/} ids
+     * @param values whether to record named resource value declarations
+     * @param deep if true, record named elements at any depth rather than just the
+     *            children of {@code <resources>} and their {@code declare-styleable}
+     *            attributes
+     * @return the definitions, never null
+     */
+    @VisibleForTesting
+    @NonNull
+    static FileDefinitions indexXml(@NonNull String xml, long stamp, boolean ids,
+            boolean values, boolean deep) {
+        FileDefinitions definitions = new FileDefinitions(stamp);
+        Set<String> primaryIds = ids ? new HashSet<String>() : null;
+        Set<String> nestedValues = values ? new HashSet<String>() : null;
+
+        // Regions of the open elements; the end offset is filled in at the end tag
+        List<int[]> open = new ArrayList<int[]>();
+        boolean emptyElement = false;
+        boolean resources = false;
+        String parentTag = null;
+        int cursor = 0;
+
+        KXmlParser parser = new KXmlParser();
+        try {
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+            parser.setInput(new StringReader(xml));
+            int event = parser.getEventType();
+            while (event != XmlPullParser.END_DOCUMENT) {
+                if (event == XmlPullParser.START_TAG) {
+                    int start = findMarkup(xml, cursor);
+                    if (start == -1) {
+                        break;
+                    }
+                    int end = findTagEnd(xml, start);
+                    if (end == -1) {
+                        break;
+                    }
+                    cursor = end;
+                    emptyElement = parser.isEmptyElementTag();
+                    int[] region = new int[] { start, end };
+                    open.add(region);
+
+                    String tag = parser.getName();
+                    int depth = parser.getDepth();
+                    if (ids) {
+                        recordIds(parser, region, definitions, primaryIds);
+                    }
+                    if (values) {
+                        if (depth == 1) {
+                            resources = tag.equals(TAG_RESOURCES);
+                        } else if (deep || (resources && depth <= 3)) {
+                            String name = parser.getAttributeValue(null, ATTR_NAME);
+                            if (name != null) {
+                                String key = getValueKey(tag, name);
+                                boolean nested = !deep && depth == 3;
+                                if (deep || !nested) {
+                                    if (!definitions.mValues.containsKey(key)
+                                            || nestedValues.remove(key)) {
+                                        definitions.mValues.put(key, region);
+                                    }
+                                } else if (TAG_DECLARE_STYLEABLE.equals(parentTag)
+                                        && !definitions.mValues.containsKey(key)) {
+                                    definitions.mValues.put(key, region);
+                                    nestedValues.add(key);
+                                }
+                            }
+                        }
+                        if (depth == 2) {
+                            parentTag = tag;
+                        }
+                    }
+                } else if (event == XmlPullParser.END_TAG) {
+                    int[] region = open.remove(open.size() - 1);
+                    if (emptyElement) {
+                        // <tag/>: the region already ends at the end of the start tag
+                        emptyElement = false;
+                    } else {
+                        int start = findMarkup(xml, cursor);
+                        if (start == -1) {
+                            break;
+                        }
+                        int end = xml.indexOf('>', start);
+                        if (end == -1) {
+                            break;
+                        }
+                        cursor = end + 1;
+                        region[1] = cursor;
+                    }
+                }
+                event = parser.next();
+            }
+        } catch (XmlPullParserException e) {
+            // Not well formed: keep whatever we found so far
+        } catch (IOException e) {
+            // Can't happen when reading from a String
+        }
+
+        return definitions;
+    }
+
+    /** Records the ids defined by the attributes of the current element */
+    private static void recordIds(KXmlParser parser, int[] region,
+            FileDefinitions definitions, Set<String> primaryIds) {
+        for (int i = 0, n = parser.getAttributeCount(); i < n; i++) {
+            String value = parser.getAttributeValue(i);
+            if (!value.startsWith(NEW_ID_PREFIX)) {
+                continue;
+            }
+            String id = value.substring(NEW_ID_PREFIX.length());
+            boolean primary = ATTR_ID.equals(parser.getAttributeName(i));
+            // Prefer the element with the id attribute itself over elements which
+            // just reference the id, such as a layout_below="@+id/name" attribute
+            if (!definitions.mIds.containsKey(id) || primary && !primaryIds.contains(id)) {
+                definitions.mIds.put(id, region);
+                if (primary) {
+                    primaryIds.add(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the offset of the next start or end tag at or after the given offset,
+     * skipping comments, CDATA sections, processing instructions and document type
+     * declarations, or -1 if there is none
+     */
+    private static int findMarkup(String xml, int offset) {
+        while (true) {
+            int start = xml.indexOf('<', offset);
+            if (start == -1) {
+                return -1;
+            }
+            int end;
+            if (xml.startsWith("<!--", start)) {                    //$NON-NLS-1$
+                end = xml.indexOf("-->", start + 4);                //$NON-NLS-1$
+                offset = end + 3;
+            } else if (xml.startsWith("<![CDATA[", start)) {        //$NON-NLS-1$
+                end = xml.indexOf("]]>", start + 9);                //$NON-NLS-1$
+                offset = end + 3;
+            } else if (xml.startsWith("<?", start)) {               //$NON-NLS-1$
+                end = xml.indexOf("?>", start + 2);                 //$NON-NLS-1$
+                offset = end + 2;
+            } else if (xml.startsWith("<!", start)) {               //$NON-NLS-1$
+                end = xml.indexOf('>', start + 2);
+                offset = end + 1;
+            } else {
+                return start;
+            }
+            if (end == -1) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Returns the offset just past the {@code >} which closes the start tag beginning at
+     * the given offset, or -1 if the tag is not closed
+     */
+    private static int findTagEnd(String xml, int start) {
+        char quote = 0;
+        for (int i = start + 1, n = xml.length(); i < n; i++) {
+            char c = xml.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    // ----- Persistence -----
+
+    @Nullable
+    private File getIndexFile() {
+        IPath location = mProject.getWorkingLocation(AdtPlugin.PLUGIN_ID);
+        if (location == null) {
+            return null;
+        }
+        return location.append(INDEX_FILE).toFile();
+    }
+
+    /** Writes the index back to disk after a short delay, coalescing frequent updates */
+    private synchronized void scheduleSave() {
+        if (mSaveJob == null) {
+            mSaveJob = new Job("Saving Android resource definition index") {
+                @Override
+                protected IStatus run(IProgressMonitor monitor) {
+                    saveSettings();
+                    return Status.OK_STATUS;
+                }
+            };
+            mSaveJob.setSystem(true);
+        }
+        if (mSaveJob.getState() != Job.SLEEPING) {
+            mSaveJob.schedule(SAVE_DELAY_MS);
+        }
+    }
+
+    private void saveSettings() {
+        File file = getIndexFile();
+        if (file == null) {
+            return;
+        }
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            synchronized (this) {
+                writeIndex(out, mFiles);
+            }
+        } catch (IOException e) {
+            AdtPlugin.log(e, "Can't store resource definition index");
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // pass
+                }
+            }
+        }
+    }
+
+    /** Reads the stored index. Must be called while synchronized on this. */
+    private void readSettings() {
+        File file = getIndexFile();
+        if (file == null || !file.exists()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            Map<String, FileDefinitions> files = new HashMap<String, FileDefinitions>();
+            if (readIndex(in, files)) {
+                for (Map.Entry<String, FileDefinitions> entry : files.entrySet()) {
+                    put(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (IOException e) {
+            AdtPlugin.log(e, "Can't read resource definition index");
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // pass
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the given file definitions in the binary index format read by
+     * {@link #readIndex}
+     *
+     * @param out the stream to write to
+     * @param files map from project relative paths to the definitions in each file
+     * @throws IOException if the index can't be written
+     */
+    @VisibleForTesting
+    static void writeIndex(@NonNull DataOutputStream out,
+            @NonNull Map<String, FileDefinitions> files) throws IOException {
+        out.writeInt(INDEX_MAGIC);
+        out.writeInt(INDEX_VERSION);
+        out.writeInt(files.size());
+        for (Map.Entry<String, FileDefinitions> entry : files.entrySet()) {
+            FileDefinitions definitions = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeLong(definitions.mStamp);
+            writeRegions(out, definitions.mIds);
+            writeRegions(out, definitions.mValues);
+        }
+    }
+
+    private static void writeRegions(DataOutputStream out, Map<String, int[]> regions)
+            throws IOException {
+        out.writeInt(regions.size());
+        for (Map.Entry<String, int[]> entry : regions.entrySet()) {
+            int[] region = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeInt(region[0]);
+            out.writeInt(region[1]);
+        }
+    }
+
+    /**
+     * Reads a binary index written by {@link #writeIndex} into the given map
+     *
+     * @param in the stream to read from
+     * @param files map to store the definitions of each file into
+     * @return true if the index was read, false if it has an unknown format
+     * @throws IOException if the index can't be read
+     */
+    @VisibleForTesting
+    static boolean readIndex(@NonNull DataInputStream in,
+            @NonNull Map<String, FileDefinitions> files) throws IOException {
+        if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+            return false;
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String path = in.readUTF();
+            FileDefinitions definitions = new FileDefinitions(in.readLong());
+            readRegions(in, definitions.mIds);
+            readRegions(in, definitions.mValues);
+            files.put(path, definitions);
+        }
+
+        return true;
+    }
+
+    private static void readRegions(DataInputStream in, Map<String, int[]> regions)
+            throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            regions.put(key, new int[] { in.readInt(), in.readInt() });
+        }
+    }
+
+    /** The definitions found in a single file */
+    @VisibleForTesting
+    static class FileDefinitions {
+        /** Modification stamp of the file when it was parsed */
+        final long mStamp;
+
+        /** Map from id names to the {start, end} offsets of the defining elements */
+        final Map<String, int[]> mIds = new HashMap<String, int[]>();
+
+        /** Map from tag:name keys to the {start, end} offsets of the declarations */
+        final Map<String, int[]> mValues = new HashMap<String, int[]>();
+
+        FileDefinitions(long stamp) {
+            mStamp = stamp;
+        }
+
+        @VisibleForTesting
+        @Nullable
+        int[] getIdRegion(@NonNull String id) {
+            return mIds.get(id);
+        }
+
+        @VisibleForTesting
+        @Nullable
+        int[] getValueRegion(@NonNull ResourceType type, @NonNull String name) {
+            return mValues.get(getValueKey(getTagName(type), name));
+        }
+    }
+
+    /** Listener of resource file changes, used to keep the indices up to date */
+    private static class ResourceListener implements IResourceListener {
+        @Override
+        public void fileChanged(IProject project, ResourceFile file, int eventType) {
+            if ((eventType & (CHANGED | ADDED | REMOVED | CONTENT)) == 0) {
+                return;
+            }
+
+            ResourceDefinitionIndex index;
+            try {
+                index = (ResourceDefinitionIndex) project.getSessionProperty(DEFINITION_INDEX);
+            } catch (CoreException e) {
+                return;
+            }
+            if (index == null) {
+                // Not indexed yet; the initial scan will pick up the change
+                return;
+            }
+
+            IAbstractFile wrapper = file.getFile();
+            if (wrapper instanceof IFileWrapper) {
+                IFile iFile = ((IFileWrapper) wrapper).getIFile();
+                if ((eventType & REMOVED) != 0 || !iFile.exists()) {
+                    index.remove(iFile.getProjectRelativePath().toPortableString());
+                } else {
+                    index.update(iFile);
+                }
+            }
+        }
+
+        @Override
+        public void folderChanged(IProject project, ResourceFolder folder, int eventType) {
+            // Files in added or removed folders are reported individually
+        }
+    }
+}
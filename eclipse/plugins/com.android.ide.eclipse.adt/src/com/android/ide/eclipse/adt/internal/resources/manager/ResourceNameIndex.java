@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.eclipse.adt.internal.resources.manager;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.VisibleForTesting;
+import com.android.ide.common.resources.ResourceFile;
+import com.android.ide.common.resources.ResourceFolder;
+import com.android.ide.common.resources.ResourceItem;
+import com.android.ide.common.resources.ResourceRepository;
+import com.android.ide.eclipse.adt.internal.resources.manager.ResourceManager.IResourceListener;
+import com.android.resources.ResourceType;
+
+import org.eclipse.core.resources.IProject;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Sorted index of the resource names in a {@link ResourceRepository}, used by
+ * resource value code completion to find the names matching a typed prefix
+ * without enumerating (and sorting) every resource item of the type on each
+ * keystroke.
+ * <p>
+ * The names of each resource type are kept in an array sorted case-insensitively,
+ * so a prefix maps to a contiguous range found by binary search. Names can also be
+ * matched by "camel humps", where each typed character either continues the current
+ * word or starts a later word of the name, such that {@code abt} matches
+ * {@code action_bar_title} and {@code THL} matches {@code Theme.Holo.Light}.
+ * <p>
+ * The index of a project repository is discarded when the resource manager reports
+ * a change in the project, and rebuilt on the next lookup. Framework repositories
+ * are replaced rather than updated when the SDK is reloaded, so their indices simply
+ * become unreachable along with the repository.
+ */
+public class ResourceNameIndex {
+    /** Map from repository to its per type sorted name arrays */
+    private static final Map<ResourceRepository, Map<ResourceType, String[]>> sIndices =
+            new WeakHashMap<ResourceRepository, Map<ResourceType, String[]>>();
+
+    private static ResourceListener sListener;
+
+    private ResourceNameIndex() {
+    }
+
+    /** Start listening on project resources */
+    public static void start() {
+        assert sListener == null;
+        sListener = new ResourceListener();
+        ResourceManager.getInstance().addListener(sListener);
+    }
+
+    /** Stop listening on project resources */
+    public static void stop() {
+        assert sListener != null;
+        ResourceManager.getInstance().removeListener(sListener);
+        sListener = null;
+        synchronized (sIndices) {
+            sIndices.clear();
+        }
+    }
+
+    /**
+     * Adds the names of the given type in the given repository which match the given
+     * prefix, each one prepended with the given base string, to the result list. Names
+     * starting with the prefix (ignoring case) are added first, in sorted order,
+     * optionally followed by the names matching the prefix by camel humps.
+     *
+     * @param repository the repository to look up names in
+     * @param type the type of resource to find names for
+     * @param prefix the typed name prefix, possibly empty
+     * @param camelCase if true, also add names matching the prefix by camel humps
+     * @param base the string to prepend to each name, such as {@code @string/}
+     * @param results the list to add the matches to
+     * @param max the maximum number of matches to add
+     * @return the number of matches added
+     */
+    public static int addMatches(
+            @NonNull ResourceRepository repository,
+            @NonNull ResourceType type,
+            @NonNull String prefix,
+            boolean camelCase,
+            @NonNull String base,
+            @NonNull List<String> results,
+            int max) {
+        String[] names = getNames(repository, type);
+        return addMatches(names, prefix, camelCase, base, results, max);
+    }
+
+    @VisibleForTesting
+    static int addMatches(
+            @NonNull String[] names,
+            @NonNull String prefix,
+            boolean camelCase,
+            @NonNull String base,
+            @NonNull List<String> results,
+            int max) {
+        int count = 0;
+        int start = findFirst(names, prefix);
+        int end = start;
+        for (; end < names.length; end++) {
+            String name = names[end];
+            if (!name.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                break;
+            }
+            if (count < max) {
+                results.add(base + name);
+                count++;
+            }
+        }
+
+        if (!camelCase || prefix.length() < 2 || count >= max) {
+            return count;
+        }
+
+        // The first character of a camel hump match must match the first character
+        // of the name, so only the names sharing the first character need to be checked
+        int from = findFirst(names, prefix.substring(0, 1));
+        for (int i = from; i < names.length && count < max; i++) {
+            String name = names[i];
+            if (!name.regionMatches(true, 0, prefix, 0, 1)) {
+                break;
+            }
+            if (i >= start && i < end) {
+                // Already added as a plain prefix match
+                continue;
+            }
+            if (matchesCamelCase(name, prefix)) {
+                results.add(base + name);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the index of the first name in the sorted array which is not
+     * less than the given prefix
+     */
+    private static int findFirst(@NonNull String[] names, @NonNull String prefix) {
+        int index = Arrays.binarySearch(names, prefix, String.CASE_INSENSITIVE_ORDER);
+        if (index < 0) {
+            return -(index + 1);
+        }
+
+        // Back up to the first of several names differing only in case
+        while (index > 0 && names[index - 1].equalsIgnoreCase(prefix)) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * Returns true if the given name matches the given pattern by camel humps
+     *
+     * @param name the resource name
+     * @param pattern the typed pattern
+     * @return true if the name matches the pattern
+     */
+    @VisibleForTesting
+    static boolean matchesCamelCase(@NonNull String name, @NonNull String pattern) {
+        if (pattern.isEmpty()) {
+            return true;
+        }
+        if (name.isEmpty() || !sameChar(name.charAt(0), pattern.charAt(0))) {
+            return false;
+        }
+
+        return matchesCamelCase(name, 1, pattern, 1);
+    }
+
+    private static boolean matchesCamelCase(String name, int nameIndex, String pattern,
+            int patternIndex) {
+        if (patternIndex == pattern.length()) {
+            return true;
+        }
+
+        char c = pattern.charAt(patternIndex);
+        int length = name.length();
+        if (nameIndex < length && sameChar(name.charAt(nameIndex), c)
+                && matchesCamelCase(name, nameIndex + 1, pattern, patternIndex + 1)) {
+            return true;
+        }
+
+        // Otherwise continue with the start of a later word
+        for (int i = nameIndex + 1; i < length; i++) {
+            if (isWordStart(name, i) && sameChar(name.charAt(i), c)
+                    && matchesCamelCase(name, i + 1, pattern, patternIndex + 1)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean sameChar(char c1, char c2) {
+        return c1 == c2 || Character.toLowerCase(c1) == Character.toLowerCase(c2);
+    }
+
+    private static boolean isWordStart(String name, int index) {
+        char prev = name.charAt(index - 1);
+        char c = name.charAt(index);
+        if (prev == '_' || prev == '.') {
+            return true;
+        }
+        if (c == '_' || c == '.') {
+            // Allow typing the separator itself
+            return true;
+        }
+        if (Character.isUpperCase(c)) {
+            return !Character.isUpperCase(prev);
+        }
+        return Character.isDigit(c) && !Character.isDigit(prev);
+    }
+
+    @NonNull
+    private static String[] getNames(@NonNull ResourceRepository repository,
+            @NonNull ResourceType type) {
+        Map<ResourceType, String[]> index;
+        synchronized (sIndices) {
+            index = sIndices.get(repository);
+            if (index == null) {
+                index = new EnumMap<ResourceType, String[]>(ResourceType.class);
+                sIndices.put(repository, index);
+            } else {
+                String[] names = index.get(type);
+                if (names != null) {
+                    return names;
+                }
+            }
+        }
+
+        // Build outside of the lock; a concurrent lookup may compute the same array
+        String[] names = createNames(repository.getResourceItemsOfType(type));
+        synchronized (sIndices) {
+            // Only record it if the index was not invalidated in the meantime
+            if (sIndices.get(repository) == index) {
+                index.put(type, names);
+            }
+        }
+
+        return names;
+    }
+
+    @VisibleForTesting
+    @NonNull
+    static String[] createNames(@NonNull Collection<ResourceItem> items) {
+        String[] names = new String[items.size()];
+        int i = 0;
+        for (ResourceItem item : items) {
+            if (i == names.length) {
+                // The collection grew while copying it
+                break;
+            }
+            names[i++] = item.getName();
+        }
+        if (i < names.length) {
+            names = Arrays.copyOf(names, i);
+        }
+        Arrays.sort(names, String.CASE_INSENSITIVE_ORDER);
+        return names;
+    }
+
+    /** Discards the index of the given repository */
+    private static void invalidate(@NonNull ResourceRepository repository) {
+        synchronized (sIndices) {
+            sIndices.remove(repository);
+        }
+    }
+
+    /** Listener of resource changes, used to discard stale project indices */
+    private static class ResourceListener implements IResourceListener {
+        @Override
+        public void fileChanged(IProject project, ResourceFile file, int eventType) {
+            projectChanged(project);
+        }
+
+        @Override
+        public void folderChanged(IProject project, ResourceFolder folder, int eventType) {
+            projectChanged(project);
+        }
+
+        private static void projectChanged(IProject project) {
+            ProjectResources resources = ResourceManager.getInstance().getProjectResources(
+                    project);
+            if (resources != null) {
+                invalidate(resources);
+            }
+        }
+    }
+}
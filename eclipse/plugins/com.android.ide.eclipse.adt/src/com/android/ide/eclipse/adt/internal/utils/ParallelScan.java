@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.utils;
+
+import com.android.annotations.NonNull;
+import com.android.ide.eclipse.adt.AdtPlugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Scans a list of files (or other items) on all available processors, such as when
+ * reading many layout files at once. Small lists are scanned on the calling thread,
+ * since the thread hops would cost more than they save. The threads are shared by all
+ * scans.
+ */
+public class ParallelScan {
+    /** Minimum number of items in a scan before the scan is split across threads */
+    private static final int PARALLEL_SCAN_THRESHOLD = 16;
+
+    /** Executor shared by all the scans, see {@link #getExecutor()} */
+    private static ExecutorService sExecutor;
+
+    /**
+     * The work done for each item of a scan
+     *
+     * @param <T> the type of the scanned items
+     * @param <R> the type of the result of scanning an item
+     */
+    public interface Scanner<T, R> {
+        /**
+         * Scans the given item. This may be called from several threads at once.
+         *
+         * @param item the item to scan
+         * @return the result of the scan
+         */
+        R scan(@NonNull T item);
+
+        /**
+         * Returns the result to use for an item whose scan failed or was interrupted
+         *
+         * @param item the item which was not scanned
+         * @return the result to use for the item
+         */
+        R getFallback(@NonNull T item);
+    }
+
+    private ParallelScan() {
+    }
+
+    /**
+     * Scans all the given items, and blocks until done
+     *
+     * @param items the items to scan
+     * @param scanner the scanner to apply to each item
+     * @return a list, parallel to the list of items, with the result of each item
+     */
+    @NonNull
+    public static <T, R> List<R> scan(@NonNull List<T> items,
+            @NonNull final Scanner<T, R> scanner) {
+        List<R> result = new ArrayList<R>(items.size());
+        if (Runtime.getRuntime().availableProcessors() < 2
+                || items.size() < PARALLEL_SCAN_THRESHOLD) {
+            for (T item : items) {
+                R value;
+                try {
+                    value = scanner.scan(item);
+                } catch (RuntimeException e) {
+                    AdtPlugin.log(e, "Can't scan %1$s", item);
+                    value = scanner.getFallback(item);
+                }
+                result.add(value);
+            }
+            return result;
+        }
+
+        ExecutorService executor = getExecutor();
+        List<Future<R>> futures = new ArrayList<Future<R>>(items.size());
+        for (final T item : items) {
+            futures.add(executor.submit(new Callable<R>() {
+                @Override
+                public R call() throws Exception {
+                    return scanner.scan(item);
+                }
+            }));
+        }
+        try {
+            for (int i = 0, n = items.size(); i < n; i++) {
+                R value;
+                try {
+                    value = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    AdtPlugin.log(e.getCause(), "Can't scan %1$s", items.get(i));
+                    value = scanner.getFallback(items.get(i));
+                }
+                result.add(value);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // The threads are shared with other scans, so only cancel this one
+            for (Future<R> future : futures) {
+                future.cancel(true);
+            }
+            while (result.size() < items.size()) {
+                result.add(scanner.getFallback(items.get(result.size())));
+            }
+        }
+
+        return result;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Parallel Scan"); //$NON-NLS-1$
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return sExecutor;
+    }
+}
@@ -20,17 +20,17 @@ import static com.android.tools.lint.detector.api.LintUtils.assertionsEnabled;
 
 import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
+import com.android.annotations.VisibleForTesting;
 import com.android.ide.eclipse.adt.AdtPlugin;
 
-import freemarker.cache.TemplateLoader;
 import freemarker.template.Configuration;
 import freemarker.template.DefaultObjectWrapper;
 import freemarker.template.Template;
 
 import java.io.IOException;
-import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -43,17 +43,27 @@ import java.util.Map;
  * evaluator supports only simple strings, referencing only values from the
  * provided map (and builtin functions).
  */
-class StringEvaluator implements TemplateLoader {
+class StringEvaluator {
+    /** Maximum number of compiled expressions to keep in {@link #sTemplates} */
+    @VisibleForTesting
+    static final int MAX_CACHED_EXPRESSIONS = 200;
+
+    /** Compiled expressions shared by all evaluators, least recently used first */
+    @VisibleForTesting
+    static final Map<String, Template> sTemplates =
+            new LinkedHashMap<String, Template>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+            return size() > MAX_CACHED_EXPRESSIONS;
+        }
+    };
+
+    private static Configuration sFreemarker;
+
     private Map<String, Object> mParameters;
-    private Configuration mFreemarker;
-    private String mCurrentExpression;
 
     StringEvaluator() {
         mParameters = TemplateHandler.createBuiltinMap();
-
-        mFreemarker = new Configuration();
-        mFreemarker.setObjectWrapper(new DefaultObjectWrapper());
-        mFreemarker.setTemplateLoader(this);
     }
 
     /** Evaluates the given expression, with the given set of parameters */
@@ -64,8 +74,7 @@ class StringEvaluator implements TemplateLoader {
             mParameters.put(parameter.id, parameter.value);
         }
         try {
-            mCurrentExpression = expression;
-            Template inputsTemplate = mFreemarker.getTemplate(expression);
+            Template inputsTemplate = getTemplate(expression);
             StringWriter out = new StringWriter();
             inputsTemplate.process(mParameters, out);
             out.flush();
@@ -78,24 +87,26 @@ class StringEvaluator implements TemplateLoader {
         }
     }
 
-    // ---- Implements TemplateLoader ----
-
-    @Override
-    public Object findTemplateSource(String name) throws IOException {
-        return mCurrentExpression;
-    }
-
-    @Override
-    public long getLastModified(Object templateSource) {
-        return 0;
-    }
-
-    @Override
-    public Reader getReader(Object templateSource, String encoding) throws IOException {
-        return new StringReader(mCurrentExpression);
-    }
+    /**
+     * Returns the compiled template for the given expression. The parameter
+     * suggestions are evaluated on every keystroke in the wizard, so the compiled
+     * expressions are cached rather than parsed each time.
+     */
+    @NonNull
+    private static Template getTemplate(@NonNull String expression) throws IOException {
+        synchronized (sTemplates) {
+            Template template = sTemplates.get(expression);
+            if (template == null) {
+                if (sFreemarker == null) {
+                    sFreemarker = new Configuration();
+                    sFreemarker.setObjectWrapper(new DefaultObjectWrapper());
+                }
+                template = new Template(expression, new StringReader(expression),
+                        sFreemarker);
+                sTemplates.put(expression, template);
+            }
 
-    @Override
-    public void closeTemplateSource(Object templateSource) throws IOException {
+            return template;
+        }
     }
 }
@@ -94,12 +94,14 @@ import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.net.URL;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -217,9 +219,6 @@ class TemplateHandler {
     /** The project to write the template into */
     private IProject mProject;
 
-    /** The template loader which is responsible for finding (and sharing) template files */
-    private final MyTemplateLoader mLoader;
-
     /** Agree to all file-overwrites from now on? */
     private boolean mYesToAll = false;
 
@@ -265,8 +264,6 @@ class TemplateHandler {
     private TemplateHandler(File rootPath, TemplateManager manager) {
         mRootPath = rootPath;
         mManager = manager;
-        mLoader = new MyTemplateLoader();
-        mLoader.setPrefix(mRootPath.getPath());
     }
 
     public TemplateManager getManager() {
@@ -288,9 +285,7 @@ class TemplateHandler {
 
         // Render the instruction list template.
         Map<String, Object> paramMap = createParameterMap(args);
-        Configuration freemarker = new Configuration();
-        freemarker.setObjectWrapper(new DefaultObjectWrapper());
-        freemarker.setTemplateLoader(mLoader);
+        Configuration freemarker = getFreemarker();
 
         processVariables(freemarker, TEMPLATE_XML, paramMap);
 
@@ -303,6 +298,44 @@ class TemplateHandler {
         return changes;
     }
 
+    /**
+     * Returns the FreeMarker configuration shared by all template handlers. Its
+     * template cache holds the compiled form of every template file instantiated so
+     * far, keyed by path, and recompiles a template only when its file has been
+     * modified.
+     *
+     * @return the shared configuration
+     */
+    @NonNull
+    static synchronized Configuration getFreemarker() {
+        if (sFreemarker == null) {
+            Configuration freemarker = new Configuration();
+            freemarker.setObjectWrapper(new DefaultObjectWrapper());
+            freemarker.setTemplateLoader(new TemplateFileLoader());
+            freemarker.setLocalizedLookup(false);
+            // Check the file modification time on each lookup such that edits
+            // to the template files are picked up right away
+            freemarker.setTemplateUpdateDelay(0);
+            sFreemarker = freemarker;
+        }
+
+        return sFreemarker;
+    }
+
+    /**
+     * Returns the compiled FreeMarker template for the given template file
+     *
+     * @param freemarker the FreeMarker configuration
+     * @param file the template file
+     * @return the template
+     * @throws IOException if the template cannot be read or parsed
+     */
+    @NonNull
+    private static Template getFreemarkerTemplate(@NonNull Configuration freemarker,
+            @NonNull File file) throws IOException {
+        return freemarker.getTemplate(file.toURI().toString());
+    }
+
     Map<String, Object> createParameterMap(Map<String, Object> args) {
         final Map<String, Object> paramMap = createBuiltinMap();
 
@@ -405,6 +438,9 @@ class TemplateHandler {
     @VisibleForTesting
     public static Exception sMostRecentException;
 
+    /** The FreeMarker configuration shared by all handlers, see {@link #getFreemarker()} */
+    private static Configuration sFreemarker;
+
     /** Read the given FreeMarker file and process the variable definitions */
     private void processVariables(final Configuration freemarker,
             String file, final Map<String, Object> paramMap) {
@@ -417,8 +453,8 @@ class TemplateHandler {
                     return;
                 }
             } else {
-                mLoader.setTemplateFile(new File(mRootPath, file));
-                Template inputsTemplate = freemarker.getTemplate(file);
+                Template inputsTemplate = getFreemarkerTemplate(freemarker,
+                        new File(mRootPath, file));
                 StringWriter out = new StringWriter();
                 inputsTemplate.process(paramMap, out);
                 out.flush();
@@ -539,8 +575,8 @@ class TemplateHandler {
             String file,
             final Map<String, Object> paramMap) {
         try {
-            mLoader.setTemplateFile(new File(mRootPath, file));
-            Template freemarkerTemplate = freemarker.getTemplate(file);
+            Template freemarkerTemplate = getFreemarkerTemplate(freemarker,
+                    new File(mRootPath, file));
 
             StringWriter out = new StringWriter();
             freemarkerTemplate.process(paramMap, out);
@@ -663,8 +699,7 @@ class TemplateHandler {
         File from = getFullPath(relativeFrom);
         if (relativeFrom.endsWith(DOT_FTL)) {
             // Perform template substitution of the template prior to merging
-            mLoader.setTemplateFile(from);
-            Template template = freemarker.getTemplate(from.getName());
+            Template template = getFreemarkerTemplate(freemarker, from);
             Writer out = new StringWriter();
             template.process(paramMap, out);
             out.flush();
@@ -895,8 +930,7 @@ class TemplateHandler {
             copyTemplateResource(relativeFrom, to);
         } else {
             File from = getFullPath(relativeFrom);
-            mLoader.setTemplateFile(from);
-            Template template = freemarker.getTemplate(from.getName());
+            Template template = getFreemarkerTemplate(freemarker, from);
             Writer out = new StringWriter(1024);
             template.process(paramMap, out);
             out.flush();
@@ -1071,43 +1105,35 @@ class TemplateHandler {
     }
 
     /**
-     * A custom {@link TemplateLoader} which locates and provides templates
-     * within the plugin .jar file
+     * A {@link TemplateLoader} which loads template files from the file system. The
+     * template names are file URIs, such that the templates from all the template
+     * folders can share a single template cache, and such that includes are resolved
+     * relative to the including template.
      */
-    private static final class MyTemplateLoader implements TemplateLoader {
-        private String mPrefix;
-
-        public void setPrefix(String prefix) {
-            mPrefix = prefix;
-        }
-
-        public void setTemplateFile(File file) {
-            setTemplateParent(file.getParentFile());
-        }
-
-        public void setTemplateParent(File parent) {
-            mPrefix = parent.getPath();
-        }
-
+    private static final class TemplateFileLoader implements TemplateLoader {
         @Override
-        public Reader getReader(Object templateSource, String encoding) throws IOException {
-            URL url = (URL) templateSource;
-            return new InputStreamReader(url.openStream(), encoding);
+        public Object findTemplateSource(String name) throws IOException {
+            try {
+                File file = new File(new URI(name));
+                if (file.isFile()) {
+                    return file;
+                }
+            } catch (URISyntaxException e) {
+                // Not a template file name
+            } catch (IllegalArgumentException e) {
+                // Not a file URI
+            }
+            return null;
         }
 
         @Override
         public long getLastModified(Object templateSource) {
-            return 0;
+            return ((File) templateSource).lastModified();
         }
 
         @Override
-        public Object findTemplateSource(String name) throws IOException {
-            String path = mPrefix != null ? mPrefix + '/' + name : name;
-            File file = new File(path);
-            if (file.exists()) {
-                return file.toURI().toURL();
-            }
-            return null;
+        public Reader getReader(Object templateSource, String encoding) throws IOException {
+            return new InputStreamReader(new FileInputStream((File) templateSource), encoding);
         }
 
         @Override
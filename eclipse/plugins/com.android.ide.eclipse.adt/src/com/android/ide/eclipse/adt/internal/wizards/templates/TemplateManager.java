@@ -22,6 +22,7 @@ import static com.android.ide.eclipse.adt.internal.wizards.templates.TemplateHan
 
 import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
+import com.android.annotations.VisibleForTesting;
 import com.android.ide.eclipse.adt.AdtPlugin;
 import com.android.ide.eclipse.adt.AdtUtils;
 import com.android.ide.eclipse.adt.internal.editors.layout.gle2.DomUtilities;
@@ -232,15 +233,48 @@ public class TemplateManager {
             mTemplateMap = Maps.newHashMap();
         }
 
+        Document doc = getTemplateDocument(templateDir);
+        if (doc != null) {
+            TemplateMetadata metadata = new TemplateMetadata(doc);
+            mTemplateMap.put(templateDir, metadata);
+            return metadata;
+        }
+
+        return null;
+    }
+
+    /**
+     * Parsed template.xml documents, shared by all template managers and keyed by
+     * template folder. The {@link TemplateMetadata} objects are not shared, since
+     * their parameters hold the values edited in a particular wizard.
+     */
+    private static final Map<File, ParsedTemplate> sDocuments = Maps.newHashMap();
+
+    /**
+     * Returns the parsed template.xml document of the given template folder, parsing
+     * it only if it has not been parsed before or the file has since been modified
+     */
+    @VisibleForTesting
+    @Nullable
+    static Document getTemplateDocument(@NonNull File templateDir) {
+        File templateFile = new File(templateDir, TEMPLATE_XML);
+        long lastModified = templateFile.lastModified();
+        synchronized (sDocuments) {
+            ParsedTemplate parsed = sDocuments.get(templateDir);
+            if (parsed != null && parsed.lastModified == lastModified) {
+                return parsed.document;
+            }
+        }
+
         try {
-            File templateFile = new File(templateDir, TEMPLATE_XML);
             if (templateFile.isFile()) {
                 String xml = Files.toString(templateFile, Charsets.UTF_8);
                 Document doc = DomUtilities.parseDocument(xml, true);
                 if (doc != null && doc.getDocumentElement() != null) {
-                    TemplateMetadata metadata = new TemplateMetadata(doc);
-                    mTemplateMap.put(templateDir, metadata);
-                    return metadata;
+                    synchronized (sDocuments) {
+                        sDocuments.put(templateDir, new ParsedTemplate(doc, lastModified));
+                    }
+                    return doc;
                 }
             }
         } catch (IOException e) {
@@ -249,4 +283,15 @@ public class TemplateManager {
 
         return null;
     }
+
+    /** A parsed template.xml document along with the file timestamp it was read at */
+    private static class ParsedTemplate {
+        public final Document document;
+        public final long lastModified;
+
+        public ParsedTemplate(@NonNull Document document, long lastModified) {
+            this.document = document;
+            this.lastModified = lastModified;
+        }
+    }
 }
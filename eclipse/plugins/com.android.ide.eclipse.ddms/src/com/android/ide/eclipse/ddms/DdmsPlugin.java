@@ -102,6 +102,9 @@ public final class DdmsPlugin extends AbstractUIPlugin implements IDeviceChangeL
 
     private Color mRed;
 
+    /** Saves the logcat output of the devices to disk, if enabled in the preferences */
+    private LogCatCapture mLogCatCapture;
+
 
     /**
      * Classes which implement this interface provide methods that deals
@@ -265,6 +268,10 @@ public final class DdmsPlugin extends AbstractUIPlugin implements IDeviceChangeL
         // set the preferences.
         PreferenceInitializer.setupPreferences();
 
+        // start saving the logcat output to disk, if enabled
+        mLogCatCapture = new LogCatCapture(eclipseStore, getLogCatCaptureDirectory());
+        mLogCatCapture.start();
+
         // this class is set as the main source revealer and will look at all the implementations
         // of the extension point. see #reveal(String, String, int)
         StackTracePanel.setSourceRevealer(this);
@@ -469,6 +476,11 @@ public final class DdmsPlugin extends AbstractUIPlugin implements IDeviceChangeL
     public void stop(BundleContext context) throws Exception {
         AndroidDebugBridge.removeDeviceChangeListener(this);
 
+        if (mLogCatCapture != null) {
+            mLogCatCapture.stop();
+            mLogCatCapture = null;
+        }
+
         AndroidDebugBridge.terminate();
 
         mRed.dispose();
@@ -865,6 +877,14 @@ public final class DdmsPlugin extends AbstractUIPlugin implements IDeviceChangeL
         mLogCatMonitor.monitorDevice(device);
     }
 
+    /**
+     * Returns the directory where the logcat output of the devices is captured, with one
+     * subdirectory per device (see {@link LogCatCapture#getDeviceDirectory})
+     */
+    public File getLogCatCaptureDirectory() {
+        return getStateLocation().append("logcat").toFile(); //$NON-NLS-1$
+    }
+
     /** Returns an image descriptor for the image file at the given plug-in relative path */
     public static ImageDescriptor getImageDescriptor(String path) {
         return imageDescriptorFromPlugin(PLUGIN_ID, path);
@@ -0,0 +1,374 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.eclipse.ddms;
+
+import com.android.annotations.NonNull;
+import com.android.ddmlib.AndroidDebugBridge;
+import com.android.ddmlib.AndroidDebugBridge.IDeviceChangeListener;
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmuilib.logcat.ILogCatBufferChangeListener;
+import com.android.ddmuilib.logcat.LogCatReceiver;
+import com.android.ddmuilib.logcat.LogCatReceiverFactory;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LogCatCapture saves the logcat output of the connected devices to disk, such that
+ * it outlives the in-memory buffer of the logcat view.
+ * <p/>
+ * The messages of each device are written to a directory of {@link LogCatSegment}s.
+ * A segment is closed and a new one started when it reaches a fraction of the size set
+ * in the preferences (see {@link #getSegmentSize}), and the oldest segments are
+ * deleted when the segments of a device take more than that size. All the disk
+ * access happens on a single background thread, which also flushes the pending
+ * messages periodically.
+ */
+public class LogCatCapture implements IDeviceChangeListener {
+    public static final String CAPTURE_PREFKEY = "ddms.logcat.capture"; //$NON-NLS-1$
+    public static final String CAPTURE_MAX_SIZE_PREFKEY =
+            "ddms.logcat.capture.maxsize"; //$NON-NLS-1$
+
+    /** Default maximum size of the captured logcat output of a device, in MB */
+    public static final int CAPTURE_MAX_SIZE_DEFAULT = 256;
+
+    /** Bounds of the size of the data file of a segment */
+    private static final long MIN_SEGMENT_SIZE = 64 * 1024;
+    private static final long MAX_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    /** Number of segments the captured output of a device is split into, at least */
+    private static final int SEGMENTS_PER_DEVICE = 8;
+
+    /** Interval at which the pending messages are written to disk, in seconds */
+    private static final long FLUSH_INTERVAL = 5;
+
+    private final IPreferenceStore mPrefStore;
+    private final File mDir;
+    private final ScheduledExecutorService mExecutor;
+
+    /** The captured devices, by serial number. Only accessed from the executor. */
+    private final Map<String, DeviceCapture> mDevices = new HashMap<String, DeviceCapture>();
+
+    private final IPropertyChangeListener mPrefListener = new IPropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent event) {
+            if (CAPTURE_PREFKEY.equals(event.getProperty())) {
+                if (isEnabled()) {
+                    captureConnectedDevices();
+                } else {
+                    mExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            stopAll();
+                        }
+                    });
+                }
+            }
+        }
+    };
+
+    /** Returns the maximum size of the captured output of a device, in bytes */
+    private long getMaxSize() {
+        return mPrefStore.getInt(CAPTURE_MAX_SIZE_PREFKEY) * 1024L * 1024L;
+    }
+
+    /**
+     * Returns the size of the data file of a segment which causes a new segment to be
+     * started. This is a fraction of the size limit, such that deleting the oldest
+     * segment only drops a small part of the captured output, and a single segment
+     * never exceeds the limit.
+     *
+     * @param maxSize the maximum size of the captured output of a device, in bytes
+     * @return the segment size, in bytes
+     */
+    static long getSegmentSize(long maxSize) {
+        return Math.max(MIN_SEGMENT_SIZE,
+                Math.min(MAX_SEGMENT_SIZE, maxSize / SEGMENTS_PER_DEVICE));
+    }
+
+    /**
+     * Creates a new capture service
+     *
+     * @param prefStore the preference store holding the capture preferences
+     * @param dir the directory to write the segments to, with one subdirectory per
+     *            device
+     */
+    public LogCatCapture(@NonNull IPreferenceStore prefStore, @NonNull File dir) {
+        mPrefStore = prefStore;
+        mDir = dir;
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "LogCat Capture"); //$NON-NLS-1$
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /** Starts capturing the logcat output of the devices, if enabled in the preferences */
+    public void start() {
+        AndroidDebugBridge.addDeviceChangeListener(this);
+        mPrefStore.addPropertyChangeListener(mPrefListener);
+        mExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (DeviceCapture capture : mDevices.values()) {
+                    capture.flush();
+                }
+            }
+        }, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.SECONDS);
+
+        if (isEnabled()) {
+            captureConnectedDevices();
+        }
+    }
+
+    /** Stops capturing, and closes the current segments */
+    public void stop() {
+        AndroidDebugBridge.removeDeviceChangeListener(this);
+        mPrefStore.removePropertyChangeListener(mPrefListener);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                stopAll();
+            }
+        });
+        mExecutor.shutdown();
+        try {
+            mExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            // Stop waiting
+        }
+    }
+
+    /**
+     * Returns the directory holding the captured segments of the given device
+     *
+     * @param captureDir the capture directory, as passed to the constructor
+     * @param serialNumber the serial number of the device
+     * @return the directory of the device
+     */
+    @NonNull
+    public static File getDeviceDirectory(@NonNull File captureDir,
+            @NonNull String serialNumber) {
+        // Serial numbers of network devices contain ':'
+        String name = serialNumber.replaceAll("[^A-Za-z0-9._-]", "_"); //$NON-NLS-1$ //$NON-NLS-2$
+        return new File(captureDir, name);
+    }
+
+    private boolean isEnabled() {
+        return mPrefStore.getBoolean(CAPTURE_PREFKEY);
+    }
+
+    private void captureConnectedDevices() {
+        AndroidDebugBridge bridge = AndroidDebugBridge.getBridge();
+        if (bridge == null) {
+            // The devices will be reported to deviceConnected once the bridge is up
+            return;
+        }
+        for (IDevice device : bridge.getDevices()) {
+            startCapture(device);
+        }
+    }
+
+    private void startCapture(final IDevice device) {
+        if (!device.isOnline()) {
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!isEnabled() || mDevices.containsKey(device.getSerialNumber())) {
+                    return;
+                }
+                LogCatReceiver receiver =
+                        LogCatReceiverFactory.INSTANCE.newReceiver(device, mPrefStore);
+                DeviceCapture capture = new DeviceCapture(receiver,
+                        getDeviceDirectory(mDir, device.getSerialNumber()));
+                receiver.addMessageReceivedEventListener(capture);
+                mDevices.put(device.getSerialNumber(), capture);
+            }
+        });
+    }
+
+    private void stopCapture(final String serialNumber) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                DeviceCapture capture = mDevices.remove(serialNumber);
+                if (capture != null) {
+                    capture.close();
+                }
+            }
+        });
+    }
+
+    private void stopAll() {
+        for (DeviceCapture capture : mDevices.values()) {
+            capture.close();
+        }
+        mDevices.clear();
+    }
+
+    private static void log(String message, Throwable t) {
+        DdmsPlugin plugin = DdmsPlugin.getDefault();
+        if (plugin != null) {
+            plugin.getLog().log(new Status(IStatus.ERROR, DdmsPlugin.PLUGIN_ID, message, t));
+        }
+    }
+
+    // ---- Implements IDeviceChangeListener ----
+
+    @Override
+    public void deviceConnected(IDevice device) {
+        if (isEnabled()) {
+            startCapture(device);
+        }
+    }
+
+    @Override
+    public void deviceDisconnected(IDevice device) {
+        stopCapture(device.getSerialNumber());
+    }
+
+    @Override
+    public void deviceChanged(IDevice device, int changeMask) {
+        // Devices are reported as connected before they come online
+        if ((changeMask & IDevice.CHANGE_STATE) != 0 && isEnabled()) {
+            startCapture(device);
+        }
+    }
+
+    /** The capture of a single device */
+    private class DeviceCapture implements ILogCatBufferChangeListener {
+        private final LogCatReceiver mReceiver;
+        private final File mDeviceDir;
+        private LogCatSegmentWriter mWriter;
+        /**
+         * Set once the capture is closed, or once writing failed, to avoid logging an
+         * error for every message
+         */
+        private boolean mStopped;
+
+        DeviceCapture(LogCatReceiver receiver, File deviceDir) {
+            mReceiver = receiver;
+            mDeviceDir = deviceDir;
+        }
+
+        @Override
+        public void bufferChanged(List<LogCatMessage> addedMessages,
+                List<LogCatMessage> deletedMessages) {
+            // Called on the receiver thread: hand the messages over to the capture thread
+            final List<LogCatMessage> messages = new ArrayList<LogCatMessage>(addedMessages);
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    write(messages);
+                }
+            });
+        }
+
+        private void write(List<LogCatMessage> messages) {
+            if (mStopped) {
+                return;
+            }
+            try {
+                for (LogCatMessage message : messages) {
+                    if (mWriter == null) {
+                        mDeviceDir.mkdirs();
+                        String name = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS") //$NON-NLS-1$
+                                .format(new Date());
+                        mWriter = new LogCatSegmentWriter(
+                                new File(mDeviceDir, name + LogCatSegment.DATA_EXT));
+                    }
+                    mWriter.add(message);
+                    if (mWriter.getSize() >= getSegmentSize(getMaxSize())) {
+                        mWriter.close();
+                        mWriter = null;
+                        deleteOldSegments();
+                    }
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        void flush() {
+            if (mWriter != null) {
+                try {
+                    mWriter.flush();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        void close() {
+            mReceiver.removeMessageReceivedEventListener(this);
+            if (mWriter != null) {
+                try {
+                    mWriter.close();
+                } catch (IOException e) {
+                    log("Unable to write logcat capture", e);
+                }
+                mWriter = null;
+            }
+            mStopped = true;
+        }
+
+        private void fail(IOException e) {
+            log("Unable to write logcat capture to " + mDeviceDir, e);
+            mStopped = true;
+        }
+
+        /** Deletes the oldest segments until the device is within its size limit */
+        private void deleteOldSegments() {
+            long maxSize = getMaxSize();
+            List<File> segments = LogCatSegment.listSegments(mDeviceDir);
+            long size = 0;
+            for (File segment : segments) {
+                size += segment.length() + LogCatSegment.getIndexFile(segment).length();
+            }
+            for (File segment : segments) {
+                if (size <= maxSize) {
+                    break;
+                }
+                File index = LogCatSegment.getIndexFile(segment);
+                size -= segment.length() + index.length();
+                segment.delete();
+                index.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,670 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.eclipse.ddms;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.annotations.VisibleForTesting;
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.google.common.base.Charsets;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fixed capacity ring buffer of the logcat messages of a device.
+ * <p/>
+ * Rather than holding on to {@link LogCatMessage} objects, the buffer stores each field
+ * in a primitive array (the strings which repeat, such as tags, pids and application
+ * names, are interned and stored as ids, which are released again along with the
+ * messages referencing them), and the message text as UTF-8 bytes in a single slab.
+ * {@link LogCatMessage} objects are only created for the messages which are actually
+ * read back.
+ * <p/>
+ * Messages are identified by a sequence number which increases by one for each added
+ * message. When the buffer is full, or its slab cannot hold the text of a new message,
+ * the oldest messages are dropped. The buffer maintains indexes by level, tag and pid,
+ * and a trigram index of the message text, which are updated as messages are added
+ * such that lookups do not have to scan the whole buffer.
+ * <p/>
+ * The buffer is thread safe: messages are typically added from the logcat receiver
+ * thread and read from the UI thread.
+ */
+public class LogCatMessageBuffer {
+    /** Number of bytes at the beginning of each message which are indexed by trigram */
+    private static final int INDEXED_PREFIX = 256;
+
+    private final int mCapacity;
+    private final byte[] mSlab;
+
+    /** Sequence number of the oldest message in the buffer */
+    private long mFirst;
+    /** Sequence number of the next message added to the buffer */
+    private long mNext;
+
+    // The fields of each message, indexed by sequence number modulo the capacity
+    private final long[] mTimes;
+    private final int[] mPids;
+    private final int[] mTids;
+    private final int[] mApps;
+    private final int[] mTags;
+    private final byte[] mLevels;
+    /** The position of the text of each message in the slab, as an absolute offset */
+    private final long[] mTextStarts;
+    private final int[] mTextLengths;
+    /** The absolute slab offset where the text of the next message is written */
+    private long mSlabEnd;
+
+    /** Interned strings, and their ids */
+    private final Map<String, Integer> mStringIds = new HashMap<String, Integer>();
+    /** Interned strings by id, or null for ids which are free */
+    private final List<String> mStrings = new ArrayList<String>();
+    /** Number of fields of the messages in the buffer referencing each id */
+    private int[] mStringRefs = new int[64];
+    /** Ids which are no longer referenced, to be reused */
+    private final Deque<Integer> mFreeIds = new ArrayDeque<Integer>();
+
+    // The indexes, which map each key to the sequence numbers of its messages
+    private final SequenceList[] mLevelIndex = new SequenceList[LogLevel.ASSERT.getPriority() + 1];
+    private final Map<Integer, SequenceList> mTagIndex = new HashMap<Integer, SequenceList>();
+    private final Map<Integer, SequenceList> mPidIndex = new HashMap<Integer, SequenceList>();
+    private final Map<Integer, SequenceList> mTrigramIndex =
+            new HashMap<Integer, SequenceList>();
+    /** Messages longer than {@link #INDEXED_PREFIX}, which are always searched */
+    private final SequenceList mLongMessages = new SequenceList();
+
+    /** Number of messages dropped since the indexes were last purged */
+    private int mDroppedSinceSweep;
+
+    /**
+     * Creates a new buffer
+     *
+     * @param capacity the maximum number of messages in the buffer
+     * @param slabSize the maximum number of bytes of message text in the buffer
+     */
+    public LogCatMessageBuffer(int capacity, int slabSize) {
+        mCapacity = capacity;
+        mSlab = new byte[slabSize];
+        mTimes = new long[capacity];
+        mPids = new int[capacity];
+        mTids = new int[capacity];
+        mApps = new int[capacity];
+        mTags = new int[capacity];
+        mLevels = new byte[capacity];
+        mTextStarts = new long[capacity];
+        mTextLengths = new int[capacity];
+        for (int i = 0; i < mLevelIndex.length; i++) {
+            mLevelIndex[i] = new SequenceList();
+        }
+    }
+
+    /**
+     * Adds the given messages to the buffer, dropping the oldest messages as necessary
+     *
+     * @param messages the messages to add
+     */
+    public synchronized void addAll(@NonNull List<LogCatMessage> messages) {
+        for (LogCatMessage message : messages) {
+            add(message);
+        }
+    }
+
+    /**
+     * Adds the given message to the buffer, dropping the oldest messages as necessary
+     *
+     * @param message the message to add
+     */
+    public synchronized void add(@NonNull LogCatMessage message) {
+        byte[] text = message.getMessage().getBytes(Charsets.UTF_8);
+        int length = Math.min(text.length, mSlab.length);
+        while (mNext - mFirst >= mCapacity
+                || mNext > mFirst && mSlabEnd + length - mTextStarts[index(mFirst)]
+                        > mSlab.length) {
+            drop();
+        }
+
+        long sequence = mNext++;
+        int index = index(sequence);
+        mTimes[index] = parseTime(message.getTime());
+        mPids[index] = intern(message.getPid());
+        mTids[index] = intern(message.getTid());
+        mApps[index] = intern(message.getAppName());
+        mTags[index] = intern(message.getTag());
+        mLevels[index] = (byte) message.getLogLevel().getPriority();
+
+        mTextStarts[index] = mSlabEnd;
+        mTextLengths[index] = length;
+        int offset = (int) (mSlabEnd % mSlab.length);
+        int first = Math.min(length, mSlab.length - offset);
+        System.arraycopy(text, 0, mSlab, offset, first);
+        System.arraycopy(text, first, mSlab, 0, length - first);
+        mSlabEnd += length;
+
+        mLevelIndex[mLevels[index]].add(sequence);
+        add(mTagIndex, mTags[index], sequence);
+        add(mPidIndex, mPids[index], sequence);
+        int indexed = Math.min(length, INDEXED_PREFIX);
+        for (int i = 0; i + 3 <= indexed; i++) {
+            add(mTrigramIndex, trigram(text, i), sequence);
+        }
+        if (length > INDEXED_PREFIX) {
+            mLongMessages.add(sequence);
+        }
+
+        if (mDroppedSinceSweep >= Math.max(1, mCapacity / 4)) {
+            sweep();
+        }
+    }
+
+    /** Drops the oldest message, and releases the strings it references */
+    private void drop() {
+        int index = index(mFirst++);
+        release(mPids[index]);
+        release(mTids[index]);
+        release(mApps[index]);
+        release(mTags[index]);
+        if (mTimes[index] < 0) {
+            release((int) (-1 - mTimes[index]));
+        }
+        mDroppedSinceSweep++;
+    }
+
+    /**
+     * Removes the dropped messages from the indexes, and the keys with no messages left.
+     * Note that the ids of the tags and pids of the dropped messages may have been
+     * reused already, but only by messages which come after the dropped ones.
+     */
+    private void sweep() {
+        mDroppedSinceSweep = 0;
+        for (SequenceList list : mLevelIndex) {
+            list.removeBefore(mFirst);
+        }
+        mLongMessages.removeBefore(mFirst);
+        sweep(mTagIndex);
+        sweep(mPidIndex);
+        sweep(mTrigramIndex);
+    }
+
+    private void sweep(Map<Integer, SequenceList> index) {
+        for (Iterator<SequenceList> iterator = index.values().iterator(); iterator.hasNext(); ) {
+            SequenceList list = iterator.next();
+            list.removeBefore(mFirst);
+            if (list.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void add(Map<Integer, SequenceList> index, int key, long sequence) {
+        SequenceList list = index.get(key);
+        if (list == null) {
+            list = new SequenceList();
+            index.put(key, list);
+        }
+        list.add(sequence);
+    }
+
+    /**
+     * Returns the sequence number of the oldest message in the buffer
+     *
+     * @return the sequence number of the oldest message
+     */
+    public synchronized long getFirstSequence() {
+        return mFirst;
+    }
+
+    /**
+     * Returns the sequence number which the next added message will get
+     *
+     * @return the sequence number of the next message
+     */
+    public synchronized long getNextSequence() {
+        return mNext;
+    }
+
+    /**
+     * Returns the number of messages in the buffer
+     *
+     * @return the number of messages
+     */
+    public synchronized int size() {
+        return (int) (mNext - mFirst);
+    }
+
+    /**
+     * Returns the message with the given sequence number
+     *
+     * @param sequence the sequence number of the message
+     * @return the message, or null if it is no longer (or not yet) in the buffer
+     */
+    @Nullable
+    public synchronized LogCatMessage get(long sequence) {
+        if (sequence < mFirst || sequence >= mNext) {
+            return null;
+        }
+        int index = index(sequence);
+        return new LogCatMessage(getLogLevel(mLevels[index]), mStrings.get(mPids[index]),
+                mStrings.get(mTids[index]), mStrings.get(mApps[index]),
+                mStrings.get(mTags[index]), formatTime(mTimes[index]), getText(index));
+    }
+
+    /**
+     * Returns the application name of the message with the given sequence number,
+     * without creating the message
+     *
+     * @param sequence the sequence number of the message
+     * @return the application name, or null if the message is no longer in the buffer
+     */
+    @Nullable
+    public synchronized String getAppName(long sequence) {
+        if (sequence < mFirst || sequence >= mNext) {
+            return null;
+        }
+        return mStrings.get(mApps[index(sequence)]);
+    }
+
+    /**
+     * Returns the messages with at least the given priority
+     *
+     * @param priority the minimum {@link LogLevel#getPriority()} of the messages
+     * @param from the sequence number to start looking from
+     * @return the sequence numbers of the matching messages, in increasing order
+     */
+    @NonNull
+    public synchronized long[] findByLevel(int priority, long from) {
+        from = Math.max(from, mFirst);
+        long[] result = new long[0];
+        for (int i = Math.max(0, priority); i < mLevelIndex.length; i++) {
+            result = merge(result, mLevelIndex[i].toArray(from));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the messages with the given tag
+     *
+     * @param tag the tag of the messages
+     * @param from the sequence number to start looking from
+     * @return the sequence numbers of the matching messages, in increasing order
+     */
+    @NonNull
+    public synchronized long[] findByTag(@NonNull String tag, long from) {
+        return find(mTagIndex, tag, from);
+    }
+
+    /**
+     * Returns the messages of the given process
+     *
+     * @param pid the process id of the messages
+     * @param from the sequence number to start looking from
+     * @return the sequence numbers of the matching messages, in increasing order
+     */
+    @NonNull
+    public synchronized long[] findByPid(@NonNull String pid, long from) {
+        return find(mPidIndex, pid, from);
+    }
+
+    private long[] find(Map<Integer, SequenceList> index, String key, long from) {
+        Integer id = mStringIds.get(key);
+        SequenceList list = id != null ? index.get(id) : null;
+        return list != null ? list.toArray(Math.max(from, mFirst)) : new long[0];
+    }
+
+    /**
+     * Returns the messages whose text contains the given string, ignoring the case of
+     * ASCII characters. Strings of three or more bytes are looked up in the trigram
+     * index, and only the candidates it returns are checked.
+     *
+     * @param text the text to look for
+     * @param from the sequence number to start looking from
+     * @return the sequence numbers of the matching messages, in increasing order
+     */
+    @NonNull
+    public synchronized long[] findText(@NonNull String text, long from) {
+        from = Math.max(from, mFirst);
+        byte[] pattern = toLowerCase(text.getBytes(Charsets.UTF_8));
+        long[] candidates;
+        if (pattern.length < 3) {
+            candidates = new long[(int) (mNext - from)];
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = from + i;
+            }
+        } else {
+            // Any message containing the pattern in its indexed prefix contains each
+            // of its trigrams, so the shortest posting list covers all such messages
+            SequenceList shortest = null;
+            for (int i = 0; i + 3 <= pattern.length; i++) {
+                SequenceList list = mTrigramIndex.get(trigram(pattern, i));
+                if (list == null) {
+                    shortest = null;
+                    break;
+                }
+                if (shortest == null || list.size() < shortest.size()) {
+                    shortest = list;
+                }
+            }
+            candidates = shortest != null ? shortest.toArray(from) : new long[0];
+            candidates = merge(candidates, mLongMessages.toArray(from));
+        }
+
+        return filterText(candidates, pattern);
+    }
+
+    /**
+     * Narrows down the result of a previous {@link #findText} call to the messages which
+     * contain the given text, typically because the user typed more of the filter text
+     *
+     * @param previous the result of a previous search, for a string contained in text
+     * @param text the text to look for
+     * @return the sequence numbers of the matching messages, in increasing order
+     */
+    @NonNull
+    public synchronized long[] refineText(@NonNull long[] previous, @NonNull String text) {
+        return filterText(previous, toLowerCase(text.getBytes(Charsets.UTF_8)));
+    }
+
+    private long[] filterText(long[] candidates, byte[] pattern) {
+        long[] result = new long[candidates.length];
+        int count = 0;
+        for (long sequence : candidates) {
+            if (sequence >= mFirst && sequence < mNext && containsText(index(sequence), pattern)) {
+                result[count++] = sequence;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private boolean containsText(int index, byte[] pattern) {
+        long start = mTextStarts[index];
+        int length = mTextLengths[index];
+        for (int i = 0; i + pattern.length <= length; i++) {
+            int j = 0;
+            while (j < pattern.length
+                    && toLowerCase(mSlab[(int) ((start + i + j) % mSlab.length)]) == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getText(int index) {
+        int offset = (int) (mTextStarts[index] % mSlab.length);
+        int length = mTextLengths[index];
+        if (offset + length <= mSlab.length) {
+            return new String(mSlab, offset, length, Charsets.UTF_8);
+        }
+        byte[] text = new byte[length];
+        int first = mSlab.length - offset;
+        System.arraycopy(mSlab, offset, text, 0, first);
+        System.arraycopy(mSlab, 0, text, first, length - first);
+        return new String(text, Charsets.UTF_8);
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % mCapacity);
+    }
+
+    /** Returns the id of the given string, and adds a reference to it */
+    private int intern(String s) {
+        if (s == null) {
+            s = ""; //$NON-NLS-1$
+        }
+        Integer id = mStringIds.get(s);
+        if (id == null) {
+            if (!mFreeIds.isEmpty()) {
+                id = mFreeIds.pop();
+                mStrings.set(id, s);
+            } else {
+                id = mStrings.size();
+                mStrings.add(s);
+                if (id == mStringRefs.length) {
+                    mStringRefs = Arrays.copyOf(mStringRefs, 2 * id);
+                }
+            }
+            mStringIds.put(s, id);
+        }
+        mStringRefs[id]++;
+        return id;
+    }
+
+    /** Removes a reference to the given string id, freeing it if it was the last one */
+    private void release(int id) {
+        if (--mStringRefs[id] == 0) {
+            mStringIds.remove(mStrings.get(id));
+            mStrings.set(id, null);
+            mFreeIds.push(id);
+        }
+    }
+
+    /**
+     * Returns the number of distinct strings referenced by the messages in the buffer
+     *
+     * @return the number of interned strings
+     */
+    @VisibleForTesting
+    public synchronized int getInternedStringCount() {
+        return mStringIds.size();
+    }
+
+    /**
+     * Packs a logcat time stamp, in the format "MM-dd HH:mm:ss.SSS", into a long which
+     * sorts in the same order
+     *
+     * @param time the time stamp
+     * @return the packed time stamp, or -1 if it is not in the expected format
+     */
+    public static long packTime(@Nullable String time) {
+        if (time == null || time.length() != 18
+                || time.charAt(2) != '-' || time.charAt(5) != ' ' || time.charAt(8) != ':'
+                || time.charAt(11) != ':' || time.charAt(14) != '.') {
+            return -1;
+        }
+        long packed = 0;
+        for (int i = 0; i < 18; i++) {
+            char c = time.charAt(i);
+            if (c >= '0' && c <= '9') {
+                packed = packed * 10 + (c - '0');
+            } else if (i != 2 && i != 5 && i != 8 && i != 11 && i != 14) {
+                return -1;
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the packed time of the given time stamp, see {@link #packTime}. Time stamps
+     * in any other format are interned, and stored as negative numbers.
+     */
+    private long parseTime(String time) {
+        long packed = packTime(time);
+        return packed != -1 ? packed : -1 - intern(time);
+    }
+
+    private String formatTime(long packed) {
+        if (packed < 0) {
+            return mStrings.get((int) (-1 - packed));
+        }
+        return String.format("%02d-%02d %02d:%02d:%02d.%03d", //$NON-NLS-1$
+                packed / 100000000000L, packed / 1000000000L % 100,
+                packed / 10000000 % 100, packed / 100000 % 100, packed / 1000 % 100,
+                packed % 1000);
+    }
+
+    static LogLevel getLogLevel(int priority) {
+        for (LogLevel level : LogLevel.values()) {
+            if (level.getPriority() == priority) {
+                return level;
+            }
+        }
+        return LogLevel.VERBOSE;
+    }
+
+    private static int trigram(byte[] bytes, int offset) {
+        return (toLowerCase(bytes[offset]) & 0xFF) << 16
+                | (toLowerCase(bytes[offset + 1]) & 0xFF) << 8
+                | (toLowerCase(bytes[offset + 2]) & 0xFF);
+    }
+
+    private static byte toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static byte[] toLowerCase(byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = toLowerCase(bytes[i]);
+        }
+        return bytes;
+    }
+
+    /** Merges two sorted arrays of distinct sequence numbers */
+    private static long[] merge(long[] a, long[] b) {
+        if (a.length == 0) {
+            return b;
+        } else if (b.length == 0) {
+            return a;
+        }
+        long[] result = new long[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || i < a.length && a[i] < b[j]) {
+                result[count++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[count++] = b[j++];
+            } else {
+                result[count++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * A growable queue of increasing sequence numbers, from which the sequence numbers
+     * of dropped messages are removed at the front. Since the trigram index holds a
+     * posting for most bytes of text, the sequence numbers are stored compactly, as
+     * variable length deltas from the previous sequence number (usually a single byte).
+     */
+    private static class SequenceList {
+        /** The deltas, starting at {@link #mStart} and ending before {@link #mEnd} */
+        private byte[] mBytes = new byte[4];
+        private int mStart;
+        private int mEnd;
+        private int mSize;
+        /** The sequence number which the first delta is relative to */
+        private long mBase;
+        /** The last sequence number added */
+        private long mLast;
+
+        void add(long sequence) {
+            if (mSize == 0) {
+                mBase = sequence;
+            } else if (mLast == sequence) {
+                // A message adds each of its trigrams once
+                return;
+            }
+            long delta = sequence - (mSize == 0 ? mBase : mLast);
+            if (mEnd + 5 > mBytes.length) {
+                int length = mEnd - mStart;
+                if (length + 5 <= mBytes.length * 3 / 4) {
+                    System.arraycopy(mBytes, mStart, mBytes, 0, length);
+                } else {
+                    mBytes = Arrays.copyOfRange(mBytes, mStart,
+                            mStart + Math.max(length + 5, mBytes.length * 3 / 2));
+                }
+                mStart = 0;
+                mEnd = length;
+            }
+            while (delta >= 0x80) {
+                mBytes[mEnd++] = (byte) (delta | 0x80);
+                delta >>>= 7;
+            }
+            mBytes[mEnd++] = (byte) delta;
+            mLast = sequence;
+            mSize++;
+        }
+
+        void removeBefore(long sequence) {
+            while (mSize > 0) {
+                int position = mStart;
+                long delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = mBytes[position++];
+                    delta |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                if (mBase + delta >= sequence) {
+                    break;
+                }
+                mBase += delta;
+                mStart = position;
+                mSize--;
+            }
+            int length = mEnd - mStart;
+            if (mSize == 0) {
+                mStart = mEnd = 0;
+            } else if (length < mBytes.length / 4) {
+                // Give back the space of the dropped messages
+                mBytes = Arrays.copyOfRange(mBytes, mStart, mStart + 2 * length);
+                mStart = 0;
+                mEnd = length;
+            }
+        }
+
+        boolean isEmpty() {
+            return mSize == 0;
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        long[] toArray(long from) {
+            long[] result = new long[mSize];
+            int count = 0;
+            long value = mBase;
+            int position = mStart;
+            while (position < mEnd) {
+                long delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = mBytes[position++];
+                    delta |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value += delta;
+                if (value >= from) {
+                    result[count++] = value;
+                }
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        }
+    }
+}
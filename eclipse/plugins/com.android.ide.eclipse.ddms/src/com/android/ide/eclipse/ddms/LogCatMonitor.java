@@ -52,6 +52,16 @@ public class LogCatMonitor {
     public static final String AUTO_MONITOR_LOGLEVEL = "ddms.logcat.auotmonitor.level"; //$NON-NLS-1$
     private static final String AUTO_MONITOR_PROMPT_SHOWN = "ddms.logcat.automonitor.userprompt"; //$NON-NLS-1$
 
+    /**
+     * Size of the buffer of recent messages kept for each monitored device. It only needs
+     * to hold the messages of one check: received messages are checked in chunks of
+     * {@link #CHECK_CHUNK_SIZE}, which fit in the slab even at the maximum logcat entry
+     * size of 4K.
+     */
+    private static final int BUFFER_CAPACITY = 128;
+    private static final int BUFFER_SLAB_SIZE = 256 * 1024;
+    private static final int CHECK_CHUNK_SIZE = 50;
+
     private IPreferenceStore mPrefStore;
     private Map<String, DeviceData> mMonitoredDevices;
     private IDebuggerConnector[] mConnectors;
@@ -133,11 +143,19 @@ public class LogCatMonitor {
         }
 
         LogCatReceiver r = LogCatReceiverFactory.INSTANCE.newReceiver(device, mPrefStore);
+        final LogCatMessageBuffer buffer =
+                new LogCatMessageBuffer(BUFFER_CAPACITY, BUFFER_SLAB_SIZE);
         ILogCatBufferChangeListener l = new ILogCatBufferChangeListener() {
             @Override
             public void bufferChanged(List<LogCatMessage> addedMessages,
                     List<LogCatMessage> deletedMessages) {
-                checkMessages(addedMessages, device);
+                for (int i = 0; i < addedMessages.size() && mMonitorEnabled.get();
+                        i += CHECK_CHUNK_SIZE) {
+                    long from = buffer.getNextSequence();
+                    buffer.addAll(addedMessages.subList(i,
+                            Math.min(i + CHECK_CHUNK_SIZE, addedMessages.size())));
+                    checkMessages(buffer, from, device);
+                }
             }
         };
         r.addMessageReceivedEventListener(l);
@@ -145,17 +163,15 @@ public class LogCatMonitor {
         mMonitoredDevices.put(device.getSerialNumber(), new DeviceData(r, l));
     }
 
-    private void checkMessages(List<LogCatMessage> receivedMessages, IDevice device) {
-        if (!mMonitorEnabled.get()) {
-            return;
-        }
-
-        // check the received list of messages to see if any of them are
-        // significant enough to be seen by the user. If so, activate the logcat view
-        // to display those messages
-        for (LogCatMessage m : receivedMessages) {
-            if (isImportantMessage(m)) {
-                focusLogCatView(device, m.getAppName());
+    private void checkMessages(LogCatMessageBuffer buffer, long from, IDevice device) {
+        // check the received messages to see if any of them are significant enough
+        // to be seen by the user. If so, activate the logcat view to display those
+        // messages. The buffer's level index gives the messages of high enough
+        // priority, so only their application names have to be looked at.
+        for (long sequence : buffer.findByLevel(mMinMessagePriority, from)) {
+            String app = buffer.getAppName(sequence);
+            if (app != null && isWorkspaceApp(app)) {
+                focusLogCatView(device, app);
 
                 // now that logcat view is active, no need to check messages until the next
                 // time user launches an application.
@@ -166,15 +182,11 @@ public class LogCatMonitor {
     }
 
     /**
-     * Check whether a message is "important". Currently, we assume that a message is important if
-     * it is of severity level error or higher, and it belongs to an app currently in the workspace.
+     * Check whether an application is one of the workspace. Messages are "important" if they
+     * are of at least the minimum severity level, and belong to an app currently in the
+     * workspace.
      */
-    private boolean isImportantMessage(LogCatMessage m) {
-        if (m.getLogLevel().getPriority() < mMinMessagePriority) {
-            return false;
-        }
-
-        String app = m.getAppName();
+    private boolean isWorkspaceApp(String app) {
         for (IDebuggerConnector c : mConnectors) {
             if (c.isWorkspaceApp(app)) {
                 return true;
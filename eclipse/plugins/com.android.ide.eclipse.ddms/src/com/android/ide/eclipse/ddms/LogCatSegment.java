@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.eclipse.ddms;
+
+import com.android.annotations.NonNull;
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.google.common.base.Charsets;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A segment of captured logcat output, as written by {@link LogCatSegmentWriter}.
+ * <p/>
+ * A segment is made of two files: the data file, a sequence of independently
+ * deflated blocks of messages, and the index file, which records for each block
+ * its position in the data file, its number of messages, the range of its time
+ * stamps and the tags of its messages. Opening a segment only reads the index;
+ * the blocks are read and inflated one at a time, as needed.
+ */
+public class LogCatSegment {
+    /** Extension of the segment data files */
+    public static final String DATA_EXT = ".lcs"; //$NON-NLS-1$
+    /** Extension of the segment index files */
+    public static final String INDEX_EXT = ".lcx"; //$NON-NLS-1$
+
+    /** Magic number at the start of the data and index files */
+    static final int MAGIC = 0x4C435331; // "LCS1"
+
+    private final File mDataFile;
+    private final Block[] mBlocks;
+    /** The index of the first message of each block, plus the total message count */
+    private final int[] mBlockStarts;
+
+    /** Index entry of a block */
+    static class Block {
+        long offset;
+        int length;
+        int count;
+        /** Packed time stamps (see {@link LogCatMessageBuffer#packTime}), or -1 */
+        long firstTime;
+        long lastTime;
+        Set<String> tags;
+    }
+
+    private LogCatSegment(File dataFile, Block[] blocks) {
+        mDataFile = dataFile;
+        mBlocks = blocks;
+        mBlockStarts = new int[blocks.length + 1];
+        for (int i = 0; i < blocks.length; i++) {
+            mBlockStarts[i + 1] = mBlockStarts[i] + blocks[i].count;
+        }
+    }
+
+    /**
+     * Opens the segment with the given data file, reading its index
+     *
+     * @param dataFile the data file of the segment
+     * @return the segment
+     * @throws IOException if the files cannot be read, or are not segment files
+     */
+    @NonNull
+    public static LogCatSegment open(@NonNull File dataFile) throws IOException {
+        DataInputStream data = new DataInputStream(new FileInputStream(dataFile));
+        try {
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Not a logcat segment: " + dataFile);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Not a logcat segment: " + dataFile);
+        } finally {
+            data.close();
+        }
+
+        long dataLength = dataFile.length();
+        List<Block> blocks = new ArrayList<Block>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(getIndexFile(dataFile))));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a logcat segment index: " + dataFile);
+            }
+            while (true) {
+                Block block = new Block();
+                block.offset = in.readLong();
+                block.length = in.readInt();
+                block.count = in.readInt();
+                block.firstTime = in.readLong();
+                block.lastTime = in.readLong();
+                int tagCount = in.readInt();
+                block.tags = new HashSet<String>(tagCount);
+                for (int i = 0; i < tagCount; i++) {
+                    block.tags.add(in.readUTF());
+                }
+                // The capture may have been interrupted while writing the last block
+                if (block.offset + block.length > dataLength) {
+                    break;
+                }
+                blocks.add(block);
+            }
+        } catch (EOFException e) {
+            // End of the index, or a partially written last entry
+        } finally {
+            in.close();
+        }
+
+        return new LogCatSegment(dataFile, blocks.toArray(new Block[blocks.size()]));
+    }
+
+    /**
+     * Returns the segments in the given directory, oldest first
+     *
+     * @param dir the capture directory of a device
+     * @return the data files of the segments
+     */
+    @NonNull
+    public static List<File> listSegments(@NonNull File dir) {
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File parent, String name) {
+                return name.endsWith(DATA_EXT);
+            }
+        });
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        // The names start with the creation time, so they sort chronologically
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    /**
+     * Returns the index file of the segment with the given data file
+     *
+     * @param dataFile the data file
+     * @return the index file
+     */
+    @NonNull
+    public static File getIndexFile(@NonNull File dataFile) {
+        String name = dataFile.getName();
+        if (name.endsWith(DATA_EXT)) {
+            name = name.substring(0, name.length() - DATA_EXT.length());
+        }
+        return new File(dataFile.getParentFile(), name + INDEX_EXT);
+    }
+
+    /**
+     * Returns the data file of this segment
+     *
+     * @return the data file
+     */
+    @NonNull
+    public File getDataFile() {
+        return mDataFile;
+    }
+
+    /**
+     * Returns the total number of messages in this segment
+     *
+     * @return the number of messages
+     */
+    public int getMessageCount() {
+        return mBlockStarts[mBlocks.length];
+    }
+
+    /**
+     * Returns the number of blocks in this segment
+     *
+     * @return the number of blocks
+     */
+    public int getBlockCount() {
+        return mBlocks.length;
+    }
+
+    /**
+     * Returns the index within the segment of the first message of the given block
+     *
+     * @param block the block index
+     * @return the index of its first message
+     */
+    public int getBlockStart(int block) {
+        return mBlockStarts[block];
+    }
+
+    /**
+     * Returns the block containing the message with the given index
+     *
+     * @param message the index of the message within the segment
+     * @return the index of the block
+     */
+    public int getBlockOf(int message) {
+        int index = Arrays.binarySearch(mBlockStarts, message);
+        if (index < 0) {
+            return -index - 2;
+        }
+        // Skip over empty blocks
+        while (index < mBlocks.length - 1 && mBlockStarts[index + 1] == message) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Returns whether the given block contains messages with the given tag
+     *
+     * @param block the block index
+     * @param tag the tag
+     * @return true if the block has messages with the tag
+     */
+    public boolean hasTag(int block, @NonNull String tag) {
+        return mBlocks[block].tags.contains(tag);
+    }
+
+    /**
+     * Reads and inflates the messages of the given block
+     *
+     * @param block the block index
+     * @return the messages of the block
+     * @throws IOException if the block cannot be read
+     */
+    @NonNull
+    public List<LogCatMessage> readBlock(int block) throws IOException {
+        Block b = mBlocks[block];
+        if (b.count == 0) {
+            return new ArrayList<LogCatMessage>();
+        }
+        byte[] compressed = new byte[b.length];
+        RandomAccessFile file = new RandomAccessFile(mDataFile, "r"); //$NON-NLS-1$
+        try {
+            file.seek(b.offset);
+            file.readFully(compressed);
+        } finally {
+            file.close();
+        }
+
+        Inflater inflater = new Inflater();
+        byte[] data;
+        try {
+            inflater.setInput(compressed);
+            byte[] buffer = new byte[Math.max(1024, 4 * compressed.length)];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                }
+                int n = inflater.inflate(buffer, length, buffer.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated logcat block in " + mDataFile);
+                }
+                length += n;
+            }
+            data = Arrays.copyOf(buffer, length);
+        } catch (DataFormatException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        List<LogCatMessage> messages = new ArrayList<LogCatMessage>(b.count);
+        for (int i = 0; i < b.count; i++) {
+            LogLevel level = LogCatMessageBuffer.getLogLevel(in.readByte());
+            String pid = in.readUTF();
+            String tid = in.readUTF();
+            String app = in.readUTF();
+            String tag = in.readUTF();
+            String time = in.readUTF();
+            byte[] text = new byte[in.readInt()];
+            in.readFully(text);
+            messages.add(new LogCatMessage(level, pid, tid, app, tag, time,
+                    new String(text, Charsets.UTF_8)));
+        }
+        return messages;
+    }
+
+    /**
+     * Finds the first message logged at or after the given time. Only the block
+     * containing the message is read.
+     *
+     * @param time a time stamp in the logcat format, "MM-dd HH:mm:ss.SSS", where
+     *            the trailing fields may be omitted
+     * @return the index of the message within the segment, or -1 if the time cannot
+     *         be parsed. If all the messages are older, the message count is returned.
+     * @throws IOException if the block cannot be read
+     */
+    public int findTime(@NonNull String time) throws IOException {
+        long target = parseTime(time);
+        if (target == -1) {
+            return -1;
+        }
+
+        // The index gives the range of time stamps of each block, so only the block
+        // where the time stamps reach the target needs to be read
+        for (int i = 0; i < mBlocks.length; i++) {
+            if (mBlocks[i].lastTime == -1 || mBlocks[i].lastTime < target) {
+                continue;
+            }
+            List<LogCatMessage> messages = readBlock(i);
+            for (int j = 0; j < messages.size(); j++) {
+                if (LogCatMessageBuffer.packTime(messages.get(j).getTime()) >= target) {
+                    return mBlockStarts[i] + j;
+                }
+            }
+        }
+        return getMessageCount();
+    }
+
+    /**
+     * Parses a possibly partial time stamp, completing the missing fields with
+     * their lowest values
+     */
+    private static long parseTime(String time) {
+        String template = "01-01 00:00:00.000"; //$NON-NLS-1$
+        time = time.trim();
+        if (time.length() > template.length()) {
+            return -1;
+        }
+        return LogCatMessageBuffer.packTime(time + template.substring(time.length()));
+    }
+}
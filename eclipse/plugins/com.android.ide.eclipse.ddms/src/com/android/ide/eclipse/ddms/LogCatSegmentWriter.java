@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.eclipse.ddms;
+
+import com.android.annotations.NonNull;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.google.common.base.Charsets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Writes captured logcat messages to a {@link LogCatSegment}.
+ * <p/>
+ * Messages are collected into a block, which is deflated and appended to the data
+ * file when it is large enough, or when {@link #flush()} is called. The index entry
+ * of the block is only written once the block itself is on disk, so a segment whose
+ * capture was interrupted can still be read up to its last complete block.
+ * <p/>
+ * This class is not thread safe.
+ */
+public class LogCatSegmentWriter {
+    /** Size of the uncompressed block data which causes the block to be written */
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final File mDataFile;
+    private final FileOutputStream mData;
+    private final DataOutputStream mIndex;
+    private final Deflater mDeflater = new Deflater(Deflater.BEST_SPEED);
+    private final byte[] mDeflateBuffer = new byte[16 * 1024];
+
+    private final ByteArrayOutputStream mBlockBytes = new ByteArrayOutputStream(BLOCK_SIZE);
+    private final DataOutputStream mBlock = new DataOutputStream(mBlockBytes);
+    private final Set<String> mBlockTags = new HashSet<String>();
+    private int mBlockCount;
+    private long mBlockFirstTime = -1;
+    private long mBlockLastTime = -1;
+
+    /** Number of bytes written to the data file */
+    private long mSize;
+
+    /**
+     * Creates a new segment
+     *
+     * @param dataFile the data file of the segment. The index file is created next
+     *            to it, see {@link LogCatSegment#getIndexFile}.
+     * @throws IOException if the segment files cannot be created
+     */
+    public LogCatSegmentWriter(@NonNull File dataFile) throws IOException {
+        mDataFile = dataFile;
+        mData = new FileOutputStream(dataFile);
+        try {
+            mIndex = new DataOutputStream(
+                    new FileOutputStream(LogCatSegment.getIndexFile(dataFile)));
+        } catch (IOException e) {
+            mData.close();
+            throw e;
+        }
+        try {
+            new DataOutputStream(mData).writeInt(LogCatSegment.MAGIC);
+            mIndex.writeInt(LogCatSegment.MAGIC);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        mSize = 4;
+    }
+
+    /**
+     * Returns the data file of the segment
+     *
+     * @return the data file
+     */
+    @NonNull
+    public File getDataFile() {
+        return mDataFile;
+    }
+
+    /**
+     * Returns the number of bytes written to the data file so far, not counting the
+     * messages which have not been flushed yet
+     *
+     * @return the size of the data file
+     */
+    public long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Adds a message to the segment
+     *
+     * @param message the message
+     * @throws IOException if the block cannot be written
+     */
+    public void add(@NonNull LogCatMessage message) throws IOException {
+        mBlock.writeByte(message.getLogLevel().getPriority());
+        mBlock.writeUTF(nonNull(message.getPid()));
+        mBlock.writeUTF(nonNull(message.getTid()));
+        mBlock.writeUTF(nonNull(message.getAppName()));
+        mBlock.writeUTF(nonNull(message.getTag()));
+        mBlock.writeUTF(nonNull(message.getTime()));
+        byte[] text = nonNull(message.getMessage()).getBytes(Charsets.UTF_8);
+        mBlock.writeInt(text.length);
+        mBlock.write(text);
+
+        mBlockCount++;
+        mBlockTags.add(nonNull(message.getTag()));
+        long time = LogCatMessageBuffer.packTime(message.getTime());
+        if (time != -1) {
+            if (mBlockFirstTime == -1) {
+                mBlockFirstTime = time;
+            }
+            mBlockLastTime = Math.max(mBlockLastTime, time);
+        }
+
+        if (mBlockBytes.size() >= BLOCK_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the messages added since the last flush as a new block
+     *
+     * @throws IOException if the block cannot be written
+     */
+    public void flush() throws IOException {
+        if (mBlockCount == 0) {
+            return;
+        }
+
+        long offset = mSize;
+        mDeflater.reset();
+        mDeflater.setInput(mBlockBytes.toByteArray());
+        mDeflater.finish();
+        while (!mDeflater.finished()) {
+            int n = mDeflater.deflate(mDeflateBuffer);
+            mData.write(mDeflateBuffer, 0, n);
+            mSize += n;
+        }
+        mData.flush();
+
+        mIndex.writeLong(offset);
+        mIndex.writeInt((int) (mSize - offset));
+        mIndex.writeInt(mBlockCount);
+        mIndex.writeLong(mBlockFirstTime);
+        mIndex.writeLong(mBlockLastTime);
+        mIndex.writeInt(mBlockTags.size());
+        for (String tag : mBlockTags) {
+            mIndex.writeUTF(tag);
+        }
+        mIndex.flush();
+
+        mBlockBytes.reset();
+        mBlockTags.clear();
+        mBlockCount = 0;
+        mBlockFirstTime = -1;
+        mBlockLastTime = -1;
+    }
+
+    /**
+     * Flushes the pending messages and closes the segment
+     *
+     * @throws IOException if the segment cannot be written
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            mDeflater.end();
+            try {
+                mData.close();
+            } finally {
+                mIndex.close();
+            }
+        }
+    }
+
+    private static String nonNull(String s) {
+        return s != null ? s : ""; //$NON-NLS-1$
+    }
+}
@@ -75,12 +75,28 @@ public class Messages extends NLS {
     public static String FileExplorerView_Pull_File_From_File;
     public static String FileExplorerView_Push_File;
     public static String FileExplorerView_Push_File_Onto_Device;
+    public static String LogCatHistoryDialog_Application;
+    public static String LogCatHistoryDialog_Go;
+    public static String LogCatHistoryDialog_Go_To_Time;
+    public static String LogCatHistoryDialog_Invalid_Time;
+    public static String LogCatHistoryDialog_Level;
+    public static String LogCatHistoryDialog_Message_Count;
+    public static String LogCatHistoryDialog_No_Messages_After;
+    public static String LogCatHistoryDialog_PID;
+    public static String LogCatHistoryDialog_Tag;
+    public static String LogCatHistoryDialog_Text;
+    public static String LogCatHistoryDialog_TID;
+    public static String LogCatHistoryDialog_Time;
+    public static String LogCatHistoryDialog_Title;
+    public static String LogCatHistoryDialog_Unable_To_Read;
     public static String LogCatPreferencePage_Display_Font;
     public static String LogCatPreferencePage_MaxMessages;
     public static String LogCatPreferencePage_Switch_Perspective;
     public static String LogCatPreferencePage_Switch_To;
     public static String LogCatPreferencePage_AutoMonitorLogcat;
     public static String LogCatPreferencePage_SessionFilterLogLevel;
+    public static String LogCatPreferencePage_Capture;
+    public static String LogCatPreferencePage_CaptureMaxSize;
     public static String LogCatView_Clear_Log;
     public static String LogCatView_Copy;
     public static String LogCatView_Create_Filter;
@@ -92,6 +108,7 @@ public class Messages extends NLS {
     public static String LogCatView_Export_Selection_As_Text;
     public static String LogCatView_Export_Selection_As_Text_Tooltip;
     public static String LogCatView_Select_All;
+    public static String LogCatView_Open_Captured_Log;
     public static String PreferencePage_ADB_Connection_Time_Out;
     public static String PreferencePage_Adbhost_value;
     public static String PreferencePage_Assert;
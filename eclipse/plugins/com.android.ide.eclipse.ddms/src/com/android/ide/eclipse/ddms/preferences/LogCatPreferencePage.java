@@ -21,6 +21,7 @@ import com.android.ddmuilib.logcat.LogCatMessageList;
 import com.android.ddmuilib.logcat.LogCatPanel;
 import com.android.ide.eclipse.base.InstallDetails;
 import com.android.ide.eclipse.ddms.DdmsPlugin;
+import com.android.ide.eclipse.ddms.LogCatCapture;
 import com.android.ide.eclipse.ddms.LogCatMonitor;
 import com.android.ide.eclipse.ddms.i18n.Messages;
 
@@ -49,6 +50,8 @@ public class LogCatPreferencePage extends FieldEditorPreferencePage implements
     private BooleanFieldEditor mAutoMonitorLogcat;
     private ComboFieldEditor mAutoMonitorLogcatLevel;
     private BooleanFieldEditor mAutoScrollLock;
+    private BooleanFieldEditor mCapture;
+    private IntegerFieldEditor mCaptureMaxSize;
 
     public LogCatPreferencePage() {
         super(GRID);
@@ -73,6 +76,20 @@ public class LogCatPreferencePage extends FieldEditorPreferencePage implements
 
         createHorizontalSeparator();
 
+        mCapture = new BooleanFieldEditor(LogCatCapture.CAPTURE_PREFKEY,
+                Messages.LogCatPreferencePage_Capture, getFieldEditorParent());
+        addField(mCapture);
+
+        mCaptureMaxSize = new IntegerFieldEditor(LogCatCapture.CAPTURE_MAX_SIZE_PREFKEY,
+                Messages.LogCatPreferencePage_CaptureMaxSize, getFieldEditorParent());
+        mCaptureMaxSize.setValidRange(1, Integer.MAX_VALUE / (1024 * 1024));
+        mCaptureMaxSize.setEnabled(
+                getPreferenceStore().getBoolean(LogCatCapture.CAPTURE_PREFKEY),
+                getFieldEditorParent());
+        addField(mCaptureMaxSize);
+
+        createHorizontalSeparator();
+
         if (InstallDetails.isAdtInstalled()) {
             createAdtSpecificFieldEditors();
         }
@@ -142,6 +159,8 @@ public class LogCatPreferencePage extends FieldEditorPreferencePage implements
         } else if (event.getSource().equals(mAutoMonitorLogcat)) {
             mAutoMonitorLogcatLevel.setEnabled(mAutoMonitorLogcat.getBooleanValue(),
                     getFieldEditorParent());
+        } else if (event.getSource().equals(mCapture)) {
+            mCaptureMaxSize.setEnabled(mCapture.getBooleanValue(), getFieldEditorParent());
         }
     }
 
@@ -153,6 +172,8 @@ public class LogCatPreferencePage extends FieldEditorPreferencePage implements
         mMaxMessages.setStringValue(
                 Integer.toString(LogCatMessageList.MAX_MESSAGES_DEFAULT));
 
+        mCaptureMaxSize.setEnabled(mCapture.getBooleanValue(), getFieldEditorParent());
+
         mAutoMonitorLogcatLevel.setEnabled(mAutoMonitorLogcat.getBooleanValue(),
                 getFieldEditorParent());
     }
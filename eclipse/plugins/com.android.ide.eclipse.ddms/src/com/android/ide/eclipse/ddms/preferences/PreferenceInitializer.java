@@ -20,6 +20,7 @@ import com.android.ddmlib.DdmPreferences;
 import com.android.ddmlib.Log.LogLevel;
 import com.android.ddmuilib.DdmUiPreferences;
 import com.android.ide.eclipse.ddms.DdmsPlugin;
+import com.android.ide.eclipse.ddms.LogCatCapture;
 import com.android.ide.eclipse.ddms.LogCatMonitor;
 import com.android.ide.eclipse.ddms.views.DeviceView.HProfHandler;
 import com.android.ide.eclipse.ddms.views.LogCatView;
@@ -133,6 +134,10 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
 
         store.setDefault(LogCatMonitor.AUTO_MONITOR_PREFKEY, true);
         store.setDefault(LogCatMonitor.AUTO_MONITOR_LOGLEVEL, LogLevel.VERBOSE.getStringValue());
+
+        store.setDefault(LogCatCapture.CAPTURE_PREFKEY, false);
+        store.setDefault(LogCatCapture.CAPTURE_MAX_SIZE_PREFKEY,
+                LogCatCapture.CAPTURE_MAX_SIZE_DEFAULT);
     }
 
     /**
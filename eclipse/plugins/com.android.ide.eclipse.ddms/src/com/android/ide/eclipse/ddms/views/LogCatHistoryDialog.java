@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.eclipse.ddms.views;
+
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ide.eclipse.ddms.LogCatSegment;
+import com.android.ide.eclipse.ddms.i18n.Messages;
+
+import org.eclipse.jface.dialogs.Dialog;
+import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.jface.resource.JFaceResources;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Combo;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.swt.widgets.Text;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dialog showing the logcat output saved by {@link com.android.ide.eclipse.ddms.LogCatCapture}.
+ * <p/>
+ * The messages are shown in a virtual table, so only the blocks of the segment which
+ * are scrolled into view are read from disk, and the most recently used blocks are
+ * kept in memory. Going to a time stamp searches the indexes of the segments of the
+ * device, and only reads the block containing that time.
+ */
+public class LogCatHistoryDialog extends Dialog {
+    private static final String[] COLUMNS = new String[] {
+        Messages.LogCatHistoryDialog_Time,
+        Messages.LogCatHistoryDialog_Level,
+        Messages.LogCatHistoryDialog_PID,
+        Messages.LogCatHistoryDialog_TID,
+        Messages.LogCatHistoryDialog_Application,
+        Messages.LogCatHistoryDialog_Tag,
+        Messages.LogCatHistoryDialog_Text
+    };
+    private static final int[] COLUMN_WIDTHS = new int[] {
+        150, 50, 50, 50, 150, 150, 600
+    };
+
+    /** Number of inflated blocks kept in memory */
+    private static final int CACHED_BLOCKS = 8;
+
+    private final List<File> mSegmentFiles;
+    private File mSelectedFile;
+    private LogCatSegment mSegment;
+
+    private final Map<Integer, List<LogCatMessage>> mBlockCache =
+            new LinkedHashMap<Integer, List<LogCatMessage>>(CACHED_BLOCKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<LogCatMessage>> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+
+    private Combo mSegmentCombo;
+    private Text mTimeText;
+    private Label mStatusLabel;
+    private Table mTable;
+
+    /**
+     * Creates a new dialog
+     *
+     * @param parentShell the parent shell
+     * @param segmentFile the data file of the segment to show first. The other segments
+     *            in the same directory can be selected in the dialog.
+     */
+    public LogCatHistoryDialog(Shell parentShell, File segmentFile) {
+        super(parentShell);
+        mSelectedFile = segmentFile;
+        mSegmentFiles = LogCatSegment.listSegments(segmentFile.getParentFile());
+    }
+
+    @Override
+    protected boolean isResizable() {
+        return true;
+    }
+
+    @Override
+    protected void configureShell(Shell newShell) {
+        super.configureShell(newShell);
+        newShell.setText(Messages.LogCatHistoryDialog_Title);
+        newShell.setSize(900, 600);
+    }
+
+    @Override
+    protected Control createDialogArea(Composite parent) {
+        Composite c = (Composite) super.createDialogArea(parent);
+        c.setLayout(new GridLayout(5, false));
+
+        mSegmentCombo = new Combo(c, SWT.READ_ONLY | SWT.DROP_DOWN);
+        mSegmentCombo.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+        for (File file : mSegmentFiles) {
+            mSegmentCombo.add(file.getName());
+        }
+        mSegmentCombo.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                openSegment(mSegmentFiles.get(mSegmentCombo.getSelectionIndex()), 0);
+            }
+        });
+
+        Label timeLabel = new Label(c, SWT.NONE);
+        timeLabel.setText(Messages.LogCatHistoryDialog_Go_To_Time);
+
+        mTimeText = new Text(c, SWT.BORDER | SWT.SINGLE);
+        mTimeText.setMessage("MM-dd HH:mm:ss.SSS"); //$NON-NLS-1$
+        mTimeText.setLayoutData(new GridData(150, SWT.DEFAULT));
+
+        Button goButton = new Button(c, SWT.PUSH);
+        goButton.setText(Messages.LogCatHistoryDialog_Go);
+        SelectionAdapter goListener = new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                goToTime(mTimeText.getText());
+            }
+
+            @Override
+            public void widgetDefaultSelected(SelectionEvent e) {
+                goToTime(mTimeText.getText());
+            }
+        };
+        goButton.addSelectionListener(goListener);
+        mTimeText.addSelectionListener(goListener);
+
+        mStatusLabel = new Label(c, SWT.NONE);
+        mStatusLabel.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+
+        mTable = new Table(c, SWT.VIRTUAL | SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI);
+        mTable.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 5, 1));
+        mTable.setHeaderVisible(true);
+        mTable.setLinesVisible(true);
+        mTable.setFont(JFaceResources.getTextFont());
+        for (int i = 0; i < COLUMNS.length; i++) {
+            TableColumn column = new TableColumn(mTable, SWT.LEFT);
+            column.setText(COLUMNS[i]);
+            column.setWidth(COLUMN_WIDTHS[i]);
+        }
+        mTable.addListener(SWT.SetData, new Listener() {
+            @Override
+            public void handleEvent(Event event) {
+                TableItem item = (TableItem) event.item;
+                LogCatMessage m = getMessage(mTable.indexOf(item));
+                if (m != null) {
+                    item.setText(new String[] {
+                            m.getTime(),
+                            m.getLogLevel().getStringValue(),
+                            m.getPid(),
+                            m.getTid(),
+                            m.getAppName(),
+                            m.getTag(),
+                            m.getMessage()
+                    });
+                }
+            }
+        });
+
+        openSegment(mSelectedFile, 0);
+        return c;
+    }
+
+    @Override
+    protected void createButtonsForButtonBar(Composite parent) {
+        createButton(parent, IDialogConstants.OK_ID, IDialogConstants.CLOSE_LABEL, true);
+    }
+
+    private void openSegment(File file, int message) {
+        mSelectedFile = file;
+        mSegmentCombo.select(mSegmentFiles.indexOf(file));
+        mBlockCache.clear();
+        try {
+            mSegment = LogCatSegment.open(file);
+        } catch (IOException e) {
+            mSegment = null;
+            mTable.setItemCount(0);
+            mStatusLabel.setText(String.format(Messages.LogCatHistoryDialog_Unable_To_Read,
+                    file.getName(), e.getMessage()));
+            return;
+        }
+
+        mTable.clearAll();
+        mTable.setItemCount(mSegment.getMessageCount());
+        mStatusLabel.setText(String.format(Messages.LogCatHistoryDialog_Message_Count,
+                mSegment.getMessageCount()));
+        if (message < mSegment.getMessageCount()) {
+            mTable.setSelection(message);
+            mTable.showSelection();
+        }
+    }
+
+    /** Shows the first message at or after the given time, in the first segment with one */
+    private void goToTime(String time) {
+        try {
+            for (File file : mSegmentFiles) {
+                LogCatSegment segment = file.equals(mSelectedFile) && mSegment != null
+                        ? mSegment : LogCatSegment.open(file);
+                int message = segment.findTime(time);
+                if (message == -1) {
+                    mStatusLabel.setText(Messages.LogCatHistoryDialog_Invalid_Time);
+                    return;
+                }
+                if (message < segment.getMessageCount()) {
+                    if (segment == mSegment) {
+                        mTable.setSelection(message);
+                        mTable.showSelection();
+                    } else {
+                        openSegment(file, message);
+                    }
+                    return;
+                }
+            }
+            mStatusLabel.setText(String.format(Messages.LogCatHistoryDialog_No_Messages_After,
+                    time));
+        } catch (IOException e) {
+            mStatusLabel.setText(e.getMessage());
+        }
+    }
+
+    private LogCatMessage getMessage(int index) {
+        if (mSegment == null || index < 0 || index >= mSegment.getMessageCount()) {
+            return null;
+        }
+
+        int block = mSegment.getBlockOf(index);
+        List<LogCatMessage> messages = mBlockCache.get(block);
+        if (messages == null) {
+            try {
+                messages = mSegment.readBlock(block);
+            } catch (IOException e) {
+                mStatusLabel.setText(e.getMessage());
+                return null;
+            }
+            mBlockCache.put(block, messages);
+        }
+        return messages.get(index - mSegment.getBlockStart(block));
+    }
+}
@@ -21,17 +21,24 @@ import com.android.ddmuilib.logcat.LogCatPanel;
 import com.android.ddmuilib.logcat.LogCatStackTraceParser;
 import com.android.ide.eclipse.ddms.DdmsPlugin;
 import com.android.ide.eclipse.ddms.JavaSourceRevealer;
+import com.android.ide.eclipse.ddms.LogCatCapture;
+import com.android.ide.eclipse.ddms.LogCatSegment;
 import com.android.ide.eclipse.ddms.i18n.Messages;
 import com.android.ide.eclipse.ddms.preferences.PreferenceInitializer;
 
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.swt.SWT;
 import org.eclipse.swt.dnd.Clipboard;
 import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Shell;
 import org.eclipse.ui.IActionBars;
 import org.eclipse.ui.actions.ActionFactory;
 
+import java.io.File;
+
 public class LogCatView extends SelectionDependentViewPart {
     /** LogCatView ID as defined in plugin.xml. */
     public static final String ID = "com.android.ide.eclipse.ddms.views.LogCatView"; //$NON-NLS-1$
@@ -89,6 +96,13 @@ public class LogCatView extends SelectionDependentViewPart {
                 mLogCatPanel.showFindDialog();
             }
         });
+
+        actionBars.getMenuManager().add(new Action(Messages.LogCatView_Open_Captured_Log) {
+            @Override
+            public void run() {
+                openCapturedLog();
+            }
+        });
     }
 
     @Override
@@ -114,6 +128,19 @@ public class LogCatView extends SelectionDependentViewPart {
         JavaSourceRevealer.revealMethod(methodName, fileName, lineNumber, perspectiveId);
     }
 
+    /** Lets the user pick a segment saved by {@link LogCatCapture}, and shows it */
+    private void openCapturedLog() {
+        Shell shell = getSite().getShell();
+        FileDialog fileDialog = new FileDialog(shell, SWT.OPEN);
+        fileDialog.setFilterExtensions(new String[] { "*" + LogCatSegment.DATA_EXT }); //$NON-NLS-1$
+        fileDialog.setFilterPath(
+                DdmsPlugin.getDefault().getLogCatCaptureDirectory().getAbsolutePath());
+        String path = fileDialog.open();
+        if (path != null) {
+            new LogCatHistoryDialog(shell, new File(path)).open();
+        }
+    }
+
     public void selectTransientAppFilter(String appName) {
         mLogCatPanel.selectTransientAppFilter(appName);
     }
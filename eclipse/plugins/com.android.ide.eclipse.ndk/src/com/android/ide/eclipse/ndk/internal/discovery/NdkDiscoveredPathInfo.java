@@ -22,7 +22,6 @@ import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.model.CoreModel;
 import org.eclipse.cdt.make.core.scannerconfig.IDiscoveredPathManager.IDiscoveredPathInfo;
 import org.eclipse.cdt.make.core.scannerconfig.IDiscoveredPathManager.IDiscoveredScannerInfoSerializable;
-import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -34,24 +33,61 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
 
 public class NdkDiscoveredPathInfo implements IDiscoveredPathInfo {
 
     private final IProject mProject;
-    private long mLastUpdate = IFile.NULL_STAMP;
+    private String mFingerprint;
     private IPath[] mIncludePaths;
     private Map<String, String> mSymbols;
     private boolean mNeedReindexing = false;
-    private static final IPath ANDROID_MK = new Path("jni/Android.mk");
+    private static final IPath JNI = new Path("jni"); //$NON-NLS-1$
+    private static final String ANDROID_MK = "Android.mk"; //$NON-NLS-1$
+    private static final String APPLICATION_MK = "Application.mk"; //$NON-NLS-1$
+
+    /** The probe id used by each module, keyed by "abi/module" */
+    private Map<String, String> mModules = new TreeMap<String, String>();
+
+    /**
+     * The ABI whose modules make up the project wide include paths and symbols: the
+     * first one built, which is the first one of APP_ABI. The paths and symbols of
+     * different ABIs (such as __arm__ and __i386__) cannot be mixed.
+     */
+    private String mAbi;
+
+    /** The results of the compiler probes, keyed by probe id */
+    private Map<String, ProbeResult> mProbes = new HashMap<String, ProbeResult>();
 
     // Keys for preferences
     public static final String LAST_UPDATE = "lastUpdate"; //$NON-NLS-1$
 
+    /**
+     * The include paths and symbols reported by the compiler for one toolchain and set
+     * of flags. Modules built with the same toolchain and flags share the same result.
+     */
+    static class ProbeResult {
+        final IPath[] mIncludePaths;
+        final Map<String, String> mSymbols;
+
+        ProbeResult(IPath[] includePaths, Map<String, String> symbols) {
+            mIncludePaths = includePaths;
+            mSymbols = symbols;
+        }
+    }
+
     public NdkDiscoveredPathInfo(IProject project) {
         this.mProject = project;
         load();
@@ -76,14 +112,6 @@ public class NdkDiscoveredPathInfo implements IDiscoveredPathInfo {
         return mIncludePaths;
     }
 
-    void setIncludePaths(List<String> pathStrings) {
-        mIncludePaths = new IPath[pathStrings.size()];
-        int i = 0;
-        for (String path : pathStrings)
-            mIncludePaths[i++] = new Path(path);
-        mNeedReindexing = true;
-    }
-
     @Override
     public Map<String, String> getSymbols() {
         if (mSymbols == null)
@@ -91,8 +119,56 @@ public class NdkDiscoveredPathInfo implements IDiscoveredPathInfo {
         return mSymbols;
     }
 
-    void setSymbols(Map<String, String> symbols) {
-        this.mSymbols = symbols;
+    /**
+     * Returns the result of a previous probe, so that modules whose toolchain and flags
+     * did not change do not need to run the compiler again.
+     */
+    ProbeResult getProbeResult(String id) {
+        return mProbes.get(id);
+    }
+
+    void setResults(Map<String, String> modules, Map<String, ProbeResult> probes,
+            String abi) {
+        mModules = new TreeMap<String, String>(modules);
+        mProbes = new HashMap<String, ProbeResult>(probes);
+        mAbi = abi;
+        merge();
+        mNeedReindexing = true;
+    }
+
+    /**
+     * Returns the ABI of a module key, or an empty string if it has none
+     */
+    static String getAbi(String module) {
+        int index = module.indexOf('/');
+        return index != -1 ? module.substring(0, index) : ""; //$NON-NLS-1$
+    }
+
+    /**
+     * Computes the project wide include paths and symbols from the results of the
+     * modules of {@link #mAbi}. Include paths keep the order of the first module which
+     * uses them.
+     */
+    private void merge() {
+        Set<IPath> includes = new LinkedHashSet<IPath>();
+        Map<String, String> symbols = new HashMap<String, String>();
+        Set<String> ids = new LinkedHashSet<String>();
+        for (Entry<String, String> module : mModules.entrySet()) {
+            if (getAbi(module.getKey()).equals(mAbi))
+                ids.add(module.getValue());
+        }
+        for (String id : ids) {
+            ProbeResult result = mProbes.get(id);
+            if (result == null)
+                continue;
+            Collections.addAll(includes, result.mIncludePaths);
+            for (Entry<String, String> symbol : result.mSymbols.entrySet()) {
+                if (!symbols.containsKey(symbol.getKey()))
+                    symbols.put(symbol.getKey(), symbol.getValue());
+            }
+        }
+        mIncludePaths = includes.toArray(new IPath[includes.size()]);
+        mSymbols = symbols;
     }
 
     @Override
@@ -101,29 +177,68 @@ public class NdkDiscoveredPathInfo implements IDiscoveredPathInfo {
     }
 
     public void update(IProgressMonitor monitor) throws CoreException {
-        if (!needUpdating())
+        String fingerprint = computeFingerprint();
+        if (fingerprint.equals(mFingerprint))
             return;
 
-        new NdkDiscoveryUpdater(this).runUpdate(monitor);
-
-        if (mIncludePaths != null && mSymbols != null) {
-            recordUpdate();
+        if (new NdkDiscoveryUpdater(this).runUpdate(monitor)) {
+            mFingerprint = fingerprint;
             save();
         }
     }
 
-    private boolean needUpdating() {
-        if (mLastUpdate == IFile.NULL_STAMP)
-            return true;
-        return mProject.getFile(ANDROID_MK).getLocalTimeStamp() > mLastUpdate;
+    /**
+     * Computes a fingerprint of the makefiles of the project: it changes whenever an
+     * Android.mk or Application.mk file is added, removed or modified.
+     */
+    private String computeFingerprint() {
+        StringBuilder fingerprint = new StringBuilder();
+        addFingerprint(mProject.getLocation().append(JNI).toFile(), "", //$NON-NLS-1$
+                fingerprint);
+        return digest(fingerprint.toString());
+    }
+
+    private static void addFingerprint(File dir, String prefix, StringBuilder fingerprint) {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = prefix + file.getName();
+            if (file.isDirectory()) {
+                addFingerprint(file, name + '/', fingerprint);
+            } else if (file.getName().equals(ANDROID_MK)
+                    || file.getName().equals(APPLICATION_MK)) {
+                fingerprint.append(name).append(',').append(file.lastModified())
+                        .append(',').append(file.length()).append('\n');
+            }
+        }
     }
 
-    private void recordUpdate() {
-        mLastUpdate = mProject.getFile(ANDROID_MK).getLocalTimeStamp();
+    /**
+     * Returns a SHA-1 digest of the given text, as a hex string
+     */
+    static String digest(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(text.getBytes("UTF-8"))) { //$NON-NLS-1$
+                hex.append(String.format("%02x", b & 0xff)); //$NON-NLS-1$
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            Activator.log(e);
+        } catch (UnsupportedEncodingException e) {
+            Activator.log(e);
+        }
+        return Integer.toHexString(text.hashCode());
     }
 
     public void delete() {
-        mLastUpdate = IFile.NULL_STAMP;
+        mFingerprint = null;
+        mAbi = null;
+        mModules.clear();
+        mProbes.clear();
     }
 
     private File getInfoFile() {
@@ -137,22 +252,43 @@ public class NdkDiscoveredPathInfo implements IDiscoveredPathInfo {
             infoFile.getParentFile().mkdirs();
             PrintStream out = new PrintStream(infoFile);
 
-            // timestamp
-            out.print("t,"); //$NON-NLS-1$
-            out.print(mLastUpdate);
+            // makefile fingerprint
+            out.print("f,"); //$NON-NLS-1$
+            out.print(mFingerprint);
+            out.println();
+
+            // ABI of the project wide results
+            out.print("a,"); //$NON-NLS-1$
+            out.print(mAbi);
             out.println();
 
-            for (IPath include : mIncludePaths) {
-                out.print("i,"); //$NON-NLS-1$
-                out.print(include.toPortableString());
+            // probe results; the include paths and symbols follow their probe
+            for (Entry<String, ProbeResult> probe : mProbes.entrySet()) {
+                out.print("p,"); //$NON-NLS-1$
+                out.print(probe.getKey());
                 out.println();
+
+                for (IPath include : probe.getValue().mIncludePaths) {
+                    out.print("i,"); //$NON-NLS-1$
+                    out.print(include.toPortableString());
+                    out.println();
+                }
+
+                for (Entry<String, String> symbol : probe.getValue().mSymbols.entrySet()) {
+                    out.print("d,"); //$NON-NLS-1$
+                    out.print(symbol.getKey());
+                    out.print(","); //$NON-NLS-1$
+                    out.print(symbol.getValue());
+                    out.println();
+                }
             }
 
-            for (Entry<String, String> symbol : mSymbols.entrySet()) {
-                out.print("d,"); //$NON-NLS-1$
-                out.print(symbol.getKey());
+            // modules
+            for (Entry<String, String> module : mModules.entrySet()) {
+                out.print("m,"); //$NON-NLS-1$
+                out.print(module.getValue());
                 out.print(","); //$NON-NLS-1$
-                out.print(symbol.getValue());
+                out.print(module.getKey());
                 out.println();
             }
 
@@ -169,15 +305,28 @@ public class NdkDiscoveredPathInfo implements IDiscoveredPathInfo {
             if (!infoFile.exists())
                 return;
 
-            long timestamp = IFile.NULL_STAMP;
+            String fingerprint = null;
+            String abi = null;
+            Map<String, String> modules = new TreeMap<String, String>();
+            Map<String, ProbeResult> probes = new HashMap<String, ProbeResult>();
+            String probe = null;
             List<IPath> includes = new ArrayList<IPath>();
             Map<String, String> defines = new HashMap<String, String>();
 
             BufferedReader reader = new BufferedReader(new FileReader(infoFile));
             for (String line = reader.readLine(); line != null; line = reader.readLine()) {
                 switch (line.charAt(0)) {
-                    case 't':
-                        timestamp = Long.valueOf(line.substring(2));
+                    case 'f':
+                        fingerprint = line.substring(2);
+                        break;
+                    case 'a':
+                        abi = line.substring(2);
+                        break;
+                    case 'p':
+                        addProbe(probes, probe, includes, defines);
+                        probe = line.substring(2);
+                        includes = new ArrayList<IPath>();
+                        defines = new HashMap<String, String>();
                         break;
                     case 'i':
                         includes.add(Path.fromPortableString(line.substring(2)));
@@ -189,15 +338,37 @@ public class NdkDiscoveredPathInfo implements IDiscoveredPathInfo {
                         else
                             defines.put(line.substring(2, n), line.substring(n + 1));
                         break;
+                    case 'm':
+                        int m = line.indexOf(',', 2);
+                        if (m != -1)
+                            modules.put(line.substring(m + 1), line.substring(2, m));
+                        break;
                 }
             }
             reader.close();
+            addProbe(probes, probe, includes, defines);
+
+            // Files written before the results were kept per module have no
+            // fingerprint (and files written before the project wide results were
+            // taken from a single ABI have no ABI), and are discovered again on the
+            // next update
+            if (fingerprint == null || abi == null)
+                return;
 
-            mLastUpdate = timestamp;
-            mIncludePaths = includes.toArray(new IPath[includes.size()]);
-            mSymbols = defines;
+            mFingerprint = fingerprint;
+            mAbi = abi;
+            mModules = modules;
+            mProbes = probes;
+            merge();
         } catch (IOException e) {
             Activator.log(e);
         }
     }
+
+    private static void addProbe(Map<String, ProbeResult> probes, String probe,
+            List<IPath> includes, Map<String, String> defines) {
+        if (probe != null)
+            probes.put(probe, new ProbeResult(
+                    includes.toArray(new IPath[includes.size()]), defines));
+    }
 }
@@ -18,6 +18,7 @@ package com.android.ide.eclipse.ndk.internal.discovery;
 
 import com.android.ide.eclipse.ndk.internal.Activator;
 import com.android.ide.eclipse.ndk.internal.build.NdkCommandLauncher;
+import com.android.ide.eclipse.ndk.internal.discovery.NdkDiscoveredPathInfo.ProbeResult;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.envvar.IEnvironmentVariable;
@@ -42,37 +43,47 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class NdkDiscoveryUpdater {
     private final NdkDiscoveredPathInfo mPathInfo;
     private final IProject mProject;
 
-    private boolean mCPlusPlus = false;
-    private String mCommand;
-    private List<String> mArguments = new ArrayList<String>();
+    /** The compiler command of each module, keyed by "abi/module" */
+    private final Map<String, Probe> mModules = new LinkedHashMap<String, Probe>();
 
     public NdkDiscoveryUpdater(NdkDiscoveredPathInfo pathInfo) {
         mPathInfo = pathInfo;
         mProject = pathInfo.getProject();
     }
 
-    public void runUpdate(IProgressMonitor monitor) throws CoreException {
+    /**
+     * Discovers the include paths and symbols of each module of the project.
+     *
+     * @return true if results were found and stored in the path info
+     */
+    public boolean runUpdate(final IProgressMonitor monitor) throws CoreException {
         try {
             // Run ndk-build -nB to get the list of commands
             IPath commandPath = new Path("ndk-build"); //$NON-NLS-1$
             String[] args = {
                 "-nB"}; //$NON-NLS-1$
-            String[] env = calcEnvironment();
+            final String[] env = calcEnvironment();
             File projectDir = new File(mProject.getLocationURI());
-            IPath changeToDirectory = new Path(projectDir.getAbsolutePath());
+            final IPath changeToDirectory = new Path(projectDir.getAbsolutePath());
             Process proc = new NdkCommandLauncher().execute(commandPath, args, env,
                     changeToDirectory, monitor);
             if (proc == null)
                 // proc failed to start
-                return;
+                return false;
             BufferedReader reader = new BufferedReader(new InputStreamReader(proc.getInputStream()));
             String line = reader.readLine();
             while (line != null) {
@@ -80,38 +91,79 @@ public class NdkDiscoveryUpdater {
                 line = reader.readLine();
             }
 
-            if (mCommand == null) {
-                return;
+            if (mModules.isEmpty()) {
+                return false;
             }
 
-            // Run the unique commands with special gcc options to extract the
-            // symbols and paths
-            // -E -P -v -dD
-            mArguments.add("-E"); //$NON-NLS-1$
-            mArguments.add("-P"); //$NON-NLS-1$
-            mArguments.add("-v"); //$NON-NLS-1$
-            mArguments.add("-dD"); //$NON-NLS-1$
-
-            URL url = Activator.findFile(new Path(
-                    "discovery/" + (mCPlusPlus ? "test.cpp" : "test.c"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-            File testFile = new File(FileLocator.toFileURL(url).toURI());
-            String testFileName = testFile.getAbsolutePath().replace('\\', '/');
-            mArguments.add(testFileName);
-
-            args = mArguments.toArray(new String[mArguments.size()]);
-            proc = new NdkCommandLauncher().execute(new Path(mCommand), args, env,
-                    changeToDirectory, monitor);
-            // Error stream has the includes
-            final InputStream errStream = proc.getErrorStream();
-            new Thread() {
-                @Override
-                public void run() {
-                    checkIncludes(errStream);
-                };
-            }.start();
-
-            // Input stream has the defines
-            checkDefines(proc.getInputStream());
+            // Modules sharing a toolchain and flags share a probe, and probes whose
+            // results are known from a previous update are not run again
+            Map<String, String> modules = new HashMap<String, String>();
+            Map<String, ProbeResult> results = new HashMap<String, ProbeResult>();
+            Map<String, Probe> pending = new LinkedHashMap<String, Probe>();
+            for (Entry<String, Probe> entry : mModules.entrySet()) {
+                String id = entry.getValue().getId(projectDir, env);
+                modules.put(entry.getKey(), id);
+                ProbeResult result = mPathInfo.getProbeResult(id);
+                if (result != null)
+                    results.put(id, result);
+                else
+                    pending.put(id, entry.getValue());
+            }
+
+            if (!pending.isEmpty()) {
+                // Run the remaining probes in parallel
+                int threads = Math.min(pending.size(),
+                        Runtime.getRuntime().availableProcessors());
+                ExecutorService executor = Executors.newFixedThreadPool(threads);
+                try {
+                    Map<String, Future<ProbeResult>> futures =
+                            new HashMap<String, Future<ProbeResult>>();
+                    for (Entry<String, Probe> entry : pending.entrySet()) {
+                        final Probe probe = entry.getValue();
+                        final String testFileName = getTestFileName(probe.mCPlusPlus);
+                        futures.put(entry.getKey(), executor.submit(
+                                new Callable<ProbeResult>() {
+                            @Override
+                            public ProbeResult call() throws Exception {
+                                return runProbe(probe, testFileName, env, changeToDirectory,
+                                        monitor);
+                            }
+                        }));
+                    }
+                    for (Entry<String, Future<ProbeResult>> entry : futures.entrySet()) {
+                        ProbeResult result = entry.getValue().get();
+                        if (result != null)
+                            results.put(entry.getKey(), result);
+                    }
+                } catch (InterruptedException e) {
+                    throw new CoreException(Activator.newStatus(e));
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CoreException)
+                        throw (CoreException) e.getCause();
+                    throw new CoreException(Activator.newStatus(e));
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+
+            // Leave out the modules whose probe failed
+            modules.values().retainAll(results.keySet());
+            if (modules.isEmpty()) {
+                return false;
+            }
+
+            // ndk-build builds the ABIs in the order of APP_ABI, so the project wide
+            // results come from the first one
+            String abi = null;
+            for (String module : mModules.keySet()) {
+                if (modules.containsKey(module)) {
+                    abi = NdkDiscoveredPathInfo.getAbi(module);
+                    break;
+                }
+            }
+
+            mPathInfo.setResults(modules, results, abi);
+            return true;
         } catch (IOException e) {
             throw new CoreException(Activator.newStatus(e));
         } catch (URISyntaxException e) {
@@ -119,6 +171,66 @@ public class NdkDiscoveryUpdater {
         }
     }
 
+    private String getTestFileName(boolean cplusplus) throws IOException, URISyntaxException {
+        URL url = Activator.findFile(new Path(
+                "discovery/" + (cplusplus ? "test.cpp" : "test.c"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        File testFile = new File(FileLocator.toFileURL(url).toURI());
+        return testFile.getAbsolutePath().replace('\\', '/');
+    }
+
+    /**
+     * Runs the compiler of the given probe with special gcc options to extract the
+     * symbols and paths.
+     *
+     * @return the result, or null if the compiler failed to start or did not report
+     *         its include paths
+     */
+    private ProbeResult runProbe(Probe probe, String testFileName, String[] env,
+            IPath changeToDirectory, IProgressMonitor monitor) throws CoreException {
+        // -E -P -v -dD
+        List<String> arguments = new ArrayList<String>(probe.mArguments);
+        arguments.add("-E"); //$NON-NLS-1$
+        arguments.add("-P"); //$NON-NLS-1$
+        arguments.add("-v"); //$NON-NLS-1$
+        arguments.add("-dD"); //$NON-NLS-1$
+        arguments.add(testFileName);
+
+        String[] args = arguments.toArray(new String[arguments.size()]);
+        Process proc = new NdkCommandLauncher().execute(new Path(probe.mCommand), args, env,
+                changeToDirectory, monitor);
+        if (proc == null)
+            return null;
+
+        // Error stream has the includes
+        final InputStream errStream = proc.getErrorStream();
+        final List<String> includes = new ArrayList<String>();
+        final boolean[] complete = new boolean[1];
+        Thread errThread = new Thread() {
+            @Override
+            public void run() {
+                complete[0] = checkIncludes(errStream, includes);
+            };
+        };
+        errThread.start();
+
+        // Input stream has the defines
+        Map<String, String> defines = checkDefines(proc.getInputStream());
+        try {
+            errThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (!complete[0] || defines == null)
+            return null;
+
+        IPath[] includePaths = new IPath[includes.size()];
+        int i = 0;
+        for (String path : includes)
+            includePaths[i++] = new Path(path);
+        return new ProbeResult(includePaths, defines);
+    }
+
     private String[] calcEnvironment() throws CoreException {
         IManagedBuildInfo info = ManagedBuildManager.getBuildInfo(mProject);
         IBuilder builder = info.getDefaultConfiguration().getBuilder();
@@ -177,7 +289,7 @@ public class NdkDiscoveryUpdater {
                 }
 
                 if (++pos == line.length())
-                    return null;
+                    return line.substring(start);
             }
 
         }
@@ -205,63 +317,168 @@ public class NdkDiscoveryUpdater {
         }
     }
 
+    /**
+     * The compiler and options used to build a module. The options are the ones
+     * affecting the preprocessor, in the order in which they first appear.
+     */
+    private static class Probe {
+        private boolean mCPlusPlus = false;
+        private String mCommand;
+        /** Whether a gathered command line compiles a source file */
+        private boolean mCompile = false;
+        private final List<String> mArguments = new ArrayList<String>();
+
+        private void setCommand(String command, boolean cplusplus) {
+            if (mCommand == null || (cplusplus && !mCPlusPlus)) {
+                mCommand = command;
+                mCPlusPlus = cplusplus;
+            }
+        }
+
+        private void addArg(String arg) {
+            if (!mArguments.contains(arg))
+                mArguments.add(arg);
+        }
+
+        /**
+         * Returns an id identifying the toolchain and the hash of the flags. The
+         * modification time and size of the compiler are part of it, such that a
+         * toolchain updated in place is probed again.
+         */
+        private String getId(File projectDir, String[] env) {
+            StringBuilder key = new StringBuilder(mCommand);
+            File compiler = findCommand(mCommand, projectDir, env);
+            if (compiler != null)
+                key.append(',').append(compiler.lastModified())
+                        .append(',').append(compiler.length());
+            for (String arg : mArguments)
+                key.append('\n').append(arg);
+            return NdkDiscoveredPathInfo.digest(key.toString());
+        }
+    }
+
+    /**
+     * Returns the file run for the given command: the command itself if it is a path,
+     * relative to the project directory, or else the first match in the PATH of the
+     * given environment. Returns null if it cannot be found.
+     */
+    private static File findCommand(String command, File projectDir, String[] env) {
+        List<File> candidates = new ArrayList<File>();
+        if (command.indexOf('/') != -1 || command.indexOf('\\') != -1) {
+            File file = new File(command);
+            candidates.add(file.isAbsolute() ? file : new File(projectDir, command));
+        } else {
+            String path = null;
+            for (String var : env) {
+                if (var.regionMatches(true, 0, "PATH=", 0, 5)) //$NON-NLS-1$
+                    path = var.substring(5);
+            }
+            if (path == null)
+                path = System.getenv("PATH"); //$NON-NLS-1$
+            if (path != null) {
+                for (String dir : path.split(File.pathSeparator)) {
+                    if (dir.length() > 0)
+                        candidates.add(new File(dir, command));
+                }
+            }
+        }
+        for (File candidate : candidates) {
+            if (candidate.isFile())
+                return candidate;
+            File exe = new File(candidate.getPath() + ".exe"); //$NON-NLS-1$
+            if (exe.isFile())
+                return exe;
+        }
+        return null;
+    }
+
     private void checkBuildLine(String text) {
         Line line = new Line(text);
         String cmd = line.getToken();
-        if (cmd == null) {
+        if (cmd == null)
+            return;
+        boolean cplusplus = cmd.endsWith("g++"); //$NON-NLS-1$
+        if (!cplusplus && !cmd.endsWith("gcc")) //$NON-NLS-1$
+            return;
+
+        Probe options = new Probe();
+        String output = gatherOptions(line, options);
+        if (!options.mCompile) {
+            // link commands don't affect the preprocessor
             return;
-        } else if (cmd.endsWith("g++")) {           //$NON-NLS-1$
-            if (mCommand == null || !mCPlusPlus) {
-                mCommand = cmd;
-                mCPlusPlus = true;
-            }
-            gatherOptions(line);
-        } else if (cmd.endsWith("gcc")) {   //$NON-NLS-1$
-            if (mCommand == null)
-                mCommand = cmd;
-            gatherOptions(line);
         }
+
+        String module = getModule(output);
+        Probe probe = mModules.get(module);
+        if (probe == null) {
+            probe = new Probe();
+            mModules.put(module, probe);
+        }
+        probe.setCommand(cmd, cplusplus);
+        for (String arg : options.mArguments)
+            probe.addArg(arg);
     }
 
-    private void gatherOptions(Line line) {
+    /**
+     * Returns the module key of a compiled file from its object file path, which
+     * ndk-build places in obj/local/&lt;abi&gt;/objs/&lt;module&gt;/, or an empty
+     * string if the path does not follow that layout.
+     */
+    private static String getModule(String output) {
+        if (output == null)
+            return ""; //$NON-NLS-1$
+        String[] segments = output.replace('\\', '/').split("/"); //$NON-NLS-1$
+        for (int i = 1; i < segments.length - 1; i++) {
+            if (segments[i].startsWith("objs")) //$NON-NLS-1$
+                return segments[i - 1] + '/' + segments[i + 1];
+        }
+        return ""; //$NON-NLS-1$
+    }
+
+    /**
+     * Adds the preprocessor options of the line to the probe, and returns the output
+     * file of the command, if any.
+     */
+    private String gatherOptions(Line line, Probe probe) {
+        String output = null;
         for (String option = line.getToken(); option != null; option = line.getToken()) {
             if (option.startsWith("-")) { //$NON-NLS-1$
                 // only look at options
                 if (option.equals("-I")) { //$NON-NLS-1$
                     String dir = line.getToken();
                     if (dir != null)
-                        addArg(option + dir);
+                        probe.addArg(option + dir);
                 } else if (option.startsWith("-I")) { //$NON-NLS-1$
-                    addArg(option);
+                    probe.addArg(option);
                 } else if (option.equals("-D")) { //$NON-NLS-1$
                     String def = line.getToken();
                     if (def != null)
-                        addArg(option + def);
+                        probe.addArg(option + def);
                 } else if (option.startsWith("-D")) { //$NON-NLS-1$
-                    addArg(option);
+                    probe.addArg(option);
                 } else if (option.startsWith("-f")) { //$NON-NLS-1$
-                    addArg(option);
+                    probe.addArg(option);
                 } else if (option.startsWith("-m")) { //$NON-NLS-1$
-                    addArg(option);
+                    probe.addArg(option);
                 } else if (option.startsWith("--sysroot")) { //$NON-NLS-1$
-                    addArg(option);
+                    probe.addArg(option);
+                } else if (option.equals("-o")) { //$NON-NLS-1$
+                    output = line.getToken();
+                } else if (option.equals("-c")) { //$NON-NLS-1$
+                    probe.mCompile = true;
                 }
             }
         }
+        return output;
     }
 
-    private void addArg(String arg) {
-        if (!mArguments.contains(arg))
-            mArguments.add(arg);
-    }
-
-    private void checkIncludes(InputStream in) {
+    private boolean checkIncludes(InputStream in, List<String> includes) {
         try {
-            List<String> includes = new ArrayList<String>();
             boolean inIncludes1 = false;
             boolean inIncludes2 = false;
             BufferedReader reader = new BufferedReader(new InputStreamReader(in));
             String line = reader.readLine();
+            boolean complete = false;
             while (line != null) {
                 if (!inIncludes1) {
                     if (line.equals("#include \"...\" search starts here:")) //$NON-NLS-1$
@@ -274,25 +491,26 @@ public class NdkDiscoveryUpdater {
                             includes.add(line.trim());
                     } else {
                         if (line.equals("End of search list.")) { //$NON-NLS-1$
-                            mPathInfo.setIncludePaths(includes);
-                        } else {
+                            complete = true;
+                        } else if (!complete) {
                             includes.add(line.trim());
                         }
                     }
                 }
                 line = reader.readLine();
             }
+            return complete;
         } catch (IOException e) {
             Activator.log(e);
+            return false;
         }
     }
 
-    private void checkDefines(InputStream in) {
+    private Map<String, String> checkDefines(InputStream in) {
         try {
             Map<String, String> defines = new HashMap<String, String>();
             BufferedReader reader = new BufferedReader(new InputStreamReader(in));
-            String line = reader.readLine();
-            while (line != null) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
                 if (line.startsWith("#define")) { //$NON-NLS-1$
                     Line l = new Line(line, 7);
                     String var = l.getToken();
@@ -303,11 +521,11 @@ public class NdkDiscoveryUpdater {
                         value = ""; //$NON-NLS-1$
                     defines.put(var, value);
                 }
-                line = reader.readLine();
             }
-            mPathInfo.setSymbols(defines);
+            return defines;
         } catch (IOException e) {
             Activator.log(e);
+            return null;
         }
     }
 
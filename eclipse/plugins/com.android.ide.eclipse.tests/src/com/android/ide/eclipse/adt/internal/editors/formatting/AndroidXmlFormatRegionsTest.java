@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.eclipse.adt.internal.editors.formatting;
+
+import com.android.ide.eclipse.adt.internal.editors.layout.gle2.DomUtilities;
+import com.android.ide.eclipse.adt.internal.preferences.AdtPrefs;
+
+import org.eclipse.jface.preference.PreferenceStore;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.wst.sse.core.internal.provisional.IStructuredModel;
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings({
+        "javadoc", "restriction"
+})
+public class AndroidXmlFormatRegionsTest extends TestCase {
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        PreferenceStore store = new PreferenceStore();
+        AdtPrefs.init(store);
+        AdtPrefs prefs = AdtPrefs.getPrefs();
+        prefs.initializeStoreWithDefaults(store);
+        prefs.loadValues(null);
+    }
+
+    public void testFormatRegions() throws Exception {
+        String formatted = formatAll(createStrings(100));
+
+        // Insert an element, and edit an attribute and a text value elsewhere
+        IStructuredModel model = createModel(formatted);
+        IStructuredDocument document = model.getStructuredDocument();
+        EditedRegionTracker tracker = new EditedRegionTracker(document);
+        edit(document, 10);
+        edit(document, 80);
+        List<IRegion> regions = tracker.getRegions();
+        assertNotNull(regions);
+        assertEquals(4, regions.size());
+
+        // Formatting only the edited elements gives the same result as formatting
+        // the whole document
+        String expected = formatAll(document.get());
+        AndroidXmlFormattingStrategy.formatRegions(model, regions);
+        assertEquals(expected, document.get());
+        tracker.dispose();
+    }
+
+    /**
+     * Compares the time taken to format a large resource file after a small edit with
+     * a full format and with an incremental format of the edited regions. This is slow,
+     * so it only runs when the run_benchmarks system property is set.
+     */
+    public void testFormatRegionsBenchmark() throws Exception {
+        if (System.getProperty("run_benchmarks") == null) {
+            return;
+        }
+        for (int strings : new int[] { 100, 1000, 5000 }) {
+            String formatted = formatAll(createStrings(strings));
+            int iterations = 10;
+            long full = 0;
+            long incremental = 0;
+            for (int i = 0; i < iterations + 1; i++) {
+                IStructuredModel model = createModel(formatted);
+                IStructuredDocument document = model.getStructuredDocument();
+                edit(document, strings / 2);
+                long start = System.nanoTime();
+                TextEdit edit = AndroidXmlFormattingStrategy.format(model, 0,
+                        document.getLength(), false);
+                edit.apply(document);
+                if (i > 0) { // The first iteration is a warm up
+                    full += System.nanoTime() - start;
+                }
+
+                model = createModel(formatted);
+                document = model.getStructuredDocument();
+                EditedRegionTracker tracker = new EditedRegionTracker(document);
+                edit(document, strings / 2);
+                start = System.nanoTime();
+                AndroidXmlFormattingStrategy.formatRegions(model, tracker.getRegions());
+                if (i > 0) {
+                    incremental += System.nanoTime() - start;
+                }
+                tracker.dispose();
+            }
+
+            if (strings >= 1000) {
+                assertTrue(String.format(
+                        "%1$d strings: %2$.2f ms full, %3$.2f ms incremental",
+                        strings, full / 1e6 / iterations, incremental / 1e6 / iterations),
+                        incremental < full);
+            }
+        }
+    }
+
+    // ---- Test support code below ----
+
+    private static String createStrings(int count) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<resources>\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("<string name=\"string").append(i).append("\">Value ").append(i)
+                    .append("</string>\n");
+        }
+        sb.append("</resources>\n");
+        return sb.toString();
+    }
+
+    /**
+     * Inserts an unformatted element before the given string element, and makes an
+     * unformatted edit of the attribute and text of the following one
+     */
+    private static void edit(IStructuredDocument document, int index) throws Exception {
+        String text = document.get();
+        int offset = text.indexOf("<string name=\"string" + index + "\"");
+        assertTrue(offset != -1);
+        document.replace(offset, 0, "<string    name=\"new" + index + "\"   >New</string>\n");
+
+        text = document.get();
+        String target = "<string name=\"string" + (index + 1) + "\">";
+        offset = text.indexOf(target);
+        assertTrue(offset != -1);
+        document.replace(offset, target.length(),
+                "<string\n  name=\"renamed" + index + "\" >  Renamed");
+    }
+
+    private static IStructuredModel createModel(String xml) {
+        IStructuredModel model = DomUtilities.createStructuredModel(xml);
+        assertNotNull(model);
+        model.setBaseLocation("res/values/strings.xml");
+        return model;
+    }
+
+    private static String formatAll(String xml) throws Exception {
+        IStructuredModel model = createModel(xml);
+        IStructuredDocument document = model.getStructuredDocument();
+        TextEdit edit = AndroidXmlFormattingStrategy.format(model, 0, document.getLength(),
+                false);
+        edit.apply(document);
+        return document.get();
+    }
+}
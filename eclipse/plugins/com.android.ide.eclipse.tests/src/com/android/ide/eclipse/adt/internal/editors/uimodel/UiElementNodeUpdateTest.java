@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.uimodel;
+
+import com.android.ide.eclipse.adt.internal.editors.descriptors.ElementDescriptor;
+import com.android.ide.eclipse.adt.internal.editors.layout.gle2.DomUtilities;
+import com.android.ide.eclipse.adt.internal.editors.uimodel.IUiUpdateListener.UiUpdateState;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class UiElementNodeUpdateTest extends TestCase {
+    private final List<String> mUpdates = new ArrayList<String>();
+
+    private final IUiUpdateListener mListener = new IUiUpdateListener() {
+        @Override
+        public void uiElementNodeUpdated(UiElementNode node, UiUpdateState state) {
+            mUpdates.add(node.getDescriptor().getXmlName() + ":" + state);
+        }
+    };
+
+    public void testUpdate() throws Exception {
+        ElementDescriptor appDesc = new ElementDescriptor("application",
+                new ElementDescriptor[] {
+                    new ElementDescriptor("provider"),
+                    new ElementDescriptor("activity")
+                });
+        ElementDescriptor manifestDesc = new ElementDescriptor("manifest",
+                new ElementDescriptor[] {
+                    appDesc,
+                    new ElementDescriptor("permission")
+                });
+        Document document = DomUtilities.parseStructuredDocument(
+                "<manifest><application><activity/><activity/></application>"
+                + "<permission/></manifest>");
+        assertNotNull(document);
+        Element root = document.getDocumentElement();
+
+        UiElementNode manifest = new UiElementNode(manifestDesc);
+        assertTrue(manifest.updateFromXmlNode(root));
+        UiElementNode application = manifest.getUiChildren().get(0);
+        assertEquals(2, application.getUiChildren().size());
+        UiElementNode activity1 = application.getUiChildren().get(0);
+        UiElementNode activity2 = application.getUiChildren().get(1);
+        for (UiElementNode node : Arrays.asList(manifest, application, activity1,
+                activity2)) {
+            node.addUpdateListener(mListener);
+        }
+
+        // No changes
+        assertFalse(manifest.updateFromXmlNode(root));
+        assertEquals(Arrays.asList(), mUpdates);
+
+        // Attribute change: only the changed node and the root are notified
+        Element activity2Element = (Element) activity2.getXmlNode();
+        activity2Element.setAttribute("name", "Foo");
+        assertFalse(manifest.updateFromXmlNode(root));
+        assertEquals(Arrays.asList("activity:ATTR_UPDATED", "manifest:ATTR_UPDATED"),
+                mUpdates);
+        assertEquals(1, activity2.getUnknownUiAttributes().size());
+        assertEquals("Foo",
+                activity2.getUnknownUiAttributes().iterator().next().getCurrentValue());
+        mUpdates.clear();
+
+        // Structure change: the parents are notified
+        Element applicationElement = (Element) application.getXmlNode();
+        applicationElement.insertBefore(document.createElement("provider"),
+                activity2Element);
+        assertTrue(manifest.updateFromXmlNode(root));
+        assertEquals(Arrays.asList("application:CHILDREN_CHANGED",
+                "manifest:CHILDREN_CHANGED"), mUpdates);
+        assertEquals(3, application.getUiChildren().size());
+        assertEquals("provider",
+                application.getUiChildren().get(1).getDescriptor().getXmlName());
+        assertSame(activity1, application.getUiChildren().get(0));
+        assertSame(activity2, application.getUiChildren().get(2));
+        mUpdates.clear();
+
+        // Removed element
+        root.removeChild(manifest.getUiChildren().get(1).getXmlNode());
+        assertTrue(manifest.updateFromXmlNode(root));
+        assertEquals(Arrays.asList("manifest:DELETED", "manifest:CHILDREN_CHANGED"),
+                mUpdates);
+        assertEquals(1, manifest.getUiChildren().size());
+        mUpdates.clear();
+
+        // Changes to removed elements are ignored
+        root.removeChild(applicationElement);
+        ((Element) activity1.getXmlNode()).setAttribute("name", "Bar");
+        assertTrue(manifest.updateFromXmlNode(root));
+        assertEquals(Arrays.asList("manifest:DELETED", "manifest:CHILDREN_CHANGED"),
+                mUpdates);
+        assertTrue(activity1.getUnknownUiAttributes().isEmpty());
+        assertEquals(0, manifest.getUiChildren().size());
+        mUpdates.clear();
+
+        // No longer tracked
+        manifest.stopTrackingXmlChanges();
+        root.appendChild(document.createElement("permission"));
+        assertTrue(manifest.updateFromXmlNode(root));
+        assertEquals(1, manifest.getUiChildren().size());
+    }
+}
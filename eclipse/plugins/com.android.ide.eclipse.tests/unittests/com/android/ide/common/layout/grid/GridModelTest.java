@@ -21,6 +21,7 @@ import static com.android.SdkConstants.ATTR_LAYOUT_COLUMN;
 import static com.android.SdkConstants.ATTR_LAYOUT_COLUMN_SPAN;
 import static com.android.SdkConstants.ATTR_LAYOUT_ROW;
 import static com.android.SdkConstants.FQCN_BUTTON;
+import static com.android.SdkConstants.FQCN_SPACE;
 
 import com.android.ide.common.api.INode;
 import com.android.ide.common.api.Rect;
@@ -28,8 +29,11 @@ import com.android.ide.common.layout.LayoutTestBase;
 import com.android.ide.common.layout.TestNode;
 import com.android.ide.common.layout.grid.GridModel.ViewData;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 
 @SuppressWarnings("javadoc")
@@ -63,6 +67,70 @@ public class GridModelTest extends LayoutTestBase {
         assertEquals(2, model.actualRowCount);
     }
 
+    public void testIntersectsRow() {
+        TestNode targetNode = TestNode.create("android.widget.GridLayout").id("@+id/GridLayout1")
+                .bounds(new Rect(0, 0, 1000, 1000)).set(ANDROID_URI, ATTR_COLUMN_COUNT, "20");
+        Random random = new Random(42);
+        for (int i = 0; i < 400; i++) {
+            TestNode child = TestNode.create(i % 10 == 0 ? FQCN_SPACE : FQCN_BUTTON)
+                    .bounds(new Rect(random.nextInt(950), random.nextInt(950),
+                            random.nextInt(50), random.nextInt(i % 50 == 1 ? 500 : 50)));
+            targetNode.add(child);
+        }
+
+        GridModel model = GridModel.get(new LayoutTestBase.TestRulesEngine(targetNode.getFqcn()),
+                targetNode, null);
+        for (int i = 0; i < 500; i++) {
+            int y1 = random.nextInt(1100) - 50;
+            int y2 = y1 + random.nextInt(60);
+            List<INode> expected = new ArrayList<INode>();
+            for (INode child : targetNode.getChildren()) {
+                Rect bounds = child.getBounds();
+                if (!GridModel.isSpace(child.getFqcn())
+                        && bounds.y2() >= y1 && bounds.y <= y2) {
+                    expected.add(child);
+                }
+            }
+            assertEquals(expected, model.getIntersectsRow(y1, y2));
+        }
+    }
+
+    public void testIndexAfterEdit() {
+        TestNode targetNode = TestNode.create("android.widget.GridLayout").id("@+id/GridLayout1")
+                .bounds(new Rect(0, 0, 240, 480)).set(ANDROID_URI, ATTR_COLUMN_COUNT, "2");
+        TestNode b1 = TestNode.create(FQCN_BUTTON).id("@+id/Button1")
+                .bounds(new Rect(0, 0, 100, 40));
+        TestNode b2 = TestNode.create(FQCN_BUTTON).id("@+id/Button2")
+                .bounds(new Rect(100, 0, 100, 40));
+        TestNode b3 = TestNode.create(FQCN_BUTTON).id("@+id/Button3")
+                .bounds(new Rect(0, 40, 100, 40));
+        targetNode.add(b1);
+        targetNode.add(b2);
+        targetNode.add(b3);
+
+        GridModel model = GridModel.get(new LayoutTestBase.TestRulesEngine(targetNode.getFqcn()),
+                targetNode, null);
+        assertEquals(1, model.getView(b3).row);
+        assertEquals(Arrays.<INode>asList(b1, b2), model.getIntersectsRow(10, 20));
+
+        // Views added and moved by an edit are found without reloading the model
+        INode spacer = model.addRow(Collections.<INode>emptyList());
+        assertNotNull(spacer);
+        ViewData spacerView = model.getView(spacer);
+        assertNotNull(spacerView);
+        assertSame(spacer, spacerView.node);
+
+        model.splitRow(1, false, 10, 50);
+        assertEquals(2, model.getView(b3).row);
+        assertEquals(0, model.getView(b1).row);
+        assertEquals(Arrays.<INode>asList(b1, b2), model.getIntersectsRow(10, 20));
+
+        model.removeRows(Collections.singletonList(b3));
+        assertNull(model.getView(b3));
+        assertSame(b2, model.getView(b2).node);
+        assertTrue(model.getIntersectsRow(50, 60).isEmpty());
+    }
+
     public void testSplitColumn() {
         TestNode targetNode = TestNode.create("android.widget.GridLayout").id("@+id/GridLayout1")
                 .bounds(new Rect(0, 0, 240, 480)).set(ANDROID_URI, ATTR_COLUMN_COUNT, "3");
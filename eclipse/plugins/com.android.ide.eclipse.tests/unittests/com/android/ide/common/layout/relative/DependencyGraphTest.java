@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.common.layout.relative;
+
+import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_ID;
+import static com.android.SdkConstants.ATTR_LAYOUT_ALIGN_PARENT_LEFT;
+import static com.android.SdkConstants.ATTR_LAYOUT_BELOW;
+import static com.android.SdkConstants.ATTR_LAYOUT_TO_RIGHT_OF;
+import static com.android.SdkConstants.VALUE_TRUE;
+
+import com.android.ide.common.api.INode;
+import com.android.ide.common.layout.TestNode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class DependencyGraphTest extends TestCase {
+    private TestNode mLayout;
+    private TestNode mButton1;
+    private TestNode mButton2;
+    private TestNode mButton3;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mButton1 = TestNode.create("android.widget.Button").id("@+id/button1")
+                .set(ANDROID_URI, ATTR_LAYOUT_ALIGN_PARENT_LEFT, VALUE_TRUE);
+        mButton2 = TestNode.create("android.widget.Button").id("@+id/button2")
+                .set(ANDROID_URI, ATTR_LAYOUT_TO_RIGHT_OF, "@+id/button1");
+        mButton3 = TestNode.create("android.widget.Button");
+        mLayout = TestNode.create("android.widget.RelativeLayout").id("@+id/layout")
+                .add(mButton1, mButton2, mButton3);
+    }
+
+    public void testGraph() {
+        DependencyGraph graph = new DependencyGraph(mLayout);
+        assertEquals(nodes(mButton1, mButton2), dependsOn(graph, mButton1, true));
+        assertEquals(nodes(mButton1), dependsOn(graph, mButton1, false));
+        assertEquals(nodes(mButton2), dependsOn(graph, mButton2, true));
+    }
+
+    public void testSetAttribute() {
+        DependencyGraph graph = new DependencyGraph(mLayout);
+
+        // Remove a constraint
+        set(graph, mButton2, ATTR_LAYOUT_TO_RIGHT_OF, null);
+        assertEquals(nodes(mButton1), dependsOn(graph, mButton1, true));
+        assertTrue(graph.getView(mButton1).dependedOnBy.isEmpty());
+
+        // Replace a constraint
+        set(graph, mButton1, ATTR_LAYOUT_TO_RIGHT_OF, "@+id/button2");
+        assertEquals(nodes(mButton2, mButton1), dependsOn(graph, mButton2, true));
+        set(graph, mButton1, ATTR_LAYOUT_TO_RIGHT_OF, "@+id/button1");
+        assertEquals(nodes(mButton2), dependsOn(graph, mButton2, true));
+
+        // A constraint on a view which was given an id after the graph was created
+        mButton3.setAttribute(ANDROID_URI, ATTR_ID, "@+id/button3");
+        set(graph, mButton1, ATTR_LAYOUT_BELOW, "@+id/button3");
+        assertEquals(nodes(mButton3, mButton1), dependsOn(graph, mButton3, false));
+        assertEquals(nodes(mButton3), dependsOn(graph, mButton3, true));
+        assertEquals("button3", graph.getView("button3").id);
+    }
+
+    public void testAddView() {
+        DependencyGraph graph = new DependencyGraph(mLayout);
+        INode added = mLayout.insertChildAt("android.widget.Button", -1);
+        added.setAttribute(ANDROID_URI, ATTR_ID, "@+id/button4");
+        set(graph, added, ATTR_LAYOUT_BELOW, "@+id/button2");
+
+        assertNotNull(graph.getView(added));
+        assertSame(graph.getView(added), graph.getView("button4"));
+        assertEquals(nodes(mButton2, added), dependsOn(graph, mButton2, false));
+
+        // The path is computed from the incrementally added constraint
+        List<DependencyGraph.Constraint> path = graph.getPathTo(added, mButton2, false);
+        assertNotNull(path);
+        assertEquals(1, path.size());
+    }
+
+    // ---- Test support code below ----
+
+    private static void set(DependencyGraph graph, INode node, String name, String value) {
+        node.setAttribute(ANDROID_URI, name, value);
+        graph.setAttribute(node, name, value);
+    }
+
+    private static Set<INode> dependsOn(DependencyGraph graph, INode node, boolean vertical) {
+        return graph.dependsOn(Collections.singletonList(node), vertical);
+    }
+
+    private static Set<INode> nodes(INode... nodes) {
+        return new HashSet<INode>(Arrays.asList(nodes));
+    }
+}
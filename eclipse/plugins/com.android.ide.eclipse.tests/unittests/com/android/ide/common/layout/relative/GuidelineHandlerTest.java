@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.common.layout.relative;
+
+import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_ID;
+import static com.android.ide.common.api.MarginType.NO_MARGIN;
+import static com.android.ide.common.api.MarginType.WITHOUT_MARGIN;
+import static com.android.ide.common.api.MarginType.WITH_MARGIN;
+import static com.android.ide.common.api.SegmentType.BASELINE;
+import static com.android.ide.common.api.SegmentType.BOTTOM;
+import static com.android.ide.common.api.SegmentType.CENTER_HORIZONTAL;
+import static com.android.ide.common.api.SegmentType.CENTER_VERTICAL;
+import static com.android.ide.common.api.SegmentType.LEFT;
+import static com.android.ide.common.api.SegmentType.RIGHT;
+import static com.android.ide.common.api.SegmentType.TOP;
+import static java.lang.Math.abs;
+
+import com.android.annotations.NonNull;
+import com.android.ide.common.api.INode;
+import com.android.ide.common.api.Margins;
+import com.android.ide.common.api.Rect;
+import com.android.ide.common.api.Segment;
+import com.android.ide.common.layout.LayoutTestBase.TestRulesEngine;
+import com.android.ide.common.layout.TestNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class GuidelineHandlerTest extends TestCase {
+    public void testLowerBound() {
+        int[] positions = new int[] { 1, 3, 3, 7 };
+        assertEquals(0, EdgeIndex.lowerBound(positions, 0));
+        assertEquals(0, EdgeIndex.lowerBound(positions, 1));
+        assertEquals(1, EdgeIndex.lowerBound(positions, 2));
+        assertEquals(1, EdgeIndex.lowerBound(positions, 3));
+        assertEquals(3, EdgeIndex.lowerBound(positions, 4));
+        assertEquals(4, EdgeIndex.lowerBound(positions, 8));
+        assertEquals(0, EdgeIndex.lowerBound(new int[0], 5));
+    }
+
+    public void testClosest() {
+        TestNode layout = new MarginNode(0, 0, 0, 0).bounds(new Rect(0, 0, 1000, 1000));
+        layout.add(new MarginNode(0, 0, 0, 0).bounds(new Rect(100, 100, 50, 50)));
+        layout.add(new MarginNode(10, 10, 10, 10).bounds(new Rect(300, 100, 50, 50)));
+        TestHandler handler = new TestHandler(layout);
+
+        // Closest to the right edge of the first child
+        Segment dragged = new Segment(155, 0, 10, null, null, LEFT, NO_MARGIN);
+        List<Match> matches = handler.findClosest(dragged, handler.mVerticalEdges);
+        assertEquals(1, matches.size());
+        assertSame(RIGHT, matches.get(0).edge.edgeType);
+        assertEquals(-5, matches.get(0).delta);
+
+        // Far away edges only match in one direction: for a left edge, to the left
+        dragged = new Segment(700, 0, 10, null, null, LEFT, NO_MARGIN);
+        matches = handler.findClosest(dragged, handler.mVerticalEdges);
+        assertEquals(1, matches.size());
+        assertEquals(360, matches.get(0).edge.at);
+        assertSame(WITH_MARGIN, matches.get(0).edge.marginType);
+    }
+
+    public void testSameAsLinearScan() {
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 20; iteration++) {
+            TestHandler handler = new TestHandler(createLayout(random, 50));
+            for (int i = 0; i < 200; i++) {
+                int x = random.nextInt(1200) - 100;
+                int y = random.nextInt(1200) - 100;
+                int w = random.nextInt(200);
+                int h = random.nextInt(200);
+
+                // Same sequence of queries as MoveHandler#updateMove
+                List<Match> horizontal = new ArrayList<Match>();
+                List<Match> expectedHorizontal = new ArrayList<Match>();
+                List<Match> vertical = new ArrayList<Match>();
+                List<Match> expectedVertical = new ArrayList<Match>();
+                check(handler, new Segment(y, x, x + w, null, null, TOP, NO_MARGIN),
+                        handler.mHorizontalEdges, horizontal, expectedHorizontal);
+                check(handler, new Segment(y + h, x, x + w, null, null, BOTTOM, NO_MARGIN),
+                        handler.mHorizontalEdges, horizontal, expectedHorizontal);
+                check(handler, new Segment(x, y, y + h, null, null, LEFT, NO_MARGIN),
+                        handler.mVerticalEdges, vertical, expectedVertical);
+                check(handler, new Segment(x + w, y, y + h, null, null, RIGHT, NO_MARGIN),
+                        handler.mVerticalEdges, vertical, expectedVertical);
+                check(handler, new Segment(x + w / 2, y, y + h, null, null, CENTER_VERTICAL,
+                        NO_MARGIN), handler.mCenterVertEdges, vertical, expectedVertical);
+                check(handler, new Segment(y + h / 2, x, x + w, null, null,
+                        CENTER_HORIZONTAL, NO_MARGIN), handler.mCenterHorizEdges,
+                        horizontal, expectedHorizontal);
+                check(handler, new Segment(y + h / 3, x, x + w, null, null, BASELINE,
+                        NO_MARGIN), handler.mHorizontalEdges, horizontal, expectedHorizontal);
+            }
+        }
+    }
+
+    /**
+     * Compares the time taken to compute the matches for a drag position using the
+     * edge index and using a linear scan, for increasing numbers of children. This is
+     * slow, so it only runs when the run_benchmarks system property is set.
+     */
+    public void testDragFeedbackBenchmark() {
+        if (System.getProperty("run_benchmarks") == null) {
+            return;
+        }
+        Random random = new Random(42);
+        for (int children : new int[] { 10, 100, 1000, 5000 }) {
+            TestHandler handler = new TestHandler(createLayout(random, children));
+            int moves = 2000;
+            int[] positions = new int[2 * moves];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = random.nextInt(1000);
+            }
+
+            // Warm up, and build the indices
+            simulateMoves(handler, positions, true);
+            simulateMoves(handler, positions, false);
+
+            long start = System.nanoTime();
+            simulateMoves(handler, positions, true);
+            long indexed = System.nanoTime() - start;
+            start = System.nanoTime();
+            simulateMoves(handler, positions, false);
+            long linear = System.nanoTime() - start;
+
+            if (children >= 1000) {
+                assertTrue(String.format(
+                        "%1$d children: %2$.2f us/move indexed, %3$.2f us/move linear",
+                        children, indexed / 1000.0 / moves, linear / 1000.0 / moves),
+                        indexed < linear);
+            }
+        }
+    }
+
+    // ---- Test support code below ----
+
+    private static void simulateMoves(TestHandler handler, int[] positions, boolean indexed) {
+        for (int i = 0; i < positions.length; i += 2) {
+            int x = positions[i];
+            int y = positions[i + 1];
+            List<Match> horizontal = new ArrayList<Match>();
+            List<Match> vertical = new ArrayList<Match>();
+            Segment top = new Segment(y, x, x + 50, null, null, TOP, NO_MARGIN);
+            Segment bottom = new Segment(y + 50, x, x + 50, null, null, BOTTOM, NO_MARGIN);
+            Segment left = new Segment(x, y, y + 50, null, null, LEFT, NO_MARGIN);
+            Segment right = new Segment(x + 50, y, y + 50, null, null, RIGHT, NO_MARGIN);
+            if (indexed) {
+                handler.addClosest(top, handler.mHorizontalEdges, horizontal);
+                handler.addClosest(bottom, handler.mHorizontalEdges, horizontal);
+                handler.addClosest(left, handler.mVerticalEdges, vertical);
+                handler.addClosest(right, handler.mVerticalEdges, vertical);
+            } else {
+                handler.linearClosest(top, handler.mHorizontalEdges, horizontal);
+                handler.linearClosest(bottom, handler.mHorizontalEdges, horizontal);
+                handler.linearClosest(left, handler.mVerticalEdges, vertical);
+                handler.linearClosest(right, handler.mVerticalEdges, vertical);
+            }
+        }
+    }
+
+    private static void check(TestHandler handler, Segment dragged, List<Segment> edges,
+            List<Match> actual, List<Match> expected) {
+        handler.addClosest(dragged, edges, actual);
+        handler.linearClosest(dragged, edges, expected);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i).edge, actual.get(i).edge);
+            assertSame(expected.get(i).with, actual.get(i).with);
+            assertEquals(expected.get(i).delta, actual.get(i).delta);
+            assertSame(expected.get(i).type, actual.get(i).type);
+        }
+    }
+
+    private static TestNode createLayout(Random random, int children) {
+        TestNode layout = new MarginNode(0, 0, 0, 0).bounds(new Rect(0, 0, 1000, 1000));
+        for (int i = 0; i < children; i++) {
+            // Use a coarse grid such that many edges are at the same positions
+            int x = 10 * random.nextInt(90);
+            int y = 10 * random.nextInt(90);
+            int w = 10 * (1 + random.nextInt(20));
+            int h = 10 * (1 + random.nextInt(20));
+            int margin = random.nextBoolean() ? 0 : 10;
+            TestNode child = new MarginNode(margin, 0, margin, 0).bounds(new Rect(x, y, w, h));
+            child.id("@+id/child" + i);
+            layout.add(child);
+        }
+
+        return layout;
+    }
+
+    private static class MarginNode extends TestNode {
+        private final Margins mMargins;
+
+        MarginNode(int left, int right, int top, int bottom) {
+            super("android.widget.Button");
+            mMargins = new Margins(left, right, top, bottom);
+        }
+
+        @Override
+        public @NonNull Margins getMargins() {
+            return mMargins;
+        }
+    }
+
+    private static class TestHandler extends GuidelineHandler {
+        TestHandler(INode layout) {
+            super(layout, new TestRulesEngine("android.widget.RelativeLayout"));
+
+            for (INode child : layout.getChildren()) {
+                String id = child.getStringAttr(ANDROID_URI, ATTR_ID);
+                addBounds(child, id, true, true);
+                addCenter(child, id, true, true);
+                // Add baselines, which only match other baselines
+                Rect b = child.getBounds();
+                mHorizontalEdges.add(new Segment(b.y + b.h / 3, b.x, b.x2(), child, id,
+                        BASELINE, NO_MARGIN));
+            }
+            addBounds(layout, null, true, true);
+            addCenter(layout, null, true, true);
+        }
+
+        /** The original linear scan through all the edges */
+        void linearClosest(Segment draggedEdge, List<Segment> edges, List<Match> closest) {
+            int at = draggedEdge.at;
+            int closestDelta = closest.size() > 0 ? closest.get(0).delta : Integer.MAX_VALUE;
+            int closestDistance = abs(closestDelta);
+            for (Segment edge : edges) {
+                int delta = edge.at - at;
+                int distance = abs(delta);
+                if (distance > closestDistance) {
+                    continue;
+                }
+
+                if (!isEdgeTypeCompatible(edge.edgeType, draggedEdge.edgeType, delta)) {
+                    continue;
+                }
+
+                boolean withParent = edge.node == layout;
+                ConstraintType type = ConstraintType.forMatch(withParent,
+                        draggedEdge.edgeType, edge.edgeType);
+                if (type == null) {
+                    continue;
+                }
+
+                if (type.relativeToMargin && edge.marginType == WITHOUT_MARGIN) {
+                    continue;
+                } else if (!type.relativeToMargin && edge.marginType == WITH_MARGIN) {
+                    continue;
+                }
+
+                Match match = new Match(this, edge, draggedEdge, type, delta);
+
+                if (distance < closestDistance) {
+                    closest.clear();
+                    closestDistance = distance;
+                    closestDelta = delta;
+                } else if (delta * closestDelta < 0) {
+                    continue;
+                }
+                closest.add(match);
+            }
+        }
+    }
+}
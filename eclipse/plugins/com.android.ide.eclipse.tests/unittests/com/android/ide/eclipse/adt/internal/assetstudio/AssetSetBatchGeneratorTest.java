@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.assetstudio;
+
+import com.android.ide.eclipse.adt.internal.assetstudio.CreateAssetSetWizardState.SourceType;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class AssetSetBatchGeneratorTest extends TestCase {
+    public void testSourcePyramid() throws Exception {
+        // A 2000x1000 image with a 1600x800 opaque area in the middle
+        BufferedImage image = new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(200, 100, 1600, 800);
+        g.dispose();
+        File file = File.createTempFile("source", ".png");
+        try {
+            ImageIO.write(image, "PNG", file);
+            CreateAssetSetWizardState values = new CreateAssetSetWizardState();
+
+            BufferedImage source = values.getCachedSourceImage(file.getPath(), false, 512);
+            assertEquals(1000, source.getWidth());
+            assertEquals(500, source.getHeight());
+            // Cached
+            assertSame(source, values.getCachedSourceImage(file.getPath(), false, 512));
+            // Shared with copies
+            assertSame(source, values.copy().getCachedSourceImage(file.getPath(), false, 512));
+
+            // The trimmed pyramid is built from the trimmed full size image
+            source = values.getCachedSourceImage(file.getPath(), true, 512);
+            assertEquals(800, source.getWidth());
+            assertEquals(400, source.getHeight());
+
+            // Never larger than the source
+            source = values.getCachedSourceImage(file.getPath(), false, 5000);
+            assertEquals(2000, source.getWidth());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testUnreadableImage() throws Exception {
+        File file = File.createTempFile("source", ".png");
+        File dir = File.createTempFile("icons", "");
+        dir.delete();
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write("Not an image".getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+
+            CreateAssetSetWizardState values = new CreateAssetSetWizardState();
+            try {
+                values.getCachedSourceImage(file.getPath(), true, 512);
+                fail("Expected an IOException");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(file.getPath()));
+            }
+
+            // The batch reports the input instead of generating it
+            values.type = AssetType.LAUNCHER;
+            values.sourceType = SourceType.IMAGE;
+            values.imagePath = file;
+            values.outputName = "ic_launcher";
+            values.minSdk = 8;
+            AssetSetBatchGenerator generator = new AssetSetBatchGenerator();
+            generator.add(values, dir);
+            assertTrue(generator.generate(null).isEmpty());
+            assertEquals(1, generator.getErrors().size());
+            assertFalse(dir.exists());
+        } finally {
+            file.delete();
+            deleteAll(dir);
+        }
+    }
+
+    public void testBatch() throws Exception {
+        File dir = File.createTempFile("icons", "");
+        dir.delete();
+        try {
+            CreateAssetSetWizardState launcher = new CreateAssetSetWizardState();
+            launcher.type = AssetType.LAUNCHER;
+            launcher.sourceType = SourceType.TEXT;
+            launcher.text = "A";
+            launcher.outputName = "ic_launcher";
+            launcher.minSdk = 8;
+            CreateAssetSetWizardState notification = launcher.copy();
+            notification.type = AssetType.NOTIFICATION;
+            notification.outputName = "ic_notification";
+
+            AssetSetBatchGenerator generator = new AssetSetBatchGenerator();
+            generator.add(launcher, new File(dir, "app1"));
+            generator.add(notification, new File(dir, "app2"));
+            List<File> files = generator.generate(null);
+
+            assertFalse(files.isEmpty());
+            assertTrue(generator.getErrors().isEmpty());
+            boolean foundLauncher = false;
+            boolean foundNotification = false;
+            for (File file : files) {
+                assertTrue(file.getPath(), file.isFile());
+                assertNotNull(ImageIO.read(file));
+                String path = file.getPath();
+                if (path.startsWith(new File(dir, "app1").getPath())) {
+                    foundLauncher |= file.getName().equals("ic_launcher.png");
+                } else {
+                    assertTrue(path, path.startsWith(new File(dir, "app2").getPath()));
+                    foundNotification |= file.getName().equals("ic_notification.png");
+                }
+            }
+            assertTrue(foundLauncher);
+            assertTrue(foundNotification);
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    private static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+}
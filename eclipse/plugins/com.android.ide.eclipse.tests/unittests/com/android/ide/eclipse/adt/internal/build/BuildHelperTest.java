@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.build;
+
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class BuildHelperTest extends TestCase {
+    public void testClassOnlyJar() throws Exception {
+        File dir = Files.createTempDir();
+        try {
+            File jar = new File(dir, "classes.jar");
+            writeJar(jar, "META-INF/", "META-INF/MANIFEST.MF", "com/", "com/foo/Bar.class",
+                    "com/foo/Bar$1.class");
+            assertTrue(BuildHelper.isClassOnlyJar(jar));
+
+            File resources = new File(dir, "resources.jar");
+            writeJar(resources, "com/foo/Bar.class", "com/foo/strings.properties");
+            assertFalse(BuildHelper.isClassOnlyJar(resources));
+
+            File nativeLibs = new File(dir, "native.jar");
+            writeJar(nativeLibs, "com/foo/Bar.class", "lib/armeabi/libfoo.so");
+            assertFalse(BuildHelper.isClassOnlyJar(nativeLibs));
+
+            // An updated jar is scanned again
+            writeJar(jar, "com/foo/Bar.class", "com/foo/data.bin");
+            jar.setLastModified(jar.lastModified() + 2000);
+            assertFalse(BuildHelper.isClassOnlyJar(jar));
+
+            File broken = new File(dir, "broken.jar");
+            Files.write(new byte[] { 1, 2, 3 }, broken);
+            assertFalse(BuildHelper.isClassOnlyJar(broken));
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    private static void writeJar(File jar, String... names) throws Exception {
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            for (String name : names) {
+                out.putNextEntry(new ZipEntry(name));
+                if (!name.endsWith("/")) {
+                    out.write(name.getBytes("UTF-8"));
+                }
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
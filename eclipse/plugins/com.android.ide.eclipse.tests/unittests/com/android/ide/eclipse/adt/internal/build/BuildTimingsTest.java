@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.build;
+
+import com.android.ide.eclipse.adt.internal.build.BuildTimings.Stage;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class BuildTimingsTest extends TestCase {
+    public void testReport() {
+        long[] timings = new long[Stage.values().length];
+        assertNull(BuildTimings.getReport(null));
+        assertNull(BuildTimings.getReport(timings));
+
+        timings[Stage.AIDL.ordinal()] = 12 * 1000000L;
+        timings[Stage.DEX.ordinal()] = 1500 * 1000000L + 999999L;
+        assertEquals("Build times: aidl 12ms, dx 1500ms (total 1512ms)",
+                BuildTimings.getReport(timings));
+    }
+}
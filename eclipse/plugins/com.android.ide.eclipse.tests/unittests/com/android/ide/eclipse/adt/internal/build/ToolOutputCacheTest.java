@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.build;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class ToolOutputCacheTest extends TestCase {
+    private File mTempDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mTempDir = Files.createTempDir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAll(mTempDir);
+        super.tearDown();
+    }
+
+    public void testKey() throws Exception {
+        File input = new File(mTempDir, "IFoo.aidl");
+        Files.write("interface IFoo {}", input, Charsets.UTF_8);
+        String key = ToolOutputCache.computeKey(Arrays.asList("aidl", "-Isrc"),
+                Collections.singletonList(input));
+        assertEquals(key, ToolOutputCache.computeKey(Arrays.asList("aidl", "-Isrc"),
+                Collections.singletonList(input)));
+
+        // The command line and the file content are part of the key
+        assertFalse(key.equals(ToolOutputCache.computeKey(Arrays.asList("aidl", "-Ilib"),
+                Collections.singletonList(input))));
+        assertFalse(key.equals(ToolOutputCache.computeKey(Arrays.asList("aidl-Isrc"),
+                Collections.singletonList(input))));
+        Files.write("interface IFoo { void foo(); }", input, Charsets.UTF_8);
+        assertFalse(key.equals(ToolOutputCache.computeKey(Arrays.asList("aidl", "-Isrc"),
+                Collections.singletonList(input))));
+
+        // A missing file differs from an empty one
+        File missing = new File(mTempDir, "Missing.aidl");
+        String missingKey = ToolOutputCache.computeKey(Arrays.asList("aidl"),
+                Collections.singletonList(missing));
+        Files.write("", missing, Charsets.UTF_8);
+        assertFalse(missingKey.equals(ToolOutputCache.computeKey(Arrays.asList("aidl"),
+                Collections.singletonList(missing))));
+    }
+
+    public void testStoreRestore() throws Exception {
+        ToolOutputCache cache = new ToolOutputCache(new File(mTempDir, "cache"), 100);
+        File output = new File(mTempDir, "gen" + File.separator + "IFoo.java");
+        assertFalse(cache.restore("key1", output));
+
+        output.getParentFile().mkdirs();
+        Files.write("class IFoo {}", output, Charsets.UTF_8);
+        cache.store("key1", output);
+        output.delete();
+        output.getParentFile().delete();
+        assertTrue(cache.restore("key1", output));
+        assertEquals("class IFoo {}", Files.toString(output, Charsets.UTF_8));
+
+        // A run which generated no output, such as for a parcelable
+        File none = new File(mTempDir, "Parcel.java");
+        cache.store("key2", none);
+        Files.write("stale", none, Charsets.UTF_8);
+        assertTrue(cache.restore("key2", none));
+        assertFalse(none.exists());
+    }
+
+    public void testTrim() throws Exception {
+        File dir = new File(mTempDir, "cache");
+        ToolOutputCache cache = new ToolOutputCache(dir, 8);
+        File output = new File(mTempDir, "Out.java");
+        Files.write("out", output, Charsets.UTF_8);
+        for (int i = 0; i < 10; i++) {
+            cache.store("key" + i, output);
+            new File(dir, "key" + i + ".out").setLastModified(1000000L * (i + 1));
+        }
+        cache.trim();
+
+        // Back to three quarters of the maximum, keeping the most recently used
+        assertEquals(6, dir.listFiles().length);
+        assertFalse(cache.restore("key3", output));
+        assertTrue(cache.restore("key4", output));
+        assertTrue(cache.restore("key9", output));
+    }
+
+    private static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+}
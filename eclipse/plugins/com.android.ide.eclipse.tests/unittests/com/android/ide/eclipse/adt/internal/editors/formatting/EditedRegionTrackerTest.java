@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.eclipse.adt.internal.editors.formatting;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.Region;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class EditedRegionTrackerTest extends TestCase {
+    public void testRegions() throws Exception {
+        Document document = new Document("0123456789abcdefghij");
+        EditedRegionTracker tracker = new EditedRegionTracker(document);
+        assertEquals(Collections.emptyList(), tracker.getRegions());
+
+        document.replace(2, 0, "XX");
+        document.replace(10, 3, "Y");
+        // Shifts the earlier regions
+        document.replace(0, 0, "ZZZ");
+        assertEquals("ZZZ01XX234567Ybcdefghij", document.get());
+        assertEquals(Arrays.asList(new Region(0, 3), new Region(5, 2), new Region(13, 1)),
+                tracker.getRegions());
+
+        // Removing the text between two regions merges them
+        document.replace(3, 2, "");
+        assertEquals(Arrays.asList(new Region(0, 5), new Region(11, 1)),
+                tracker.getRegions());
+
+        tracker.reset();
+        assertEquals(Collections.emptyList(), tracker.getRegions());
+        document.replace(1, 1, "W");
+        assertEquals(Arrays.asList(new Region(1, 1)), tracker.getRegions());
+
+        tracker.dispose();
+    }
+
+    public void testOverflow() throws Exception {
+        char[] text = new char[5000];
+        Arrays.fill(text, ' ');
+        Document document = new Document(new String(text));
+        EditedRegionTracker tracker = new EditedRegionTracker(document);
+
+        // Repeated edits in the same place are merged
+        for (int i = 0; i < 1000; i++) {
+            document.replace(100 + i, 0, "x");
+        }
+        assertEquals(Arrays.asList(new Region(100, 1000)), tracker.getRegions());
+
+        // Too many separate edits
+        for (int i = 0; i < 1000; i++) {
+            document.replace(2000 + 2 * i, 1, "y");
+        }
+        assertNull(tracker.getRegions());
+
+        tracker.reset();
+        assertEquals(Collections.emptyList(), tracker.getRegions());
+        tracker.dispose();
+    }
+
+    public void testSharedDocument() throws Exception {
+        // Two editors on the same document each track their own edits
+        Document document = new Document("0123456789");
+        EditedRegionTracker tracker1 = new EditedRegionTracker(document);
+        EditedRegionTracker tracker2 = new EditedRegionTracker(document);
+        document.replace(2, 1, "X");
+        assertEquals(Arrays.asList(new Region(2, 1)), tracker1.getRegions());
+        assertEquals(Arrays.asList(new Region(2, 1)), tracker2.getRegions());
+
+        // Resetting one tracker (after its editor saves) leaves the other alone
+        tracker1.reset();
+        document.replace(5, 1, "Y");
+        assertEquals(Arrays.asList(new Region(5, 1)), tracker1.getRegions());
+        assertEquals(Arrays.asList(new Region(2, 1), new Region(5, 1)),
+                tracker2.getRegions());
+
+        // Disposing one tracker (when its editor closes) leaves the other working
+        tracker1.dispose();
+        document.replace(8, 1, "Z");
+        assertEquals(Arrays.asList(new Region(2, 1), new Region(5, 1), new Region(8, 1)),
+                tracker2.getRegions());
+        tracker2.dispose();
+    }
+}
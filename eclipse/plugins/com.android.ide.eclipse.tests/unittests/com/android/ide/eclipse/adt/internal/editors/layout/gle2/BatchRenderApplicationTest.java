@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
+
+import com.android.ide.eclipse.adt.internal.editors.layout.configuration.Locale;
+
+import java.io.File;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class BatchRenderApplicationTest extends TestCase {
+    public void testParseArguments() {
+        BatchRenderApplication application = new BatchRenderApplication();
+        assertTrue(application.parseArguments(new String[] {
+                "-project", "MyApp", "-out", "/tmp/shots",
+                "-device", "Nexus 7", "-device", "Nexus 4",
+                "-state", "landscape", "-locale", "en", "-locale", "fr-rCA",
+                "-theme", "@style/AppTheme", "-layout", "main,detail", "-threads", "4"
+        }));
+        assertEquals("MyApp", application.mProjectName);
+        assertEquals(new File("/tmp/shots"), application.mOutputFolder);
+        assertEquals(Arrays.asList("Nexus 7", "Nexus 4"), application.mDevices);
+        assertEquals("landscape", application.mState);
+        assertEquals(Arrays.asList("en", "fr-rCA"), application.mLocales);
+        assertEquals(Arrays.asList("@style/AppTheme"), application.mThemes);
+        assertEquals(Arrays.asList("main", "detail"), application.mLayouts);
+        assertEquals(4, application.mThreads);
+    }
+
+    public void testParseArgumentsErrors() {
+        // No arguments
+        assertFalse(new BatchRenderApplication().parseArguments(null));
+        assertFalse(new BatchRenderApplication().parseArguments(new String[0]));
+        // Missing required options
+        assertFalse(new BatchRenderApplication().parseArguments(new String[] {
+                "-project", "MyApp", "-out", "/tmp/shots"
+        }));
+        assertFalse(new BatchRenderApplication().parseArguments(new String[] {
+                "-project", "MyApp", "-device", "Nexus 7"
+        }));
+        assertFalse(new BatchRenderApplication().parseArguments(new String[] {
+                "-out", "/tmp/shots", "-device", "Nexus 7"
+        }));
+        // Missing value
+        assertFalse(new BatchRenderApplication().parseArguments(new String[] {
+                "-project", "MyApp", "-out", "/tmp/shots", "-device", "Nexus 7", "-theme"
+        }));
+        // Unknown option
+        assertFalse(new BatchRenderApplication().parseArguments(new String[] {
+                "-project", "MyApp", "-out", "/tmp/shots", "-device", "Nexus 7", "-foo", "bar"
+        }));
+        // Invalid thread counts
+        assertFalse(new BatchRenderApplication().parseArguments(new String[] {
+                "-project", "MyApp", "-out", "/tmp/shots", "-device", "Nexus 7", "-threads", "x"
+        }));
+        assertFalse(new BatchRenderApplication().parseArguments(new String[] {
+                "-project", "MyApp", "-out", "/tmp/shots", "-device", "Nexus 7", "-threads", "0"
+        }));
+    }
+
+    public void testParseLocale() {
+        assertNull(BatchRenderApplication.parseLocale(null));
+
+        Locale locale = BatchRenderApplication.parseLocale("fr");
+        assertTrue(locale.hasLanguage());
+        assertFalse(locale.hasRegion());
+        assertEquals("fr", locale.language.getValue());
+
+        locale = BatchRenderApplication.parseLocale("fr-rCA");
+        assertTrue(locale.hasLanguage());
+        assertTrue(locale.hasRegion());
+        assertEquals("fr", locale.language.getValue());
+        assertEquals("CA", locale.region.getValue());
+    }
+}
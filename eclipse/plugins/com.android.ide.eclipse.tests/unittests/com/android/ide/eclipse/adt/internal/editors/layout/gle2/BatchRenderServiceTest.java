@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
+
+import com.android.ide.common.resources.configuration.LanguageQualifier;
+import com.android.ide.common.resources.configuration.RegionQualifier;
+import com.android.ide.eclipse.adt.internal.editors.layout.configuration.Locale;
+import com.android.ide.eclipse.adt.internal.editors.layout.gle2.BatchRenderService.RenderConfiguration;
+import com.android.sdklib.devices.Device;
+import com.android.sdklib.devices.DeviceManager;
+import com.android.sdklib.devices.State;
+import com.android.utils.StdLogger;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class BatchRenderServiceTest extends TestCase {
+    public void testConfigurationName() {
+        DeviceManager deviceManager = DeviceManager.createInstance(
+                null /*osSdkPath*/, new StdLogger(StdLogger.Level.VERBOSE));
+        List<Device> devices = deviceManager.getDevices(DeviceManager.DEFAULT_DEVICES);
+        assertTrue(devices.size() > 0);
+        Device device = devices.get(0);
+        State state = device.getDefaultState();
+        String prefix = device.getName().replaceAll("[^A-Za-z0-9._-]", "_") + '-'
+                + state.getName().replaceAll("[^A-Za-z0-9._-]", "_") + '-';
+
+        RenderConfiguration configuration = new RenderConfiguration(device, state,
+                Locale.ANY, "@android:style/Theme.Holo");
+        assertEquals(prefix + "Theme.Holo", configuration.getName());
+
+        configuration = new RenderConfiguration(device, state,
+                Locale.create(new LanguageQualifier("fr")), "@style/AppTheme");
+        assertEquals(prefix + "fr-AppTheme", configuration.getName());
+
+        configuration = new RenderConfiguration(device, state,
+                Locale.create(new LanguageQualifier("fr"), new RegionQualifier("CA")),
+                "@style/My Theme");
+        assertEquals(prefix + "fr-rCA-My_Theme", configuration.getName());
+        // Names are only made of file name characters
+        assertTrue(configuration.getName().matches("[A-Za-z0-9._-]+"));
+
+        assertEquals(configuration, new RenderConfiguration(device, state,
+                Locale.create(new LanguageQualifier("fr"), new RegionQualifier("CA")),
+                "@style/My Theme"));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
+
+import static com.android.ide.eclipse.adt.internal.editors.layout.gle2.CanvasViewInfoTest.createNode;
+
+import com.android.ide.common.rendering.api.ViewInfo;
+import com.android.ide.eclipse.adt.internal.editors.layout.uimodel.UiViewElementNode;
+
+import org.eclipse.swt.graphics.Rectangle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class CanvasViewInfoIndexTest extends TestCase {
+    public void testFindAt() throws Exception {
+        UiViewElementNode rootNode = createNode("android.widget.LinearLayout", true);
+        ViewInfo root = new ViewInfo("LinearLayout", rootNode, 0, 0, 100, 100);
+        UiViewElementNode frameNode = createNode(rootNode, "android.widget.FrameLayout", true);
+        ViewInfo frame = new ViewInfo("FrameLayout", frameNode, 0, 0, 100, 50);
+        UiViewElementNode button1Node = createNode(frameNode, "android.widget.Button", false);
+        ViewInfo button1 = new ViewInfo("Button", button1Node, 0, 0, 60, 40);
+        UiViewElementNode button2Node = createNode(frameNode, "android.widget.Button", false);
+        ViewInfo button2 = new ViewInfo("Button", button2Node, 20, 0, 80, 40);
+        frame.setChildren(Arrays.asList(button1, button2));
+        UiViewElementNode button3Node = createNode(rootNode, "android.widget.Button", false);
+        // Extends outside of its parent
+        ViewInfo button3 = new ViewInfo("Button", button3Node, 0, 50, 150, 100);
+        root.setChildren(Arrays.asList(frame, button3));
+
+        CanvasViewInfo rootView = CanvasViewInfo.create(root, true).getFirst();
+        CanvasViewInfo frameView = rootView.getChildren().get(0);
+        CanvasViewInfo button1View = frameView.getChildren().get(0);
+        CanvasViewInfo button2View = frameView.getChildren().get(1);
+        CanvasViewInfo button3View = rootView.getChildren().get(1);
+
+        CanvasViewInfoIndex index = new CanvasViewInfoIndex(rootView);
+        assertSame(button1View, index.findAt(10, 10));
+        // The sibling on top wins
+        assertSame(button2View, index.findAt(30, 10));
+        assertSame(frameView, index.findAt(90, 45));
+        assertSame(button3View, index.findAt(50, 60));
+        // Outside of the root, so not reachable
+        assertNull(index.findAt(120, 60));
+        assertNull(index.findAt(-1, 10));
+
+        // Children before parents
+        assertEquals(Arrays.asList(button1View, button2View, frameView, rootView),
+                index.findWithin(new Rectangle(10, 10, 20, 5)));
+        assertEquals(Arrays.asList(button3View, rootView),
+                index.findWithin(new Rectangle(50, 60, 100, 10)));
+        assertEquals(Arrays.asList(),
+                index.findWithin(new Rectangle(110, 60, 100, 10)));
+    }
+
+    public void testRandomHierarchy() throws Exception {
+        Random random = new Random(42);
+        UiViewElementNode rootNode = createNode("android.widget.FrameLayout", true);
+        ViewInfo root = new ViewInfo("FrameLayout", rootNode, 0, 0, 500, 1000);
+        addChildren(random, root, rootNode, 500, 1000, 0);
+
+        CanvasViewInfo rootView = CanvasViewInfo.create(root, true).getFirst();
+        CanvasViewInfoIndex index = new CanvasViewInfoIndex(rootView);
+        for (int i = 0; i < 500; i++) {
+            int x = random.nextInt(600) - 50;
+            int y = random.nextInt(1100) - 50;
+            assertSame(findAt(rootView, x, y), index.findAt(x, y));
+
+            Rectangle rectangle = new Rectangle(x, y, random.nextInt(200),
+                    random.nextInt(200));
+            List<CanvasViewInfo> expected = new ArrayList<CanvasViewInfo>();
+            addWithin(rootView, rectangle, expected);
+            assertEquals(expected, index.findWithin(rectangle));
+        }
+    }
+
+    private static void addChildren(Random random, ViewInfo parent,
+            UiViewElementNode parentNode, int width, int height, int depth) {
+        List<ViewInfo> children = new ArrayList<ViewInfo>();
+        int count = depth < 3 ? 2 + random.nextInt(8) : 0;
+        for (int i = 0; i < count; i++) {
+            // Children may overlap each other, and extend outside of their parent
+            int left = random.nextInt(width) - width / 10;
+            int top = random.nextInt(height) - height / 10;
+            int right = left + 1 + random.nextInt(width / 2 + 1);
+            int bottom = top + 1 + random.nextInt(height / 2 + 1);
+            UiViewElementNode node =
+                    createNode(parentNode, "android.widget.FrameLayout", true);
+            ViewInfo child = new ViewInfo("FrameLayout", node, left, top, right, bottom);
+            addChildren(random, child, node, right - left, bottom - top, depth + 1);
+            children.add(child);
+        }
+        parent.setChildren(children);
+    }
+
+    /** The recursive search the index replaces */
+    private static CanvasViewInfo findAt(CanvasViewInfo info, int x, int y) {
+        if (!info.getSelectionRect().contains(x, y)) {
+            return null;
+        }
+        List<CanvasViewInfo> children = info.getChildren();
+        for (int i = children.size() - 1; i >= 0; i--) {
+            CanvasViewInfo match = findAt(children.get(i), x, y);
+            if (match != null) {
+                return match;
+            }
+        }
+        return info;
+    }
+
+    /** The recursive search the index replaces */
+    private static void addWithin(CanvasViewInfo info, Rectangle rectangle,
+            List<CanvasViewInfo> infos) {
+        if (rectangle.intersects(info.getSelectionRect())) {
+            for (CanvasViewInfo child : info.getChildren()) {
+                addWithin(child, rectangle, infos);
+            }
+            infos.add(info);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
+
+import static com.android.ide.eclipse.adt.internal.editors.layout.gle2.ImageDiff.TILE_SIZE;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class ImageDiffTest extends TestCase {
+    private static final int WIDTH = 3 * TILE_SIZE + 10;
+    private static final int HEIGHT = 2 * TILE_SIZE + 5;
+
+    public void testUpdate() {
+        ImageDiff diff = new ImageDiff();
+        int[] pixels = new int[WIDTH * HEIGHT];
+        assertNull(diff.update(pixels, WIDTH, HEIGHT));
+        assertEquals(Collections.emptyList(), diff.update(pixels, WIDTH, HEIGHT));
+
+        // Adjacent tiles in a row are merged
+        pixels[TILE_SIZE + 1] = 1;
+        pixels[(TILE_SIZE + 3) * WIDTH + 2 * TILE_SIZE + 1] = 1;
+        pixels[(TILE_SIZE + 3) * WIDTH + 3 * TILE_SIZE + 1] = 1;
+        List<Rectangle> regions = diff.update(pixels, WIDTH, HEIGHT);
+        assertEquals(Arrays.asList(
+                new Rectangle(TILE_SIZE, 0, TILE_SIZE, TILE_SIZE),
+                new Rectangle(2 * TILE_SIZE, TILE_SIZE, TILE_SIZE + 10, TILE_SIZE)),
+                regions);
+
+        // The changes were recorded
+        assertEquals(Collections.emptyList(), diff.update(pixels, WIDTH, HEIGHT));
+
+        // Last row of tiles, last pixel
+        pixels[WIDTH * HEIGHT - 1] = 2;
+        assertEquals(Collections.singletonList(
+                new Rectangle(3 * TILE_SIZE, 2 * TILE_SIZE, 10, 5)),
+                diff.update(pixels, WIDTH, HEIGHT));
+    }
+
+    public void testReset() {
+        ImageDiff diff = new ImageDiff();
+        int[] pixels = new int[WIDTH * HEIGHT];
+        assertNull(diff.update(pixels, WIDTH, HEIGHT));
+        diff.reset();
+        assertNull(diff.update(pixels, WIDTH, HEIGHT));
+
+        // A different size is a different image
+        assertNull(diff.update(pixels, WIDTH - 1, HEIGHT));
+    }
+}
@@ -357,6 +357,99 @@ public class ImageUtilsTest extends TestCase {
 
     }
 
+    public void testScaleImageTransparent() throws Exception {
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = image.getGraphics();
+        g.setColor(new Color(0xFFFF0000, true));
+        g.fillRect(0, 0, 100, 200);
+        g.dispose();
+
+        // The left half is opaque red and the right half is transparent; the color of
+        // the transparent pixels should not bleed into the averaged edge
+        BufferedImage scaled = ImageUtils.scale(image, 0.125, 0.125);
+        assertEquals(25, scaled.getWidth());
+        assertEquals(25, scaled.getHeight());
+        assertEquals(BufferedImage.TYPE_INT_ARGB, scaled.getType());
+        assertEquals(0xFFFF0000, scaled.getRGB(0, 0));
+        assertEquals(0, scaled.getRGB(24, 24));
+        int edge = scaled.getRGB(12, 12);
+        assertEquals(0xFF0000, edge & 0xFFFFFF);
+    }
+
+    public void testScaleLargeImage() throws Exception {
+        BufferedImage image = new BufferedImage(2000, 2000, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        g.setColor(new Color(0xFF00FF00, true));
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.setColor(new Color(0xFFFF0000, true));
+        g.fillRect(500, 500, 1000, 1000);
+        g.dispose();
+
+        BufferedImage scaled = ImageUtils.scale(image, 0.1, 0.1, 10, 20);
+        assertEquals(210, scaled.getWidth());
+        assertEquals(220, scaled.getHeight());
+        assertEquals(0xFF00FF00, scaled.getRGB(0, 0));
+        assertEquals(0xFF00FF00, scaled.getRGB(199, 199));
+        assertEquals(0xFFFF0000, scaled.getRGB(100, 100));
+    }
+
+    public void testScaleRegion() throws Exception {
+        BufferedImage image = new BufferedImage(200, 150, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 200, 150);
+        g.setColor(Color.BLUE);
+        g.fillOval(20, 20, 100, 80);
+        g.dispose();
+        BufferedImage scaled = ImageUtils.scale(image, 0.75, 0.75);
+
+        // Change part of the image, and only scale that part again
+        g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(60, 40, 30, 30);
+        g.dispose();
+        ImageUtils.scaleRegion(image, scaled, 0.75, 0.75, 43, 28, 27, 27);
+
+        BufferedImage expected = ImageUtils.scale(image, 0.75, 0.75);
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), scaled.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testCreateDropShadow() throws Exception {
+        BufferedImage image = new BufferedImage(50, 50, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = image.getGraphics();
+        g.setColor(new Color(0xFF0000FF, true));
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.dispose();
+
+        BufferedImage shadowed = ImageUtils.createDropShadow(image, 4, 0.7f, 0);
+        assertEquals(58, shadowed.getWidth());
+        assertEquals(58, shadowed.getHeight());
+        assertEquals(0xFF0000FF, shadowed.getRGB(0, 0));
+        assertEquals(0xFF0000FF, shadowed.getRGB(49, 49));
+        assertEquals(0, shadowed.getRGB(57, 0) >>> 24);
+        int shadow = shadowed.getRGB(52, 52);
+        assertEquals(0, shadow & 0xFFFFFF);
+        assertTrue(shadow >>> 24 > 0);
+
+        // Same shape, different content: should reuse the same shadow
+        g = image.getGraphics();
+        g.setColor(new Color(0xFFFF0000, true));
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.dispose();
+        BufferedImage shadowed2 = ImageUtils.createDropShadow(image, 4, 0.7f, 0);
+        assertEquals(0xFFFF0000, shadowed2.getRGB(0, 0));
+        assertEquals(shadow, shadowed2.getRGB(52, 52));
+
+        // Modifying the returned image should not affect later shadows
+        shadowed2.setRGB(52, 52, 0xFFFFFFFF);
+        BufferedImage shadowed3 = ImageUtils.createDropShadow(image, 4, 0.7f, 0);
+        assertEquals(shadow, shadowed3.getRGB(52, 52));
+    }
+
     public void testCreateColoredImage() throws Exception {
         BufferedImage image = ImageUtils.createColoredImage(120, 110, new RGB(0xFE, 0xFD, 0xFC));
         assertEquals(120, image.getWidth());
@@ -15,9 +15,15 @@
  */
 package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import junit.framework.TestCase;
 
@@ -124,5 +130,41 @@ public class IncludeFinderTest extends TestCase {
         assertEquals(Arrays.asList("myfragment"), includes);
     }
 
+    public void testFindIncludesMalformed() throws Exception {
+        // Includes before a parse error should still be found
+        String xml =
+            "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+            "    <include layout=\"@layout/layout1\" />\n" +
+            "    <include layout=\"@android:layout/simple_list_item_1\" />\n" +
+            "    <Button android:text=\"unterminated\n";
+        assertEquals(Arrays.asList("layout1"), IncludeFinder.findIncludes(xml));
+    }
+
+    public void testIndexRoundTrip() throws Exception {
+        Map<String, List<String>> includes = new HashMap<String, List<String>>();
+        Map<String, Long> stamps = new HashMap<String, Long>();
+        includes.put("foo", Arrays.asList("bar", "baz"));
+        includes.put("layout-land/foo", Collections.<String>emptyList());
+        stamps.put("foo", 42L);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        IncludeFinder.writeIndex(out, includes, stamps);
+        out.close();
 
+        Map<String, List<String>> readIncludes = new HashMap<String, List<String>>();
+        Map<String, Long> readStamps = new HashMap<String, Long>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertTrue(IncludeFinder.readIndex(in, readIncludes, readStamps));
+        assertEquals(includes, readIncludes);
+        assertEquals(Long.valueOf(42L), readStamps.get("foo"));
+        assertEquals(Long.valueOf(-1L), readStamps.get("layout-land/foo"));
+    }
+
+    public void testIndexBadFormat() throws Exception {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                new byte[] { 0, 0, 0, 1, 0, 0, 0, 1 }));
+        assertFalse(IncludeFinder.readIndex(in, new HashMap<String, List<String>>(),
+                new HashMap<String, Long>()));
+    }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
+
+import com.android.ide.common.rendering.api.MergeCookie;
+import com.android.ide.common.rendering.api.ViewInfo;
+import com.android.ide.eclipse.adt.internal.editors.layout.uimodel.UiViewElementNode;
+import com.android.ide.eclipse.adt.internal.editors.uimodel.UiElementNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class RenderSessionUpdaterTest extends TestCase {
+    public void testOneViewPerChild() throws Exception {
+        UiViewElementNode rootNode = CanvasViewInfoTest.createNode("android.widget.LinearLayout",
+                true);
+        ViewInfo root = new ViewInfo("LinearLayout", rootNode, 0, 0, 100, 100);
+        UiViewElementNode child1Node = CanvasViewInfoTest.createNode(rootNode,
+                "android.widget.Button", false);
+        ViewInfo child1 = new ViewInfo("Button", child1Node, 0, 0, 50, 20);
+        UiViewElementNode child2Node = CanvasViewInfoTest.createNode(rootNode,
+                "android.widget.TextView", false);
+        ViewInfo child2 = new ViewInfo("TextView", child2Node, 0, 20, 50, 40);
+        root.setChildren(Arrays.asList(child1, child2));
+        CanvasViewInfo rootView = CanvasViewInfo.create(root, true).getFirst();
+
+        assertTrue(RenderSessionUpdater.hasOneViewPerChild(rootNode.getUiChildren(),
+                rootView));
+
+        // The children must be in the order of the views
+        List<UiElementNode> reversed = new ArrayList<UiElementNode>(rootNode.getUiChildren());
+        Collections.reverse(reversed);
+        assertFalse(RenderSessionUpdater.hasOneViewPerChild(reversed, rootView));
+
+        // No view for the parent
+        assertFalse(RenderSessionUpdater.hasOneViewPerChild(rootNode.getUiChildren(), null));
+    }
+
+    public void testIncludedMerge() throws Exception {
+        // An include of a layout with a <merge> root renders several views
+        UiViewElementNode rootNode = CanvasViewInfoTest.createNode("android.widget.LinearLayout",
+                true);
+        ViewInfo root = new ViewInfo("LinearLayout", rootNode, 0, 0, 100, 100);
+        UiViewElementNode child1Node = CanvasViewInfoTest.createNode(rootNode,
+                "android.widget.Button", false);
+        ViewInfo child1 = new ViewInfo("Button", child1Node, 0, 0, 50, 20);
+        UiViewElementNode includeNode = CanvasViewInfoTest.createNode(rootNode, "include", false);
+        MergeCookie cookie = new MergeCookie(includeNode);
+        ViewInfo merged1 = new ViewInfo("CheckBox", cookie, 0, 20, 50, 40);
+        ViewInfo merged2 = new ViewInfo("CheckBox", cookie, 0, 40, 50, 60);
+        root.setChildren(Arrays.asList(child1, merged1, merged2));
+        CanvasViewInfo rootView = CanvasViewInfo.create(root, true).getFirst();
+        assertEquals(3, rootView.getChildren().size());
+
+        assertFalse(RenderSessionUpdater.hasOneViewPerChild(rootNode.getUiChildren(),
+                rootView));
+    }
+
+    public void testInclude() throws Exception {
+        // Even an include with a single view is not removed or moved in place
+        UiViewElementNode rootNode = CanvasViewInfoTest.createNode("android.widget.LinearLayout",
+                true);
+        ViewInfo root = new ViewInfo("LinearLayout", rootNode, 0, 0, 100, 100);
+        UiViewElementNode child1Node = CanvasViewInfoTest.createNode(rootNode,
+                "android.widget.Button", false);
+        ViewInfo child1 = new ViewInfo("Button", child1Node, 0, 0, 50, 20);
+        UiViewElementNode includeNode = CanvasViewInfoTest.createNode(rootNode, "include", false);
+        ViewInfo included = new ViewInfo("RelativeLayout", includeNode, 0, 20, 50, 40);
+        root.setChildren(Arrays.asList(child1, included));
+        CanvasViewInfo rootView = CanvasViewInfo.create(root, true).getFirst();
+        assertEquals(2, rootView.getChildren().size());
+
+        assertFalse(RenderSessionUpdater.hasOneViewPerChild(rootNode.getUiChildren(),
+                rootView));
+    }
+
+    public void testFragment() throws Exception {
+        UiViewElementNode rootNode = CanvasViewInfoTest.createNode("android.widget.LinearLayout",
+                true);
+        ViewInfo root = new ViewInfo("LinearLayout", rootNode, 0, 0, 100, 100);
+        UiViewElementNode fragmentNode = CanvasViewInfoTest.createNode(rootNode, "fragment", false);
+        ViewInfo fragment = new ViewInfo("ListView", fragmentNode, 0, 0, 50, 20);
+        UiViewElementNode child2Node = CanvasViewInfoTest.createNode(rootNode,
+                "android.widget.Button", false);
+        ViewInfo child2 = new ViewInfo("Button", child2Node, 0, 20, 50, 40);
+        root.setChildren(Arrays.asList(fragment, child2));
+        CanvasViewInfo rootView = CanvasViewInfo.create(root, true).getFirst();
+        assertEquals(2, rootView.getChildren().size());
+
+        assertFalse(RenderSessionUpdater.hasOneViewPerChild(rootNode.getUiChildren(),
+                rootView));
+    }
+
+    public void testNonViewChild() throws Exception {
+        // <requestFocus/> is a child element without a view
+        UiViewElementNode rootNode = CanvasViewInfoTest.createNode("android.widget.LinearLayout",
+                true);
+        ViewInfo root = new ViewInfo("LinearLayout", rootNode, 0, 0, 100, 100);
+        UiViewElementNode child1Node = CanvasViewInfoTest.createNode(rootNode,
+                "android.widget.Button", false);
+        ViewInfo child1 = new ViewInfo("Button", child1Node, 0, 0, 50, 20);
+        CanvasViewInfoTest.createNode(rootNode, "requestFocus", false);
+        UiViewElementNode child3Node = CanvasViewInfoTest.createNode(rootNode,
+                "android.widget.TextView", false);
+        ViewInfo child3 = new ViewInfo("TextView", child3Node, 0, 20, 50, 40);
+        root.setChildren(Arrays.asList(child1, child3));
+        CanvasViewInfo rootView = CanvasViewInfo.create(root, true).getFirst();
+        assertEquals(2, rootView.getChildren().size());
+
+        assertFalse(RenderSessionUpdater.hasOneViewPerChild(rootNode.getUiChildren(),
+                rootView));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.adt.internal.editors.layout.gle2;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class RenderStatisticsTest extends TestCase {
+    public void testPercentiles() {
+        RenderStatistics statistics = new RenderStatistics();
+        assertEquals(0, statistics.getCount());
+        assertEquals(-1, statistics.getPercentile(50));
+        assertEquals("No renders", statistics.toString());
+
+        for (int i = 10; i >= 1; i--) {
+            statistics.record(i * 10);
+        }
+        assertEquals(10, statistics.getCount());
+        assertEquals(10, statistics.getPercentile(0));
+        assertEquals(50, statistics.getPercentile(50));
+        assertEquals(90, statistics.getPercentile(90));
+        assertEquals(100, statistics.getPercentile(100));
+        assertEquals("Render latency over 10 renders: 50%: 50ms, 90%: 90ms, 99%: 100ms, "
+                + "max: 100ms", statistics.toString());
+    }
+
+    public void testOnlyRecentRenders() {
+        RenderStatistics statistics = new RenderStatistics();
+        for (int i = 0; i < 100; i++) {
+            statistics.record(1000);
+        }
+        for (int i = 0; i < 100; i++) {
+            statistics.record(5);
+        }
+        assertEquals(100, statistics.getCount());
+        assertEquals(5, statistics.getPercentile(100));
+    }
+}
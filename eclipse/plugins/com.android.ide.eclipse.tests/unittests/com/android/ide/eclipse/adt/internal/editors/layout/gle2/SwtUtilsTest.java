@@ -199,6 +199,40 @@ public class SwtUtilsTest extends TestCase {
         }
     }
 
+    public void testCopyRegionAlpha() throws Exception {
+        BufferedImage inImage = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = inImage.getGraphics();
+        g.setColor(new Color(0xAA112233, true));
+        g.fillRect(0, 0, inImage.getWidth(), inImage.getHeight());
+        g.dispose();
+        ImageData data = SwtUtils.convertToSwtData(inImage, true, -1);
+
+        // Replace a region with more transparent pixels: they must not be blended
+        // with the old pixels, and their alpha must be updated too
+        inImage.setRGB(2, 3, 0x40445566);
+        inImage.setRGB(3, 4, 0x00000000);
+        SwtUtils.copyRegion(data, inImage, 2, 3, 2, 2);
+
+        assertEquals(0x445566, data.getPixel(2, 3));
+        assertEquals(0x40, data.getAlpha(2, 3));
+        assertEquals(0, data.getPixel(3, 4));
+        assertEquals(0, data.getAlpha(3, 4));
+        assertEquals(0x112233, data.getPixel(3, 3));
+        assertEquals(0xAA, data.getAlpha(3, 3));
+        // Outside of the region
+        inImage.setRGB(5, 5, 0xFFFFFFFF);
+        assertEquals(0x112233, data.getPixel(5, 5));
+        assertEquals(0xAA, data.getAlpha(5, 5));
+
+        // Images with the red and blue channels in the other order
+        BufferedImage bgrImage = new BufferedImage(10, 10, BufferedImage.TYPE_4BYTE_ABGR);
+        ImageData bgrData = SwtUtils.convertToSwtData(bgrImage, true, -1);
+        bgrImage.setRGB(1, 1, 0x80112233);
+        SwtUtils.copyRegion(bgrData, bgrImage, 1, 1, 1, 1);
+        assertEquals(new RGB(0x11, 0x22, 0x33), bgrData.palette.getRGB(bgrData.getPixel(1, 1)));
+        assertEquals(0x80, bgrData.getAlpha(1, 1));
+    }
+
     public final void testSetRectangle() {
         Rect r = new Rect(1, 2, 3, 4);
         Rectangle r2 = new Rectangle(3, 4, 20, 30);
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.eclipse.adt.internal.refactorings.core;
+
+import com.android.ide.eclipse.adt.internal.refactorings.core.RenameResourceParticipant.ReferenceFilter;
+import com.android.resources.ResourceFolderType;
+import com.android.resources.ResourceType;
+import com.google.common.base.Charsets;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class RenameResourceParticipantFilterTest extends TestCase {
+    private static final ReferenceFilter STRING_FILTER = new ReferenceFilter(
+            ResourceType.STRING, "app_name", true, "@string/app_name", null, null);
+
+    private static final ReferenceFilter ID_FILTER = new ReferenceFilter(
+            ResourceType.ID, "button", false, "@+id/button", null, null);
+
+    public void testIndexOf() throws Exception {
+        byte[] data = "abcabd".getBytes(Charsets.UTF_8);
+        assertEquals(0, RenameResourceParticipant.indexOf(data, "abc".getBytes()));
+        assertEquals(3, RenameResourceParticipant.indexOf(data, "abd".getBytes()));
+        assertEquals(-1, RenameResourceParticipant.indexOf(data, "abe".getBytes()));
+        assertEquals(-1, RenameResourceParticipant.indexOf(data, "abcabdx".getBytes()));
+    }
+
+    public void testPrefilter() throws Exception {
+        String xml = "<LinearLayout><TextView android:text=\"@string/other\"/></LinearLayout>";
+        assertFalse(STRING_FILTER.mayReference(xml.getBytes(Charsets.UTF_8), Charsets.UTF_8,
+                ResourceFolderType.LAYOUT));
+
+        // Mentions the name, but not as a reference
+        xml = "<LinearLayout><TextView android:text=\"app_name\"/></LinearLayout>";
+        assertFalse(STRING_FILTER.mayReference(xml.getBytes(Charsets.UTF_8), Charsets.UTF_8,
+                ResourceFolderType.LAYOUT));
+
+        xml = "<LinearLayout><TextView android:text=\"@string/app_name\"/></LinearLayout>";
+        assertTrue(STRING_FILTER.mayReference(xml.getBytes(Charsets.UTF_16), Charsets.UTF_16,
+                ResourceFolderType.LAYOUT));
+    }
+
+    public void testAttributes() throws Exception {
+        assertTrue(STRING_FILTER.containsMatch(
+                "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+                "  <TextView android:text=\"@string/app_name\"/>\n" +
+                "</LinearLayout>", ResourceFolderType.LAYOUT));
+        assertFalse(STRING_FILTER.containsMatch(
+                "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+                "  <TextView android:text=\"@string/app_name2\"/>\n" +
+                "</LinearLayout>", ResourceFolderType.LAYOUT));
+    }
+
+    public void testIdsWithoutReferences() throws Exception {
+        // Without updating references, only the id definition itself is renamed
+        assertTrue(ID_FILTER.containsMatch(
+                "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+                "  <Button android:id=\"@+id/button\"/>\n" +
+                "</LinearLayout>", ResourceFolderType.LAYOUT));
+        assertFalse(ID_FILTER.containsMatch(
+                "<RelativeLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+                "  <Button android:layout_below=\"@+id/button\"/>\n" +
+                "</RelativeLayout>", ResourceFolderType.LAYOUT));
+        assertTrue(ID_FILTER.containsMatch(
+                "<RelativeLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                "    xmlns:tools=\"http://schemas.android.com/tools\">\n" +
+                "  <Button tools:layout=\"@+id/button\"/>\n" +
+                "</RelativeLayout>", ResourceFolderType.LAYOUT));
+    }
+
+    public void testValues() throws Exception {
+        String xml =
+                "<resources>\n" +
+                "  <string name=\"app_name\">App</string>\n" +
+                "</resources>";
+        assertTrue(STRING_FILTER.containsMatch(xml, ResourceFolderType.VALUES));
+        assertFalse(STRING_FILTER.containsMatch(xml, ResourceFolderType.LAYOUT));
+
+        assertTrue(ID_FILTER.containsMatch(
+                "<resources>\n" +
+                "  <item type=\"id\" name=\"button\"/>\n" +
+                "</resources>", ResourceFolderType.VALUES));
+    }
+
+    public void testText() throws Exception {
+        assertTrue(STRING_FILTER.containsMatch(
+                "<resources>\n" +
+                "  <style name=\"Theme\">\n" +
+                "    <item name=\"android:label\">\n" +
+                "      @string/app_name\n" +
+                "    </item>\n" +
+                "  </style>\n" +
+                "</resources>", ResourceFolderType.VALUES));
+
+        // Text separated by a comment forms separate text nodes
+        assertTrue(STRING_FILTER.containsMatch(
+                "<resources>\n" +
+                "  <item name=\"label\">x<!-- c -->@string/app_name</item>\n" +
+                "</resources>", ResourceFolderType.VALUES));
+
+        assertFalse(STRING_FILTER.containsMatch(
+                "<resources>\n" +
+                "  <item name=\"label\">@string/app_name and more</item>\n" +
+                "</resources>", ResourceFolderType.VALUES));
+    }
+
+    public void testMalformed() throws Exception {
+        // Let the model based code decide
+        assertTrue(STRING_FILTER.containsMatch("<resources><string name=\"app_name\">",
+                ResourceFolderType.LAYOUT));
+    }
+}
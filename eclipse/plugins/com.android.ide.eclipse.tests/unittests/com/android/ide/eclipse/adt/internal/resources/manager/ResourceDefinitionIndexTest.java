@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.eclipse.adt.internal.resources.manager;
+
+import com.android.ide.eclipse.adt.internal.resources.manager.ResourceDefinitionIndex.FileDefinitions;
+import com.android.resources.ResourceType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class ResourceDefinitionIndexTest extends TestCase {
+    private static final String LAYOUT =
+            "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<!-- <Button android:id=\"@+id/fake\"/> -->\n" +
+            "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    android:layout_width=\"match_parent\">\n" +
+            "    <TextView\n" +
+            "        android:layout_below=\"@+id/button\"\n" +
+            "        android:id=\"@+id/text\" />\n" +
+            "    <Button\n" +
+            "        android:id=\"@+id/button\"\n" +
+            "        android:text=\"a > b\" >\n" +
+            "    </Button>\n" +
+            "</LinearLayout>\n";
+
+    private static final String VALUES =
+            "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<resources>\n" +
+            "    <declare-styleable name=\"MyView\">\n" +
+            "        <attr name=\"color\" format=\"color\" />\n" +
+            "        <attr name=\"size\" format=\"dimension\" />\n" +
+            "    </declare-styleable>\n" +
+            "    <attr name=\"color\" format=\"color\" />\n" +
+            "    <string name=\"app_name\">App &amp; <![CDATA[<b>x</b>]]></string>\n" +
+            "    <item type=\"id\" name=\"foo\" />\n" +
+            "</resources>\n";
+
+    public void testIds() throws Exception {
+        FileDefinitions definitions = ResourceDefinitionIndex.indexXml(LAYOUT, 42,
+                true, false, false);
+        assertEquals(42, definitions.mStamp);
+        assertNull(definitions.getIdRegion("fake"));
+
+        int[] text = definitions.getIdRegion("text");
+        assertNotNull(text);
+        int textStart = LAYOUT.indexOf("<TextView");
+        assertEquals(textStart, text[0]);
+        assertEquals(LAYOUT.indexOf("/>", textStart) + 2, text[1]);
+
+        // The element with the id attribute wins over the layout_below reference
+        int[] button = definitions.getIdRegion("button");
+        assertNotNull(button);
+        assertEquals(LAYOUT.lastIndexOf("<Button"), button[0]);
+        assertEquals(LAYOUT.indexOf("</Button>") + "</Button>".length(), button[1]);
+    }
+
+    public void testValues() throws Exception {
+        FileDefinitions definitions = ResourceDefinitionIndex.indexXml(VALUES, 1,
+                false, true, false);
+
+        // Top level declarations win over declare-styleable attributes
+        int[] color = definitions.getValueRegion(ResourceType.ATTR, "color");
+        assertNotNull(color);
+        assertEquals(VALUES.lastIndexOf("<attr name=\"color\""), color[0]);
+        int[] size = definitions.getValueRegion(ResourceType.ATTR, "size");
+        assertNotNull(size);
+        assertEquals(VALUES.indexOf("<attr name=\"size\""), size[0]);
+
+        int[] appName = definitions.getValueRegion(ResourceType.STRING, "app_name");
+        assertNotNull(appName);
+        assertEquals(VALUES.indexOf("<string"), appName[0]);
+        assertEquals(VALUES.indexOf("</string>") + "</string>".length(), appName[1]);
+
+        int[] foo = definitions.getValueRegion(ResourceType.ID, "foo");
+        assertNotNull(foo);
+        assertEquals(VALUES.indexOf("<item"), foo[0]);
+
+        assertNull(definitions.getValueRegion(ResourceType.STYLEABLE, "color"));
+        assertNull(definitions.getValueRegion(ResourceType.STRING, "MyView"));
+    }
+
+    public void testMalformed() throws Exception {
+        String xml = "<resources>\n<string name=\"a\">A</string>\n<string name=\"b\">\n";
+        FileDefinitions definitions = ResourceDefinitionIndex.indexXml(xml, 1,
+                false, true, false);
+        assertNotNull(definitions.getValueRegion(ResourceType.STRING, "a"));
+    }
+
+    public void testIndexRoundTrip() throws Exception {
+        Map<String, FileDefinitions> files = new HashMap<String, FileDefinitions>();
+        files.put("res/layout/main.xml",
+                ResourceDefinitionIndex.indexXml(LAYOUT, 7, true, false, false));
+        files.put("res/values/values.xml",
+                ResourceDefinitionIndex.indexXml(VALUES, 9, true, true, false));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ResourceDefinitionIndex.writeIndex(out, files);
+        out.close();
+
+        Map<String, FileDefinitions> read = new HashMap<String, FileDefinitions>();
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        assertTrue(ResourceDefinitionIndex.readIndex(in, read));
+        assertEquals(2, read.size());
+
+        FileDefinitions layout = read.get("res/layout/main.xml");
+        assertEquals(7, layout.mStamp);
+        assertEquals(LAYOUT.lastIndexOf("<Button"), layout.getIdRegion("button")[0]);
+        FileDefinitions values = read.get("res/values/values.xml");
+        assertEquals(9, values.mStamp);
+        assertEquals(VALUES.indexOf("<string"),
+                values.getValueRegion(ResourceType.STRING, "app_name")[0]);
+    }
+
+    public void testIndexBadFormat() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x12345678);
+        out.writeInt(1);
+        out.close();
+
+        Map<String, FileDefinitions> read = new HashMap<String, FileDefinitions>();
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        assertFalse(ResourceDefinitionIndex.readIndex(in, read));
+        assertTrue(read.isEmpty());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.eclipse.adt.internal.resources.manager;
+
+import com.android.ide.common.resources.ResourceItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class ResourceNameIndexTest extends TestCase {
+    private static final String[] NAMES = ResourceNameIndex.createNames(Arrays.asList(
+            new ResourceItem("app_name"),
+            new ResourceItem("action_bar_title"),
+            new ResourceItem("About"),
+            new ResourceItem("abc"),
+            new ResourceItem("Theme.Holo.Light"),
+            new ResourceItem("actionBarTitle2"),
+            new ResourceItem("cancel")));
+
+    public void testSorted() throws Exception {
+        assertEquals("[abc, About, action_bar_title, actionBarTitle2, app_name, cancel, "
+                + "Theme.Holo.Light]", Arrays.toString(NAMES));
+        assertEquals(0, ResourceNameIndex.createNames(
+                Collections.<ResourceItem>emptyList()).length);
+    }
+
+    public void testPrefix() throws Exception {
+        List<String> results = new ArrayList<String>();
+        assertEquals(2, ResourceNameIndex.addMatches(NAMES, "ab", false, "@string/",
+                results, 100));
+        assertEquals("[@string/abc, @string/About]", results.toString());
+
+        results.clear();
+        assertEquals(7, ResourceNameIndex.addMatches(NAMES, "", false, "", results, 100));
+
+        results.clear();
+        assertEquals(0, ResourceNameIndex.addMatches(NAMES, "zz", false, "", results, 100));
+        assertEquals(0, ResourceNameIndex.addMatches(NAMES, "b", true, "", results, 100));
+        assertTrue(results.isEmpty());
+    }
+
+    public void testMax() throws Exception {
+        List<String> results = new ArrayList<String>();
+        assertEquals(3, ResourceNameIndex.addMatches(NAMES, "a", false, "", results, 3));
+        assertEquals("[abc, About, action_bar_title]", results.toString());
+
+        results.clear();
+        assertEquals(0, ResourceNameIndex.addMatches(NAMES, "a", true, "", results, 0));
+    }
+
+    public void testCamelCase() throws Exception {
+        List<String> results = new ArrayList<String>();
+        assertEquals(2, ResourceNameIndex.addMatches(NAMES, "abt", true, "", results, 100));
+        assertEquals("[action_bar_title, actionBarTitle2]", results.toString());
+
+        // Prefix matches come first, and are not repeated
+        results.clear();
+        assertEquals(4, ResourceNameIndex.addMatches(NAMES, "ab", true, "", results, 100));
+        assertEquals("[abc, About, action_bar_title, actionBarTitle2]", results.toString());
+
+        results.clear();
+        ResourceNameIndex.addMatches(NAMES, "THL", true, "", results, 100);
+        assertEquals("[Theme.Holo.Light]", results.toString());
+    }
+
+    public void testMatchesCamelCase() throws Exception {
+        assertTrue(ResourceNameIndex.matchesCamelCase("action_bar_title", ""));
+        assertTrue(ResourceNameIndex.matchesCamelCase("action_bar_title", "abt"));
+        assertTrue(ResourceNameIndex.matchesCamelCase("action_bar_title", "actBarT"));
+        assertTrue(ResourceNameIndex.matchesCamelCase("action_bar_title", "a_b"));
+        assertTrue(ResourceNameIndex.matchesCamelCase("action_bar_title", "ACTION_BAR"));
+        assertTrue(ResourceNameIndex.matchesCamelCase("actionBarTitle2", "abt2"));
+        assertTrue(ResourceNameIndex.matchesCamelCase("Theme.Holo.Light", "th.l"));
+        assertFalse(ResourceNameIndex.matchesCamelCase("action_bar_title", "abx"));
+        assertFalse(ResourceNameIndex.matchesCamelCase("action_bar_title", "bt"));
+        assertFalse(ResourceNameIndex.matchesCamelCase("action_bar_title", "aci"));
+        assertFalse(ResourceNameIndex.matchesCamelCase("", "a"));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.eclipse.adt.internal.wizards.templates;
+
+import freemarker.template.Template;
+
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class StringEvaluatorTest extends TestCase {
+    private static final List<Parameter> NO_PARAMETERS = Collections.emptyList();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        synchronized (StringEvaluator.sTemplates) {
+            StringEvaluator.sTemplates.clear();
+        }
+    }
+
+    public void testEvaluate() throws Exception {
+        StringEvaluator evaluator = new StringEvaluator();
+        assertEquals("foo_bar", evaluator.evaluate("${camelCaseToUnderscore('FooBar')}",
+                NO_PARAMETERS));
+        // Invalid expressions evaluate to null
+        assertNull(evaluator.evaluate("${", NO_PARAMETERS));
+    }
+
+    public void testSharedCache() throws Exception {
+        String expression = "${'a' + 'b'}";
+        assertEquals("ab", new StringEvaluator().evaluate(expression, NO_PARAMETERS));
+        Template template = StringEvaluator.sTemplates.get(expression);
+        assertNotNull(template);
+
+        // A different evaluator reuses the compiled expression
+        assertEquals("ab", new StringEvaluator().evaluate(expression, NO_PARAMETERS));
+        assertSame(template, StringEvaluator.sTemplates.get(expression));
+    }
+
+    public void testEviction() throws Exception {
+        StringEvaluator evaluator = new StringEvaluator();
+        int max = StringEvaluator.MAX_CACHED_EXPRESSIONS;
+        for (int i = 0; i < max; i++) {
+            assertEquals(Integer.toString(i), evaluator.evaluate(expression(i), NO_PARAMETERS));
+        }
+        assertEquals(max, StringEvaluator.sTemplates.size());
+
+        // Use the first expression again, such that the second one is the least
+        // recently used
+        assertEquals("0", evaluator.evaluate(expression(0), NO_PARAMETERS));
+        assertEquals(Integer.toString(max), evaluator.evaluate(expression(max), NO_PARAMETERS));
+        assertEquals(max, StringEvaluator.sTemplates.size());
+        assertTrue(StringEvaluator.sTemplates.containsKey(expression(0)));
+        assertFalse(StringEvaluator.sTemplates.containsKey(expression(1)));
+        assertTrue(StringEvaluator.sTemplates.containsKey(expression(max)));
+
+        // Evicted expressions are compiled again
+        assertEquals("1", evaluator.evaluate(expression(1), NO_PARAMETERS));
+        assertTrue(StringEvaluator.sTemplates.containsKey(expression(1)));
+    }
+
+    private static String expression(int i) {
+        return "${" + i + "?c}";
+    }
+}
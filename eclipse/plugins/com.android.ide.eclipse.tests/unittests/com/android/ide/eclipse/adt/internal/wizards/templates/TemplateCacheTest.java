@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.ide.eclipse.adt.internal.wizards.templates;
+
+import static com.android.ide.eclipse.adt.internal.wizards.templates.TemplateHandler.TEMPLATE_XML;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+
+import org.w3c.dom.Document;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+/** Tests for the caches of compiled templates and parsed template.xml files */
+@SuppressWarnings("javadoc")
+public class TemplateCacheTest extends TestCase {
+    private File mDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDir = File.createTempFile("templates", "");
+        mDir.delete();
+        mDir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAll(mDir);
+        super.tearDown();
+    }
+
+    private static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static File write(File file, String contents) throws Exception {
+        file.getParentFile().mkdirs();
+        long lastModified = file.lastModified();
+        Files.write(contents, file, Charsets.UTF_8);
+        if (lastModified != 0) {
+            // Make sure the change is visible even with a coarse timestamp resolution
+            file.setLastModified(lastModified + 2000);
+        }
+        return file;
+    }
+
+    private static String render(File file) throws Exception {
+        Configuration freemarker = TemplateHandler.getFreemarker();
+        Template template = freemarker.getTemplate(file.toURI().toString());
+        StringWriter out = new StringWriter();
+        template.process(Collections.singletonMap("name", "World"), out);
+        return out.toString();
+    }
+
+    public void testTemplateModified() throws Exception {
+        File file = write(new File(mDir, "hello.ftl"), "Hello ${name}");
+        assertEquals("Hello World", render(file));
+        Configuration freemarker = TemplateHandler.getFreemarker();
+        Template template = freemarker.getTemplate(file.toURI().toString());
+        assertSame(template, freemarker.getTemplate(file.toURI().toString()));
+
+        write(file, "Goodbye ${name}");
+        assertEquals("Goodbye World", render(file));
+        assertNotSame(template, freemarker.getTemplate(file.toURI().toString()));
+    }
+
+    public void testRelativeIncludes() throws Exception {
+        // Two template folders with the same file names must not share templates
+        String recipe = "<#include \"../globals.xml.ftl\">${greeting} "
+                + "<#include \"include_name.ftl\">";
+        File first = write(new File(mDir, "first/root/recipe.xml.ftl"), recipe);
+        write(new File(mDir, "first/root/include_name.ftl"), "${name}");
+        write(new File(mDir, "first/globals.xml.ftl"), "<#assign greeting=\"Hello\">");
+        File second = write(new File(mDir, "second/root/recipe.xml.ftl"), recipe);
+        write(new File(mDir, "second/root/include_name.ftl"), "${name}!");
+        write(new File(mDir, "second/globals.xml.ftl"), "<#assign greeting=\"Bye\">");
+
+        assertEquals("Hello World", render(first));
+        assertEquals("Bye World!", render(second));
+
+        // Modified includes are picked up too
+        write(new File(mDir, "first/globals.xml.ftl"), "<#assign greeting=\"Hi\">");
+        assertEquals("Hi World", render(first));
+    }
+
+    public void testTemplateDocument() throws Exception {
+        File file = write(new File(mDir, TEMPLATE_XML), "<template name=\"First\"/>");
+        Document document = TemplateManager.getTemplateDocument(mDir);
+        assertNotNull(document);
+        assertEquals("First", document.getDocumentElement().getAttribute("name"));
+        assertSame(document, TemplateManager.getTemplateDocument(mDir));
+
+        write(file, "<template name=\"Second\"/>");
+        Document modified = TemplateManager.getTemplateDocument(mDir);
+        assertNotNull(modified);
+        assertNotSame(document, modified);
+        assertEquals("Second", modified.getDocumentElement().getAttribute("name"));
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.ddms;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatMessage;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class LogCatMessageBufferTest extends TestCase {
+    private static LogCatMessage message(LogLevel level, String tag, String text) {
+        return new LogCatMessage(level, "123", "456", "com.example", tag,
+                "01-02 03:04:05.678", text);
+    }
+
+    public void testGet() throws Exception {
+        LogCatMessageBuffer buffer = new LogCatMessageBuffer(10, 1024);
+        buffer.add(new LogCatMessage(LogLevel.WARN, "123", "456", "com.example", "MyTag",
+                "12-31 23:59:58.999", "Hello \u00e9t\u00e9"));
+        buffer.add(new LogCatMessage(LogLevel.INFO, "1", "2", "app", "tag",
+                "not a time", "text"));
+
+        assertEquals(0, buffer.getFirstSequence());
+        assertEquals(2, buffer.getNextSequence());
+        assertEquals(2, buffer.size());
+
+        LogCatMessage message = buffer.get(0);
+        assertEquals(LogLevel.WARN, message.getLogLevel());
+        assertEquals("123", message.getPid());
+        assertEquals("456", message.getTid());
+        assertEquals("com.example", message.getAppName());
+        assertEquals("MyTag", message.getTag());
+        assertEquals("12-31 23:59:58.999", message.getTime());
+        assertEquals("Hello \u00e9t\u00e9", message.getMessage());
+
+        // Time stamps in other formats are kept as is
+        assertEquals("not a time", buffer.get(1).getTime());
+        assertEquals("app", buffer.getAppName(1));
+
+        assertNull(buffer.get(2));
+        assertNull(buffer.getAppName(-1));
+    }
+
+    public void testPackTime() throws Exception {
+        assertEquals(102030405678L, LogCatMessageBuffer.packTime("01-02 03:04:05.678"));
+        assertTrue(LogCatMessageBuffer.packTime("01-02 03:04:05.678")
+                < LogCatMessageBuffer.packTime("01-02 03:04:05.679"));
+        assertTrue(LogCatMessageBuffer.packTime("01-02 23:59:59.999")
+                < LogCatMessageBuffer.packTime("01-03 00:00:00.000"));
+        assertEquals(-1, LogCatMessageBuffer.packTime(null));
+        assertEquals(-1, LogCatMessageBuffer.packTime("01-02 03:04:05"));
+        assertEquals(-1, LogCatMessageBuffer.packTime("01-02 03:04:05x678"));
+        assertEquals(-1, LogCatMessageBuffer.packTime("01-02 03:0a:05.678"));
+    }
+
+    public void testWraparound() throws Exception {
+        LogCatMessageBuffer buffer = new LogCatMessageBuffer(4, 1024);
+        for (int i = 0; i < 10; i++) {
+            buffer.add(message(LogLevel.DEBUG, "tag", "message " + i));
+        }
+
+        assertEquals(6, buffer.getFirstSequence());
+        assertEquals(10, buffer.getNextSequence());
+        assertEquals(4, buffer.size());
+        assertNull(buffer.get(5));
+        for (int i = 6; i < 10; i++) {
+            assertEquals("message " + i, buffer.get(i).getMessage());
+        }
+        assertTrue(Arrays.equals(new long[] { 6, 7, 8, 9 },
+                buffer.findByTag("tag", 0)));
+    }
+
+    public void testSlabEviction() throws Exception {
+        LogCatMessageBuffer buffer = new LogCatMessageBuffer(100, 10);
+        buffer.add(message(LogLevel.DEBUG, "tag", "abcd"));
+        buffer.add(message(LogLevel.DEBUG, "tag", "efgh"));
+        assertEquals(2, buffer.size());
+
+        // Does not fit in the slab along with the first message
+        buffer.add(message(LogLevel.DEBUG, "tag", "ijkl"));
+        assertEquals(1, buffer.getFirstSequence());
+        assertEquals(2, buffer.size());
+        assertEquals("efgh", buffer.get(1).getMessage());
+        // Wraps around the end of the slab
+        assertEquals("ijkl", buffer.get(2).getMessage());
+        assertTrue(Arrays.equals(new long[] { 2 }, buffer.findText("jk", 0)));
+        assertTrue(Arrays.equals(new long[] { 2 }, buffer.findText("ijkl", 0)));
+
+        // Text larger than the slab replaces all the other messages, and is truncated
+        buffer.add(message(LogLevel.DEBUG, "tag", "0123456789abc"));
+        assertEquals(3, buffer.getFirstSequence());
+        assertEquals(1, buffer.size());
+        assertEquals("0123456789", buffer.get(3).getMessage());
+    }
+
+    public void testFindByLevel() throws Exception {
+        LogCatMessageBuffer buffer = new LogCatMessageBuffer(100, 1024);
+        buffer.add(message(LogLevel.VERBOSE, "tag", "0"));
+        buffer.add(message(LogLevel.ERROR, "tag", "1"));
+        buffer.add(message(LogLevel.INFO, "tag", "2"));
+        buffer.add(message(LogLevel.ASSERT, "tag", "3"));
+        buffer.add(message(LogLevel.WARN, "tag", "4"));
+
+        assertTrue(Arrays.equals(new long[] { 1, 3 },
+                buffer.findByLevel(LogLevel.ERROR.getPriority(), 0)));
+        assertTrue(Arrays.equals(new long[] { 1, 2, 3, 4 },
+                buffer.findByLevel(LogLevel.INFO.getPriority(), 0)));
+        assertTrue(Arrays.equals(new long[] { 3 },
+                buffer.findByLevel(LogLevel.ERROR.getPriority(), 2)));
+        assertEquals(5, buffer.findByLevel(0, 0).length);
+    }
+
+    public void testFindByTagAndPid() throws Exception {
+        LogCatMessageBuffer buffer = new LogCatMessageBuffer(100, 1024);
+        buffer.add(new LogCatMessage(LogLevel.INFO, "1", "1", "a", "Tag1", "", "0"));
+        buffer.add(new LogCatMessage(LogLevel.INFO, "2", "2", "b", "Tag2", "", "1"));
+        buffer.add(new LogCatMessage(LogLevel.INFO, "1", "3", "a", "Tag2", "", "2"));
+
+        assertTrue(Arrays.equals(new long[] { 0 }, buffer.findByTag("Tag1", 0)));
+        assertTrue(Arrays.equals(new long[] { 1, 2 }, buffer.findByTag("Tag2", 0)));
+        assertTrue(Arrays.equals(new long[] { 2 }, buffer.findByTag("Tag2", 2)));
+        assertEquals(0, buffer.findByTag("Tag3", 0).length);
+        assertTrue(Arrays.equals(new long[] { 0, 2 }, buffer.findByPid("1", 0)));
+        assertTrue(Arrays.equals(new long[] { 1 }, buffer.findByPid("2", 0)));
+    }
+
+    public void testFindText() throws Exception {
+        LogCatMessageBuffer buffer = new LogCatMessageBuffer(100, 4096);
+        buffer.add(message(LogLevel.INFO, "tag", "Starting Activity"));
+        buffer.add(message(LogLevel.INFO, "tag", "activity stopped"));
+        buffer.add(message(LogLevel.INFO, "tag", "GC freed 100K"));
+        buffer.add(message(LogLevel.INFO, "tag", "ac"));
+
+        // Case insensitive, through the trigram index
+        assertTrue(Arrays.equals(new long[] { 0, 1 }, buffer.findText("ACTIVITY", 0)));
+        assertTrue(Arrays.equals(new long[] { 1 }, buffer.findText("ity sto", 0)));
+        assertEquals(0, buffer.findText("activities", 0).length);
+        assertEquals(0, buffer.findText("xyz", 0).length);
+        // Shorter than a trigram: every message is checked
+        assertTrue(Arrays.equals(new long[] { 0, 1, 3 }, buffer.findText("ac", 0)));
+        assertTrue(Arrays.equals(new long[] { 3 }, buffer.findText("ac", 2)));
+
+        // Refining a previous result
+        long[] result = buffer.findText("act", 0);
+        assertTrue(Arrays.equals(new long[] { 0, 1 }, result));
+        assertTrue(Arrays.equals(new long[] { 0 }, buffer.refineText(result, "g act")));
+    }
+
+    public void testLongMessages() throws Exception {
+        LogCatMessageBuffer buffer = new LogCatMessageBuffer(100, 8192);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            sb.append('.');
+        }
+        // Beyond the indexed prefix of the message
+        sb.append("NullPointerException");
+        buffer.add(message(LogLevel.ERROR, "tag", "short"));
+        buffer.add(message(LogLevel.ERROR, "tag", sb.toString()));
+
+        assertTrue(Arrays.equals(new long[] { 1 },
+                buffer.findText("nullpointerexception", 0)));
+        assertTrue(Arrays.equals(new long[] { 1 }, buffer.findText("...", 0)));
+        assertEquals(0, buffer.findText("IllegalStateException", 0).length);
+    }
+
+    public void testSparseMatches() throws Exception {
+        // Matches far apart are stored as multi-byte deltas in the indexes
+        LogCatMessageBuffer buffer = new LogCatMessageBuffer(100000, 1024 * 1024);
+        for (int i = 0; i <= 40000; i++) {
+            if (i % 20000 == 0 || i == 150) {
+                buffer.add(message(LogLevel.ERROR, "Rare", "found the needle " + i));
+            } else {
+                buffer.add(message(LogLevel.DEBUG, "tag", "x" + i));
+            }
+        }
+
+        long[] expected = new long[] { 0, 150, 20000, 40000 };
+        assertTrue(Arrays.equals(expected, buffer.findByTag("Rare", 0)));
+        assertTrue(Arrays.equals(expected, buffer.findText("NEEDLE", 0)));
+        assertTrue(Arrays.equals(expected,
+                buffer.findByLevel(LogLevel.ERROR.getPriority(), 0)));
+        assertTrue(Arrays.equals(new long[] { 20000, 40000 },
+                buffer.findText("needle", 151)));
+    }
+
+    public void testSweep() throws Exception {
+        LogCatMessageBuffer buffer = new LogCatMessageBuffer(10, 1024);
+        for (int i = 0; i < 1000; i++) {
+            // Unique tags and pids, and some time stamps which are interned as well
+            buffer.add(new LogCatMessage(LogLevel.INFO, "pid" + i, "tid", "app",
+                    "tag" + i, i % 2 == 0 ? "time" + i : "01-02 03:04:05.678",
+                    "text" + i));
+        }
+        assertEquals(10, buffer.size());
+
+        // Only the strings of the messages in the buffer are kept: one pid, tag and
+        // (for every other message) time each, and the shared tid and application
+        assertEquals(10 + 10 + 5 + 2, buffer.getInternedStringCount());
+
+        // Ids of dropped strings are reused without affecting the lookups
+        assertEquals(0, buffer.findByTag("tag0", 0).length);
+        assertEquals(0, buffer.findByPid("pid989", 0).length);
+        assertTrue(Arrays.equals(new long[] { 990 }, buffer.findByTag("tag990", 0)));
+        assertTrue(Arrays.equals(new long[] { 999 }, buffer.findByPid("pid999", 0)));
+        for (long i = 990; i < 1000; i++) {
+            LogCatMessage message = buffer.get(i);
+            assertEquals("tag" + i, message.getTag());
+            assertEquals("pid" + i, message.getPid());
+            assertEquals(i % 2 == 0 ? "time" + i : "01-02 03:04:05.678", message.getTime());
+        }
+        assertTrue(Arrays.equals(new long[] { 995 }, buffer.findText("text995", 0)));
+    }
+}
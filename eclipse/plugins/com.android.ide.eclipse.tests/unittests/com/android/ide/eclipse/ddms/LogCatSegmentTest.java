@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Eclipse Public License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.ide.eclipse.ddms;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public class LogCatSegmentTest extends TestCase {
+    private File mDir;
+    private File mDataFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDir = File.createTempFile("logcat", "");
+        mDir.delete();
+        mDir.mkdirs();
+        mDataFile = new File(mDir, "1000" + LogCatSegment.DATA_EXT);
+
+        // Three blocks of 2, 2 and 1 messages
+        LogCatSegmentWriter writer = new LogCatSegmentWriter(mDataFile);
+        writer.add(message("A", "01-02 10:00:00.000", "0"));
+        writer.add(message("A", "01-02 10:00:05.000", "1"));
+        writer.flush();
+        writer.add(message("B", "01-02 10:00:10.000", "2"));
+        writer.add(message("B", "01-02 10:00:15.500", "3 \u00e9t\u00e9"));
+        writer.flush();
+        writer.add(message("A", "01-02 10:00:20.000", "4"));
+        writer.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+        super.tearDown();
+    }
+
+    private static LogCatMessage message(String tag, String time, String text) {
+        return new LogCatMessage(LogLevel.INFO, "123", "456", "com.example", tag, time, text);
+    }
+
+    public void testRoundTrip() throws Exception {
+        LogCatSegment segment = LogCatSegment.open(mDataFile);
+        assertEquals(mDataFile, segment.getDataFile());
+        assertEquals(5, segment.getMessageCount());
+        assertEquals(3, segment.getBlockCount());
+        assertEquals(0, segment.getBlockStart(0));
+        assertEquals(2, segment.getBlockStart(1));
+        assertEquals(4, segment.getBlockStart(2));
+        assertEquals(0, segment.getBlockOf(1));
+        assertEquals(1, segment.getBlockOf(2));
+        assertEquals(1, segment.getBlockOf(3));
+        assertEquals(2, segment.getBlockOf(4));
+
+        assertTrue(segment.hasTag(0, "A"));
+        assertFalse(segment.hasTag(0, "B"));
+        assertTrue(segment.hasTag(1, "B"));
+        assertTrue(segment.hasTag(2, "A"));
+
+        List<LogCatMessage> messages = segment.readBlock(1);
+        assertEquals(2, messages.size());
+        LogCatMessage message = messages.get(1);
+        assertEquals(LogLevel.INFO, message.getLogLevel());
+        assertEquals("123", message.getPid());
+        assertEquals("456", message.getTid());
+        assertEquals("com.example", message.getAppName());
+        assertEquals("B", message.getTag());
+        assertEquals("01-02 10:00:15.500", message.getTime());
+        assertEquals("3 \u00e9t\u00e9", message.getMessage());
+        assertEquals("4", segment.readBlock(2).get(0).getMessage());
+
+        assertEquals(1, LogCatSegment.listSegments(mDir).size());
+        assertEquals(new File(mDir, "1000" + LogCatSegment.INDEX_EXT),
+                LogCatSegment.getIndexFile(mDataFile));
+    }
+
+    public void testFindTime() throws Exception {
+        LogCatSegment segment = LogCatSegment.open(mDataFile);
+        assertEquals(0, segment.findTime("01-02 10"));
+        assertEquals(0, segment.findTime("01-02 10:00:00.000"));
+        assertEquals(1, segment.findTime("01-02 10:00:01"));
+        assertEquals(2, segment.findTime("01-02 10:00:07"));
+        assertEquals(3, segment.findTime("01-02 10:00:15"));
+        assertEquals(3, segment.findTime("01-02 10:00:15.5"));
+        assertEquals(4, segment.findTime("01-02 10:00:15.6"));
+        assertEquals(4, segment.findTime(" 01-02 10:00:20 "));
+        assertEquals(0, segment.findTime("01"));
+        // After all the messages
+        assertEquals(5, segment.findTime("01-03"));
+        // Invalid
+        assertEquals(-1, segment.findTime("yesterday"));
+        assertEquals(-1, segment.findTime("01-02 10:00:00.0000"));
+    }
+
+    public void testTruncatedData() throws Exception {
+        // The last block is only partially written
+        RandomAccessFile file = new RandomAccessFile(mDataFile, "rw");
+        try {
+            file.setLength(file.length() - 1);
+        } finally {
+            file.close();
+        }
+
+        LogCatSegment segment = LogCatSegment.open(mDataFile);
+        assertEquals(2, segment.getBlockCount());
+        assertEquals(4, segment.getMessageCount());
+        assertEquals("3 \u00e9t\u00e9", segment.readBlock(1).get(1).getMessage());
+        assertEquals(4, segment.findTime("01-02 10:00:20"));
+    }
+
+    public void testTruncatedIndex() throws Exception {
+        // The last index entry is only partially written
+        File indexFile = LogCatSegment.getIndexFile(mDataFile);
+        RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+        try {
+            file.setLength(file.length() - 3);
+        } finally {
+            file.close();
+        }
+
+        LogCatSegment segment = LogCatSegment.open(mDataFile);
+        assertEquals(2, segment.getBlockCount());
+        assertEquals(4, segment.getMessageCount());
+        assertEquals("2", segment.readBlock(1).get(0).getMessage());
+    }
+
+    public void testNotASegment() throws Exception {
+        FileOutputStream out = new FileOutputStream(mDataFile);
+        try {
+            out.write("Not logcat output".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        try {
+            LogCatSegment.open(mDataFile);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        // Too short for the magic number
+        new FileOutputStream(mDataFile).close();
+        try {
+            LogCatSegment.open(mDataFile);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    public void testEmptyBlocks() throws Exception {
+        // Rewrite the index with empty blocks at the start, in the middle and at the end
+        File indexFile = LogCatSegment.getIndexFile(mDataFile);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        DataInputStream in = new DataInputStream(new FileInputStream(indexFile));
+        try {
+            out.writeInt(in.readInt());
+            writeEmptyEntry(out);
+            copyEntry(in, out);
+            writeEmptyEntry(out);
+            writeEmptyEntry(out);
+            copyEntry(in, out);
+            copyEntry(in, out);
+            writeEmptyEntry(out);
+            try {
+                in.readLong();
+                fail("Expected the end of the index");
+            } catch (EOFException e) {
+                // Expected
+            }
+        } finally {
+            in.close();
+        }
+        FileOutputStream file = new FileOutputStream(indexFile);
+        try {
+            file.write(bytes.toByteArray());
+        } finally {
+            file.close();
+        }
+
+        LogCatSegment segment = LogCatSegment.open(mDataFile);
+        assertEquals(7, segment.getBlockCount());
+        assertEquals(5, segment.getMessageCount());
+        // Messages are never found in the empty blocks
+        assertEquals(1, segment.getBlockOf(0));
+        assertEquals(1, segment.getBlockOf(1));
+        assertEquals(4, segment.getBlockOf(2));
+        assertEquals(4, segment.getBlockOf(3));
+        assertEquals(5, segment.getBlockOf(4));
+        assertEquals(2, segment.getBlockStart(4));
+        assertEquals("2", segment.readBlock(segment.getBlockOf(2)).get(0).getMessage());
+        assertTrue(segment.readBlock(0).isEmpty());
+        assertFalse(segment.hasTag(0, "A"));
+
+        assertEquals(0, segment.findTime("01-02"));
+        assertEquals(3, segment.findTime("01-02 10:00:15"));
+        assertEquals(5, segment.findTime("01-03"));
+    }
+
+    private static void writeEmptyEntry(DataOutputStream out) throws IOException {
+        out.writeLong(4); // offset
+        out.writeInt(0);  // length
+        out.writeInt(0);  // count
+        out.writeLong(-1); // first time
+        out.writeLong(-1); // last time
+        out.writeInt(0);  // tags
+    }
+
+    private static void copyEntry(DataInputStream in, DataOutputStream out)
+            throws IOException {
+        out.writeLong(in.readLong());
+        out.writeInt(in.readInt());
+        out.writeInt(in.readInt());
+        out.writeLong(in.readLong());
+        out.writeLong(in.readLong());
+        int tagCount = in.readInt();
+        out.writeInt(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            out.writeUTF(in.readUTF());
+        }
+    }
+}